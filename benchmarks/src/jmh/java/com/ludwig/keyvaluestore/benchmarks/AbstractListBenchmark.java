@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.StorageAdapter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import com.ludwig.keyvaluestore.types.ListType;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * {@link ListType#add} and {@link ListType#remove} on a list of small payloads as it grows, stored
+ * in the {@link ListFormat} and by the storage engine the subclass picks. Each invocation adds one
+ * element and removes it again so the list stays at its starting size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class AbstractListBenchmark {
+  private static final int PAYLOAD_BYTES = 64;
+
+  @Param({"10", "100", "1000"})
+  public int size;
+
+  private File directory;
+  private StorageAdapter adapter;
+  private ListType<Payload> list;
+  private Payload element;
+
+  abstract String engine();
+
+  abstract ListFormat listFormat();
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Fixtures.tempDirectory("list-benchmark");
+    adapter = Fixtures.adapter(engine(), directory);
+    FileStorage storage = new FileStorage(adapter, null, listFormat());
+    KeyValueStore store = KeyValueStoreFactory.build(storage, new GsonConverter());
+    list = store.list("list", Payload.class);
+    List<Payload> elements = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      elements.add(Payload.ofSize(i, PAYLOAD_BYTES));
+    }
+    list.observePut(elements).blockingGet();
+    element = Payload.ofSize(size, PAYLOAD_BYTES);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Fixtures.close(adapter);
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public List<Payload> addThenRemove() {
+    list.observeAdd(element).blockingGet();
+    return list.observeRemove(size).blockingGet();
+  }
+
+  @Benchmark
+  public List<Payload> get() {
+    return list.blockingGet();
+  }
+}
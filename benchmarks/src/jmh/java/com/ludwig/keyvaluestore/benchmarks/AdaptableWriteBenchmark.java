@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.storage.unit.ByteBufferPool;
+import com.ludwig.keyvaluestore.storage.unit.ByteWritableAdapter;
+import com.ludwig.keyvaluestore.storage.unit.WritableAdapter;
+import io.reactivex.Completable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Allocation on the adaptable stream write path: a payload written in 64 byte chunks to an adapter
+ * that only consumes its value. Run with the {@code gc} profiler and compare {@code
+ * gc.alloc.rate.norm}: {@code pooled} should allocate a small constant per stream whatever the
+ * payload size, while {@code unpooled} uses a pool too small to keep any buffer and allocates every
+ * time it grows. The writer still allocates the one {@code String} its adapter is handed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdaptableWriteBenchmark {
+  private static final int CHUNK = 64;
+
+  @Param({"pooled", "unpooled"})
+  public String pool;
+
+  @Param({"1024", "65536"})
+  public int size;
+
+  private ByteBufferPool bufferPool;
+  private ByteWritableAdapter byteAdapter;
+  private WritableAdapter stringAdapter;
+  private byte[] bytes;
+  private char[] chars;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    bufferPool =
+        pool.equals("pooled")
+            ? new ByteBufferPool(false, 1, ByteBufferPool.DEFAULT_MAX_POOLED_SIZE)
+            : new ByteBufferPool(false, 1, ByteBufferPool.MIN_SIZE);
+    byteAdapter =
+        (key, value) -> {
+          blackhole.consume(value.remaining());
+          return Completable.complete();
+        };
+    stringAdapter =
+        (key, value) -> {
+          blackhole.consume(value.length());
+          return Completable.complete();
+        };
+    bytes = new byte[size];
+    Arrays.fill(bytes, (byte) 'a');
+    chars = new char[size];
+    Arrays.fill(chars, 'a');
+  }
+
+  @Benchmark
+  public void outputStream() throws IOException {
+    try (OutputStream output = byteAdapter.outputStream("key", bufferPool)) {
+      for (int off = 0; off < size; off += CHUNK) {
+        output.write(bytes, off, CHUNK);
+      }
+    }
+  }
+
+  @Benchmark
+  public void writer() throws IOException {
+    try (Writer writer = stringAdapter.writer("key", bufferPool)) {
+      for (int off = 0; off < size; off += CHUNK) {
+        writer.write(chars, off, CHUNK);
+      }
+      writer.flush();
+    }
+  }
+}
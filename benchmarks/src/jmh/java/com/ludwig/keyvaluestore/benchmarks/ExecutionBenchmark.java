@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.Execution;
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import io.reactivex.Completable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A burst of {@value #WRITERS} concurrent puts, each subscribed on the store's {@link Execution},
+ * timed until the last one completes. {@link Threads#peak} reports the most live platform threads
+ * seen during the burst: it grows with the burst under {@code io}, stays at the pool size under
+ * {@code bounded} and near the carrier count under {@code virtualThreads} on Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class ExecutionBenchmark {
+  private static final int WRITERS = 10_000;
+  private static final int KEYS = 1_000;
+
+  @Param({"io", "virtualThreads", "bounded"})
+  public String execution;
+
+  private File directory;
+  private Execution storeExecution;
+  private KeyValueStore store;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Fixtures.tempDirectory("execution-benchmark");
+    storeExecution = execution(execution);
+    store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(directory.getPath())),
+            new GsonConverter(),
+            storeExecution);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public void burst(Threads threads) {
+    List<Completable> writes = new ArrayList<>(WRITERS);
+    for (int i = 0; i < WRITERS; i++) {
+      writes.add(
+          store
+              .value("key" + (i % KEYS), String.class)
+              .observePut("value" + i)
+              .subscribeOn(storeExecution.scheduler())
+              .ignoreElement());
+    }
+    threads.reset();
+    Completable.merge(writes).blockingAwait();
+    threads.record();
+  }
+
+  /** Peak live platform threads during each burst, reported next to the timing. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Threads {
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    public long peak;
+
+    void reset() {
+      threadBean.resetPeakThreadCount();
+    }
+
+    void record() {
+      peak = threadBean.getPeakThreadCount();
+    }
+  }
+
+  private static Execution execution(String name) {
+    switch (name) {
+      case "virtualThreads":
+        return Execution.virtualThreads();
+      case "bounded":
+        return Execution.bounded(Execution.DEFAULT_BOUNDED_THREADS);
+      default:
+        return Execution.io();
+    }
+  }
+}
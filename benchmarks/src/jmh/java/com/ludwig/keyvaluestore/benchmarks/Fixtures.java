@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.converters.JacksonConverter;
+import com.ludwig.keyvaluestore.converters.MoshiConverter;
+import com.ludwig.keyvaluestore.storage.AsyncFileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.BTreeStorageAdapter;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.LogStorageAdapter;
+import com.ludwig.keyvaluestore.storage.LsmStorageAdapter;
+import com.ludwig.keyvaluestore.storage.MappedFileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.StorageAdapter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Converters and storage engines by name, and temp directories for the benchmarks that store to
+ * disk.
+ */
+final class Fixtures {
+  private Fixtures() {}
+
+  static Converter converter(String name) {
+    switch (name) {
+      case "gson":
+        return new GsonConverter();
+      case "jackson":
+        return new JacksonConverter();
+      case "moshi":
+        return new MoshiConverter();
+      default:
+        throw new IllegalArgumentException("Unknown converter " + name);
+    }
+  }
+
+  /** A storage adapter of the named engine keeping its files under {@code directory}. */
+  static StorageAdapter adapter(String engine, File directory) throws IOException {
+    String path = directory.getPath();
+    switch (engine) {
+      case "file":
+        return new FileStorageAdapter(path);
+      case "log":
+        return new LogStorageAdapter(path);
+      case "lsm":
+        return new LsmStorageAdapter(path);
+      case "btree":
+        return new BTreeStorageAdapter(path);
+      case "mapped":
+        return new MappedFileStorageAdapter(path);
+      case "async":
+        return new AsyncFileStorageAdapter(path);
+      default:
+        throw new IllegalArgumentException("Unknown engine " + engine);
+    }
+  }
+
+  /** Close {@code adapter} if it holds files or threads open. */
+  static void close(StorageAdapter adapter) throws IOException {
+    if (adapter instanceof Closeable) {
+      ((Closeable) adapter).close();
+    }
+  }
+
+  static File tempDirectory(String prefix) throws IOException {
+    return Files.createTempDirectory(prefix).toFile();
+  }
+
+  /** Delete {@code directory} and everything under it. */
+  static void delete(File directory) throws IOException {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          delete(file);
+        } else {
+          Files.delete(file.toPath());
+        }
+      }
+    }
+    Files.delete(directory.toPath());
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Journaled lists on the storage engines that append in place, the only ones that can hold them.
+ * Changes append to the journal, so the list should stay nearly flat until a fold; compare with the
+ * other formats in {@link ListBenchmark}.
+ */
+public class JournaledListBenchmark extends AbstractListBenchmark {
+  @Param({"file", "mapped", "async"})
+  public String engine;
+
+  @Override
+  String engine() {
+    return engine;
+  }
+
+  @Override
+  ListFormat listFormat() {
+    return ListFormat.JOURNALED;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Snapshot and chunked lists on every storage engine. A snapshot list rewrites every element on
+ * each change and should scale with the size; a chunked list should stay nearly flat until a chunk
+ * rewrite. Journaled lists only run on engines that append in place and are measured by {@link
+ * JournaledListBenchmark}.
+ */
+public class ListBenchmark extends AbstractListBenchmark {
+  @Param({"file", "log", "lsm", "btree", "mapped", "async"})
+  public String engine;
+
+  @Param({"SNAPSHOT", "CHUNKED"})
+  public String listFormat;
+
+  @Override
+  String engine() {
+    return engine;
+  }
+
+  @Override
+  ListFormat listFormat() {
+    return ListFormat.valueOf(listFormat);
+  }
+}
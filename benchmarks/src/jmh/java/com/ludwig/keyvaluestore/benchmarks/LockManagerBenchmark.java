@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.StripedLockManager;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lock contention on a small set of hot keys with seven readers per writer, comparing {@link
+ * StripedLockManager} against one {@link ReentrantReadWriteLock} per key, which is how storage
+ * units locked before. The {@code optimistic} readers validate a stamp instead of locking, as
+ * cached reads do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LockManagerBenchmark {
+  private static final int KEYS = 16;
+
+  @Param({"striped", "readWrite"})
+  public String manager;
+
+  private LockManager lockManager;
+  private String[] keys;
+
+  @Setup
+  public void setUp() {
+    lockManager = manager.equals("striped") ? new StripedLockManager() : new ReadWriteLockManager();
+    keys = new String[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "key" + i;
+    }
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(7)
+  public void read(Blackhole blackhole) {
+    String key = randomKey();
+    lockManager.startRead(key);
+    try {
+      blackhole.consume(key.length());
+    } finally {
+      lockManager.endRead(key);
+    }
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(1)
+  public void write(Blackhole blackhole) {
+    String key = randomKey();
+    lockManager.startWrite(key);
+    try {
+      blackhole.consume(key.length());
+    } finally {
+      lockManager.endWrite(key);
+    }
+  }
+
+  @Benchmark
+  @Group("optimistic")
+  @GroupThreads(7)
+  public boolean optimisticRead(Blackhole blackhole) {
+    String key = randomKey();
+    long stamp = lockManager.tryOptimisticRead(key);
+    blackhole.consume(key.length());
+    return lockManager.validate(key, stamp);
+  }
+
+  @Benchmark
+  @Group("optimistic")
+  @GroupThreads(1)
+  public void optimisticWrite(Blackhole blackhole) {
+    write(blackhole);
+  }
+
+  private String randomKey() {
+    return keys[ThreadLocalRandom.current().nextInt(KEYS)];
+  }
+
+  /** One reentrant read/write lock per key; optimistic reads always fall back to locking. */
+  private static final class ReadWriteLockManager implements LockManager {
+    private final ConcurrentMap<String, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    @Override
+    public void startRead(String key) {
+      lock(key).readLock().lock();
+    }
+
+    @Override
+    public void endRead(String key) {
+      lock(key).readLock().unlock();
+    }
+
+    @Override
+    public void startWrite(String key) {
+      lock(key).writeLock().lock();
+    }
+
+    @Override
+    public void endWrite(String key) {
+      lock(key).writeLock().unlock();
+    }
+
+    @Override
+    public long tryOptimisticRead(String key) {
+      return 0;
+    }
+
+    @Override
+    public boolean validate(String key, long stamp) {
+      return false;
+    }
+
+    private ReentrantReadWriteLock lock(String key) {
+      return locks.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+    }
+  }
+}
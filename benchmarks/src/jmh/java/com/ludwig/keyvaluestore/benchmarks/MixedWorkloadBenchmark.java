@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import com.ludwig.keyvaluestore.types.ValueType;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Six readers and two writers sharing a {@link FileStorage} of 1024 keys, with and without a {@link
+ * ReadCache}. Without the cache readers contend with writers for each key's lock and decode every
+ * value from disk; with it most reads validate an optimistic stamp and return the decoded value, so
+ * reader throughput should rise while writer throughput stays close.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MixedWorkloadBenchmark {
+  private static final int KEYS = 1024;
+
+  @Param({"off", "on"})
+  public String cache;
+
+  private File directory;
+  private KeyValueStore store;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Fixtures.tempDirectory("mixed-workload-benchmark");
+    ReadCache readCache = cache.equals("on") ? ReadCache.maxEntries(KEYS) : null;
+    store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(directory.getPath()), readCache),
+            new GsonConverter());
+    for (int i = 0; i < KEYS; i++) {
+      value(i).observePut("value" + i).blockingGet();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(6)
+  public String read() {
+    return value(ThreadLocalRandom.current().nextInt(KEYS)).blockingGet();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(2)
+  public String write() {
+    int key = ThreadLocalRandom.current().nextInt(KEYS);
+    return value(key).observePut("value" + key).blockingGet();
+  }
+
+  private ValueType<String> value(int key) {
+    return store.value("key" + key, String.class);
+  }
+}
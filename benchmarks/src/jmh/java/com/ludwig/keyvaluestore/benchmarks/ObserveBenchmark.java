@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.types.ValueType;
+import io.reactivex.disposables.CompositeDisposable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Value puts with a number of subscribers to {@link ValueType#observe()}, each counting the updates
+ * it receives. Updates are delivered on the writing thread before the put completes, so the
+ * difference from a single observer is the cost of fanning one update out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObserveBenchmark {
+  @Param({"1", "16", "256"})
+  public int observers;
+
+  private File directory;
+  private ValueType<String> value;
+  private final LongAdder received = new LongAdder();
+  private final CompositeDisposable subscriptions = new CompositeDisposable();
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Fixtures.tempDirectory("observe-benchmark");
+    KeyValueStore store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(directory.getPath())), new GsonConverter());
+    value = store.value("observed", String.class);
+    value.observePut("value").blockingGet();
+    for (int i = 0; i < observers; i++) {
+      subscriptions.add(value.observe().subscribe(update -> received.increment()));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    subscriptions.dispose();
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public void put(Blackhole blackhole) {
+    blackhole.consume(value.observePut("value" + next++).blockingGet());
+    blackhole.consume(received.sum());
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small record with a body of roughly the requested size, in a shape every converter can map
+ * without configuration.
+ */
+public class Payload {
+  public String id;
+  public long timestamp;
+  public List<String> tags;
+  public String body;
+
+  public Payload() {}
+
+  static Payload ofSize(int id, int bytes) {
+    Payload payload = new Payload();
+    payload.id = "payload-" + id;
+    payload.timestamp = 1_500_000_000_000L + id;
+    payload.tags = new ArrayList<>();
+    payload.tags.add("benchmark");
+    payload.tags.add("size-" + bytes);
+    StringBuilder body = new StringBuilder(bytes);
+    for (int i = 0; i < bytes; i++) {
+      body.append((char) ('a' + (i * 7 + id) % 26));
+    }
+    payload.body = body.toString();
+    return payload;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.benchmarks;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.StorageAdapter;
+import com.ludwig.keyvaluestore.types.ValueType;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Value gets and puts of a {@link Payload} through a storage without a read cache, for each storage
+ * engine, converter and payload size, so every get decodes from the engine. Comparing converters at
+ * the same size shows their encoding cost; comparing sizes shows where it overtakes the engine's
+ * fixed cost per operation, such as opening and renaming files, and comparing engines shows that
+ * fixed cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValueBenchmark {
+  private static final int KEYS = 256;
+
+  @Param({"file", "log", "lsm", "btree", "mapped", "async"})
+  public String engine;
+
+  @Param({"gson", "jackson", "moshi"})
+  public String converter;
+
+  @Param({"64", "1024", "16384"})
+  public int payloadBytes;
+
+  private File directory;
+  private StorageAdapter adapter;
+  private KeyValueStore store;
+  private Payload[] payloads;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Fixtures.tempDirectory("value-benchmark");
+    adapter = Fixtures.adapter(engine, directory);
+    store = KeyValueStoreFactory.build(new FileStorage(adapter), Fixtures.converter(converter));
+    payloads = new Payload[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      payloads[i] = Payload.ofSize(i, payloadBytes);
+      store.value("key" + i, Payload.class).observePut(payloads[i]).blockingGet();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Fixtures.close(adapter);
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public Payload get() {
+    return value(ThreadLocalRandom.current().nextInt(KEYS)).blockingGet();
+  }
+
+  @Benchmark
+  public Payload put() {
+    int key = ThreadLocalRandom.current().nextInt(KEYS);
+    return value(key).observePut(payloads[key]).blockingGet();
+  }
+
+  private ValueType<Payload> value(int key) {
+    return store.value("key" + key, Payload.class);
+  }
+}
@@ -1,15 +1,20 @@
 package com.ludwig.keyvaluestore.converters;
 
 import com.google.gson.Gson;
-import com.ludwig.keyvaluestore.Converter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.ludwig.keyvaluestore.ConverterException;
+import com.ludwig.keyvaluestore.StreamingConverter;
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
 import io.reactivex.annotations.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Type;
 
-public class GsonConverter implements Converter {
+public class GsonConverter implements StreamingConverter {
   private Gson gson;
 
   public GsonConverter() {
@@ -45,4 +50,77 @@ public class GsonConverter implements Converter {
       throw new ConverterException(e);
     }
   }
+
+  @Override
+  public <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    try {
+      JsonReader reader = gson.newJsonReader(storageUnit.reader());
+      boolean empty;
+      try {
+        JsonToken token = reader.peek();
+        empty = token == JsonToken.NULL || token == JsonToken.END_DOCUMENT;
+      } catch (EOFException e) {
+        empty = true;
+      }
+      if (!empty) {
+        reader.beginArray();
+      }
+      final boolean exhausted = empty;
+      return new ElementReader<T>() {
+        @Override
+        public boolean hasNext() throws ConverterException {
+          try {
+            return !exhausted && reader.hasNext();
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        @Nullable
+        public T next() throws ConverterException {
+          try {
+            return gson.fromJson(reader, elementType);
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          reader.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  public <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    try {
+      JsonWriter writer = gson.newJsonWriter(storageUnit.writer());
+      writer.beginArray();
+      return new ElementWriter<T>() {
+        @Override
+        public void write(@Nullable T element) throws ConverterException {
+          try {
+            gson.toJson(element, elementType, writer);
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.endArray();
+          writer.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
 }
@@ -1,17 +1,21 @@
 package com.ludwig.keyvaluestore.converters;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ludwig.keyvaluestore.Converter;
 import com.ludwig.keyvaluestore.ConverterException;
+import com.ludwig.keyvaluestore.StreamingConverter;
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
 import io.reactivex.annotations.Nullable;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.lang.reflect.Type;
 
 /** A {@link Converter} that uses a Jackson {@link ObjectMapper} to get the job done. */
-public class JacksonConverter implements Converter {
+public class JacksonConverter implements StreamingConverter {
   private final ObjectMapper objectMapper;
 
   public JacksonConverter() {
@@ -56,4 +60,92 @@ public class JacksonConverter implements Converter {
       throw new ConverterException(e);
     }
   }
+
+  @Override
+  public <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    JavaType javaType = objectMapper.getTypeFactory().constructType(elementType);
+
+    try {
+      JsonParser parser = objectMapper.getFactory().createParser(storageUnit.reader());
+      JsonToken first = parser.nextToken();
+      if (first != null && first != JsonToken.VALUE_NULL && first != JsonToken.START_ARRAY) {
+        parser.close();
+        throw new ConverterException("Expected a list but was " + first + ".");
+      }
+      return new ElementReader<T>() {
+        private boolean advanced = first != JsonToken.START_ARRAY;
+
+        @Nullable
+        private JsonToken current = first == JsonToken.START_ARRAY ? null : JsonToken.END_ARRAY;
+
+        @Override
+        public boolean hasNext() throws ConverterException {
+          try {
+            if (!advanced) {
+              current = parser.nextToken();
+              advanced = true;
+            }
+            return current != null && current != JsonToken.END_ARRAY;
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        @Nullable
+        public T next() throws ConverterException {
+          try {
+            if (!hasNext()) {
+              throw new ConverterException("No more elements.");
+            }
+            advanced = false;
+            return objectMapper.readValue(parser, javaType);
+          } catch (ConverterException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          parser.close();
+        }
+      };
+    } catch (ConverterException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  public <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    try {
+      OutputStream outputStream = storageUnit.output();
+      JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+      generator.writeStartArray();
+      return new ElementWriter<T>() {
+        @Override
+        public void write(@Nullable T element) throws ConverterException {
+          try {
+            objectMapper.writeValue(generator, element);
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          generator.writeEndArray();
+          generator.close();
+          outputStream.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
 }
@@ -1,11 +1,14 @@
 package com.ludwig.keyvaluestore.converters;
 
-import com.ludwig.keyvaluestore.Converter;
 import com.ludwig.keyvaluestore.ConverterException;
+import com.ludwig.keyvaluestore.StreamingConverter;
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
 import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
 import com.squareup.moshi.Moshi;
 import io.reactivex.annotations.Nullable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
@@ -13,7 +16,7 @@ import okio.BufferedSink;
 import okio.BufferedSource;
 import okio.Okio;
 
-public class MoshiConverter implements Converter {
+public class MoshiConverter implements StreamingConverter {
   private final Moshi moshi;
 
   public MoshiConverter() {
@@ -62,4 +65,82 @@ public class MoshiConverter implements Converter {
       throw new ConverterException(e);
     }
   }
+
+  @Override
+  public <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    try {
+      InputStream inputStream = storageUnit.input();
+      JsonAdapter<T> adapter = moshi.<T>adapter(elementType).nullSafe();
+      BufferedSource source = Okio.buffer(Okio.source(inputStream));
+      JsonReader reader = JsonReader.of(source);
+      boolean empty = source.exhausted();
+      if (!empty && reader.peek() == JsonReader.Token.NULL) {
+        reader.nextNull();
+        empty = true;
+      }
+      if (!empty) {
+        reader.beginArray();
+      }
+      final boolean exhausted = empty;
+      return new ElementReader<T>() {
+        @Override
+        public boolean hasNext() throws ConverterException {
+          try {
+            return !exhausted && reader.hasNext();
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        @Nullable
+        public T next() throws ConverterException {
+          try {
+            return adapter.fromJson(reader);
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          reader.close();
+          inputStream.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  public <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType)
+      throws ConverterException {
+    try {
+      OutputStream outputStream = storageUnit.output();
+      JsonAdapter<T> adapter = moshi.<T>adapter(elementType).nullSafe();
+      JsonWriter writer = JsonWriter.of(Okio.buffer(Okio.sink(outputStream)));
+      writer.beginArray();
+      return new ElementWriter<T>() {
+        @Override
+        public void write(@Nullable T element) throws ConverterException {
+          try {
+            adapter.toJson(writer, element);
+          } catch (Exception e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.endArray();
+          writer.close();
+          outputStream.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
 }
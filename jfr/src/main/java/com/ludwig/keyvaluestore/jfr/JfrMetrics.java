@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.jfr;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import jdk.jfr.EventType;
+
+/**
+ * {@link Metrics} that emit Java Flight Recorder events, so a store's operations can be lined up
+ * with GC pauses, I/O and thread activity in one recording. Each operation becomes an event in the
+ * "KeyValueStore" category carrying its key, type and size, that begins as the operation starts and
+ * ends as it finishes:
+ *
+ * <ul>
+ *   <li>{@code com.ludwig.keyvaluestore.StoreOperation}: value gets, puts and clears and list reads
+ *       and mutations.
+ *   <li>{@code com.ludwig.keyvaluestore.Converter}: serializing and deserializing.
+ *   <li>{@code com.ludwig.keyvaluestore.LockWait}: waiting for a storage unit's lock.
+ *   <li>{@code com.ludwig.keyvaluestore.StorageIo}: storage unit streams and batch writes.
+ *   <li>{@code com.ludwig.keyvaluestore.StorageCommit}: temp file renames and commit log appends.
+ * </ul>
+ *
+ * <p>No event is created for an operation whose event type is not enabled in a running recording.
+ * Pass another {@link Metrics}, such as a {@code HistogramMetrics}, to record to both.
+ */
+public final class JfrMetrics implements Metrics {
+  private final Metrics delegate;
+
+  public JfrMetrics() {
+    this(Metrics.NONE);
+  }
+
+  /** Emit events and also record every operation to {@code delegate}. */
+  public JfrMetrics(Metrics delegate) {
+    this.delegate = delegate;
+  }
+
+  private static final EventType LOCK_WAIT = EventType.getEventType(LockWaitEvent.class);
+  private static final EventType CONVERTER = EventType.getEventType(ConverterEvent.class);
+  private static final EventType STORAGE_IO = EventType.getEventType(StorageIoEvent.class);
+  private static final EventType STORAGE_COMMIT = EventType.getEventType(StorageCommitEvent.class);
+  private static final EventType STORE_OPERATION =
+      EventType.getEventType(StoreOperationEvent.class);
+
+  /** Records to the delegate only; events are emitted for operations passed to {@link #start}. */
+  @Override
+  public void record(
+      Operation operation, @Nullable String key, @Nullable Type type, long nanos, long bytes) {
+    delegate.record(operation, key, type, nanos, bytes);
+  }
+
+  /**
+   * Begin an event for {@code operation}, if its type is enabled, that ends once it is recorded.
+   */
+  @Override
+  public Metrics start(Operation operation) {
+    Metrics delegate = this.delegate.start(operation);
+    if (!eventType(operation).isEnabled()) {
+      return delegate;
+    }
+    KeyValueStoreEvent event = event(operation);
+    event.begin();
+    return (ended, key, type, nanos, bytes) -> {
+      event.end();
+      delegate.record(ended, key, type, nanos, bytes);
+      if (event.shouldCommit()) {
+        event.operation = ended.name();
+        event.key = key == null ? "" : key;
+        event.type = type == null ? "" : type.getTypeName();
+        event.bytes = bytes;
+        event.commit();
+      }
+    };
+  }
+
+  private static EventType eventType(Operation operation) {
+    switch (operation) {
+      case LOCK_READ:
+      case LOCK_WRITE:
+        return LOCK_WAIT;
+      case CONVERTER_READ:
+      case CONVERTER_WRITE:
+        return CONVERTER;
+      case STORAGE_READ:
+      case STORAGE_WRITE:
+        return STORAGE_IO;
+      case STORAGE_COMMIT:
+        return STORAGE_COMMIT;
+      default:
+        return STORE_OPERATION;
+    }
+  }
+
+  private static KeyValueStoreEvent event(Operation operation) {
+    switch (operation) {
+      case LOCK_READ:
+      case LOCK_WRITE:
+        return new LockWaitEvent();
+      case CONVERTER_READ:
+      case CONVERTER_WRITE:
+        return new ConverterEvent();
+      case STORAGE_READ:
+      case STORAGE_WRITE:
+        return new StorageIoEvent();
+      case STORAGE_COMMIT:
+        return new StorageCommitEvent();
+      default:
+        return new StoreOperationEvent();
+    }
+  }
+}
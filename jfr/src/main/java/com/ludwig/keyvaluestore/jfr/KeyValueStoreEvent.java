@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * The fields every KeyValueStore event carries. An event begins as its operation starts and ends as
+ * it finishes, so its duration is the operation's.
+ */
+@Category("KeyValueStore")
+@StackTrace(false)
+abstract class KeyValueStoreEvent extends Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Key")
+  @Description("The key operated on, or empty for an operation across several keys")
+  String key;
+
+  @Label("Type")
+  @Description("The type read or written, if known")
+  String type;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+}
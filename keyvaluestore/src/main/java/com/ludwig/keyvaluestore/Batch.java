@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.types.ListType;
+import io.reactivex.Completable;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Writes to any number of keys, staged and then committed together: once {@link #commit()}
+ * completes every staged write is visible, and a crash during the commit leaves either all of them
+ * or none. Nothing is read or written until {@link #commit()} is subscribed to. Writes to the same
+ * key are applied in the order they were staged. For lists {@code type} is the element type, as
+ * passed to {@link KeyValueStore#list}.
+ *
+ * <p>Only storage whose adapter overrides {@link
+ * com.ludwig.keyvaluestore.storage.StorageAdapter#write} commits atomically; other adapters write
+ * the keys one after another.
+ */
+public interface Batch {
+  /** Stage storing {@code value} under {@code key}. */
+  <T> Batch put(String key, Type type, T value);
+
+  /** Stage replacing the list stored under {@code key} with {@code list}. */
+  <T> Batch putList(String key, Type type, List<T> list);
+
+  /** Stage appending {@code value} to the list stored under {@code key}. */
+  <T> Batch add(String key, Type type, T value);
+
+  /** Stage removing the first element of the list under {@code key} matching the predicate. */
+  <T> Batch remove(String key, Type type, ListType.PredicateFunc<T> predicateFunc);
+
+  /** Stage removing every element of the list under {@code key} matching the predicate. */
+  <T> Batch removeAll(String key, Type type, ListType.PredicateFunc<T> predicateFunc);
+
+  /** Stage removing the element at {@code position} of the list under {@code key}. */
+  Batch remove(String key, Type type, int position);
+
+  /** Stage replacing the first element of the list under {@code key} matching the predicate. */
+  <T> Batch replace(String key, Type type, T value, ListType.PredicateFunc<T> predicateFunc);
+
+  /**
+   * Stage replacing the first element of the list under {@code key} matching the predicate, or
+   * appending {@code value} if none does.
+   */
+  <T> Batch addOrReplace(String key, Type type, T value, ListType.PredicateFunc<T> predicateFunc);
+
+  /** Stage deleting the value or list stored under {@code key}. */
+  Batch clear(String key);
+
+  /** Commit every staged write. A batch can be committed once. */
+  Completable commit();
+}
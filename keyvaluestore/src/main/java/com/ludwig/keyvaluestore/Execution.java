@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where a store runs the blocking storage work of its fire-and-forget operations, such as {@code
+ * ValueType.put(value)} and {@code ListType.add(value)}. The {@code observe} variants run wherever
+ * they are subscribed.
+ *
+ * <ul>
+ *   <li>{@link #io()} uses {@link Schedulers#io()}, which starts a new platform thread whenever all
+ *       of its threads are blocked, so a burst of slow writes can create thousands of threads.
+ *   <li>{@link #virtualThreads()} runs each operation on its own virtual thread, which costs a few
+ *       hundred bytes while blocked on I/O or a lock. Virtual threads need Java 21; on older
+ *       runtimes it falls back to {@link #bounded(int)}.
+ *   <li>{@link #bounded(int)} runs operations on a fixed pool of daemon threads and queues the
+ *       rest, trading latency under bursts for a hard thread limit.
+ * </ul>
+ *
+ * <p>{@link #virtualThreads()} and {@link #bounded(int)} start a new executor on every call, so
+ * create one {@code Execution}, share it between the stores that should use it, and {@link
+ * #close()} it once they are done.
+ */
+public final class Execution implements Closeable {
+  /** Threads of the pool {@link #virtualThreads()} falls back to. */
+  public static final int DEFAULT_BOUNDED_THREADS =
+      Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  private static final Execution IO = new Execution(Schedulers.io(), null, false);
+
+  private final Scheduler scheduler;
+  @Nullable private final ExecutorService executor;
+  private final boolean virtual;
+
+  private Execution(Scheduler scheduler, @Nullable ExecutorService executor, boolean virtual) {
+    this.scheduler = scheduler;
+    this.executor = executor;
+    this.virtual = virtual;
+  }
+
+  public static Execution io() {
+    return IO;
+  }
+
+  /** One virtual thread per operation, or a bounded pool where virtual threads are unavailable. */
+  public static Execution virtualThreads() {
+    ExecutorService executor;
+    try {
+      // Looked up reflectively so the library still targets Java 8.
+      executor =
+          (ExecutorService)
+              Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return bounded(DEFAULT_BOUNDED_THREADS);
+    }
+    return new Execution(Schedulers.from(executor), executor, true);
+  }
+
+  public static Execution bounded(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads < 1: " + threads);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+    return new Execution(Schedulers.from(executor), executor, false);
+  }
+
+  public static Execution from(Scheduler scheduler) {
+    return new Execution(scheduler, null, false);
+  }
+
+  public Scheduler scheduler() {
+    return scheduler;
+  }
+
+  /** Whether operations run on virtual threads, false if {@link #virtualThreads} fell back. */
+  public boolean isVirtual() {
+    return virtual;
+  }
+
+  /**
+   * Shut down the executor this execution started, letting queued operations finish. Does nothing
+   * for {@link #io()} and {@link #from(Scheduler)}, whose schedulers belong to someone else.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "keyvaluestore-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -17,11 +17,29 @@ package com.ludwig.keyvaluestore;
 
 import com.ludwig.keyvaluestore.types.ListType;
 import com.ludwig.keyvaluestore.types.ValueType;
+import io.reactivex.Flowable;
 import java.lang.reflect.Type;
+import java.util.Map;
 
 public interface KeyValueStore {
 
   <T> ListType<T> list(String key, Type type);
 
   <T> ValueType<T> value(String key, Type type);
+
+  /** Start staging writes across keys to be committed together, see {@link Batch}. */
+  Batch batch();
+
+  /** Every key holding a value or list, in ascending order. */
+  Flowable<String> keys();
+
+  /** Every key starting with {@code prefix}, in ascending order. */
+  Flowable<String> keys(String prefix);
+
+  /**
+   * The value of every key starting with {@code prefix}, read as {@code type}, in key order. Keys
+   * whose value is gone by the time it is read, or does not decode as {@code type}, such as the
+   * keys of lists, are skipped.
+   */
+  <T> Flowable<Map.Entry<String, T>> scan(String prefix, Type type);
 }
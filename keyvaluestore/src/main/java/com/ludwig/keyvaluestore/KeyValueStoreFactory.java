@@ -15,11 +15,28 @@
  */
 package com.ludwig.keyvaluestore;
 
+import com.ludwig.keyvaluestore.metrics.Metrics;
 import com.ludwig.keyvaluestore.storage.Storage;
 
 public final class KeyValueStoreFactory {
 
   public static KeyValueStore build(Storage storage, Converter converter) {
-    return new KeyValueStoreV1(storage, converter);
+    return build(storage, converter, Execution.io());
+  }
+
+  /** Build a store whose fire-and-forget operations run according to {@code execution}. */
+  public static KeyValueStore build(Storage storage, Converter converter, Execution execution) {
+    return new KeyValueStoreV1(storage, converter, execution.scheduler());
+  }
+
+  /**
+   * Build a store that records the latency of every operation to {@code metrics}, along with the
+   * time its converter takes and, for storages that support it, lock waits and the bytes and time
+   * of the storage's I/O. Attaching metrics to {@code storage} replaces any attached before.
+   */
+  public static KeyValueStore build(
+      Storage storage, Converter converter, Execution execution, Metrics metrics) {
+    storage.attach(metrics);
+    return new KeyValueStoreV1(storage, converter, execution.scheduler(), metrics);
   }
 }
@@ -15,11 +15,18 @@
  */
 package com.ludwig.keyvaluestore;
 
+import com.ludwig.keyvaluestore.metrics.Metrics;
 import com.ludwig.keyvaluestore.storage.Storage;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
 import com.ludwig.keyvaluestore.types.ListType;
 import com.ludwig.keyvaluestore.types.TypeFactory;
 import com.ludwig.keyvaluestore.types.ValueType;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import java.lang.reflect.Type;
+import java.util.AbstractMap;
+import java.util.Map;
 
 class KeyValueStoreV1 implements KeyValueStore {
 
@@ -27,18 +34,74 @@ class KeyValueStoreV1 implements KeyValueStore {
 
   private final Converter converter;
 
-  KeyValueStoreV1(Storage storage, Converter converter) {
+  private final Converter batchConverter;
+
+  private final Scheduler scheduler;
+
+  private final Metrics metrics;
+
+  KeyValueStoreV1(Storage storage, Converter converter, Scheduler scheduler) {
+    this(storage, converter, scheduler, Metrics.NONE);
+  }
+
+  KeyValueStoreV1(Storage storage, Converter converter, Scheduler scheduler, Metrics metrics) {
     this.storage = storage;
     this.converter = converter;
+    this.batchConverter =
+        metrics == Metrics.NONE ? converter : MeteredConverter.of(converter, metrics, null);
+    this.scheduler = scheduler;
+    this.metrics = metrics;
   }
 
   @Override
   public <T> ValueType<T> value(String key, Type type) {
-    return TypeFactory.build(storage.value(key), converter, type);
+    return TypeFactory.build(valueStorable(key), converter(key), type, scheduler);
   }
 
   @Override
   public <T> ListType<T> list(String key, Type type) {
-    return TypeFactory.build(storage.list(key), converter, type);
+    ListStorable storable = storage.list(key);
+    return TypeFactory.build(
+        metrics == Metrics.NONE ? storable : new MeteredListStorable(storable, key, metrics),
+        converter(key),
+        type,
+        scheduler);
+  }
+
+  @Override
+  public Batch batch() {
+    return storage.batch(batchConverter);
+  }
+
+  @Override
+  public Flowable<String> keys() {
+    return keys("");
+  }
+
+  @Override
+  public Flowable<String> keys(String prefix) {
+    return storage.keys(prefix);
+  }
+
+  @Override
+  public <T> Flowable<Map.Entry<String, T>> scan(String prefix, Type type) {
+    return keys(prefix)
+        .concatMap(
+            key ->
+                valueStorable(key)
+                    .<T>get(converter(key), type)
+                    .<Map.Entry<String, T>>map(
+                        value -> new AbstractMap.SimpleImmutableEntry<>(key, value))
+                    .onErrorComplete(e -> e instanceof ConverterException)
+                    .toFlowable());
+  }
+
+  private ValueStorable valueStorable(String key) {
+    ValueStorable storable = storage.value(key);
+    return metrics == Metrics.NONE ? storable : new MeteredValueStorable(storable, key, metrics);
+  }
+
+  private Converter converter(String key) {
+    return metrics == Metrics.NONE ? converter : MeteredConverter.of(converter, metrics, key);
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+
+/** Records how long an Rx operation takes, from subscription until it terminates or is disposed. */
+final class Metered {
+  private Metered() {}
+
+  static <T> Single<T> time(
+      Single<T> source, Metrics metrics, Operation operation, String key, @Nullable Type type) {
+    return Single.defer(
+        () -> {
+          Metrics timer = metrics.start(operation);
+          long start = System.nanoTime();
+          return source.doFinally(
+              () -> timer.record(operation, key, type, System.nanoTime() - start, 0));
+        });
+  }
+
+  static <T> Maybe<T> time(
+      Maybe<T> source, Metrics metrics, Operation operation, String key, @Nullable Type type) {
+    return Maybe.defer(
+        () -> {
+          Metrics timer = metrics.start(operation);
+          long start = System.nanoTime();
+          return source.doFinally(
+              () -> timer.record(operation, key, type, System.nanoTime() - start, 0));
+        });
+  }
+
+  static Completable time(
+      Completable source, Metrics metrics, Operation operation, String key, @Nullable Type type) {
+    return Completable.defer(
+        () -> {
+          Metrics timer = metrics.start(operation);
+          long start = System.nanoTime();
+          return source.doFinally(
+              () -> timer.record(operation, key, type, System.nanoTime() - start, 0));
+        });
+  }
+
+  static <T> Flowable<T> time(
+      Flowable<T> source, Metrics metrics, Operation operation, String key, @Nullable Type type) {
+    return Flowable.defer(
+        () -> {
+          Metrics timer = metrics.start(operation);
+          long start = System.nanoTime();
+          return source.doFinally(
+              () -> timer.record(operation, key, type, System.nanoTime() - start, 0));
+        });
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link Converter} that records the time spent encoding and decoding. Streaming converters stay
+ * streaming; the time spent in an element cursor is recorded once, when it is closed.
+ */
+class MeteredConverter implements Converter {
+  private final Converter converter;
+  final Metrics metrics;
+  @Nullable final String key;
+
+  private MeteredConverter(Converter converter, Metrics metrics, @Nullable String key) {
+    this.converter = converter;
+    this.metrics = metrics;
+    this.key = key;
+  }
+
+  /** {@code converter}, recording its work for {@code key}, or for several keys if it is null. */
+  static Converter of(Converter converter, Metrics metrics, @Nullable String key) {
+    return converter instanceof StreamingConverter
+        ? new Streaming((StreamingConverter) converter, metrics, key)
+        : new MeteredConverter(converter, metrics, key);
+  }
+
+  @Override
+  public <T> void write(@Nullable T data, Type type, StorageUnit storageUnit)
+      throws ConverterException {
+    Metrics timer = metrics.start(Operation.CONVERTER_WRITE);
+    long start = System.nanoTime();
+    try {
+      converter.write(data, type, storageUnit);
+    } finally {
+      timer.record(Operation.CONVERTER_WRITE, key, type, System.nanoTime() - start, 0);
+    }
+  }
+
+  @Nullable
+  @Override
+  public <T> T read(StorageUnit storageUnit, Type type) throws ConverterException {
+    Metrics timer = metrics.start(Operation.CONVERTER_READ);
+    long start = System.nanoTime();
+    try {
+      return converter.read(storageUnit, type);
+    } finally {
+      timer.record(Operation.CONVERTER_READ, key, type, System.nanoTime() - start, 0);
+    }
+  }
+
+  private static final class Streaming extends MeteredConverter implements StreamingConverter {
+    private final StreamingConverter converter;
+
+    Streaming(StreamingConverter converter, Metrics metrics, @Nullable String key) {
+      super(converter, metrics, key);
+      this.converter = converter;
+    }
+
+    @Override
+    public <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType)
+        throws ConverterException {
+      Metrics timer = metrics.start(Operation.CONVERTER_READ);
+      long start = System.nanoTime();
+      ElementReader<T> reader = converter.elementReader(storageUnit, elementType);
+      long opened = System.nanoTime() - start;
+      return new ElementReader<T>() {
+        private long nanos = opened;
+
+        @Override
+        public boolean hasNext() throws ConverterException {
+          long start = System.nanoTime();
+          try {
+            return reader.hasNext();
+          } finally {
+            nanos += System.nanoTime() - start;
+          }
+        }
+
+        @Nullable
+        @Override
+        public T next() throws ConverterException {
+          long start = System.nanoTime();
+          try {
+            return reader.next();
+          } finally {
+            nanos += System.nanoTime() - start;
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          long start = System.nanoTime();
+          try {
+            reader.close();
+          } finally {
+            timer.record(
+                Operation.CONVERTER_READ, key, elementType, nanos + System.nanoTime() - start, 0);
+          }
+        }
+      };
+    }
+
+    @Override
+    public <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType)
+        throws ConverterException {
+      Metrics timer = metrics.start(Operation.CONVERTER_WRITE);
+      long start = System.nanoTime();
+      ElementWriter<T> writer = converter.elementWriter(storageUnit, elementType);
+      long opened = System.nanoTime() - start;
+      return new ElementWriter<T>() {
+        private long nanos = opened;
+
+        @Override
+        public void write(@Nullable T element) throws ConverterException {
+          long start = System.nanoTime();
+          try {
+            writer.write(element);
+          } finally {
+            nanos += System.nanoTime() - start;
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          long start = System.nanoTime();
+          try {
+            writer.close();
+          } finally {
+            timer.record(
+                Operation.CONVERTER_WRITE, key, elementType, nanos + System.nanoTime() - start, 0);
+          }
+        }
+      };
+    }
+  }
+}
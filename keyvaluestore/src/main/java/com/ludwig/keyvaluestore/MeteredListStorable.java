@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import com.ludwig.keyvaluestore.types.ListType;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/** A {@link ListStorable} that records the latency of each read and mutation. */
+final class MeteredListStorable implements ListStorable {
+  private final ListStorable storable;
+  private final String key;
+  private final Metrics metrics;
+
+  MeteredListStorable(ListStorable storable, String key, Metrics metrics) {
+    this.storable = storable;
+    this.key = key;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public <T> Single<List<T>> get(Converter converter, Type type) {
+    return Metered.time(storable.<T>get(converter, type), metrics, Operation.LIST_GET, key, type);
+  }
+
+  @Override
+  public <T> Single<Integer> size(Converter converter, Type type) {
+    return Metered.time(storable.<T>size(converter, type), metrics, Operation.LIST_GET, key, type);
+  }
+
+  @Override
+  public <T> Maybe<T> get(int index, Converter converter, Type type) {
+    return Metered.time(
+        storable.<T>get(index, converter, type), metrics, Operation.LIST_GET, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> get(int offset, int limit, Converter converter, Type type) {
+    return Metered.time(
+        storable.<T>get(offset, limit, converter, type), metrics, Operation.LIST_GET, key, type);
+  }
+
+  @Override
+  public <T> Flowable<T> stream(Converter converter, Type type) {
+    return Metered.time(
+        storable.<T>stream(converter, type), metrics, Operation.LIST_GET, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return Metered.time(
+        storable.remove(predicateFunc, converter, type), metrics, Operation.LIST_REMOVE, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> removeAll(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return Metered.time(
+        storable.removeAll(predicateFunc, converter, type),
+        metrics,
+        Operation.LIST_REMOVE,
+        key,
+        type);
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(int position, Converter converter, Type type) {
+    return Metered.time(
+        storable.<T>remove(position, converter, type), metrics, Operation.LIST_REMOVE, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> put(Converter converter, Type type, List<T> list) {
+    return Metered.time(
+        storable.put(converter, type, list), metrics, Operation.LIST_PUT, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> put(Converter converter, Type type, List<T> list, long deadline) {
+    return Metered.time(
+        storable.put(converter, type, list, deadline), metrics, Operation.LIST_PUT, key, type);
+  }
+
+  @Override
+  public <T> Observable<List<T>> observe(Converter converter, Type type) {
+    return storable.observe(converter, type);
+  }
+
+  @Override
+  public <T> Observable<Callable<List<T>>> observeLatest(Converter converter, Type type) {
+    return storable.observeLatest(converter, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> clear() {
+    return Metered.time(storable.<T>clear(), metrics, Operation.LIST_CLEAR, key, null);
+  }
+
+  @Override
+  public <T> Single<List<T>> append(T value, Converter converter, Type type) {
+    return Metered.time(
+        storable.append(value, converter, type), metrics, Operation.LIST_ADD, key, type);
+  }
+
+  @Override
+  public <T> Single<List<T>> replace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return Metered.time(
+        storable.replace(value, predicateFunc, converter, type),
+        metrics,
+        Operation.LIST_REPLACE,
+        key,
+        type);
+  }
+
+  @Override
+  public <T> Single<List<T>> addOrReplace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return Metered.time(
+        storable.addOrReplace(value, predicateFunc, converter, type),
+        metrics,
+        Operation.LIST_REPLACE,
+        key,
+        type);
+  }
+
+  @Override
+  public void updated(@Nullable List<?> list) {
+    storable.updated(list);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import com.ludwig.keyvaluestore.types.ValueUpdate;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+
+/** A {@link ValueStorable} that records the latency of each read and write. */
+final class MeteredValueStorable implements ValueStorable {
+  private final ValueStorable storable;
+  private final String key;
+  private final Metrics metrics;
+
+  MeteredValueStorable(ValueStorable storable, String key, Metrics metrics) {
+    this.storable = storable;
+    this.key = key;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public <T> Maybe<T> get(Converter converter, Type type) {
+    return Metered.time(storable.<T>get(converter, type), metrics, Operation.VALUE_GET, key, type);
+  }
+
+  @Override
+  public <T> Single<T> put(Converter converter, Type type, T value) {
+    return Metered.time(
+        storable.put(converter, type, value), metrics, Operation.VALUE_PUT, key, type);
+  }
+
+  @Override
+  public <T> Single<T> put(Converter converter, Type type, T value, long deadline) {
+    return Metered.time(
+        storable.put(converter, type, value, deadline), metrics, Operation.VALUE_PUT, key, type);
+  }
+
+  @Override
+  public <T> Observable<ValueUpdate<T>> observe(Converter converter, Type type) {
+    return storable.observe(converter, type);
+  }
+
+  @Override
+  public <T> Completable clear() {
+    return Metered.time(storable.<T>clear(), metrics, Operation.VALUE_CLEAR, key, null);
+  }
+
+  @Override
+  public void updated(@Nullable Object value) {
+    storable.updated(value);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import java.io.Closeable;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link Converter} that can also read and write a stored list one element at a time, so a list
+ * never has to be held in memory as a whole. The elements are read and written in the same format
+ * {@link #read} and {@link #write} use for a {@code List} of {@code elementType}.
+ */
+public interface StreamingConverter extends Converter {
+  /**
+   * Open a cursor over the elements of the list stored in {@code storageUnit}. An empty unit or a
+   * stored null reads as a list with no elements.
+   */
+  <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType)
+      throws ConverterException;
+
+  /**
+   * Start writing a list to {@code storageUnit}. The list is complete, and the unit's output
+   * closed, when the writer is closed.
+   */
+  <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType)
+      throws ConverterException;
+
+  /** A cursor over the elements of a stored list. */
+  interface ElementReader<T> extends Closeable {
+    /** Whether another element follows. */
+    boolean hasNext() throws ConverterException;
+
+    /** Read the next element. */
+    @Nullable
+    T next() throws ConverterException;
+  }
+
+  /** Writes the elements of a list one after another. */
+  interface ElementWriter<T> extends Closeable {
+    /** Append {@code element} to the list. */
+    void write(@Nullable T element) throws ConverterException;
+  }
+}
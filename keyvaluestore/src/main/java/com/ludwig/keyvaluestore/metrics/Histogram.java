@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values in logarithmic buckets, in the manner of HdrHistogram: values
+ * below 32 are counted exactly, and each power of two above that is split into 16 buckets, so every
+ * percentile is reported to within 1/16 of its value over the whole range of {@code long}.
+ * Recording is lock-free, a single increment of the value's bucket, and reading takes no snapshot,
+ * so values recorded while a percentile is computed may or may not be counted in it.
+ */
+public final class Histogram {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int EXACT = 2 * SUB_BUCKETS;
+  private static final int BUCKETS = EXACT + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /** Count {@code value}, or zero if it is negative. */
+  public void record(long value) {
+    long recorded = Math.max(0, value);
+    counts.incrementAndGet(bucket(recorded));
+    count.increment();
+    sum.add(recorded);
+    for (long current = max.get(); recorded > current; current = max.get()) {
+      if (max.compareAndSet(current, recorded)) {
+        break;
+      }
+    }
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    long count = count();
+    return count == 0 ? 0 : (double) sum.sum() / count;
+  }
+
+  /**
+   * The value at or below which {@code quantile} of the recorded values fall, as the highest value
+   * of its bucket, or zero if nothing was recorded. {@code quantile} is between 0 and 1, so the
+   * 99.9th percentile is {@code percentile(0.999)}.
+   */
+  public long percentile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+    }
+    long total = count();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts.get(bucket);
+      if (seen >= rank) {
+        return Math.min(highest(bucket), max());
+      }
+    }
+    return max();
+  }
+
+  /** Forget every recorded value. Values recorded during a reset may be partly kept. */
+  public void reset() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts.set(bucket, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  static int bucket(long value) {
+    if (value < EXACT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return EXACT + (exponent - SUB_BITS - 1) * SUB_BUCKETS + mantissa;
+  }
+
+  static long lowest(int bucket) {
+    if (bucket < EXACT) {
+      return bucket;
+    }
+    int exponent = (bucket - EXACT) / SUB_BUCKETS + SUB_BITS + 1;
+    int mantissa = (bucket - EXACT) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + mantissa) << (exponent - SUB_BITS);
+  }
+
+  static long highest(int bucket) {
+    return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowest(bucket + 1) - 1;
+  }
+}
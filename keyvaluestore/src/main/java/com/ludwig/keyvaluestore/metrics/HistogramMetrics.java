@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Metrics} that keep a latency {@link Histogram} and a byte count per {@link Operation}, in
+ * memory and without dependencies. Read them at any time, for example to export them periodically
+ * to a monitoring system; {@link #toString()} summarizes every operation recorded so far.
+ */
+public final class HistogramMetrics implements Metrics {
+  private static final Operation[] OPERATIONS = Operation.values();
+
+  private final Histogram[] latencies = new Histogram[OPERATIONS.length];
+  private final LongAdder[] bytes = new LongAdder[OPERATIONS.length];
+  private volatile long startNanos = System.nanoTime();
+
+  public HistogramMetrics() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latencies[i] = new Histogram();
+      bytes[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void record(
+      Operation operation, @Nullable String key, @Nullable Type type, long nanos, long bytes) {
+    latencies[operation.ordinal()].record(nanos);
+    if (bytes != 0) {
+      this.bytes[operation.ordinal()].add(bytes);
+    }
+  }
+
+  /** The latencies of {@code operation} in nanoseconds. */
+  public Histogram latency(Operation operation) {
+    return latencies[operation.ordinal()];
+  }
+
+  public long count(Operation operation) {
+    return latency(operation).count();
+  }
+
+  /** The bytes, or characters, {@code operation} moved. */
+  public long bytes(Operation operation) {
+    return bytes[operation.ordinal()].sum();
+  }
+
+  /** How many times per second {@code operation} ran since these metrics were created or reset. */
+  public double throughput(Operation operation) {
+    long elapsed = System.nanoTime() - startNanos;
+    return elapsed <= 0 ? 0 : count(operation) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  /** Forget everything recorded and restart the throughput clock. */
+  public void reset() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latencies[i].reset();
+      bytes[i].reset();
+    }
+    startNanos = System.nanoTime();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("HistogramMetrics{");
+    String separator = "";
+    for (Operation operation : OPERATIONS) {
+      Histogram latency = latency(operation);
+      if (latency.count() == 0) {
+        continue;
+      }
+      builder
+          .append(separator)
+          .append(operation)
+          .append("{count=")
+          .append(latency.count())
+          .append(", bytes=")
+          .append(bytes(operation))
+          .append(String.format(", ops/s=%.1f", throughput(operation)))
+          .append(String.format(", mean=%.1fus", latency.mean() / 1000))
+          .append(", p50=")
+          .append(micros(latency.percentile(0.5)))
+          .append(", p99=")
+          .append(micros(latency.percentile(0.99)))
+          .append(", p999=")
+          .append(micros(latency.percentile(0.999)))
+          .append(", max=")
+          .append(micros(latency.max()))
+          .append('}');
+      separator = ", ";
+    }
+    return builder.append('}').toString();
+  }
+
+  private static String micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+  }
+}
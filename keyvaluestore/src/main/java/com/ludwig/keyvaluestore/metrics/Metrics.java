@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+
+/**
+ * Receives the timings and byte counts of a store's operations. Pass one to {@code
+ * KeyValueStoreFactory.build} to record them; {@link HistogramMetrics} is a built-in
+ * implementation. Implementations are called on every operation from any thread, so they must be
+ * thread-safe and should not block.
+ */
+public interface Metrics {
+  /** Records nothing. Stores built without metrics skip recording altogether. */
+  Metrics NONE = (operation, key, type, nanos, bytes) -> {};
+
+  /**
+   * Record one {@code operation} on {@code key}, or on several keys if it is null, with the {@link
+   * Type} it read or wrote if known, that took {@code nanos} and moved {@code bytes}, or zero.
+   */
+  void record(
+      Operation operation, @Nullable String key, @Nullable Type type, long nanos, long bytes);
+
+  /**
+   * Called as {@code operation} starts, on the thread that starts it, returning the {@link Metrics}
+   * to {@link #record} it to once it ends. Implementations that trace operations as they happen
+   * override this to mark the start; the default records to this instance.
+   */
+  default Metrics start(Operation operation) {
+    return this;
+  }
+}
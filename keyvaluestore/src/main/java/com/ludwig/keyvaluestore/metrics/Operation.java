@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+/**
+ * What a {@link Metrics} recording measured. The store operations cover a whole call, from
+ * subscription until it terminates; the others are the parts of it spent waiting for a lock, in the
+ * converter and in the adapter's streams. Converter time includes the stream time it drives.
+ */
+public enum Operation {
+  VALUE_GET,
+  VALUE_PUT,
+  VALUE_CLEAR,
+  /** Reading a whole list, its size, an element, a range or a stream of its elements. */
+  LIST_GET,
+  LIST_PUT,
+  LIST_ADD,
+  LIST_REMOVE,
+  /** {@code replace} and {@code addOrReplace}. */
+  LIST_REPLACE,
+  LIST_CLEAR,
+  /** Waiting for a unit's read lock. */
+  LOCK_READ,
+  /** Waiting for a unit's write lock. */
+  LOCK_WRITE,
+  /** Decoding a value, or a stream of list elements, with the store's converter. */
+  CONVERTER_READ,
+  /** Encoding a value, or a stream of list elements, with the store's converter. */
+  CONVERTER_WRITE,
+  /** Reading one of a unit's streams, with the bytes or characters read. */
+  STORAGE_READ,
+  /** Writing one of a unit's streams, with the bytes or characters written. */
+  STORAGE_WRITE,
+  /**
+   * Making a value a converter has written visible once the converter is done with it: the rename
+   * of a file storage's temp file over the old value, or its commit log append under group commit.
+   */
+  STORAGE_COMMIT
+}
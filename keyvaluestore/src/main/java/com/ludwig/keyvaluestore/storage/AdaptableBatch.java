@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.Batch;
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import com.ludwig.keyvaluestore.storage.unit.MemoryStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import com.ludwig.keyvaluestore.types.ListType;
+import com.ludwig.keyvaluestore.types.TypeFactory;
+import io.reactivex.Completable;
+import io.reactivex.annotations.Nullable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Batch} over an {@link AdaptableStorage}. On commit it takes the write lock of every
+ * staged key in key order, works out each key's final value, reading a list only if a mutation
+ * needs it, and hands them all to {@link StorageAdapter#write} at once. The new values are then
+ * published to the observers of the keys before the locks are released.
+ */
+final class AdaptableBatch implements Batch {
+  private final AdaptableStorage storage;
+  private final StorageAdapter storageAdapter;
+  private final Converter converter;
+  @Nullable private final ReadCache readCache;
+  private final boolean listsSupported;
+  private final SortedMap<String, List<Op>> staged = new TreeMap<>();
+  private final AtomicBoolean committed = new AtomicBoolean();
+  private boolean hasListMutations;
+
+  AdaptableBatch(
+      AdaptableStorage storage,
+      StorageAdapter storageAdapter,
+      Converter converter,
+      @Nullable ReadCache readCache,
+      boolean listsSupported) {
+    this.storage = storage;
+    this.storageAdapter = storageAdapter;
+    this.converter = converter;
+    this.readCache = readCache;
+    this.listsSupported = listsSupported;
+  }
+
+  @Override
+  public <T> Batch put(String key, Type type, T value) {
+    return stage(key, state -> state.replace(value, type));
+  }
+
+  @Override
+  public <T> Batch putList(String key, Type type, List<T> list) {
+    hasListMutations = true;
+    return stage(key, state -> state.replace(new ArrayList<>(list), TypeFactory.listType(type)));
+  }
+
+  @Override
+  public <T> Batch add(String key, Type type, T value) {
+    return mutate(key, type, list -> list.add(value));
+  }
+
+  @Override
+  public <T> Batch remove(String key, Type type, ListType.PredicateFunc<T> predicateFunc) {
+    return this.<T>mutate(
+        key,
+        type,
+        list -> {
+          for (Iterator<T> each = list.iterator(); each.hasNext(); ) {
+            if (predicateFunc.test(each.next())) {
+              each.remove();
+              return;
+            }
+          }
+        });
+  }
+
+  @Override
+  public <T> Batch removeAll(String key, Type type, ListType.PredicateFunc<T> predicateFunc) {
+    return this.<T>mutate(key, type, list -> list.removeIf(predicateFunc::test));
+  }
+
+  @Override
+  public Batch remove(String key, Type type, int position) {
+    return mutate(key, type, list -> list.remove(position));
+  }
+
+  @Override
+  public <T> Batch replace(
+      String key, Type type, T value, ListType.PredicateFunc<T> predicateFunc) {
+    return this.<T>mutate(
+        key,
+        type,
+        list -> {
+          for (int i = 0; i < list.size(); i++) {
+            if (predicateFunc.test(list.get(i))) {
+              list.set(i, value);
+              return;
+            }
+          }
+        });
+  }
+
+  @Override
+  public <T> Batch addOrReplace(
+      String key, Type type, T value, ListType.PredicateFunc<T> predicateFunc) {
+    return this.<T>mutate(
+        key,
+        type,
+        list -> {
+          for (int i = 0; i < list.size(); i++) {
+            if (predicateFunc.test(list.get(i))) {
+              list.set(i, value);
+              return;
+            }
+          }
+          list.add(value);
+        });
+  }
+
+  @Override
+  public Batch clear(String key) {
+    return stage(key, state -> state.replace(null, null));
+  }
+
+  @Override
+  public Completable commit() {
+    return Completable.fromAction(
+        () -> {
+          if (!committed.compareAndSet(false, true)) {
+            throw new IllegalStateException("Batch already committed.");
+          }
+          if (hasListMutations && !listsSupported) {
+            throw new UnsupportedOperationException(
+                "Batched list writes need lists stored as ListFormat.SNAPSHOT.");
+          }
+
+          // Lock in the lock manager's order so batches over overlapping keys cannot deadlock.
+          List<String> lockOrder = new ArrayList<>(staged.keySet());
+          lockOrder.sort(storageAdapter.lockManager().lockOrder());
+          List<StorageUnit> units = new ArrayList<>(lockOrder.size());
+          for (String key : lockOrder) {
+            units.add(storage.unit(key));
+          }
+          int locked = 0;
+          try {
+            for (StorageUnit unit : units) {
+              unit.startWrite();
+              locked++;
+            }
+            Map<String, State> states = new LinkedHashMap<>();
+            Map<String, byte[]> values = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Op>> entry : staged.entrySet()) {
+              State state = new State(storage.unit(entry.getKey()));
+              for (Op op : entry.getValue()) {
+                op.apply(state);
+              }
+              states.put(entry.getKey(), state);
+              values.put(entry.getKey(), encode(state));
+            }
+            for (String key : values.keySet()) {
+              storage.writing(key);
+            }
+            write(values);
+            invalidate();
+            for (Map.Entry<String, State> entry : states.entrySet()) {
+              if (values.get(entry.getKey()) != null) {
+                storage.written(entry.getKey());
+              } else {
+                storage.deleted(entry.getKey());
+              }
+              if (entry.getValue().replaced) {
+                // Puts and clears drop any time to live, as they do outside a batch.
+                storage.expireAt(entry.getKey(), 0);
+              }
+              storage.updated(entry.getKey(), entry.getValue().value);
+            }
+          } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+              units.get(i).endWrite();
+            }
+            invalidate();
+          }
+        });
+  }
+
+  /** Write the batch through the adapter, recording its size and time if metrics are attached. */
+  private void write(Map<String, byte[]> values) throws IOException {
+    Metrics metrics = storage.metrics();
+    if (metrics == Metrics.NONE) {
+      storageAdapter.write(values);
+      return;
+    }
+    long bytes = 0;
+    for (byte[] value : values.values()) {
+      bytes += value == null ? 0 : value.length;
+    }
+    Metrics timer = metrics.start(Operation.STORAGE_WRITE);
+    long start = System.nanoTime();
+    storageAdapter.write(values);
+    timer.record(Operation.STORAGE_WRITE, null, null, System.nanoTime() - start, bytes);
+  }
+
+  private void invalidate() {
+    if (readCache != null) {
+      for (String key : staged.keySet()) {
+        readCache.invalidate(key);
+      }
+    }
+  }
+
+  private Batch stage(String key, Op op) {
+    AdaptableStorage.checkKey(key);
+    if (committed.get()) {
+      throw new IllegalStateException("Batch already committed.");
+    }
+    staged.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Batch mutate(String key, Type type, ListMutation<T> mutation) {
+    hasListMutations = true;
+    Type listType = TypeFactory.listType(type);
+    return stage(key, state -> mutation.apply((List<T>) state.list(listType)));
+  }
+
+  @Nullable
+  private byte[] encode(State state) {
+    Object value = state.value;
+    Type type = state.type;
+    if (value == null || type == null) {
+      return null;
+    }
+    MemoryStorageUnit encoded = new MemoryStorageUnit();
+    converter.write(value, type, encoded);
+    return encoded.bytes();
+  }
+
+  private interface Op {
+    void apply(State state) throws Exception;
+  }
+
+  private interface ListMutation<T> {
+    void apply(List<T> list) throws Exception;
+  }
+
+  /** The value a key will hold once the batch commits, read from storage only when needed. */
+  private final class State {
+    private final StorageUnit unit;
+    private boolean loaded;
+    @Nullable Object value;
+    @Nullable Type type;
+    boolean replaced;
+
+    State(StorageUnit unit) {
+      this.unit = unit;
+    }
+
+    void replace(@Nullable Object value, @Nullable Type type) {
+      this.replaced = true;
+      set(value, type);
+    }
+
+    void set(@Nullable Object value, @Nullable Type type) {
+      this.loaded = true;
+      this.value = value;
+      this.type = type;
+    }
+
+    List<?> list(Type listType) throws Exception {
+      if (!loaded) {
+        List<?> stored =
+            unit.exists().blockingGet() ? converter.<List<?>>read(unit, listType) : null;
+        set(stored == null ? new ArrayList<>() : new ArrayList<>(stored), listType);
+      } else if (value == null) {
+        set(new ArrayList<>(), listType);
+      } else if (!(value instanceof List)) {
+        throw new IllegalStateException("Key holds a value, not a list.");
+      }
+      return (List<?>) value;
+    }
+  }
+}
@@ -15,24 +15,439 @@
  */
 package com.ludwig.keyvaluestore.storage;
 
+import com.ludwig.keyvaluestore.Batch;
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.storage.storable.ChunkedListStorable;
+import com.ludwig.keyvaluestore.storage.storable.JournaledListStorable;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
 import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
 import com.ludwig.keyvaluestore.storage.storable.StorableFactory;
 import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.Flowable;
+import io.reactivex.annotations.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Storage} over a {@link StorageAdapter}. Every handle to a key shares one storage unit,
+ * and so one lock, and one storable, and so one stream of updates; they are kept in weak registries
+ * for as long as a handle to them or an observer of them is alive.
+ *
+ * <p>If the adapter can list its keys, they are read once on creation into a sorted {@link
+ * KeyIndex} that every write through this storage keeps current, so {@link #keys} never touches the
+ * adapter. Journals and chunks are listed under the key of their list.
+ *
+ * <p>Values and snapshot lists may be put with a time to live. Their deadlines are kept in an
+ * {@link ExpiryIndex} under {@link #EXPIRY_KEY} rather than in the values themselves, which is only
+ * read once a deadline is set or found on disk. A key past its deadline reads as absent straight
+ * away and is deleted by a background reaper within a tick, in batches, at which point its
+ * observers see it cleared. {@link #EXPIRY_KEY} is reserved and cannot be used as a key. {@link
+ * #close} stops the reaper and should be called before the adapter is closed.
+ */
+public class AdaptableStorage implements Storage, Closeable {
+  /** Appended to a list's key to name the unit holding its journal. */
+  public static final String JOURNAL_SUFFIX = ".journal";
+  /** Appended to a list's key, followed by the chunk id, to name the units holding its chunks. */
+  public static final String CHUNK_INFIX = ".chunk.";
+  /** The reserved key under which the deadlines of expiring keys are persisted. */
+  public static final String EXPIRY_KEY = ".expiry";
+
+  private static final Pattern CHUNK_KEY =
+      Pattern.compile(".*" + Pattern.quote(CHUNK_INFIX) + "\\d+");
 
-public class AdaptableStorage implements Storage {
   private StorageAdapter storageAdapter;
+  @Nullable private final ReadCache readCache;
+  private final ListFormat listFormat;
+  private final KeyRegistry<StorageUnit> units = new KeyRegistry<>();
+  private final KeyRegistry<ValueStorable> values = new KeyRegistry<>();
+  private final KeyRegistry<ListStorable> lists = new KeyRegistry<>();
+  @Nullable private final KeyIndex keyIndex;
+  @Nullable private final KeyFilter keyFilter;
+  private final Object expiryLock = new Object();
+  @Nullable private volatile ExpiryIndex expiryIndex;
+  /** Whether it is known if a journal of deadlines exists, see {@link #expiryIndex()}. */
+  private volatile boolean expiryChecked;
+
+  private boolean expiryListed;
+  private volatile Metrics metrics = Metrics.NONE;
 
   public AdaptableStorage(StorageAdapter storageAdapter) {
+    this(storageAdapter, null);
+  }
+
+  /**
+   * Create a storage whose values and lists share {@code readCache}, so repeated reads of an
+   * unchanged key skip the converter. Pass null to read through to the adapter every time.
+   */
+  public AdaptableStorage(StorageAdapter storageAdapter, @Nullable ReadCache readCache) {
+    this(storageAdapter, readCache, ListFormat.SNAPSHOT);
+  }
+
+  /**
+   * Create a storage that lays its lists out as {@code listFormat}. Journaled and chunked lists
+   * keep their own decoded contents in memory and do not use {@code readCache}. Journaled lists
+   * need an adapter that {@linkplain StorageAdapter#appendsInPlace appends in place}.
+   */
+  public AdaptableStorage(
+      StorageAdapter storageAdapter, @Nullable ReadCache readCache, ListFormat listFormat) {
+    this(storageAdapter, readCache, listFormat, null);
+  }
+
+  /**
+   * Create a storage that answers lookups of keys that were never written from {@code keyFilter}
+   * instead of asking the adapter, or from the adapter every time if it is null. A filter needs an
+   * adapter that can list its keys.
+   */
+  public AdaptableStorage(
+      StorageAdapter storageAdapter,
+      @Nullable ReadCache readCache,
+      ListFormat listFormat,
+      @Nullable KeyFilter keyFilter) {
     this.storageAdapter = storageAdapter;
+    this.readCache = readCache;
+    this.listFormat = listFormat;
+    this.keyFilter = keyFilter;
+    this.keyIndex = loadKeyIndex();
+    if (keyIndex != null) {
+      expiryChecked = true;
+      if (expiryListed) {
+        openExpiryIndex();
+      }
+    }
+    if (listFormat == ListFormat.JOURNALED && !storageAdapter.appendsInPlace()) {
+      throw new IllegalArgumentException(
+          storageAdapter.getClass().getName() + " cannot append in place to journal lists.");
+    }
+    if (keyFilter != null && keyIndex == null) {
+      throw new IllegalArgumentException(
+          storageAdapter.getClass().getName() + " cannot list keys to fill a KeyFilter.");
+    }
   }
 
   @Override
   public ValueStorable value(String key) {
-    return StorableFactory.value(storageAdapter.storageUnit(key));
+    checkKey(key);
+    return values.get(key, k -> StorableFactory.value(k, unit(k), readCache, values));
   }
 
   @Override
   public ListStorable list(String key) {
-    return StorableFactory.list(storageAdapter.storageUnit(key));
+    checkKey(key);
+    return lists.get(key, this::createList);
+  }
+
+  private ListStorable createList(String key) {
+    switch (listFormat) {
+      case JOURNALED:
+        return StorableFactory.journaledList(
+            unit(key), unit(key + JOURNAL_SUFFIX), JournaledListStorable.DEFAULT_FOLD_RATIO, lists);
+      case CHUNKED:
+        return StorableFactory.chunkedList(
+            unit(key),
+            id -> storageAdapter.storageUnit(key + CHUNK_INFIX + id),
+            ChunkedListStorable.DEFAULT_CHUNK_SIZE,
+            lists);
+      default:
+        return StorableFactory.list(key, unit(key), readCache, lists);
+    }
+  }
+
+  /**
+   * The keys starting with {@code prefix} in ascending order, or an {@link
+   * UnsupportedOperationException} if the adapter cannot list its keys.
+   */
+  @Override
+  public Flowable<String> keys(String prefix) {
+    if (keyIndex == null) {
+      return Flowable.error(
+          new UnsupportedOperationException(
+              storageAdapter.getClass().getName() + " cannot list keys."));
+    }
+    return keyIndex.keys(prefix).filter(key -> !isExpired(key));
+  }
+
+  @Override
+  public void attach(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  Metrics metrics() {
+    return metrics;
+  }
+
+  /** Stop the expiry reaper, if one was started, and persist the deadlines it dropped. */
+  @Override
+  public void close() throws IOException {
+    ExpiryIndex expiryIndex = this.expiryIndex;
+    if (expiryIndex != null) {
+      expiryIndex.close();
+    }
+  }
+
+  /** Reject the keys this storage reserves for itself. */
+  static void checkKey(String key) {
+    if (key.equals(EXPIRY_KEY)) {
+      throw new IllegalArgumentException(EXPIRY_KEY + " is a reserved key.");
+    }
+  }
+
+  /** The storage unit shared by every storable and batch touching {@code key}. */
+  StorageUnit unit(String key) {
+    return units.get(
+        key, k -> new IndexedStorageUnit(storageAdapter.storageUnit(k), k, indexKey(k), this));
+  }
+
+  /**
+   * Whether the unit of {@code unitKey} may hold a value, or false if the key filter rules it out.
+   */
+  boolean mightExist(String unitKey) {
+    return keyFilter == null || keyFilter.mightContain(unitKey);
+  }
+
+  /** Record that the key filter let through a lookup of a unit that turned out to be empty. */
+  void falsePositive() {
+    if (keyFilter != null) {
+      keyFilter.falsePositive();
+    }
+  }
+
+  /**
+   * Record that the unit of {@code unitKey} is about to be written, returning whether it holds an
+   * expired value that the write replaces. Callers hold the unit's write lock.
+   */
+  boolean writing(String unitKey) {
+    if (keyFilter != null) {
+      keyFilter.put(unitKey);
+    }
+    ExpiryIndex expiryIndex = expiryIndex();
+    return expiryIndex != null && expiryIndex.dropExpired(indexKey(unitKey));
+  }
+
+  /** Whether {@code key} has passed its deadline and so reads as absent. */
+  boolean isExpired(String key) {
+    ExpiryIndex expiryIndex = expiryIndex();
+    return expiryIndex != null && expiryIndex.isExpired(key);
+  }
+
+  /**
+   * Expire {@code key} at {@code deadline}, in milliseconds since the epoch, or never if it is
+   * zero. The deadline is persisted before this returns.
+   */
+  void expireAt(String key, long deadline) {
+    ExpiryIndex expiryIndex = expiryIndex();
+    if (expiryIndex == null) {
+      if (deadline == 0) {
+        return;
+      }
+      expiryIndex = openExpiryIndex();
+    }
+    try {
+      expiryIndex.expireAt(key, deadline);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The index of deadlines, or null if no deadline was ever set. Whether a journal exists is known
+   * from the key listing when the adapter can list its keys, and is otherwise checked on first use.
+   */
+  @Nullable
+  private ExpiryIndex expiryIndex() {
+    if (!expiryChecked) {
+      synchronized (expiryLock) {
+        if (!expiryChecked) {
+          if (storageAdapter.exists(EXPIRY_KEY).blockingGet()) {
+            openExpiryIndex();
+          }
+          expiryChecked = true;
+        }
+      }
+    }
+    return expiryIndex;
+  }
+
+  private ExpiryIndex openExpiryIndex() {
+    synchronized (expiryLock) {
+      ExpiryIndex expiryIndex = this.expiryIndex;
+      if (expiryIndex == null) {
+        try {
+          expiryIndex = new ExpiryIndex(storageAdapter, EXPIRY_KEY, this::reap);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        this.expiryIndex = expiryIndex;
+      }
+      return expiryIndex;
+    }
+  }
+
+  /** Record that {@code key} holds a value. */
+  void written(String key) {
+    if (keyIndex == null || !keyIndex.add(key)) {
+      return;
+    }
+    if (keyFilter != null) {
+      // Added again so that a concurrent rebuild that missed the key in the index still has it.
+      putFiltered(key);
+      keyFilter.added();
+      if (keyFilter.isStale()) {
+        rebuildKeyFilter(keyFilter, keyIndex);
+      }
+    }
+  }
+
+  /**
+   * Record that a unit of {@code key} was deleted, dropping it unless another unit still holds it.
+   */
+  void deleted(String key) {
+    if (keyIndex == null) {
+      return;
+    }
+    if (listFormat == ListFormat.JOURNALED
+        && (storageAdapter.exists(key).blockingGet()
+            || storageAdapter.exists(key + JOURNAL_SUFFIX).blockingGet())) {
+      return;
+    }
+    if (keyIndex.remove(key) && keyFilter != null) {
+      keyFilter.removed();
+      if (keyFilter.isStale()) {
+        rebuildKeyFilter(keyFilter, keyIndex);
+      }
+    }
+  }
+
+  /** Publish a value a batch wrote to {@code key} to the observers of its live storables. */
+  void updated(String key, @Nullable Object value) {
+    ValueStorable valueStorable = values.getIfPresent(key);
+    if (valueStorable != null) {
+      valueStorable.updated(value);
+    }
+    ListStorable listStorable = lists.getIfPresent(key);
+    if (listStorable != null && (value == null || value instanceof List)) {
+      listStorable.updated((List<?>) value);
+    }
+  }
+
+  /**
+   * Delete the values of {@code keys} that are still expired once their units are locked, with one
+   * write, and publish them as cleared.
+   */
+  private void reap(List<String> keys) throws IOException {
+    ExpiryIndex expiryIndex = this.expiryIndex;
+    if (expiryIndex == null) {
+      return;
+    }
+    List<String> lockOrder = new ArrayList<>(keys);
+    lockOrder.sort(storageAdapter.lockManager().lockOrder());
+    List<StorageUnit> units = new ArrayList<>(lockOrder.size());
+    for (String key : lockOrder) {
+      units.add(unit(key));
+    }
+    Map<String, byte[]> expired = new LinkedHashMap<>();
+    int locked = 0;
+    try {
+      for (StorageUnit unit : units) {
+        unit.startWrite();
+        locked++;
+      }
+      for (String key : lockOrder) {
+        if (expiryIndex.isExpired(key)) {
+          expired.put(key, null);
+        }
+      }
+      if (expired.isEmpty()) {
+        return;
+      }
+      storageAdapter.write(expired);
+      for (String key : expired.keySet()) {
+        expiryIndex.dropExpired(key);
+        deleted(key);
+        if (readCache != null) {
+          readCache.invalidate(key);
+        }
+      }
+    } finally {
+      for (int i = locked - 1; i >= 0; i--) {
+        units.get(i).endWrite();
+      }
+    }
+    for (String key : expired.keySet()) {
+      updated(key, null);
+    }
+  }
+
+  @Nullable
+  private KeyIndex loadKeyIndex() {
+    KeyIndex keyIndex = new KeyIndex();
+    try {
+      for (String key : storageAdapter.keys()) {
+        if (key.equals(EXPIRY_KEY)) {
+          expiryListed = true;
+          continue;
+        }
+        if (listFormat != ListFormat.CHUNKED || !CHUNK_KEY.matcher(key).matches()) {
+          keyIndex.add(indexKey(key));
+          if (keyFilter != null) {
+            keyFilter.put(key);
+          }
+        }
+      }
+    } catch (UnsupportedOperationException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return keyIndex;
+  }
+
+  private void rebuildKeyFilter(KeyFilter keyFilter, KeyIndex keyIndex) {
+    Collection<String> keys = keyIndex.all();
+    if (listFormat == ListFormat.JOURNALED) {
+      keyFilter.rebuild(
+          2L * keys.size(),
+          () -> keys.stream().flatMap(key -> Stream.of(key, key + JOURNAL_SUFFIX)).iterator());
+    } else {
+      keyFilter.rebuild(keys.size(), keys);
+    }
+  }
+
+  /** Add {@code key}, and the journal that may hold it, to the key filter. */
+  private void putFiltered(String key) {
+    if (keyFilter != null) {
+      keyFilter.put(key);
+      if (listFormat == ListFormat.JOURNALED) {
+        keyFilter.put(key + JOURNAL_SUFFIX);
+      }
+    }
+  }
+
+  /** The key under which {@code unitKey} is listed, which for a journal is that of its list. */
+  private String indexKey(String unitKey) {
+    if (listFormat == ListFormat.JOURNALED && unitKey.endsWith(JOURNAL_SUFFIX)) {
+      return unitKey.substring(0, unitKey.length() - JOURNAL_SUFFIX.length());
+    }
+    return unitKey;
+  }
+
+  /**
+   * Start a batch committed through {@link StorageAdapter#write}. Batched list mutations need lists
+   * stored as {@link ListFormat#SNAPSHOT}.
+   */
+  @Override
+  public Batch batch(Converter converter) {
+    return new AdaptableBatch(
+        this, storageAdapter, converter, readCache, listFormat == ListFormat.SNAPSHOT);
   }
 }
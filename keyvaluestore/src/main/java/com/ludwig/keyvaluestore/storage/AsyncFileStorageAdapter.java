@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.storage.unit.AsyncFileStorageUnit;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link FileStorageAdapter} whose storage units read and write values through {@link
+ * AsynchronousFileChannel}s. Completion handlers complete the returned {@code Maybe}s and {@code
+ * Completable}s directly, so no thread is parked while a read or write is in flight and the
+ * storables compose the I/O straight into their chains.
+ *
+ * <p>Values are read whole into memory and decoded from there, and encoded in memory before being
+ * written to a temp file that is moved over the old one. Opening, renaming and, under {@link
+ * Durability.Mode#PER_WRITE}, syncing are still short blocking calls made on the completing thread.
+ * {@link Durability.Mode#GROUP_COMMIT} is not supported since it parks writers by design. List
+ * streaming and batches keep using the blocking streams of {@link FileStorageAdapter}.
+ */
+public class AsyncFileStorageAdapter extends FileStorageAdapter {
+  public AsyncFileStorageAdapter(String basePath) {
+    this(basePath, Durability.none());
+  }
+
+  public AsyncFileStorageAdapter(String basePath, Durability durability) {
+    super(basePath, requireAsync(durability));
+  }
+
+  @Override
+  public AsyncFileStorageUnit storageUnit(String key) {
+    return new AsyncFileStorageUnit(key, this);
+  }
+
+  /** Read the value of {@code key}, or complete empty if there is none. */
+  public Maybe<byte[]> readAsync(String key) {
+    return Maybe.create(emitter -> read(file(key).toPath(), emitter));
+  }
+
+  /** Write {@code bytes} to a temp file and move it over the value of {@code key}. */
+  public Completable writeAsync(String key, byte[] bytes) {
+    String tmpKey = key + FileStorageAdapter.TMP_SUFFIX;
+    boolean sync = durability().mode() == Durability.Mode.PER_WRITE;
+    return Completable.create(emitter -> write(file(tmpKey).toPath(), bytes, sync, emitter))
+        .andThen(Completable.fromAction(() -> replace(tmpKey, key)));
+  }
+
+  private static void read(Path path, MaybeEmitter<byte[]> emitter) throws IOException {
+    AsynchronousFileChannel channel;
+    try {
+      channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      emitter.onComplete();
+      return;
+    }
+    emitter.setCancellable(channel::close);
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      emitter.onError(new IOException("Too large to read into memory: " + path));
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    channel.read(
+        buffer,
+        0,
+        buffer,
+        new CompletionHandler<Integer, ByteBuffer>() {
+          @Override
+          public void completed(Integer read, ByteBuffer buffer) {
+            // The file is replaced rather than rewritten, so a short read only means it was empty.
+            if (read < 0 || !buffer.hasRemaining()) {
+              emitter.onSuccess(Arrays.copyOf(buffer.array(), buffer.position()));
+              return;
+            }
+            try {
+              channel.read(buffer, buffer.position(), buffer, this);
+            } catch (RuntimeException e) {
+              emitter.tryOnError(e);
+            }
+          }
+
+          @Override
+          public void failed(Throwable e, ByteBuffer buffer) {
+            emitter.tryOnError(e);
+          }
+        });
+  }
+
+  private static void write(Path path, byte[] bytes, boolean sync, CompletableEmitter emitter)
+      throws IOException {
+    AsynchronousFileChannel channel =
+        AsynchronousFileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    emitter.setCancellable(channel::close);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    channel.write(
+        buffer,
+        0,
+        buffer,
+        new CompletionHandler<Integer, ByteBuffer>() {
+          @Override
+          public void completed(Integer written, ByteBuffer buffer) {
+            try {
+              if (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position(), buffer, this);
+                return;
+              }
+              if (sync) {
+                channel.force(false);
+              }
+              emitter.onComplete();
+            } catch (IOException | RuntimeException e) {
+              emitter.tryOnError(e);
+            }
+          }
+
+          @Override
+          public void failed(Throwable e, ByteBuffer buffer) {
+            emitter.tryOnError(e);
+          }
+        });
+  }
+
+  private static Durability requireAsync(Durability durability) {
+    if (durability.mode() == Durability.Mode.GROUP_COMMIT) {
+      throw new IllegalArgumentException("Group commit blocks writers; use FileStorageAdapter.");
+    }
+    return durability;
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import io.reactivex.annotations.Nullable;
+
+public class BTreeStorage extends AdaptableStorage {
+
+  public BTreeStorage(BTreeStorageAdapter adapter) {
+    super(adapter);
+  }
+
+  public BTreeStorage(BTreeStorageAdapter adapter, @Nullable ReadCache readCache) {
+    super(adapter, readCache);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.storage.btree.BTree;
+import com.ludwig.keyvaluestore.storage.btree.BufferPool;
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.LockingStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StripedLockManager;
+import io.reactivex.Single;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link StorageAdapter} that keeps every key in a single paged file organised as a {@link
+ * BTree}. Pages are cached in a {@link BufferPool} bounded by {@code cacheSize}, so memory use
+ * stays fixed however many keys are stored, and the whole store is served from one file handle.
+ *
+ * <p>Reads run concurrently with each other while writes are exclusive. Every write commits
+ * atomically and durably through the buffer pool's journal, forcing the journal and then the data
+ * file.
+ */
+public class BTreeStorageAdapter implements StorageAdapter, Closeable {
+  public static final int DEFAULT_PAGE_SIZE = 4096;
+  public static final long DEFAULT_CACHE_SIZE = 16L * 1024 * 1024;
+
+  private static final String FILE_NAME = "store.btree";
+
+  private final BufferPool bufferPool;
+  private final BTree tree;
+  private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+  private final LockManager lockManager = new StripedLockManager();
+
+  public BTreeStorageAdapter(String basePath) throws IOException {
+    this(basePath, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_SIZE);
+  }
+
+  public BTreeStorageAdapter(String basePath, int pageSize, long cacheSize) throws IOException {
+    File directory = new File(basePath);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create directory " + directory);
+    }
+    this.bufferPool = new BufferPool(new File(directory, FILE_NAME), pageSize, cacheSize);
+    this.tree = BTree.open(bufferPool);
+  }
+
+  @Override
+  public Single<Boolean> exists(String key) {
+    return Single.fromCallable(
+        () -> {
+          treeLock.readLock().lock();
+          try {
+            return tree.contains(key);
+          } finally {
+            treeLock.readLock().unlock();
+          }
+        });
+  }
+
+  @Override
+  public Single<Boolean> createNew(String key) {
+    return Single.fromCallable(
+        () -> {
+          treeLock.writeLock().lock();
+          try {
+            if (tree.contains(key)) {
+              return false;
+            }
+            tree.put(key, new byte[0]);
+            return true;
+          } finally {
+            treeLock.writeLock().unlock();
+          }
+        });
+  }
+
+  @Override
+  public Single<Boolean> delete(String key) {
+    return Single.fromCallable(
+        () -> {
+          treeLock.writeLock().lock();
+          try {
+            return tree.delete(key);
+          } finally {
+            treeLock.writeLock().unlock();
+          }
+        });
+  }
+
+  @Override
+  public Reader reader(String key) throws IOException {
+    return new InputStreamReader(input(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public InputStream input(String key) throws IOException {
+    treeLock.readLock().lock();
+    try {
+      byte[] value = tree.get(key);
+      if (value == null) {
+        throw new FileNotFoundException("No entry for key " + key);
+      }
+      return new ByteArrayInputStream(value);
+    } finally {
+      treeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Writer writer(String key) throws IOException {
+    return new OutputStreamWriter(output(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public OutputStream output(String key) throws IOException {
+    return new RecordOutputStream() {
+      @Override
+      protected void commit(byte[] value) throws IOException {
+        treeLock.writeLock().lock();
+        try {
+          tree.put(key, value);
+        } finally {
+          treeLock.writeLock().unlock();
+        }
+      }
+    };
+  }
+
+  /** Apply the whole batch to the tree as a single journaled commit. */
+  @Override
+  public void write(Map<String, byte[]> values) throws IOException {
+    treeLock.writeLock().lock();
+    try {
+      tree.write(values);
+    } finally {
+      treeLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public LockManager lockManager() {
+    return lockManager;
+  }
+
+  @Override
+  public StorageUnit storageUnit(String key) {
+    return new LockingStorageUnit(key, this);
+  }
+
+  /** Every stored key in ascending order. */
+  @Override
+  public List<String> keys() throws IOException {
+    treeLock.readLock().lock();
+    try {
+      return tree.keys("");
+    } finally {
+      treeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    treeLock.writeLock().lock();
+    try {
+      bufferPool.close();
+    } finally {
+      treeLock.writeLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.LockingStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.MemoryStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.Single;
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A {@link StorageAdapter} that compresses the values of another with {@link Deflater} on the way
+ * out and inflates them on the way in, trading CPU for disk bandwidth on values such as JSON lists
+ * that compress well.
+ *
+ * <p>Each stored value starts with a {@value #HEADER_SIZE} byte header, the magic {@code KVZ}
+ * followed by a codec byte: {@link #CODEC_RAW} for values shorter than the threshold or that did
+ * not shrink, {@link #CODEC_DEFLATE} for compressed ones. A value without the header is read back
+ * unchanged, so values written before the adapter was introduced stay readable and are compressed
+ * the next time they are written. Deflaters and inflaters are pooled, up to {@value
+ * #DEFAULT_POOL_SIZE} of each, since their native state is costly to create and to leave to
+ * finalization.
+ *
+ * <p>Values are encoded whole, so writes are buffered in memory until their stream is closed and
+ * appends rewrite the value. Storage units lock through the wrapped adapter's {@link LockManager}
+ * and write each value with a single {@link StorageAdapter#write(Map)}, which the file adapters
+ * make atomic.
+ */
+public class CompressingStorageAdapter implements StorageAdapter, Closeable {
+  public static final int DEFAULT_THRESHOLD = 512;
+  public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+  public static final int DEFAULT_POOL_SIZE = 16;
+  public static final byte CODEC_RAW = 0;
+  public static final byte CODEC_DEFLATE = 1;
+  static final int HEADER_SIZE = 4;
+
+  private static final byte[] MAGIC = {'K', 'V', 'Z'};
+  private static final int BUFFER_SIZE = 8192;
+
+  private final StorageAdapter storageAdapter;
+  private final int threshold;
+  private final int level;
+  private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(DEFAULT_POOL_SIZE);
+  private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(DEFAULT_POOL_SIZE);
+
+  public CompressingStorageAdapter(StorageAdapter storageAdapter) {
+    this(storageAdapter, DEFAULT_THRESHOLD, DEFAULT_LEVEL);
+  }
+
+  /**
+   * Wrap {@code storageAdapter}, storing values shorter than {@code threshold} bytes raw and
+   * compressing the rest at the {@link Deflater} {@code level}.
+   */
+  public CompressingStorageAdapter(StorageAdapter storageAdapter, int threshold, int level) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0: " + threshold);
+    }
+    if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+        && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid level: " + level);
+    }
+    this.storageAdapter = storageAdapter;
+    this.threshold = threshold;
+    this.level = level;
+  }
+
+  @Override
+  public Single<Boolean> exists(String key) {
+    return storageAdapter.exists(key);
+  }
+
+  @Override
+  public Single<Boolean> createNew(String key) {
+    return storageAdapter.createNew(key);
+  }
+
+  @Override
+  public Single<Boolean> delete(String key) {
+    return storageAdapter.delete(key);
+  }
+
+  @Override
+  public Reader reader(String key) throws IOException {
+    return new InputStreamReader(input(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public InputStream input(String key) throws IOException {
+    PushbackInputStream input = new PushbackInputStream(storageAdapter.input(key), HEADER_SIZE);
+    byte[] header = new byte[HEADER_SIZE];
+    int read = 0;
+    for (int n; read < HEADER_SIZE && (n = input.read(header, read, HEADER_SIZE - read)) != -1; ) {
+      read += n;
+    }
+    if (read < HEADER_SIZE || !hasMagic(header)) {
+      input.unread(header, 0, read);
+      return input;
+    }
+    switch (header[MAGIC.length]) {
+      case CODEC_RAW:
+        return input;
+      case CODEC_DEFLATE:
+        return new PooledInflaterInputStream(input, inflater());
+      default:
+        input.close();
+        throw new IOException("Unknown codec " + header[MAGIC.length] + " for " + key);
+    }
+  }
+
+  @Override
+  public Writer writer(String key) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(output(key), Charset.defaultCharset()));
+  }
+
+  @Override
+  public OutputStream output(String key) throws IOException {
+    return new RecordOutputStream() {
+      @Override
+      protected void commit(byte[] value) throws IOException {
+        try (OutputStream output = storageAdapter.output(key)) {
+          output.write(encode(value));
+        }
+      }
+    };
+  }
+
+  @Override
+  public void write(Map<String, byte[]> values) throws IOException {
+    Map<String, byte[]> encoded = new LinkedHashMap<>(values.size());
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      byte[] value = entry.getValue();
+      encoded.put(entry.getKey(), value == null ? null : encode(value));
+    }
+    storageAdapter.write(encoded);
+  }
+
+  @Override
+  public StorageUnit storageUnit(String key) {
+    return new CompressingStorageUnit(key, this);
+  }
+
+  @Override
+  public Collection<String> keys() throws IOException {
+    return storageAdapter.keys();
+  }
+
+  @Override
+  public LockManager lockManager() {
+    return storageAdapter.lockManager();
+  }
+
+  /** The encoded form of {@code value}, header included. */
+  byte[] encode(byte[] value) {
+    if (value.length >= threshold) {
+      Deflater deflater = deflater();
+      try {
+        deflater.setInput(value);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(value.length / 4 + 64);
+        compressed.write(MAGIC, 0, MAGIC.length);
+        compressed.write(CODEC_DEFLATE);
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, value.length + 64)];
+        while (!deflater.finished() && compressed.size() < value.length + HEADER_SIZE) {
+          compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        if (deflater.finished() && compressed.size() < value.length + HEADER_SIZE) {
+          return compressed.toByteArray();
+        }
+      } finally {
+        release(deflater);
+      }
+    }
+    byte[] raw = new byte[HEADER_SIZE + value.length];
+    System.arraycopy(MAGIC, 0, raw, 0, MAGIC.length);
+    raw[MAGIC.length] = CODEC_RAW;
+    System.arraycopy(value, 0, raw, HEADER_SIZE, value.length);
+    return raw;
+  }
+
+  /** Close the wrapped adapter if it is {@link Closeable} and free the pooled codecs. */
+  @Override
+  public void close() throws IOException {
+    for (Deflater deflater; (deflater = deflaters.poll()) != null; ) {
+      deflater.end();
+    }
+    for (Inflater inflater; (inflater = inflaters.poll()) != null; ) {
+      inflater.end();
+    }
+    if (storageAdapter instanceof Closeable) {
+      ((Closeable) storageAdapter).close();
+    }
+  }
+
+  private static boolean hasMagic(byte[] header) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Deflater deflater() {
+    Deflater deflater = deflaters.poll();
+    return deflater != null ? deflater : new Deflater(level);
+  }
+
+  private void release(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  private Inflater inflater() {
+    Inflater inflater = inflaters.poll();
+    return inflater != null ? inflater : new Inflater();
+  }
+
+  private void release(Inflater inflater) {
+    inflater.reset();
+    if (!inflaters.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  /** Inflates with a pooled {@link Inflater}, returning it to the pool once when closed. */
+  private final class PooledInflaterInputStream extends InflaterInputStream {
+    private boolean released = false;
+
+    PooledInflaterInputStream(InputStream input, Inflater inflater) {
+      super(input, inflater, BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!released) {
+          released = true;
+          release(inf);
+        }
+      }
+    }
+  }
+
+  /**
+   * A unit that encodes each converter write in memory and stores it with one {@link
+   * StorageAdapter#write(Map)}, so the wrapped adapter's atomic write path still applies.
+   */
+  private static final class CompressingStorageUnit extends LockingStorageUnit {
+    private final CompressingStorageAdapter storageAdapter;
+
+    CompressingStorageUnit(String key, CompressingStorageAdapter storageAdapter) {
+      super(key, storageAdapter);
+      this.storageAdapter = storageAdapter;
+    }
+
+    @Override
+    public <T> Single<T> converterWrite(T value, Converter converter, Type type) {
+      return Single.fromCallable(
+          () -> {
+            MemoryStorageUnit encoded = new MemoryStorageUnit();
+            converter.write(value, type, encoded);
+            storageAdapter.write(Collections.singletonMap(key, encoded.bytes()));
+            return value;
+          });
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How hard a {@link FileStorageAdapter} works to keep a completed write across a power loss or
+ * kernel crash. Every mode survives the process itself dying: a value is always written to a temp
+ * file and renamed over the old one, so a reader sees either the old or the new value.
+ *
+ * <ul>
+ *   <li>{@link Mode#NONE} never calls {@code fsync}. Writes cost a file write and a rename and are
+ *       as fast as the page cache, but the last few seconds of writes, including renames, may be
+ *       lost or leave an empty file after a power loss.
+ *   <li>{@link Mode#PER_WRITE} syncs the temp file before the rename and the directory after it, so
+ *       a write is durable when its {@code Single} completes. Each write pays two device flushes,
+ *       which bounds throughput at a few hundred writes per second on most disks no matter how many
+ *       threads are writing.
+ *   <li>{@link Mode#GROUP_COMMIT} gives the same guarantee by appending each write to a shared
+ *       commit log. A single committer thread collects the writes that arrive within {@code
+ *       maxDelay} of each other, up to {@code maxBatch} of them, and makes them all durable with
+ *       one log flush before applying them to their files. Concurrent writers share the flush, so
+ *       throughput grows with the number of writers, at the cost of up to {@code maxDelay} of extra
+ *       latency for a lone writer. The key files and the directory are only synced when the log is
+ *       checkpointed, once it passes {@value #DEFAULT_CHECKPOINT_SIZE} bytes or the adapter is
+ *       closed; the log is replayed when the adapter is opened again.
+ * </ul>
+ *
+ * <p>Batches are appended to a redo log instead, with one log flush per batch under {@link
+ * Mode#PER_WRITE}; their files are synced when that log is checkpointed.
+ *
+ * <p>Journaled list appends and list chunks are written through plain streams rather than a
+ * replacing write; under both durable modes those streams are synced individually when closed. A
+ * key that a batch or commit log still holds a value of is checkpointed before such a stream is
+ * opened, so replaying the log cannot put the older value back over it.
+ */
+public final class Durability {
+  public enum Mode {
+    NONE,
+    PER_WRITE,
+    GROUP_COMMIT
+  }
+
+  public static final long DEFAULT_MAX_DELAY_MICROS = 1000;
+  public static final int DEFAULT_MAX_BATCH = 128;
+  public static final long DEFAULT_CHECKPOINT_SIZE = 64 * 1024 * 1024;
+
+  private static final Durability NONE = new Durability(Mode.NONE, 0, 1);
+  private static final Durability PER_WRITE = new Durability(Mode.PER_WRITE, 0, 1);
+
+  private final Mode mode;
+  private final long maxDelayNanos;
+  private final int maxBatch;
+
+  private Durability(Mode mode, long maxDelayNanos, int maxBatch) {
+    this.mode = mode;
+    this.maxDelayNanos = maxDelayNanos;
+    this.maxBatch = maxBatch;
+  }
+
+  public static Durability none() {
+    return NONE;
+  }
+
+  public static Durability perWrite() {
+    return PER_WRITE;
+  }
+
+  public static Durability groupCommit() {
+    return groupCommit(DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS, DEFAULT_MAX_BATCH);
+  }
+
+  /**
+   * Share log flushes between writers. The committer waits at most {@code maxDelay} after the first
+   * write of a group for more to arrive, and stops collecting once {@code maxBatch} writes have
+   * been collected. A {@code maxDelay} of zero groups only the writes that queued up while the
+   * previous flush was running.
+   */
+  public static Durability groupCommit(long maxDelay, TimeUnit unit, int maxBatch) {
+    if (maxDelay < 0) {
+      throw new IllegalArgumentException("maxDelay < 0: " + maxDelay);
+    }
+    if (maxBatch < 1) {
+      throw new IllegalArgumentException("maxBatch < 1: " + maxBatch);
+    }
+    return new Durability(Mode.GROUP_COMMIT, unit.toNanos(maxDelay), maxBatch);
+  }
+
+  public Mode mode() {
+    return mode;
+  }
+
+  public long maxDelay(TimeUnit unit) {
+    return unit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public int maxBatch() {
+    return maxBatch;
+  }
+
+  @Override
+  public String toString() {
+    return mode == Mode.GROUP_COMMIT
+        ? "Durability{GROUP_COMMIT, maxDelay=" + maxDelayNanos + "ns, maxBatch=" + maxBatch + "}"
+        : "Durability{" + mode + "}";
+  }
+}
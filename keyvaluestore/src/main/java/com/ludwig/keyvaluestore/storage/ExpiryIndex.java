@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import io.reactivex.annotations.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The expiry deadlines of an {@link AdaptableStorage}'s keys, held in memory apart from their
+ * values and persisted under one reserved key as a journal of {@code (key, deadline)} records, a
+ * deadline of zero removing the key. A deadline set or removed by a write is appended before the
+ * write returns; those the reaper drops are appended on its next tick, so a crash may only bring
+ * back deadlines of keys that were already deleted. The journal is rewritten whole once it holds
+ * twice as many records as there are deadlines.
+ *
+ * <p>A daemon reaper, started with the first deadline, advances a {@link TimerWheel} every tick and
+ * hands the keys that are due to the storage in batches of {@link #REAP_BATCH}. Keys past their
+ * deadline read as absent whether or not they have been reaped yet.
+ */
+final class ExpiryIndex implements Closeable {
+  /** How often the reaper wakes, and so the most a reaped key outlives its deadline. */
+  static final long TICK_MILLIS = 1000;
+  /** Buckets in the timer wheel, one turn of which spans this many ticks. */
+  static final int WHEEL_SIZE = 512;
+  /** The most expired keys deleted with one write. */
+  static final int REAP_BATCH = 256;
+
+  private static final int MAGIC = 0x4b565845;
+  private static final int COMPACT_SLACK = 1024;
+
+  /** Deletes a batch of keys that were due when handed over, if they still are. */
+  interface Reaper {
+    void reap(List<String> keys) throws Exception;
+  }
+
+  private final StorageAdapter storageAdapter;
+  private final String key;
+  private final Reaper reaper;
+  private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+  private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+  private final TimerWheel wheel;
+  private final Object flushLock = new Object();
+  private int persisted;
+  private boolean rewrite;
+  @Nullable private ScheduledExecutorService executor;
+  private boolean closed;
+
+  ExpiryIndex(StorageAdapter storageAdapter, String key, Reaper reaper) throws IOException {
+    this.storageAdapter = storageAdapter;
+    this.key = key;
+    this.reaper = reaper;
+    this.wheel = new TimerWheel(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+    load();
+    if (!deadlines.isEmpty()) {
+      for (Map.Entry<String, Long> entry : deadlines.entrySet()) {
+        wheel.schedule(entry.getKey(), entry.getValue());
+      }
+      startReaper();
+    }
+  }
+
+  /** Whether {@code key} has a deadline that has passed. */
+  boolean isExpired(String key) {
+    if (deadlines.isEmpty()) {
+      return false;
+    }
+    Long deadline = deadlines.get(key);
+    return deadline != null && deadline <= System.currentTimeMillis();
+  }
+
+  /**
+   * Expire {@code key} at {@code deadline}, in milliseconds since the epoch, or never if it is
+   * zero, and persist every change made since the last flush.
+   */
+  void expireAt(String key, long deadline) throws IOException {
+    if (deadline == 0) {
+      if (deadlines.remove(key) != null) {
+        dirty.add(key);
+      }
+    } else {
+      deadlines.put(key, deadline);
+      dirty.add(key);
+      wheel.schedule(key, deadline);
+      startReaper();
+    }
+    flush();
+  }
+
+  /**
+   * Forget the deadline of {@code key} if it has passed, returning whether it had. Callers hold the
+   * write lock of the key's unit, so a reaper that takes it next finds nothing to delete.
+   */
+  boolean dropExpired(String key) {
+    Long deadline = deadlines.get(key);
+    if (deadline != null
+        && deadline <= System.currentTimeMillis()
+        && deadlines.remove(key, deadline)) {
+      dirty.add(key);
+      return true;
+    }
+    return false;
+  }
+
+  /** Stop the reaper and persist the deadlines it dropped since its last tick. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      closed = true;
+      if (executor != null) {
+        executor.shutdown();
+        try {
+          executor.awaitTermination(TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    flush();
+  }
+
+  private synchronized void startReaper() {
+    if (executor != null || closed) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "keyvaluestore-expiry-reaper");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private void tick() {
+    try {
+      flush();
+    } catch (IOException | RuntimeException e) {
+      // The changes stay dirty and are retried on the next tick.
+    }
+    long now = System.currentTimeMillis();
+    List<String> drained = new ArrayList<>();
+    wheel.advance(now, drained::add);
+    List<String> due = new ArrayList<>();
+    for (String each : drained) {
+      Long deadline = deadlines.get(each);
+      if (deadline == null) {
+        continue;
+      }
+      if (deadline > now) {
+        wheel.schedule(each, deadline);
+      } else {
+        due.add(each);
+      }
+    }
+    for (int from = 0; from < due.size(); from += REAP_BATCH) {
+      List<String> batch = due.subList(from, Math.min(due.size(), from + REAP_BATCH));
+      try {
+        reaper.reap(batch);
+      } catch (Exception e) {
+        // Reads already treat these keys as absent; try again on the next tick.
+        for (String each : batch) {
+          wheel.schedule(each, now);
+        }
+      }
+    }
+  }
+
+  private void flush() throws IOException {
+    synchronized (flushLock) {
+      if (dirty.isEmpty()) {
+        return;
+      }
+      List<String> changed = new ArrayList<>();
+      for (Iterator<String> each = dirty.iterator(); each.hasNext(); ) {
+        changed.add(each.next());
+        each.remove();
+      }
+      try {
+        if (rewrite || persisted + changed.size() > 2 * deadlines.size() + COMPACT_SLACK) {
+          rewrite();
+        } else {
+          try (DataOutputStream output = new DataOutputStream(storageAdapter.appendOutput(key))) {
+            for (String each : changed) {
+              Long deadline = deadlines.get(each);
+              writeRecord(output, each, deadline == null ? 0 : deadline);
+            }
+          }
+          persisted += changed.size();
+        }
+      } catch (IOException | RuntimeException e) {
+        dirty.addAll(changed);
+        throw e;
+      }
+    }
+  }
+
+  /** Replace the journal with one record per deadline, or delete it if there are none. */
+  private void rewrite() throws IOException {
+    if (deadlines.isEmpty()) {
+      storageAdapter.write(Collections.singletonMap(key, null));
+      persisted = 0;
+      rewrite = true;
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(MAGIC);
+    int records = 0;
+    for (Map.Entry<String, Long> entry : deadlines.entrySet()) {
+      writeRecord(output, entry.getKey(), entry.getValue());
+      records++;
+    }
+    storageAdapter.write(Collections.singletonMap(key, bytes.toByteArray()));
+    persisted = records;
+    rewrite = false;
+  }
+
+  private void load() throws IOException {
+    if (!storageAdapter.exists(key).blockingGet()) {
+      // Appends need the header, so the first flush writes the journal whole.
+      rewrite = true;
+      return;
+    }
+    try (PushbackInputStream stream = new PushbackInputStream(storageAdapter.input(key));
+        DataInputStream input = new DataInputStream(stream)) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not an expiry journal: " + key);
+      }
+      for (int next = stream.read(); next >= 0; next = stream.read()) {
+        stream.unread(next);
+        String each = input.readUTF();
+        long deadline = input.readLong();
+        if (deadline == 0) {
+          deadlines.remove(each);
+        } else {
+          deadlines.put(each, deadline);
+        }
+        persisted++;
+      }
+    } catch (EOFException e) {
+      // A record torn by a crash; appending after it would corrupt the next one.
+      rewrite = true;
+    }
+  }
+
+  private static void writeRecord(DataOutputStream output, String key, long deadline)
+      throws IOException {
+    output.writeUTF(key);
+    output.writeLong(deadline);
+  }
+}
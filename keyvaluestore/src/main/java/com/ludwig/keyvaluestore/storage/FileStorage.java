@@ -15,9 +15,29 @@
  */
 package com.ludwig.keyvaluestore.storage;
 
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import io.reactivex.annotations.Nullable;
+
 public class FileStorage extends AdaptableStorage {
 
   public FileStorage(StorageAdapter adapter) {
     super(adapter);
   }
+
+  public FileStorage(StorageAdapter adapter, @Nullable ReadCache readCache) {
+    super(adapter, readCache);
+  }
+
+  public FileStorage(StorageAdapter adapter, @Nullable ReadCache readCache, ListFormat listFormat) {
+    super(adapter, readCache, listFormat);
+  }
+
+  public FileStorage(
+      StorageAdapter adapter,
+      @Nullable ReadCache readCache,
+      ListFormat listFormat,
+      @Nullable KeyFilter keyFilter) {
+    super(adapter, readCache, listFormat, keyFilter);
+  }
 }
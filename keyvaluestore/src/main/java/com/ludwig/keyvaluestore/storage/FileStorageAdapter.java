@@ -1,16 +1,88 @@
 package com.ludwig.keyvaluestore.storage;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.ludwig.keyvaluestore.storage.unit.FileStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.StripedLockManager;
 import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class FileStorageAdapter implements StorageAdapter, Closeable {
+  /** Appended to a key to name the temp file a value is written to before replacing its file. */
+  public static final String TMP_SUFFIX = ".tmp";
+
+  static final String EXTENSION = ".json";
+
+  /** Holds the batches written since the last checkpoint, see {@link RedoLog}. */
+  static final String BATCH_LOG = "batch.redo";
+
+  private static final int BATCH_MAGIC = 0x4b564231;
 
-public class FileStorageAdapter implements StorageAdapter {
   private String basePath;
+  private final Durability durability;
+  private final LockManager lockManager;
+  private final RedoLog batchLog;
+  @Nullable private final GroupCommitter groupCommitter;
 
+  /** Create an adapter storing each key in its own file under {@code basePath}, without syncing. */
   public FileStorageAdapter(String basePath) {
+    this(basePath, Durability.none());
+  }
+
+  /**
+   * Create an adapter storing each key in its own file under {@code basePath}. A batch or commit
+   * group that was made durable but not fully applied before the process stopped is applied here.
+   */
+  public FileStorageAdapter(String basePath, Durability durability) {
+    this(basePath, durability, new StripedLockManager());
+  }
+
+  /** Create an adapter whose storage units lock through {@code lockManager}. */
+  public FileStorageAdapter(String basePath, Durability durability, LockManager lockManager) {
     this.basePath = basePath;
+    this.durability = durability;
+    this.lockManager = lockManager;
+    try {
+      this.batchLog =
+          new RedoLog(
+              this,
+              new File(basePath, BATCH_LOG),
+              durability.mode() != Durability.Mode.NONE,
+              Durability.DEFAULT_CHECKPOINT_SIZE);
+      this.groupCommitter =
+          durability.mode() == Durability.Mode.GROUP_COMMIT
+              ? new GroupCommitter(this, new File(basePath), durability)
+              : null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public Durability durability() {
+    return durability;
+  }
+
+  @Override
+  public LockManager lockManager() {
+    return lockManager;
   }
 
   @Override
@@ -25,7 +97,54 @@ public class FileStorageAdapter implements StorageAdapter {
 
   @Override
   public Single<Boolean> delete(String key) {
-    return Single.fromCallable(() -> file(key).delete());
+    return Single.fromCallable(
+        () -> {
+          switch (durability.mode()) {
+            case GROUP_COMMIT:
+              boolean existed = file(key).exists();
+              commit(Collections.singletonMap(key, null));
+              return existed;
+            case PER_WRITE:
+              release(key);
+              boolean deleted = file(key).delete();
+              if (deleted) {
+                syncDirectory();
+              }
+              return deleted;
+            default:
+              release(key);
+              return file(key).delete();
+          }
+        });
+  }
+
+  /**
+   * Atomically replace the file of {@code key} with the file of {@code tmpKey}, syncing the
+   * directory afterwards when writes are synced individually.
+   */
+  public void replace(String tmpKey, String key) throws IOException {
+    release(key);
+    Files.move(
+        file(tmpKey).toPath(),
+        file(key).toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    if (durability.mode() == Durability.Mode.PER_WRITE) {
+      syncDirectory();
+    }
+  }
+
+  /**
+   * Make {@code values} durable through the shared commit log and apply them, blocking until the
+   * group they were collected in is synced. Only available under {@link
+   * Durability.Mode#GROUP_COMMIT}.
+   */
+  public void commit(Map<String, byte[]> values) throws IOException {
+    GroupCommitter groupCommitter = this.groupCommitter;
+    if (groupCommitter == null) {
+      throw new IllegalStateException("Group commit is not enabled.");
+    }
+    groupCommitter.commit(values);
   }
 
   @Override
@@ -40,12 +159,80 @@ public class FileStorageAdapter implements StorageAdapter {
 
   @Override
   public Writer writer(String key) throws IOException {
-    return Files.newBufferedWriter(file(key).toPath(), Charset.defaultCharset());
+    return new BufferedWriter(new OutputStreamWriter(output(key), Charset.defaultCharset()));
   }
 
   @Override
   public OutputStream output(String key) throws IOException {
-    return new FileOutputStream((file(key)));
+    release(key);
+    return durability.mode() == Durability.Mode.NONE
+        ? new FileOutputStream(file(key))
+        : new SyncingOutputStream(file(key), false);
+  }
+
+  @Override
+  public OutputStream appendOutput(String key) throws IOException {
+    release(key);
+    return durability.mode() == Durability.Mode.NONE
+        ? new FileOutputStream(file(key), true)
+        : new SyncingOutputStream(file(key), true);
+  }
+
+  @Override
+  public boolean appendsInPlace() {
+    return true;
+  }
+
+  /**
+   * Append the whole batch to the {@link RedoLog} in {@value #BATCH_LOG} with one sequential write,
+   * then replace each key's file with a rename. Under {@link Durability.Mode#PER_WRITE} the log is
+   * synced once and the key files only at the next checkpoint, so a batch costs one {@code fsync};
+   * a crash before the log is synced leaves every key untouched, and one after it is completed by
+   * the next adapter opened on this directory. Under {@link Durability.Mode#NONE} nothing is synced
+   * and the batch is atomic only across the process dying.
+   */
+  @Override
+  public void write(Map<String, byte[]> values) throws IOException {
+    if (durability.mode() == Durability.Mode.GROUP_COMMIT) {
+      commit(values);
+      return;
+    }
+    batchLog.commit(values);
+  }
+
+  /** Stop the group committer, if any, and checkpoint the logs. */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (groupCommitter != null) {
+        groupCommitter.close();
+      }
+    } finally {
+      batchLog.close();
+    }
+  }
+
+  /** Every key with a file under the base path, skipping the temp files of in-flight writes. */
+  @Override
+  public Collection<String> keys() throws IOException {
+    Path base = Paths.get(basePath);
+    if (!Files.isDirectory(base)) {
+      return Collections.emptyList();
+    }
+    List<String> keys = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(base)) {
+      Iterator<Path> iterator = files.iterator();
+      while (iterator.hasNext()) {
+        Path file = iterator.next();
+        String name = base.relativize(file).toString().replace(File.separatorChar, '/');
+        if (name.endsWith(EXTENSION)
+            && !name.endsWith(TMP_SUFFIX + EXTENSION)
+            && Files.isRegularFile(file)) {
+          keys.add(name.substring(0, name.length() - EXTENSION.length()));
+        }
+      }
+    }
+    return keys;
   }
 
   @Override
@@ -58,6 +245,139 @@ public class FileStorageAdapter implements StorageAdapter {
   }
 
   private String path(String key) {
-    return basePath + "/" + key + ".json";
+    return basePath + "/" + key + EXTENSION;
+  }
+
+  /**
+   * Checkpoint the log still holding a value of {@code key}, if any, before the key is written
+   * around it; otherwise replaying the log would put the older value back.
+   */
+  void release(String key) throws IOException {
+    batchLog.release(key);
+    if (groupCommitter != null) {
+      groupCommitter.release(key);
+    }
+  }
+
+  void apply(Map<String, byte[]> values) throws IOException {
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      File file = file(entry.getKey());
+      byte[] value = entry.getValue();
+      if (value == null) {
+        Files.deleteIfExists(file.toPath());
+      } else {
+        File tmp = new File(file.getPath() + ".batch");
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+          output.write(value);
+        }
+        Files.move(
+            tmp.toPath(),
+            file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+  }
+
+  static byte[] encodeBatch(Map<String, byte[]> values) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(BATCH_MAGIC);
+    output.writeInt(values.size());
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      byte[] key = entry.getKey().getBytes(UTF_8);
+      byte[] value = entry.getValue();
+      output.writeInt(key.length);
+      output.write(key);
+      output.writeInt(value == null ? -1 : value.length);
+      if (value != null) {
+        output.write(value);
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    output.writeInt((int) crc.getValue());
+    return bytes.toByteArray();
+  }
+
+  /** Decode a batch log, or return null if it is torn. */
+  @Nullable
+  static Map<String, byte[]> decodeBatch(byte[] log) throws IOException {
+    if (log.length < 12) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(log, 0, log.length - 4);
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(log));
+    input.skipBytes(log.length - 4);
+    if ((int) crc.getValue() != input.readInt()) {
+      return null;
+    }
+
+    input = new DataInputStream(new ByteArrayInputStream(log, 0, log.length - 4));
+    if (input.readInt() != BATCH_MAGIC) {
+      throw new IOException("Not a batch log.");
+    }
+    int count = input.readInt();
+    Map<String, byte[]> values = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      byte[] key = new byte[input.readInt()];
+      input.readFully(key);
+      int length = input.readInt();
+      byte[] value = null;
+      if (length >= 0) {
+        value = new byte[length];
+        input.readFully(value);
+      }
+      values.put(new String(key, UTF_8), value);
+    }
+    return values;
+  }
+
+  /** Sync the files of {@code keys} that still exist, then the directory holding them. */
+  void sync(Collection<String> keys) throws IOException {
+    for (String key : keys) {
+      File file = file(key);
+      if (file.exists()) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+          channel.force(true);
+        }
+      }
+    }
+    syncDirectory();
+  }
+
+  /**
+   * Sync the directory so renames and deletes in it are durable. Not every platform can open a
+   * directory for syncing; there the renames are as durable as the file system makes them.
+   */
+  void syncDirectory() {
+    try (FileChannel channel =
+        FileChannel.open(new File(basePath).toPath(), StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException ignored) {
+    }
+  }
+
+  /** A file stream that syncs the file before closing it. */
+  private static final class SyncingOutputStream extends FileOutputStream {
+    private boolean closed = false;
+
+    SyncingOutputStream(File file, boolean append) throws FileNotFoundException {
+      super(file, append);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        getChannel().force(false);
+      } finally {
+        super.close();
+      }
+    }
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import io.reactivex.annotations.Nullable;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the writes of a {@link FileStorageAdapter} durable in groups. Writers queue their changes
+ * and block; a single thread collects a group, appends it to a {@link RedoLog} in {@value #LOG} as
+ * one batch with one {@code fsync}, applies it to the key files and wakes the writers. Key files
+ * are synced when the log is checkpointed, after which the log is truncated.
+ */
+final class GroupCommitter implements Closeable {
+  static final String LOG = "group-commit.log";
+
+  private static final Request CLOSE = new Request(Collections.emptyMap());
+
+  private final RedoLog log;
+  private final long maxDelayNanos;
+  private final int maxBatch;
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+  private final Thread thread;
+  private boolean closed = false;
+
+  GroupCommitter(FileStorageAdapter adapter, File basePath, Durability durability)
+      throws IOException {
+    this.maxDelayNanos = durability.maxDelay(TimeUnit.NANOSECONDS);
+    this.maxBatch = durability.maxBatch();
+    this.log =
+        new RedoLog(adapter, new File(basePath, LOG), true, Durability.DEFAULT_CHECKPOINT_SIZE);
+    this.thread = new Thread(this::run, "keyvaluestore-group-commit");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Queue {@code values} for the next group and block until they are durable and applied. */
+  void commit(Map<String, byte[]> values) throws IOException {
+    Request request = new Request(values);
+    // Queued under the same monitor close() queues CLOSE under, so no request lands behind it.
+    synchronized (this) {
+      if (closed) {
+        throw new IOException("Storage adapter closed.");
+      }
+      queue.add(request);
+    }
+    request.await();
+  }
+
+  /** Checkpoint the log if it still holds a value of {@code key}, see {@link RedoLog#release}. */
+  void release(String key) throws IOException {
+    log.release(key);
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.add(CLOSE);
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Request request;
+    while ((request = queue.poll()) != null) {
+      request.fail(new IOException("Storage adapter closed."));
+    }
+    log.close();
+  }
+
+  private void run() {
+    List<Request> group = new ArrayList<>();
+    while (true) {
+      group.clear();
+      boolean stop = collect(group);
+      if (!group.isEmpty()) {
+        try {
+          write(group);
+          for (Request request : group) {
+            request.complete();
+          }
+        } catch (IOException | RuntimeException e) {
+          IOException failure = e instanceof IOException ? (IOException) e : new IOException(e);
+          for (Request request : group) {
+            request.fail(failure);
+          }
+        }
+      }
+      if (stop) {
+        return;
+      }
+    }
+  }
+
+  /** Collect the next group into {@code group}, returning true once the committer was closed. */
+  private boolean collect(List<Request> group) {
+    try {
+      Request first = queue.take();
+      if (first == CLOSE) {
+        return true;
+      }
+      group.add(first);
+      long deadline = System.nanoTime() + maxDelayNanos;
+      while (group.size() < maxBatch) {
+        Request next = queue.poll();
+        if (next == null) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            break;
+          }
+          next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+        }
+        if (next == CLOSE) {
+          return true;
+        }
+        group.add(next);
+      }
+      return false;
+    } catch (InterruptedException e) {
+      return true;
+    }
+  }
+
+  private void write(List<Request> group) throws IOException {
+    Map<String, byte[]> values = new LinkedHashMap<>();
+    for (Request request : group) {
+      values.putAll(request.values);
+    }
+    log.commit(values);
+  }
+
+  private static final class Request {
+    final Map<String, byte[]> values;
+    private final CountDownLatch done = new CountDownLatch(1);
+    @Nullable private volatile IOException failure;
+
+    Request(Map<String, byte[]> values) {
+      this.values = values;
+    }
+
+    void complete() {
+      done.countDown();
+    }
+
+    void fail(IOException failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    void await() throws IOException {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      IOException failure = this.failure;
+      if (failure != null) {
+        throw new IOException(failure.getMessage(), failure);
+      }
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Wraps the storage unit of a key to keep its {@link AdaptableStorage}'s key index current: a
+ * successful write adds {@code indexKey}, a stream only once it closes cleanly, and a successful
+ * delete asks the storage whether it is still held by another unit, such as a journaled list's base
+ * or journal. Existence checks of a key the storage's {@link KeyFilter} rules out answer without
+ * asking the unit, and every write adds the key to the filter before it starts.
+ *
+ * <p>A key past its expiry deadline reads as absent until the reaper deletes it, and offers no
+ * optimistic stamp so cached reads of it fall through to the check. A write to it replaces the
+ * expired value and forgets the deadline.
+ *
+ * <p>While the storage has {@link Metrics} attached, lock waits are timed and the unit's streams,
+ * including those a converter writes through {@link #converterWrite}, are metered.
+ */
+final class IndexedStorageUnit implements StorageUnit {
+  private final StorageUnit storageUnit;
+  private final String key;
+  private final String indexKey;
+  private final AdaptableStorage storage;
+
+  IndexedStorageUnit(
+      StorageUnit storageUnit, String key, String indexKey, AdaptableStorage storage) {
+    this.storageUnit = storageUnit;
+    this.key = key;
+    this.indexKey = indexKey;
+    this.storage = storage;
+  }
+
+  @Override
+  public Reader reader() throws Exception {
+    return metered().reader();
+  }
+
+  @Override
+  public Writer writer() throws Exception {
+    storage.writing(key);
+    return new IndexingWriter(metered().writer());
+  }
+
+  @Override
+  public OutputStream output() throws Exception {
+    storage.writing(key);
+    return new IndexingOutputStream(metered().output());
+  }
+
+  @Override
+  public InputStream input() throws Exception {
+    return metered().input();
+  }
+
+  @Override
+  public OutputStream appendOutput() throws Exception {
+    // An expired value is not appended to but replaced.
+    OutputStream output = storage.writing(key) ? metered().output() : metered().appendOutput();
+    return new IndexingOutputStream(output);
+  }
+
+  @Override
+  public Single<Boolean> exists() {
+    return Single.defer(
+        () ->
+            storage.mightExist(key) && !storage.isExpired(indexKey)
+                ? storageUnit
+                    .exists()
+                    .doOnSuccess(
+                        exists -> {
+                          if (!exists) {
+                            storage.falsePositive();
+                          }
+                        })
+                : Single.just(false));
+  }
+
+  @Override
+  public Maybe<StorageUnit> readable() {
+    return Maybe.defer(
+        () ->
+            storage.mightExist(key) && !storage.isExpired(indexKey)
+                ? metered().readable().doOnComplete(storage::falsePositive)
+                : Maybe.empty());
+  }
+
+  @Override
+  public Single<Boolean> createNew() throws Exception {
+    if (storage.writing(key)) {
+      // The unit still holds the expired value, which the caller overwrites.
+      return Single.just(true);
+    }
+    return storageUnit
+        .createNew()
+        .doOnSuccess(
+            created -> {
+              if (created) {
+                storage.written(indexKey);
+              }
+            });
+  }
+
+  @Override
+  public Single<Boolean> delete() throws Exception {
+    return storageUnit
+        .delete()
+        .doOnSuccess(
+            deleted -> {
+              if (deleted) {
+                storage.deleted(indexKey);
+              }
+            });
+  }
+
+  @Override
+  public <T> Single<T> converterWrite(T value, Converter converter, Type type) throws Exception {
+    return metered()
+        .converterWrite(value, converter, type)
+        .doOnSubscribe(disposable -> storage.writing(key))
+        .doOnSuccess(written -> storage.written(indexKey));
+  }
+
+  @Override
+  public void expireAt(long deadline) {
+    storage.expireAt(indexKey, deadline);
+  }
+
+  @Override
+  public void startRead() {
+    Metrics metrics = storage.metrics();
+    if (metrics == Metrics.NONE) {
+      storageUnit.startRead();
+      return;
+    }
+    Metrics timer = metrics.start(Operation.LOCK_READ);
+    long start = System.nanoTime();
+    storageUnit.startRead();
+    timer.record(Operation.LOCK_READ, indexKey, null, System.nanoTime() - start, 0);
+  }
+
+  @Override
+  public void endRead() {
+    storageUnit.endRead();
+  }
+
+  @Override
+  public void startWrite() {
+    Metrics metrics = storage.metrics();
+    if (metrics == Metrics.NONE) {
+      storageUnit.startWrite();
+      return;
+    }
+    Metrics timer = metrics.start(Operation.LOCK_WRITE);
+    long start = System.nanoTime();
+    storageUnit.startWrite();
+    timer.record(Operation.LOCK_WRITE, indexKey, null, System.nanoTime() - start, 0);
+  }
+
+  @Override
+  public void endWrite() {
+    storageUnit.endWrite();
+  }
+
+  @Override
+  public long tryOptimisticRead() {
+    return storage.isExpired(indexKey) ? 0 : storageUnit.tryOptimisticRead();
+  }
+
+  @Override
+  public boolean validate(long stamp) {
+    return storageUnit.validate(stamp);
+  }
+
+  /** The wrapped unit, metered while the storage has metrics attached. */
+  private StorageUnit metered() {
+    Metrics metrics = storage.metrics();
+    return metrics == Metrics.NONE
+        ? storageUnit
+        : new MeteredStorageUnit(storageUnit, indexKey, metrics);
+  }
+
+  /** Adds the key to the index once the writer it wraps has closed cleanly. */
+  private final class IndexingWriter extends FilterWriter {
+    private boolean closed = false;
+
+    IndexingWriter(Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+      storage.written(indexKey);
+    }
+  }
+
+  /** Adds the key to the index once the stream it wraps has closed cleanly. */
+  private final class IndexingOutputStream extends FilterOutputStream {
+    private boolean closed = false;
+
+    IndexingOutputStream(OutputStream output) {
+      super(output);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      out.close();
+      storage.written(indexKey);
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.storage.lsm.BloomFilter;
+import io.reactivex.annotations.Nullable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bloom filter of the keys of one {@link AdaptableStorage}, letting lookups of keys that were
+ * never written answer from memory instead of asking the adapter whether they exist. The storage
+ * fills it from its adapter's keys when created and adds every key before writing it, so the filter
+ * never reports a stored key as missing.
+ *
+ * <p>A bloom filter cannot forget a key, so cleared keys stay in it as false positives, and keys
+ * beyond the expected count raise its false positive rate. Once either has outgrown the filter it
+ * is rebuilt from the storage's key index, sized for twice the keys then live. Keys written while
+ * it is rebuilt go to both the old and the new filter.
+ */
+public final class KeyFilter {
+  public static final long DEFAULT_EXPECTED_KEYS = 1 << 16;
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private final double falsePositiveRate;
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  private final AtomicLong added = new AtomicLong();
+  private final AtomicLong removed = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder passes = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+  private volatile long capacity;
+  private volatile BloomFilter filter;
+  @Nullable private volatile BloomFilter next;
+
+  private KeyFilter(long expectedKeys, double falsePositiveRate) {
+    if (expectedKeys < 1) {
+      throw new IllegalArgumentException("expectedKeys < 1: " + expectedKeys);
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("Invalid falsePositiveRate: " + falsePositiveRate);
+    }
+    this.falsePositiveRate = falsePositiveRate;
+    this.capacity = expectedKeys;
+    this.filter = BloomFilter.create(expectedKeys, falsePositiveRate);
+  }
+
+  /** A filter sized for {@value #DEFAULT_EXPECTED_KEYS} keys at a 1% false positive rate. */
+  public static KeyFilter create() {
+    return new KeyFilter(DEFAULT_EXPECTED_KEYS, DEFAULT_FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * A filter sized for {@code expectedKeys} keys at {@code falsePositiveRate}, the share of missing
+   * keys it lets through to the adapter.
+   */
+  public static KeyFilter create(long expectedKeys, double falsePositiveRate) {
+    return new KeyFilter(expectedKeys, falsePositiveRate);
+  }
+
+  /** Lookups answered as missing without asking the adapter. */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /** Lookups the filter let through to the adapter. */
+  public long passCount() {
+    return passes.sum();
+  }
+
+  /** Lookups the filter let through for keys the adapter then reported as missing. */
+  public long falsePositiveCount() {
+    return falsePositives.sum();
+  }
+
+  /** Times the filter was rebuilt from the key index. */
+  public long rebuildCount() {
+    return rebuilds.sum();
+  }
+
+  public double falsePositiveRate() {
+    return falsePositiveRate;
+  }
+
+  /** Whether {@code key} may hold a value, counting a hit if it cannot. */
+  boolean mightContain(String key) {
+    if (filter.mightContain(key)) {
+      passes.increment();
+      return true;
+    }
+    hits.increment();
+    return false;
+  }
+
+  void falsePositive() {
+    falsePositives.increment();
+  }
+
+  /** Add a key that is about to be written. */
+  void put(String key) {
+    // Read the filter being built first: if it is null here, the live filter read below is either
+    // the old one with the rebuild yet to list this key, or already the rebuilt one.
+    BloomFilter next = this.next;
+    if (next != null) {
+      next.put(key);
+    }
+    filter.put(key);
+  }
+
+  /** Record that the key index gained a key. */
+  void added() {
+    added.incrementAndGet();
+  }
+
+  /** Record that the key index lost a key, which stays in the filter. */
+  void removed() {
+    removed.incrementAndGet();
+  }
+
+  /** Whether more keys were added or removed since the last build than the filter was sized for. */
+  boolean isStale() {
+    return added.get() > capacity || removed.get() > capacity / 2;
+  }
+
+  /**
+   * Replace the filter with one holding {@code keys}, unless another thread is already rebuilding
+   * it. Keys are added to the new filter as they are written from the moment it is created, so
+   * {@code keys} need only hold the keys written before then.
+   */
+  void rebuild(long size, Iterable<String> keys) {
+    if (!rebuilding.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long capacity = Math.max(this.capacity, 2 * size);
+      BloomFilter next = BloomFilter.create(capacity, falsePositiveRate);
+      this.next = next;
+      for (String key : keys) {
+        next.put(key);
+      }
+      added.set(size);
+      removed.set(0);
+      this.capacity = capacity;
+      this.filter = next;
+      this.next = null;
+      rebuilds.increment();
+    } finally {
+      rebuilding.set(false);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import io.reactivex.Flowable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The sorted keys of an {@link AdaptableStorage}, loaded once from {@link StorageAdapter#keys()}
+ * and kept current by the storage's writes, so listing keys costs no I/O and a prefix is a range of
+ * the set. Readers iterate a weakly consistent view: keys added or removed while a listing is in
+ * progress may or may not appear in it.
+ */
+final class KeyIndex {
+  private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+
+  /** Add {@code key}, returning whether it was missing. */
+  boolean add(String key) {
+    return keys.add(key);
+  }
+
+  /** Remove {@code key}, returning whether it was present. */
+  boolean remove(String key) {
+    return keys.remove(key);
+  }
+
+  /** A live, weakly consistent view of every key. */
+  Collection<String> all() {
+    return Collections.unmodifiableSet(keys);
+  }
+
+  /** The keys starting with {@code prefix}, in ascending order, read when subscribed to. */
+  Flowable<String> keys(String prefix) {
+    return Flowable.defer(
+        () -> Flowable.fromIterable(keys.tailSet(prefix)).takeWhile(key -> key.startsWith(prefix)));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.storage.storable.Retainer;
+import io.reactivex.annotations.Nullable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * One canonical instance per key, held weakly so that keys nobody has a handle to cost nothing.
+ * Cleared entries are dropped on the next lookup, so the map stays as large as the set of keys with
+ * live handles no matter how many keys are touched. Instances that are being observed are
+ * additionally held strongly through {@link #retain} until their last observer leaves.
+ */
+final class KeyRegistry<V> implements Retainer {
+  private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, Integer> retained = new ConcurrentHashMap<>();
+  private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+  /** The instance for {@code key}, created by {@code factory} if there is none alive. */
+  V get(String key, Function<String, V> factory) {
+    expunge();
+    while (true) {
+      Entry<V> entry = entries.get(key);
+      V value = entry == null ? null : entry.get();
+      if (value != null) {
+        return value;
+      }
+      V created = factory.apply(key);
+      Entry<V> replacement = new Entry<>(key, created, queue);
+      boolean won =
+          entry == null
+              ? entries.putIfAbsent(key, replacement) == null
+              : entries.replace(key, entry, replacement);
+      if (won) {
+        return created;
+      }
+    }
+  }
+
+  /** The instance for {@code key} if one is alive, without creating one. */
+  @Nullable
+  V getIfPresent(String key) {
+    Entry<V> entry = entries.get(key);
+    return entry == null ? null : entry.get();
+  }
+
+  @Override
+  public void retain(Object value) {
+    retained.merge(value, 1, Integer::sum);
+  }
+
+  @Override
+  public void release(Object value) {
+    retained.computeIfPresent(value, (v, count) -> count == 1 ? null : count - 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expunge() {
+    Entry<V> entry;
+    while ((entry = (Entry<V>) queue.poll()) != null) {
+      entries.remove(entry.key, entry);
+    }
+  }
+
+  private static final class Entry<V> extends WeakReference<V> {
+    final String key;
+
+    Entry(String key, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.reactivex.annotations.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A single checksummed key/value record in an append-only log, laid out as {@code crc, keyLength,
+ * valueLength, key, value}. A delete is recorded as a tombstone with a {@code valueLength} of
+ * {@code -1} and no value bytes.
+ *
+ * <p>A batch is one record with a {@code keyLength} of {@code -1} whose value holds the batch's
+ * records back to back. Its checksum covers all of them, so a torn batch is dropped as a whole.
+ */
+final class LogRecord {
+  static final int HEADER_SIZE = 12;
+  private static final int TOMBSTONE = -1;
+  private static final int BATCH = -1;
+
+  final String key;
+  @Nullable final byte[] value;
+  final int size;
+  /** The records of a batch, in order, or null for a single record. */
+  @Nullable final List<LogRecord> records;
+
+  private LogRecord(
+      String key, @Nullable byte[] value, int size, @Nullable List<LogRecord> records) {
+    this.key = key;
+    this.value = value;
+    this.size = size;
+    this.records = records;
+  }
+
+  static ByteBuffer encode(String key, @Nullable byte[] value) {
+    byte[] keyBytes = key.getBytes(UTF_8);
+    int valueLength = value == null ? 0 : value.length;
+    ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueLength);
+    record.putInt(0).putInt(keyBytes.length).putInt(value == null ? TOMBSTONE : valueLength);
+    record.put(keyBytes);
+    if (value != null) {
+      record.put(value);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 4, record.capacity() - 4);
+    record.putInt(0, (int) crc.getValue());
+    record.flip();
+    return record;
+  }
+
+  /** Encode every entry of values, with null values as tombstones, as a single batch record. */
+  static ByteBuffer encodeBatch(Map<String, byte[]> values) {
+    List<ByteBuffer> records = new ArrayList<>(values.size());
+    int payloadLength = 0;
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      ByteBuffer record = encode(entry.getKey(), entry.getValue());
+      records.add(record);
+      payloadLength += record.remaining();
+    }
+    ByteBuffer batch = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+    batch.putInt(0).putInt(BATCH).putInt(payloadLength);
+    for (ByteBuffer record : records) {
+      batch.put(record);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(batch.array(), 4, batch.capacity() - 4);
+    batch.putInt(0, (int) crc.getValue());
+    batch.flip();
+    return batch;
+  }
+
+  /** Read the next record, or return null at the end of the log or at a torn record. */
+  @Nullable
+  static LogRecord read(DataInputStream input, boolean verify) throws IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    try {
+      input.readFully(header);
+      ByteBuffer buffer = ByteBuffer.wrap(header);
+      int crc = buffer.getInt();
+      int keyLength = buffer.getInt();
+      int valueLength = buffer.getInt();
+      if (keyLength == BATCH) {
+        return readBatch(input, header, crc, valueLength, verify);
+      }
+      if (keyLength < 0 || valueLength < TOMBSTONE) {
+        return null;
+      }
+
+      byte[] key = new byte[keyLength];
+      input.readFully(key);
+      byte[] value = null;
+      if (valueLength != TOMBSTONE) {
+        value = new byte[valueLength];
+        input.readFully(value);
+      }
+
+      if (verify) {
+        CRC32 expected = new CRC32();
+        expected.update(header, 4, HEADER_SIZE - 4);
+        expected.update(key);
+        if (value != null) {
+          expected.update(value);
+        }
+        if ((int) expected.getValue() != crc) {
+          return null;
+        }
+      }
+      return new LogRecord(
+          new String(key, UTF_8),
+          value,
+          HEADER_SIZE + keyLength + (value == null ? 0 : valueLength),
+          null);
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static LogRecord readBatch(
+      DataInputStream input, byte[] header, int crc, int payloadLength, boolean verify)
+      throws IOException {
+    if (payloadLength < 0) {
+      return null;
+    }
+    byte[] payload = new byte[payloadLength];
+    input.readFully(payload);
+    if (verify) {
+      CRC32 expected = new CRC32();
+      expected.update(header, 4, HEADER_SIZE - 4);
+      expected.update(payload);
+      if ((int) expected.getValue() != crc) {
+        return null;
+      }
+    }
+
+    List<LogRecord> records = new ArrayList<>();
+    DataInputStream payloadInput = new DataInputStream(new ByteArrayInputStream(payload));
+    int read = 0;
+    while (read < payloadLength) {
+      LogRecord record = read(payloadInput, false);
+      if (record == null || record.records != null) {
+        throw new IOException("Corrupt batch record.");
+      }
+      records.add(record);
+      read += record.size;
+    }
+    return new LogRecord("", null, HEADER_SIZE + payloadLength, records);
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.LogStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StripedLockManager;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link StorageAdapter} that appends every write to a log of segment files instead of keeping
+ * one file per key. An in-memory key directory maps each key to the segment and offset of its
+ * latest record, so a write is a single sequential append and a read is a single positional read.
+ *
+ * <p>The active segment rolls over once it grows past {@code maxSegmentSize}. Records that have
+ * been overwritten or deleted are reclaimed in the background: any closed segment whose dead bytes
+ * exceed {@code compactionThreshold} of its size has its live records re-appended and is then
+ * deleted.
+ *
+ * <p>Segments hold {@link LogRecord}s, with a delete recorded as a tombstone. On startup the key
+ * directory is rebuilt by replaying every segment in order, truncating a torn record at the tail.
+ */
+public class LogStorageAdapter implements StorageAdapter, Closeable {
+  public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+  public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+  public static final long DEFAULT_COMPACTION_INTERVAL_SECONDS = 60;
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final File directory;
+  private final long maxSegmentSize;
+  private final double compactionThreshold;
+  private final ConcurrentHashMap<String, Entry> keyDirectory = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+  private final ReentrantReadWriteLock segmentLock = new ReentrantReadWriteLock();
+  private final Object appendLock = new Object();
+  private final Object compactionLock = new Object();
+  private final ScheduledExecutorService compactor;
+  private final ScheduledFuture<?> compaction;
+  private final LockManager lockManager = new StripedLockManager();
+  private volatile Segment activeSegment;
+  private boolean closed;
+
+  public LogStorageAdapter(String basePath) throws IOException {
+    this(
+        basePath,
+        DEFAULT_MAX_SEGMENT_SIZE,
+        DEFAULT_COMPACTION_THRESHOLD,
+        DEFAULT_COMPACTION_INTERVAL_SECONDS);
+  }
+
+  public LogStorageAdapter(
+      String basePath,
+      long maxSegmentSize,
+      double compactionThreshold,
+      long compactionIntervalSeconds)
+      throws IOException {
+    this.directory = new File(basePath);
+    this.maxSegmentSize = maxSegmentSize;
+    this.compactionThreshold = compactionThreshold;
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create log directory " + directory);
+    }
+    this.activeSegment = load();
+
+    this.compactor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "keyvaluestore-log-compactor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.compaction =
+        compactor.scheduleWithFixedDelay(
+            () -> {
+              try {
+                compact();
+              } catch (IOException | RuntimeException e) {
+                // Dead records stay in place and are retried on the next pass; letting the
+                // exception escape would cancel every later pass.
+              }
+            },
+            compactionIntervalSeconds,
+            compactionIntervalSeconds,
+            TimeUnit.SECONDS);
+  }
+
+  @Override
+  public Single<Boolean> exists(String key) {
+    return Single.fromCallable(() -> keyDirectory.containsKey(key));
+  }
+
+  @Override
+  public Single<Boolean> createNew(String key) {
+    return Single.fromCallable(
+        () -> {
+          synchronized (appendLock) {
+            if (keyDirectory.containsKey(key)) {
+              return false;
+            }
+            append(key, new byte[0]);
+            return true;
+          }
+        });
+  }
+
+  @Override
+  public Single<Boolean> delete(String key) {
+    return Single.fromCallable(
+        () -> {
+          synchronized (appendLock) {
+            if (!keyDirectory.containsKey(key)) {
+              return false;
+            }
+            append(key, null);
+            return true;
+          }
+        });
+  }
+
+  @Override
+  public Reader reader(String key) throws IOException {
+    return new InputStreamReader(input(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public InputStream input(String key) throws IOException {
+    return new ByteArrayInputStream(read(key));
+  }
+
+  @Override
+  public Writer writer(String key) throws IOException {
+    return new OutputStreamWriter(output(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public OutputStream output(String key) throws IOException {
+    return new RecordOutputStream() {
+      @Override
+      protected void commit(byte[] value) throws IOException {
+        append(key, value);
+      }
+    };
+  }
+
+  /**
+   * Append the whole batch as a single record and force it to disk once. On replay a torn batch
+   * record is dropped as a whole, so either every key in the batch is written or none is.
+   */
+  @Override
+  public void write(Map<String, byte[]> values) throws IOException {
+    ByteBuffer batch = LogRecord.encodeBatch(values);
+    int size = batch.remaining();
+
+    synchronized (appendLock) {
+      Segment segment = activeSegment(size);
+      long position = segment.size;
+      writeFully(segment, batch, position);
+      segment.channel.force(false);
+      segment.size = position + size;
+
+      segment.deadBytes.addAndGet(LogRecord.HEADER_SIZE);
+      long batchedPosition = position + LogRecord.HEADER_SIZE;
+      for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+        byte[] value = entry.getValue();
+        int recordSize =
+            LogRecord.HEADER_SIZE
+                + entry.getKey().getBytes(UTF_8).length
+                + (value == null ? 0 : value.length);
+        index(segment, entry.getKey(), value, recordSize, batchedPosition);
+        batchedPosition += recordSize;
+      }
+    }
+  }
+
+  @Override
+  public LockManager lockManager() {
+    return lockManager;
+  }
+
+  @Override
+  public LogStorageUnit storageUnit(String key) {
+    return new LogStorageUnit(key, this);
+  }
+
+  @Override
+  public Collection<String> keys() {
+    return new ArrayList<>(keyDirectory.keySet());
+  }
+
+  /**
+   * Rewrite the live records of every closed segment whose dead ratio exceeds the compaction
+   * threshold and delete those segments. This runs periodically in the background but may also be
+   * invoked directly.
+   */
+  public void compact() throws IOException {
+    synchronized (compactionLock) {
+      if (closed) {
+        return;
+      }
+      for (Segment segment : segments.values()) {
+        if (segment == activeSegment || segment.size == 0) {
+          continue;
+        }
+        if ((double) segment.deadBytes.get() / segment.size >= compactionThreshold) {
+          compact(segment);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    compaction.cancel(false);
+    compactor.shutdown();
+    // Wait out a pass in flight, so it never touches a closed channel.
+    synchronized (compactionLock) {
+      closed = true;
+    }
+    try {
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (appendLock) {
+      segmentLock.writeLock().lock();
+      try {
+        for (Segment segment : segments.values()) {
+          segment.channel.close();
+        }
+        segments.clear();
+        keyDirectory.clear();
+      } finally {
+        segmentLock.writeLock().unlock();
+      }
+    }
+  }
+
+  private Segment load() throws IOException {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+    if (files != null) {
+      Arrays.sort(files);
+      for (File file : files) {
+        String name = file.getName();
+        int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        replay(openSegment(id));
+      }
+    }
+
+    if (segments.isEmpty()) {
+      return openSegment(0);
+    }
+    Segment last = segments.lastEntry().getValue();
+    return last.size < maxSegmentSize ? last : openSegment(last.id + 1);
+  }
+
+  private void replay(Segment segment) throws IOException {
+    long position = 0;
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+      while (true) {
+        LogRecord record = LogRecord.read(input, true);
+        if (record == null) {
+          break;
+        }
+        if (record.records == null) {
+          index(segment, record.key, record.value, record.size, position);
+        } else {
+          // The batch header belongs to no key.
+          segment.deadBytes.addAndGet(LogRecord.HEADER_SIZE);
+          long batchedPosition = position + LogRecord.HEADER_SIZE;
+          for (LogRecord batched : record.records) {
+            index(segment, batched.key, batched.value, batched.size, batchedPosition);
+            batchedPosition += batched.size;
+          }
+        }
+        position += record.size;
+      }
+    }
+    if (position < segment.channel.size()) {
+      segment.channel.truncate(position);
+    }
+    segment.size = position;
+  }
+
+  /** Point key at the record of size written at position, or drop it for a tombstone. */
+  private void index(Segment segment, String key, @Nullable byte[] value, int size, long position) {
+    segment.keys.add(key);
+    Entry previous;
+    if (value == null) {
+      previous = keyDirectory.remove(key);
+      segment.deadBytes.addAndGet(size);
+    } else {
+      previous = keyDirectory.put(key, new Entry(segment.id, position, size, value.length));
+    }
+    if (previous != null) {
+      markDead(previous);
+    }
+  }
+
+  private void compact(Segment segment) throws IOException {
+    int firstTarget = activeSegment.id;
+    long position = 0;
+
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+      while (position < segment.size) {
+        LogRecord record = LogRecord.read(input, false);
+        if (record == null) {
+          break;
+        }
+        if (record.records == null) {
+          keepLive(segment, record, position);
+        } else {
+          // Batched records are already committed, so they are carried over one by one.
+          long batchedPosition = position + LogRecord.HEADER_SIZE;
+          for (LogRecord batched : record.records) {
+            keepLive(segment, batched, batchedPosition);
+            batchedPosition += batched.size;
+          }
+        }
+        position += record.size;
+      }
+    }
+
+    for (Segment target : segments.tailMap(firstTarget).values()) {
+      target.channel.force(false);
+    }
+
+    segmentLock.writeLock().lock();
+    try {
+      segments.remove(segment.id);
+      segment.channel.close();
+    } finally {
+      segmentLock.writeLock().unlock();
+    }
+    if (!segment.file.delete()) {
+      throw new IOException("Could not delete compacted segment " + segment.file);
+    }
+  }
+
+  private void keepLive(Segment segment, LogRecord record, long position) throws IOException {
+    synchronized (appendLock) {
+      Entry current = keyDirectory.get(record.key);
+      if (record.value == null) {
+        // Tombstones must outlive every older record for the same key, and no longer.
+        if (current == null && olderSegmentHolds(segment, record.key)) {
+          append(record.key, null);
+        }
+      } else if (current != null
+          && current.segmentId == segment.id
+          && current.position == position) {
+        append(record.key, record.value);
+      }
+    }
+  }
+
+  /** Whether a segment older than segment still holds a record for key, live or not. */
+  private boolean olderSegmentHolds(Segment segment, String key) {
+    for (Segment older : segments.headMap(segment.id).values()) {
+      if (older.keys.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private byte[] read(String key) throws IOException {
+    segmentLock.readLock().lock();
+    try {
+      Entry entry = keyDirectory.get(key);
+      if (entry == null) {
+        throw new FileNotFoundException("No record for key " + key);
+      }
+      Segment segment = segments.get(entry.segmentId);
+      if (segment == null) {
+        throw new IOException("Missing segment " + entry.segmentId + " for key " + key);
+      }
+      ByteBuffer value = ByteBuffer.allocate(entry.valueLength);
+      long position = entry.position + entry.size - entry.valueLength;
+      while (value.hasRemaining()) {
+        if (segment.channel.read(value, position + value.position()) < 0) {
+          throw new EOFException("Truncated record for key " + key);
+        }
+      }
+      return value.array();
+    } finally {
+      segmentLock.readLock().unlock();
+    }
+  }
+
+  private void append(String key, @Nullable byte[] value) throws IOException {
+    ByteBuffer record = LogRecord.encode(key, value);
+    int size = record.remaining();
+
+    synchronized (appendLock) {
+      Segment segment = activeSegment(size);
+      long position = segment.size;
+      writeFully(segment, record, position);
+      segment.size = position + size;
+      index(segment, key, value, size, position);
+    }
+  }
+
+  /** The active segment, rolled over first if a record of size would overfill it. */
+  private Segment activeSegment(int size) throws IOException {
+    Segment segment = activeSegment;
+    if (segment.size > 0 && segment.size + size > maxSegmentSize) {
+      segment = openSegment(segment.id + 1);
+      activeSegment = segment;
+    }
+    return segment;
+  }
+
+  private static void writeFully(Segment segment, ByteBuffer record, long position)
+      throws IOException {
+    while (record.hasRemaining()) {
+      segment.channel.write(record, position + record.position());
+    }
+  }
+
+  private void markDead(Entry entry) {
+    Segment segment = segments.get(entry.segmentId);
+    if (segment != null) {
+      segment.deadBytes.addAndGet(entry.size);
+    }
+  }
+
+  private Segment openSegment(int id) throws IOException {
+    File file = new File(directory, String.format("%010d%s", id, SEGMENT_SUFFIX));
+    FileChannel channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    Segment segment = new Segment(id, file, channel);
+    segment.size = channel.size();
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private static final class Segment {
+    final int id;
+    final File file;
+    final FileChannel channel;
+    final AtomicLong deadBytes = new AtomicLong();
+    /** Every key with a record in this segment, so compaction knows when a tombstone is spent. */
+    final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    volatile long size;
+
+    Segment(int id, File file, FileChannel channel) {
+      this.id = id;
+      this.file = file;
+      this.channel = channel;
+    }
+  }
+
+  /** Location of the latest record for a key. */
+  private static final class Entry {
+    final int segmentId;
+    final long position;
+    final int size;
+    final int valueLength;
+
+    Entry(int segmentId, long position, int size, int valueLength) {
+      this.segmentId = segmentId;
+      this.position = position;
+      this.size = size;
+      this.valueLength = valueLength;
+    }
+  }
+}
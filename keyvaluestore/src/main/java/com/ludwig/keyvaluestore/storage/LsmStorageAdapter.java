@@ -0,0 +1,826 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.ludwig.keyvaluestore.storage.lsm.SSTable;
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
+import com.ludwig.keyvaluestore.storage.unit.LockingStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StripedLockManager;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link StorageAdapter} built as a log-structured merge tree, for data sets far larger than
+ * memory. Writes go to a concurrent sorted memtable backed by a write-ahead log. Once the memtable
+ * grows past {@code memTableSize} it is frozen and flushed in the background to an immutable {@link
+ * SSTable} in level 0. Background leveled compaction merges level 0 into level 1 and any deeper
+ * level into the next once it outgrows its budget, so every level below 0 holds tables with
+ * disjoint key ranges.
+ *
+ * <p>A point read checks the memtables, then level 0 newest first, then at most one table per
+ * deeper level. Every table rejects most misses with its bloom filter before touching disk. The set
+ * of live tables is recorded in a {@code MANIFEST} file that is replaced atomically, so a crash
+ * mid-flush or mid-compaction never exposes a partial result. The manifest also records the oldest
+ * write-ahead log still needed, so a log left behind by a flush that could not delete it is
+ * discarded on restart instead of replayed over the newer tables.
+ */
+public class LsmStorageAdapter implements StorageAdapter, Closeable {
+  public static final long DEFAULT_MEM_TABLE_SIZE = 4L * 1024 * 1024;
+  public static final long DEFAULT_TABLE_SIZE = 2L * 1024 * 1024;
+  public static final long DEFAULT_LEVEL_BASE_SIZE = 10L * 1024 * 1024;
+  public static final int DEFAULT_LEVEL0_COMPACTION_TRIGGER = 4;
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private static final int LEVEL_COUNT = 7;
+  private static final int LEVEL_SIZE_MULTIPLIER = 10;
+  private static final String MANIFEST = "MANIFEST";
+  private static final String MANIFEST_LOG = "log";
+  private static final String LOG_SUFFIX = ".wal";
+  private static final String TABLE_SUFFIX = ".sst";
+  private static final byte[] TOMBSTONE = new byte[0];
+
+  private final File directory;
+  private final long memTableSize;
+  private final long tableSize;
+  private final long levelBaseSize;
+  private final int level0CompactionTrigger;
+  private final double falsePositiveRate;
+  private final AtomicLong nextFileNumber = new AtomicLong();
+  private final String[] compactionPointers = new String[LEVEL_COUNT];
+  private final Object writeLock = new Object();
+  private final Object versionLock = new Object();
+  private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+  private final ExecutorService compactor;
+  private final LockManager lockManager = new StripedLockManager();
+  private volatile Version version;
+  private boolean closed;
+
+  public LsmStorageAdapter(String basePath) throws IOException {
+    this(
+        basePath,
+        DEFAULT_MEM_TABLE_SIZE,
+        DEFAULT_TABLE_SIZE,
+        DEFAULT_LEVEL_BASE_SIZE,
+        DEFAULT_LEVEL0_COMPACTION_TRIGGER,
+        DEFAULT_FALSE_POSITIVE_RATE);
+  }
+
+  public LsmStorageAdapter(
+      String basePath,
+      long memTableSize,
+      long tableSize,
+      long levelBaseSize,
+      int level0CompactionTrigger,
+      double falsePositiveRate)
+      throws IOException {
+    this.directory = new File(basePath);
+    this.memTableSize = memTableSize;
+    this.tableSize = tableSize;
+    this.levelBaseSize = levelBaseSize;
+    this.level0CompactionTrigger = level0CompactionTrigger;
+    this.falsePositiveRate = falsePositiveRate;
+    Arrays.fill(compactionPointers, "");
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create LSM directory " + directory);
+    }
+    this.version = load();
+
+    this.compactor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "keyvaluestore-lsm-compactor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (!version.immutables.isEmpty()) {
+      compactor.execute(this::flushAndCompact);
+    }
+  }
+
+  @Override
+  public Single<Boolean> exists(String key) {
+    return Single.fromCallable(() -> lookup(key) != null);
+  }
+
+  @Override
+  public Single<Boolean> createNew(String key) {
+    return Single.fromCallable(
+        () -> {
+          synchronized (writeLock) {
+            ensureOpen();
+            if (lookup(key) != null) {
+              return false;
+            }
+            put(key, new byte[0]);
+            return true;
+          }
+        });
+  }
+
+  @Override
+  public Single<Boolean> delete(String key) {
+    return Single.fromCallable(
+        () -> {
+          synchronized (writeLock) {
+            ensureOpen();
+            if (lookup(key) == null) {
+              return false;
+            }
+            put(key, null);
+            return true;
+          }
+        });
+  }
+
+  @Override
+  public Reader reader(String key) throws IOException {
+    return new InputStreamReader(input(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public InputStream input(String key) throws IOException {
+    byte[] value = lookup(key);
+    if (value == null) {
+      throw new FileNotFoundException("No entry for key " + key);
+    }
+    return new ByteArrayInputStream(value);
+  }
+
+  @Override
+  public Writer writer(String key) throws IOException {
+    return new OutputStreamWriter(output(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public OutputStream output(String key) throws IOException {
+    return new RecordOutputStream() {
+      @Override
+      protected void commit(byte[] value) throws IOException {
+        put(key, value);
+      }
+    };
+  }
+
+  /**
+   * Log the whole batch as a single write-ahead record and force it once before it reaches the
+   * memtable. A torn batch record is dropped as a whole on replay.
+   */
+  @Override
+  public void write(Map<String, byte[]> values) throws IOException {
+    synchronized (writeLock) {
+      ensureOpen();
+      version.memTable.putAll(values);
+      rotateIfFull();
+    }
+  }
+
+  /**
+   * Every live key, found by replaying every table from the deepest level up and then the
+   * memtables, so that the newest entry for each key decides whether it is live.
+   */
+  @Override
+  public Collection<String> keys() throws IOException {
+    tableLock.readLock().lock();
+    try {
+      Version current = version;
+      Map<String, Boolean> live = new HashMap<>();
+      for (int level = LEVEL_COUNT - 1; level >= 0; level--) {
+        List<SSTable> tables = current.levels.get(level);
+        for (int i = tables.size() - 1; i >= 0; i--) {
+          try (SSTable.Scanner scanner = tables.get(i).scan()) {
+            while (scanner.hasNext()) {
+              SSTable.Entry entry = scanner.next();
+              live.put(entry.key, entry.value != null);
+            }
+          }
+        }
+      }
+      for (int i = current.immutables.size() - 1; i >= -1; i--) {
+        MemTable memTable = i == -1 ? current.memTable : current.immutables.get(i);
+        for (Map.Entry<String, byte[]> entry : memTable.entries.entrySet()) {
+          live.put(entry.getKey(), entry.getValue() != TOMBSTONE);
+        }
+      }
+      List<String> keys = new ArrayList<>(live.size());
+      for (Map.Entry<String, Boolean> entry : live.entrySet()) {
+        if (entry.getValue()) {
+          keys.add(entry.getKey());
+        }
+      }
+      return keys;
+    } finally {
+      tableLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public LockManager lockManager() {
+    return lockManager;
+  }
+
+  @Override
+  public StorageUnit storageUnit(String key) {
+    return new LockingStorageUnit(key, this);
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      // Later writes fail instead of reaching a closed log or a shut down compactor.
+      closed = true;
+    }
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (writeLock) {
+      tableLock.writeLock().lock();
+      try {
+        Version current = version;
+        current.memTable.log.close();
+        for (MemTable memTable : current.immutables) {
+          memTable.log.close();
+        }
+        for (List<SSTable> level : current.levels) {
+          for (SSTable table : level) {
+            table.close();
+          }
+        }
+      } finally {
+        tableLock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Nullable
+  private byte[] lookup(String key) throws IOException {
+    tableLock.readLock().lock();
+    try {
+      Version current = version;
+      byte[] value = current.memTable.entries.get(key);
+      for (int i = 0; value == null && i < current.immutables.size(); i++) {
+        value = current.immutables.get(i).entries.get(key);
+      }
+      if (value != null) {
+        return value == TOMBSTONE ? null : value;
+      }
+
+      for (SSTable table : current.levels.get(0)) {
+        SSTable.Entry entry = table.get(key);
+        if (entry != null) {
+          return entry.value;
+        }
+      }
+      for (int level = 1; level < LEVEL_COUNT; level++) {
+        SSTable table = find(current.levels.get(level), key);
+        SSTable.Entry entry = table == null ? null : table.get(key);
+        if (entry != null) {
+          return entry.value;
+        }
+      }
+      return null;
+    } finally {
+      tableLock.readLock().unlock();
+    }
+  }
+
+  private void put(String key, @Nullable byte[] value) throws IOException {
+    synchronized (writeLock) {
+      ensureOpen();
+      version.memTable.put(key, value);
+      rotateIfFull();
+    }
+  }
+
+  private void rotateIfFull() throws IOException {
+    synchronized (writeLock) {
+      MemTable memTable = version.memTable;
+      if (memTable.size >= memTableSize) {
+        long number = nextFileNumber.getAndIncrement();
+        MemTable next = new MemTable(number, logFile(number));
+        synchronized (versionLock) {
+          version = version.rotate(next);
+        }
+        compactor.execute(this::flushAndCompact);
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("LSM storage in " + directory + " is closed");
+    }
+  }
+
+  private void flushAndCompact() {
+    try {
+      flush();
+      compact();
+    } catch (IOException | UncheckedIOException e) {
+      // Unflushed memtables keep their logs and are replayed on restart, and compaction is
+      // retried after the next flush.
+    }
+  }
+
+  private void flush() throws IOException {
+    while (true) {
+      Version current = version;
+      if (current.immutables.isEmpty()) {
+        return;
+      }
+      MemTable oldest = current.immutables.get(current.immutables.size() - 1);
+
+      SSTable table = null;
+      if (!oldest.entries.isEmpty()) {
+        long number = nextFileNumber.getAndIncrement();
+        Iterator<Map.Entry<String, byte[]>> entries = oldest.entries.entrySet().iterator();
+        table =
+            SSTable.write(
+                number,
+                tableFile(number),
+                new Iterator<SSTable.Entry>() {
+                  @Override
+                  public boolean hasNext() {
+                    return entries.hasNext();
+                  }
+
+                  @Override
+                  public SSTable.Entry next() {
+                    Map.Entry<String, byte[]> entry = entries.next();
+                    byte[] value = entry.getValue();
+                    return new SSTable.Entry(entry.getKey(), value == TOMBSTONE ? null : value);
+                  }
+                },
+                oldest.entries.size(),
+                Long.MAX_VALUE,
+                falsePositiveRate);
+      }
+
+      synchronized (versionLock) {
+        version = version.flushed(oldest, table);
+        // Retires the log before it is deleted, so a failed delete leaves it ignored, not replayed.
+        writeManifest(version);
+      }
+      oldest.log.close();
+      Files.deleteIfExists(oldest.logFile.toPath());
+    }
+  }
+
+  private void compact() throws IOException {
+    while (true) {
+      Version current = version;
+      if (current.levels.get(0).size() >= level0CompactionTrigger) {
+        compact(current, 0, current.levels.get(0));
+        continue;
+      }
+
+      int level = 1;
+      while (level < LEVEL_COUNT - 1 && size(current.levels.get(level)) <= maxLevelSize(level)) {
+        level++;
+      }
+      if (level == LEVEL_COUNT - 1) {
+        return;
+      }
+      compact(current, level, Collections.singletonList(pick(current.levels.get(level), level)));
+    }
+  }
+
+  private void compact(Version current, int level, List<SSTable> inputs) throws IOException {
+    String first = inputs.get(0).firstKey();
+    String last = inputs.get(0).lastKey();
+    for (SSTable table : inputs) {
+      first = table.firstKey().compareTo(first) < 0 ? table.firstKey() : first;
+      last = table.lastKey().compareTo(last) > 0 ? table.lastKey() : last;
+    }
+
+    // Sources are ordered newest first: level 0 is already newest first, and every input level is
+    // newer than the level below it.
+    List<SSTable> sources = new ArrayList<>(inputs);
+    for (SSTable table : current.levels.get(level + 1)) {
+      if (table.overlaps(first, last)) {
+        sources.add(table);
+      }
+    }
+    boolean bottom = true;
+    for (int deeper = level + 2; deeper < LEVEL_COUNT; deeper++) {
+      bottom &= current.levels.get(deeper).isEmpty();
+    }
+
+    List<SSTable> outputs = merge(sources, bottom);
+    synchronized (versionLock) {
+      version = version.compacted(sources, level + 1, outputs);
+      writeManifest(version);
+    }
+    retire(sources);
+  }
+
+  private List<SSTable> merge(List<SSTable> sources, boolean dropTombstones) throws IOException {
+    List<SSTable.Scanner> scanners = new ArrayList<>(sources.size());
+    List<SSTable> outputs = new ArrayList<>();
+    try {
+      long entryCount = 0;
+      long bytes = 0;
+      for (SSTable source : sources) {
+        scanners.add(source.scan());
+        entryCount += source.entryCount();
+        bytes += source.size();
+      }
+      long expectedPerTable =
+          Math.max(1, Math.min(entryCount, entryCount * tableSize / Math.max(1, bytes) + 1));
+
+      MergingIterator merged = new MergingIterator(scanners, dropTombstones);
+      while (merged.hasNext()) {
+        long number = nextFileNumber.getAndIncrement();
+        outputs.add(
+            SSTable.write(
+                number, tableFile(number), merged, expectedPerTable, tableSize, falsePositiveRate));
+      }
+      return outputs;
+    } catch (IOException | RuntimeException e) {
+      for (SSTable output : outputs) {
+        output.close();
+        Files.deleteIfExists(output.file().toPath());
+      }
+      throw e;
+    } finally {
+      for (SSTable.Scanner scanner : scanners) {
+        scanner.close();
+      }
+    }
+  }
+
+  private SSTable pick(List<SSTable> tables, int level) {
+    // Round-robin through the key space so every table in the level is eventually compacted.
+    for (SSTable table : tables) {
+      if (table.firstKey().compareTo(compactionPointers[level]) > 0) {
+        compactionPointers[level] = table.lastKey();
+        return table;
+      }
+    }
+    compactionPointers[level] = tables.get(0).lastKey();
+    return tables.get(0);
+  }
+
+  private void retire(List<SSTable> tables) throws IOException {
+    tableLock.writeLock().lock();
+    try {
+      for (SSTable table : tables) {
+        table.close();
+      }
+    } finally {
+      tableLock.writeLock().unlock();
+    }
+    for (SSTable table : tables) {
+      Files.deleteIfExists(table.file().toPath());
+    }
+  }
+
+  private Version load() throws IOException {
+    List<List<SSTable>> levels = new ArrayList<>(LEVEL_COUNT);
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      levels.add(new ArrayList<>());
+    }
+
+    Set<Long> live = new HashSet<>();
+    long oldestLog = 0;
+    File manifest = new File(directory, MANIFEST);
+    if (manifest.exists()) {
+      for (String line : Files.readAllLines(manifest.toPath(), UTF_8)) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] parts = line.split(" ");
+        long number = Long.parseLong(parts[1]);
+        if (parts[0].equals(MANIFEST_LOG)) {
+          oldestLog = number;
+          continue;
+        }
+        levels.get(Integer.parseInt(parts[0])).add(SSTable.open(number, tableFile(number)));
+        live.add(number);
+      }
+    }
+    levels.get(0).sort((a, b) -> Long.compare(b.number(), a.number()));
+    for (int level = 1; level < LEVEL_COUNT; level++) {
+      levels.get(level).sort((a, b) -> a.firstKey().compareTo(b.firstKey()));
+    }
+
+    List<MemTable> immutables = new ArrayList<>();
+    File[] files = directory.listFiles();
+    if (files != null) {
+      Arrays.sort(files);
+      for (File file : files) {
+        String name = file.getName();
+        if (name.endsWith(TABLE_SUFFIX) || name.endsWith(LOG_SUFFIX)) {
+          long number = Long.parseLong(name.substring(0, name.indexOf('.')));
+          nextFileNumber.set(Math.max(nextFileNumber.get(), number + 1));
+          if (name.endsWith(LOG_SUFFIX) && number < oldestLog) {
+            // Already flushed; only the delete after the flush failed.
+            Files.delete(file.toPath());
+          } else if (name.endsWith(LOG_SUFFIX)) {
+            immutables.add(0, MemTable.replay(number, file));
+          } else if (!live.contains(number)) {
+            // Output of a flush or compaction that never made it into the manifest.
+            Files.delete(file.toPath());
+          }
+        }
+      }
+    }
+
+    long number = nextFileNumber.getAndIncrement();
+    MemTable memTable = new MemTable(number, logFile(number));
+    return new Version(memTable, immutables, levels);
+  }
+
+  private void writeManifest(Version version) throws IOException {
+    File manifest = new File(directory, MANIFEST);
+    File tmp = new File(directory, MANIFEST + ".tmp");
+    try (FileOutputStream output = new FileOutputStream(tmp)) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(MANIFEST_LOG).append(' ').append(version.oldestLog()).append('\n');
+      for (int level = 0; level < LEVEL_COUNT; level++) {
+        for (SSTable table : version.levels.get(level)) {
+          builder.append(level).append(' ').append(table.number()).append('\n');
+        }
+      }
+      output.write(builder.toString().getBytes(UTF_8));
+      output.getFD().sync();
+    }
+    Files.move(
+        tmp.toPath(),
+        manifest.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private long maxLevelSize(int level) {
+    long size = levelBaseSize;
+    for (int i = 1; i < level; i++) {
+      size *= LEVEL_SIZE_MULTIPLIER;
+    }
+    return size;
+  }
+
+  private File tableFile(long number) {
+    return new File(directory, String.format("%012d%s", number, TABLE_SUFFIX));
+  }
+
+  private File logFile(long number) {
+    return new File(directory, String.format("%012d%s", number, LOG_SUFFIX));
+  }
+
+  private static long size(List<SSTable> tables) {
+    long size = 0;
+    for (SSTable table : tables) {
+      size += table.size();
+    }
+    return size;
+  }
+
+  @Nullable
+  private static SSTable find(List<SSTable> tables, String key) {
+    int low = 0;
+    int high = tables.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      SSTable table = tables.get(middle);
+      if (key.compareTo(table.firstKey()) < 0) {
+        high = middle - 1;
+      } else if (key.compareTo(table.lastKey()) > 0) {
+        low = middle + 1;
+      } else {
+        return table;
+      }
+    }
+    return null;
+  }
+
+  /** An immutable snapshot of the memtables and the tables in each level. */
+  private static final class Version {
+    final MemTable memTable;
+    final List<MemTable> immutables;
+    final List<List<SSTable>> levels;
+
+    Version(MemTable memTable, List<MemTable> immutables, List<List<SSTable>> levels) {
+      this.memTable = memTable;
+      this.immutables = Collections.unmodifiableList(immutables);
+      this.levels = Collections.unmodifiableList(levels);
+    }
+
+    /** The number of the oldest log holding writes not yet flushed to a table. */
+    long oldestLog() {
+      long oldest = memTable.number;
+      for (MemTable immutable : immutables) {
+        oldest = Math.min(oldest, immutable.number);
+      }
+      return oldest;
+    }
+
+    Version rotate(MemTable next) {
+      List<MemTable> immutables = new ArrayList<>(this.immutables.size() + 1);
+      immutables.add(memTable);
+      immutables.addAll(this.immutables);
+      return new Version(next, immutables, levels);
+    }
+
+    Version flushed(MemTable flushed, @Nullable SSTable table) {
+      List<MemTable> immutables = new ArrayList<>(this.immutables);
+      immutables.remove(flushed);
+      List<List<SSTable>> levels = new ArrayList<>(this.levels);
+      if (table != null) {
+        List<SSTable> level0 = new ArrayList<>(levels.get(0).size() + 1);
+        level0.add(table);
+        level0.addAll(levels.get(0));
+        levels.set(0, Collections.unmodifiableList(level0));
+      }
+      return new Version(memTable, immutables, levels);
+    }
+
+    Version compacted(List<SSTable> inputs, int outputLevel, List<SSTable> outputs) {
+      List<List<SSTable>> levels = new ArrayList<>(this.levels.size());
+      for (int level = 0; level < this.levels.size(); level++) {
+        List<SSTable> tables = new ArrayList<>(this.levels.get(level));
+        tables.removeAll(inputs);
+        if (level == outputLevel) {
+          tables.addAll(outputs);
+          tables.sort((a, b) -> a.firstKey().compareTo(b.firstKey()));
+        }
+        levels.add(Collections.unmodifiableList(tables));
+      }
+      return new Version(memTable, immutables, levels);
+    }
+  }
+
+  /** A sorted in-memory table of recent writes and the write-ahead log that backs it. */
+  private static final class MemTable {
+    final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+    final long number;
+    final File logFile;
+    final FileChannel log;
+    volatile long size;
+
+    MemTable(long number, File logFile) throws IOException {
+      this.number = number;
+      this.logFile = logFile;
+      this.log =
+          FileChannel.open(
+              logFile.toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+    }
+
+    static MemTable replay(long number, File logFile) throws IOException {
+      MemTable memTable = new MemTable(number, logFile);
+      try (DataInputStream input =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+        LogRecord record;
+        while ((record = LogRecord.read(input, true)) != null) {
+          if (record.records == null) {
+            memTable.insert(record.key, record.value);
+          } else {
+            for (LogRecord batched : record.records) {
+              memTable.insert(batched.key, batched.value);
+            }
+          }
+        }
+      }
+      return memTable;
+    }
+
+    /** Log and insert a write. Callers serialize writes so the log order matches the table. */
+    void put(String key, @Nullable byte[] value) throws IOException {
+      ByteBuffer record = LogRecord.encode(key, value);
+      while (record.hasRemaining()) {
+        log.write(record);
+      }
+      insert(key, value);
+    }
+
+    /** Log every entry of values as one record, force the log once, then insert them. */
+    void putAll(Map<String, byte[]> values) throws IOException {
+      ByteBuffer record = LogRecord.encodeBatch(values);
+      while (record.hasRemaining()) {
+        log.write(record);
+      }
+      log.force(false);
+      for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+        insert(entry.getKey(), entry.getValue());
+      }
+    }
+
+    private void insert(String key, @Nullable byte[] value) {
+      entries.put(key, value == null ? TOMBSTONE : value);
+      size += 2L * key.length() + (value == null ? 0 : value.length) + 64;
+    }
+  }
+
+  /** Merges sorted scanners, keeping only the entry from the newest source for each key. */
+  private static final class MergingIterator implements Iterator<SSTable.Entry> {
+    private final PriorityQueue<Head> heads;
+    private final boolean dropTombstones;
+    @Nullable private SSTable.Entry next;
+
+    MergingIterator(List<SSTable.Scanner> scanners, boolean dropTombstones) {
+      this.heads =
+          new PriorityQueue<>(
+              Math.max(1, scanners.size()),
+              (a, b) -> {
+                int comparison = a.entry.key.compareTo(b.entry.key);
+                return comparison != 0 ? comparison : Integer.compare(a.rank, b.rank);
+              });
+      this.dropTombstones = dropTombstones;
+      for (int rank = 0; rank < scanners.size(); rank++) {
+        SSTable.Scanner scanner = scanners.get(rank);
+        if (scanner.hasNext()) {
+          heads.add(new Head(scanner.next(), scanner, rank));
+        }
+      }
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public SSTable.Entry next() {
+      SSTable.Entry result = next;
+      if (result == null) {
+        throw new NoSuchElementException();
+      }
+      advance();
+      return result;
+    }
+
+    private void advance() {
+      next = null;
+      while (next == null && !heads.isEmpty()) {
+        Head newest = poll();
+        while (!heads.isEmpty() && heads.peek().entry.key.equals(newest.entry.key)) {
+          poll();
+        }
+        if (newest.entry.value != null || !dropTombstones) {
+          next = newest.entry;
+        }
+      }
+    }
+
+    private Head poll() {
+      Head head = heads.remove();
+      if (head.scanner.hasNext()) {
+        heads.add(new Head(head.scanner.next(), head.scanner, head.rank));
+      }
+      return head;
+    }
+
+    private static final class Head {
+      final SSTable.Entry entry;
+      final SSTable.Scanner scanner;
+      final int rank;
+
+      Head(SSTable.Entry entry, SSTable.Scanner scanner, int rank) {
+        this.entry = entry;
+        this.scanner = scanner;
+        this.rank = rank;
+      }
+    }
+  }
+}
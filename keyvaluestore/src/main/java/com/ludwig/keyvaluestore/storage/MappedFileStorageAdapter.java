@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link FileStorageAdapter} that reads and writes values through memory-mapped regions of their
+ * files rather than through stream copies, so converters decode straight out of the page cache.
+ *
+ * <p>Reads of files of at least {@value #MIN_MAPPED_READ_SIZE} bytes map the whole file read-only
+ * and unmap it when the stream is closed; smaller files, the usual JSON value, are read with one
+ * plain read, since a mapping costs more to set up than it saves. Writes map a region and, once it
+ * fills up, map the next region of the file at twice the size, up to {@value #MAX_REGION_SIZE}
+ * bytes. Unless the {@link Durability} is {@link Durability.Mode#NONE} each region is forced before
+ * it is replaced. On close the last region is unmapped before the file is trimmed to the bytes
+ * actually written. Files too large to map in one piece fall back to plain streams. Storage units
+ * are the same {@code FileStorageUnit}s, so writes still go through a temp file and rename under
+ * the same read/write locking.
+ */
+public class MappedFileStorageAdapter extends FileStorageAdapter {
+  private static final int INITIAL_REGION_SIZE = 64 * 1024;
+  private static final int MAX_REGION_SIZE = 64 * 1024 * 1024;
+  private static final int MIN_MAPPED_READ_SIZE = 256 * 1024;
+
+  public MappedFileStorageAdapter(String basePath) {
+    super(basePath);
+  }
+
+  public MappedFileStorageAdapter(String basePath, Durability durability) {
+    super(basePath, durability);
+  }
+
+  @Override
+  public Reader reader(String key) throws IOException {
+    return new InputStreamReader(input(key), Charset.defaultCharset());
+  }
+
+  @Override
+  public InputStream input(String key) throws IOException {
+    try (FileChannel channel = FileChannel.open(file(key).toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return super.input(key);
+      }
+      if (size < MIN_MAPPED_READ_SIZE) {
+        ByteBuffer value = ByteBuffer.allocate((int) size);
+        while (value.hasRemaining()) {
+          if (channel.read(value) < 0) {
+            break;
+          }
+        }
+        return new ByteArrayInputStream(value.array(), 0, value.position());
+      }
+      return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  @Override
+  public Writer writer(String key) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(output(key), Charset.defaultCharset()));
+  }
+
+  @Override
+  public OutputStream output(String key) throws IOException {
+    release(key);
+    return new MappedOutputStream(
+        durability().mode() != Durability.Mode.NONE,
+        FileChannel.open(
+            file(key).toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING));
+  }
+
+  private static final class MappedInputStream extends InputStream {
+    private final MappedByteBuffer buffer;
+    private boolean closed = false;
+
+    MappedInputStream(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+      ensureOpen();
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(len, buffer.remaining());
+      buffer.get(b, off, read);
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      ensureOpen();
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      ensureOpen();
+      return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        Unmapper.unmap(buffer);
+      }
+    }
+
+    private void ensureOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Stream Closed");
+      }
+    }
+  }
+
+  private static final class MappedOutputStream extends OutputStream {
+    private final boolean sync;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart = 0;
+    private boolean closed = false;
+
+    MappedOutputStream(boolean sync, FileChannel channel) throws IOException {
+      this.sync = sync;
+      this.channel = channel;
+      this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_REGION_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureOpen();
+      if (!region.hasRemaining()) {
+        grow();
+      }
+      region.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      while (len > 0) {
+        if (!region.hasRemaining()) {
+          grow();
+        }
+        int written = Math.min(len, region.remaining());
+        region.put(b, off, written);
+        off += written;
+        len -= written;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        long length = regionStart + region.position();
+        release(region);
+        channel.truncate(length);
+        if (sync) {
+          // The data went through the mappings; this makes the trimmed length durable.
+          channel.force(false);
+        }
+      } finally {
+        channel.close();
+      }
+    }
+
+    private void grow() throws IOException {
+      MappedByteBuffer full = region;
+      release(full);
+      regionStart += full.capacity();
+      int size = (int) Math.min(MAX_REGION_SIZE, 2L * full.capacity());
+      region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, size);
+    }
+
+    /** Force a region, if writes are synced, and unmap it; it must not be written again. */
+    private void release(MappedByteBuffer region) {
+      if (sync) {
+        region.force();
+      }
+      Unmapper.unmap(region);
+    }
+
+    private void ensureOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Stream Closed");
+      }
+    }
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.ConverterException;
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * A storage unit whose streams report the time spent in them and the bytes, or characters, they
+ * moved to {@link Metrics}, once per stream when it is closed. A {@link #converterWrite} also
+ * reports the time the unit spends after the converter is done as {@link Operation#STORAGE_COMMIT}.
+ * Used by {@link IndexedStorageUnit} while the storage has metrics attached.
+ */
+final class MeteredStorageUnit implements StorageUnit {
+  private final StorageUnit storageUnit;
+  private final String key;
+  private final Metrics metrics;
+
+  MeteredStorageUnit(StorageUnit storageUnit, String key, Metrics metrics) {
+    this.storageUnit = storageUnit;
+    this.key = key;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Reader reader() throws Exception {
+    return new MeteredReader(storageUnit.reader(), key, metrics);
+  }
+
+  @Override
+  public Writer writer() throws Exception {
+    return new MeteredWriter(storageUnit.writer(), key, metrics);
+  }
+
+  @Override
+  public OutputStream output() throws Exception {
+    return new MeteredOutputStream(storageUnit.output(), key, metrics);
+  }
+
+  @Override
+  public InputStream input() throws Exception {
+    return new MeteredInputStream(storageUnit.input(), key, metrics);
+  }
+
+  @Override
+  public OutputStream appendOutput() throws Exception {
+    return new MeteredOutputStream(storageUnit.appendOutput(), key, metrics);
+  }
+
+  @Override
+  public Single<Boolean> exists() {
+    return storageUnit.exists();
+  }
+
+  @Override
+  public Maybe<StorageUnit> readable() {
+    return storageUnit
+        .readable()
+        .map(unit -> unit == storageUnit ? this : new MeteredStorageUnit(unit, key, metrics));
+  }
+
+  @Override
+  public Single<Boolean> createNew() throws Exception {
+    return storageUnit.createNew();
+  }
+
+  @Override
+  public Single<Boolean> delete() throws Exception {
+    return storageUnit.delete();
+  }
+
+  @Override
+  public <T> Single<T> converterWrite(T value, Converter converter, Type type) throws Exception {
+    long[] converting = new long[1];
+    Converter metered =
+        new Converter() {
+          @Override
+          public <V> void write(@Nullable V data, Type type, StorageUnit storageUnit)
+              throws ConverterException {
+            long start = System.nanoTime();
+            try {
+              converter.write(data, type, new MeteredStorageUnit(storageUnit, key, metrics));
+            } finally {
+              converting[0] += System.nanoTime() - start;
+            }
+          }
+
+          @Nullable
+          @Override
+          public <V> V read(StorageUnit storageUnit, Type type) throws ConverterException {
+            return converter.read(new MeteredStorageUnit(storageUnit, key, metrics), type);
+          }
+        };
+    Single<T> write = storageUnit.converterWrite(value, metered, type);
+    return Single.defer(
+        () -> {
+          Metrics timer = metrics.start(Operation.STORAGE_COMMIT);
+          long start = System.nanoTime();
+          converting[0] = 0;
+          return write.doOnSuccess(
+              written ->
+                  timer.record(
+                      Operation.STORAGE_COMMIT,
+                      key,
+                      type,
+                      System.nanoTime() - start - converting[0],
+                      0));
+        });
+  }
+
+  @Override
+  public void expireAt(long deadline) {
+    storageUnit.expireAt(deadline);
+  }
+
+  @Override
+  public void startRead() {
+    storageUnit.startRead();
+  }
+
+  @Override
+  public void endRead() {
+    storageUnit.endRead();
+  }
+
+  @Override
+  public void startWrite() {
+    storageUnit.startWrite();
+  }
+
+  @Override
+  public void endWrite() {
+    storageUnit.endWrite();
+  }
+
+  @Override
+  public long tryOptimisticRead() {
+    return storageUnit.tryOptimisticRead();
+  }
+
+  @Override
+  public boolean validate(long stamp) {
+    return storageUnit.validate(stamp);
+  }
+
+  private static final class MeteredInputStream extends FilterInputStream {
+    private final String key;
+    private final Metrics timer;
+    private long nanos;
+    private long bytes;
+    private boolean closed;
+
+    MeteredInputStream(InputStream in, String key, Metrics metrics) {
+      super(in);
+      this.key = key;
+      this.timer = metrics.start(Operation.STORAGE_READ);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int read = super.read();
+      nanos += System.nanoTime() - start;
+      if (read >= 0) {
+        bytes++;
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      int read = super.read(b, off, len);
+      nanos += System.nanoTime() - start;
+      if (read > 0) {
+        bytes += read;
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long start = System.nanoTime();
+      try {
+        super.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          timer.record(
+              Operation.STORAGE_READ, key, null, nanos + System.nanoTime() - start, bytes);
+        }
+      }
+    }
+  }
+
+  private static final class MeteredOutputStream extends FilterOutputStream {
+    private final String key;
+    private final Metrics timer;
+    private long nanos;
+    private long bytes;
+    private boolean closed;
+
+    MeteredOutputStream(OutputStream out, String key, Metrics metrics) {
+      super(out);
+      this.key = key;
+      this.timer = metrics.start(Operation.STORAGE_WRITE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      long start = System.nanoTime();
+      out.write(b);
+      nanos += System.nanoTime() - start;
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      out.write(b, off, len);
+      nanos += System.nanoTime() - start;
+      bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      long start = System.nanoTime();
+      out.flush();
+      nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long start = System.nanoTime();
+      try {
+        out.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          timer.record(
+              Operation.STORAGE_WRITE, key, null, nanos + System.nanoTime() - start, bytes);
+        }
+      }
+    }
+  }
+
+  private static final class MeteredReader extends FilterReader {
+    private final String key;
+    private final Metrics timer;
+    private long nanos;
+    private long chars;
+    private boolean closed;
+
+    MeteredReader(Reader in, String key, Metrics metrics) {
+      super(in);
+      this.key = key;
+      this.timer = metrics.start(Operation.STORAGE_READ);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int read = super.read();
+      nanos += System.nanoTime() - start;
+      if (read >= 0) {
+        chars++;
+      }
+      return read;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      int read = super.read(cbuf, off, len);
+      nanos += System.nanoTime() - start;
+      if (read > 0) {
+        chars += read;
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long start = System.nanoTime();
+      try {
+        super.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          timer.record(
+              Operation.STORAGE_READ, key, null, nanos + System.nanoTime() - start, chars);
+        }
+      }
+    }
+  }
+
+  private static final class MeteredWriter extends FilterWriter {
+    private final String key;
+    private final Metrics timer;
+    private long nanos;
+    private long chars;
+    private boolean closed;
+
+    MeteredWriter(Writer out, String key, Metrics metrics) {
+      super(out);
+      this.key = key;
+      this.timer = metrics.start(Operation.STORAGE_WRITE);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      long start = System.nanoTime();
+      super.write(c);
+      nanos += System.nanoTime() - start;
+      chars++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      super.write(cbuf, off, len);
+      nanos += System.nanoTime() - start;
+      chars += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      super.write(str, off, len);
+      nanos += System.nanoTime() - start;
+      chars += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      long start = System.nanoTime();
+      super.flush();
+      nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long start = System.nanoTime();
+      try {
+        super.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          timer.record(
+              Operation.STORAGE_WRITE, key, null, nanos + System.nanoTime() - start, chars);
+        }
+      }
+    }
+  }
+}
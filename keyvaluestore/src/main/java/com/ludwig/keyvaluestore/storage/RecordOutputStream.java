@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/** Buffers a value in memory and hands it to {@link #commit} exactly once when closed. */
+abstract class RecordOutputStream extends ByteArrayOutputStream {
+  private boolean closed = false;
+
+  protected abstract void commit(byte[] value) throws IOException;
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    commit(toByteArray());
+  }
+}
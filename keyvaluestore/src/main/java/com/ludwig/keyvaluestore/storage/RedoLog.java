@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import io.reactivex.annotations.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An append-only log of batches that a {@link FileStorageAdapter} makes a batch durable in before
+ * applying it to the key files. Each batch is length-prefixed and checksummed, and costs one {@code
+ * fsync} of the log when synced. The key files are only synced at a checkpoint, once the log passes
+ * its checkpoint size or is closed, after which the log is truncated; until then every complete
+ * batch in it is reapplied when it is opened again.
+ *
+ * <p>Replay would put an older logged value back over anything written to the same key around the
+ * log, so a key the log still covers is {@linkplain #release released} first, which checkpoints.
+ */
+final class RedoLog implements Closeable {
+  private final FileStorageAdapter adapter;
+  private final File file;
+  @Nullable private FileChannel channel;
+  private final boolean synced;
+  private final long checkpointSize;
+  /** Keys the log covers. Only added to and cleared under the monitor, but read without it. */
+  private final Set<String> unsynced = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Reapply whatever the log in {@code file} holds; the file is only created by the first commit.
+   * Unless {@code synced} the log and the key files are never forced, so a batch is atomic only
+   * across the process dying.
+   */
+  RedoLog(FileStorageAdapter adapter, File file, boolean synced, long checkpointSize)
+      throws IOException {
+    this.adapter = adapter;
+    this.file = file;
+    this.synced = synced;
+    this.checkpointSize = checkpointSize;
+    if (file.exists()) {
+      recover(open());
+    }
+  }
+
+  /** Append {@code values} as one batch, make it durable and apply it to the key files. */
+  synchronized void commit(Map<String, byte[]> values) throws IOException {
+    FileChannel channel = this.channel;
+    if (channel == null) {
+      channel = open();
+      if (synced) {
+        adapter.syncDirectory();
+      }
+    }
+    byte[] batch = FileStorageAdapter.encodeBatch(values);
+    ByteBuffer buffer = ByteBuffer.allocate(4 + batch.length);
+    buffer.putInt(batch.length).put(batch).flip();
+    long start = channel.size();
+    try {
+      long position = start;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      if (synced) {
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      // Drop the partial batch so later batches are not appended behind a torn one.
+      channel.truncate(start);
+      throw e;
+    }
+    adapter.apply(values);
+    unsynced.addAll(values.keySet());
+    if (channel.size() >= checkpointSize) {
+      checkpoint(channel);
+    }
+  }
+
+  /**
+   * Checkpoint if the log still covers {@code key}, so that it can be written around the log. Keys
+   * the log does not cover return without waiting for a batch being committed.
+   */
+  void release(String key) throws IOException {
+    if (!unsynced.contains(key)) {
+      return;
+    }
+    synchronized (this) {
+      FileChannel channel = this.channel;
+      if (channel != null && unsynced.contains(key)) {
+        checkpoint(channel);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    FileChannel channel = this.channel;
+    if (channel == null || !channel.isOpen()) {
+      return;
+    }
+    try {
+      checkpoint(channel);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /** Sync every file written since the last checkpoint, then drop the log that covered them. */
+  private void checkpoint(FileChannel channel) throws IOException {
+    if (synced) {
+      adapter.sync(unsynced);
+    }
+    unsynced.clear();
+    channel.truncate(0);
+    if (synced) {
+      channel.force(false);
+    }
+  }
+
+  /** Reapply every complete batch in the log; a torn batch at the tail was never acknowledged. */
+  private void recover(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer length = ByteBuffer.allocate(4);
+    while (position + 4 <= size) {
+      length.clear();
+      readFully(channel, length, position);
+      int batchLength = length.getInt(0);
+      if (batchLength < 0 || position + 4 + batchLength > size) {
+        break;
+      }
+      ByteBuffer batch = ByteBuffer.allocate(batchLength);
+      readFully(channel, batch, position + 4);
+      Map<String, byte[]> values = FileStorageAdapter.decodeBatch(batch.array());
+      if (values == null) {
+        break;
+      }
+      adapter.apply(values);
+      unsynced.addAll(values.keySet());
+      position += 4 + batchLength;
+    }
+    checkpoint(channel);
+  }
+
+  private FileChannel open() throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.channel = channel;
+    return channel;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException();
+      }
+      position += read;
+    }
+  }
+}
@@ -15,12 +15,33 @@
  */
 package com.ludwig.keyvaluestore.storage;
 
+import com.ludwig.keyvaluestore.Batch;
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.metrics.Metrics;
 import com.ludwig.keyvaluestore.storage.storable.ListStorable;
 import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import io.reactivex.Flowable;
 
 public interface Storage {
 
   ValueStorable value(String key);
 
   ListStorable list(String key);
+
+  /** Start a batch of writes across keys, encoded with {@code converter}. */
+  default Batch batch(Converter converter) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support batches.");
+  }
+
+  /** The keys holding a value or list that start with {@code prefix}, in ascending order. */
+  default Flowable<String> keys(String prefix) {
+    return Flowable.error(
+        new UnsupportedOperationException(getClass().getName() + " cannot list keys."));
+  }
+
+  /**
+   * Report the lock waits and stream I/O of operations that start from now on to {@code metrics},
+   * or stop reporting them if it is {@link Metrics#NONE}. The default reports nothing.
+   */
+  default void attach(Metrics metrics) {}
 }
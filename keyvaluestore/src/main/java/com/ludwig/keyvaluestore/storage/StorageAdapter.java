@@ -1,8 +1,11 @@
 package com.ludwig.keyvaluestore.storage;
 
+import com.ludwig.keyvaluestore.storage.unit.LockManager;
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
 import io.reactivex.Single;
 import java.io.*;
+import java.util.Collection;
+import java.util.Map;
 
 public interface StorageAdapter {
 
@@ -20,5 +23,75 @@ public interface StorageAdapter {
 
   OutputStream output(String key) throws IOException;
 
+  /**
+   * Open a stream whose bytes are appended to the value stored under {@code key} when it is closed,
+   * creating the value if needed. The default reads the current value back and rewrites it with the
+   * new bytes on the end; adapters that can append in place should override it and {@link
+   * #appendsInPlace}.
+   */
+  default OutputStream appendOutput(String key) throws IOException {
+    return new RecordOutputStream() {
+      @Override
+      protected void commit(byte[] value) throws IOException {
+        ByteArrayOutputStream combined = new ByteArrayOutputStream();
+        if (exists(key).blockingGet()) {
+          try (InputStream existing = input(key)) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = existing.read(buffer)) != -1; ) {
+              combined.write(buffer, 0, read);
+            }
+          }
+        }
+        combined.write(value);
+        try (OutputStream output = output(key)) {
+          combined.writeTo(output);
+        }
+      }
+    };
+  }
+
+  /**
+   * Whether {@link #appendOutput} costs only the bytes appended rather than a rewrite of the whole
+   * value. Journaled lists need such an adapter.
+   */
+  default boolean appendsInPlace() {
+    return false;
+  }
+
+  /**
+   * Store every value in {@code values}, deleting the keys mapped to null, as one write. Adapters
+   * that can make the whole write atomic and durable with a single barrier override this; the
+   * default writes the keys one after another with no atomicity across them.
+   */
+  default void write(Map<String, byte[]> values) throws IOException {
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      byte[] value = entry.getValue();
+      if (value == null) {
+        if (exists(entry.getKey()).blockingGet() && !delete(entry.getKey()).blockingGet()) {
+          throw new IOException("Could not delete " + entry.getKey());
+        }
+      } else {
+        try (OutputStream output = output(entry.getKey())) {
+          output.write(value);
+        }
+      }
+    }
+  }
+
   StorageUnit storageUnit(String key);
+
+  /**
+   * Every key holding a value, in any order. Storages read this once, when they are created, to
+   * build their key index, so it may be slow. Adapters that cannot enumerate their keys throw
+   * {@link UnsupportedOperationException}.
+   */
+  default Collection<String> keys() throws IOException {
+    throw new UnsupportedOperationException(getClass().getName() + " cannot list keys.");
+  }
+
+  /**
+   * The lock manager guarding this adapter's locking storage units. Each adapter has its own, so
+   * that keys of different adapters never contend on a shared lock.
+   */
+  LockManager lockManager();
 }
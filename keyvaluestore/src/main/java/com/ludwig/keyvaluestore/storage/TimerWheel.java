@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel of keys: a ring of buckets, one per tick, so scheduling a key is one queue
+ * offer and each tick drains one bucket instead of scanning every deadline. Deadlines more than one
+ * turn away share a bucket with nearer ones and are put back until their turn comes. A key
+ * scheduled into a bucket as it is being drained may wait one more turn, so the owner re-checks
+ * each key it is handed and schedules it again if it is not yet due.
+ *
+ * <p>A key is queued at most once per tick it is brought forward to: scheduling a key already
+ * queued for the same or an earlier tick does nothing, since the owner reschedules it when that
+ * tick hands it over, and the entries a key leaves behind when brought forward are dropped as they
+ * drain.
+ */
+final class TimerWheel {
+  private final long tickMillis;
+  private final List<Queue<String>> buckets;
+  /** The tick each queued key is handed over at. */
+  private final Map<String, Long> scheduled = new ConcurrentHashMap<>();
+
+  private final int mask;
+  /** The last tick whose bucket was drained. */
+  private volatile long tick;
+
+  TimerWheel(long tickMillis, int size, long now) {
+    if (tickMillis <= 0 || size <= 0 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException(
+          "Tick must be positive and size a power of two: " + tickMillis + ", " + size);
+    }
+    this.tickMillis = tickMillis;
+    this.buckets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.add(new ConcurrentLinkedQueue<>());
+    }
+    this.mask = size - 1;
+    this.tick = now / tickMillis;
+  }
+
+  /** Hand {@code key} to the drain of the first tick at or after {@code deadline}. */
+  void schedule(String key, long deadline) {
+    long due = Math.max(deadline / tickMillis + (deadline % tickMillis == 0 ? 0 : 1), tick + 1);
+    while (true) {
+      Long queued = scheduled.putIfAbsent(key, due);
+      if (queued == null) {
+        break;
+      }
+      if (queued <= due) {
+        return;
+      }
+      if (scheduled.replace(key, queued, due)) {
+        break;
+      }
+    }
+    buckets.get((int) (due & mask)).offer(key);
+  }
+
+  /**
+   * Drain the buckets of every tick up to {@code now} into {@code due}. Only the owning reaper
+   * advances the wheel.
+   */
+  void advance(long now, Consumer<String> due) {
+    long target = now / tickMillis;
+    long current = Math.max(tick, target - buckets.size());
+    while (current < target) {
+      current++;
+      tick = current;
+      int index = (int) (current & mask);
+      Queue<String> bucket = buckets.get(index);
+      List<String> later = new ArrayList<>();
+      for (String key = bucket.poll(); key != null; key = bucket.poll()) {
+        // A key queued for an earlier tick missed that drain by racing it, one queued for a later
+        // tick in this bucket waits for its turn, and any other entry was left behind when the key
+        // was brought forward.
+        Long queued = scheduled.get(key);
+        if (queued == null) {
+          continue;
+        }
+        if (queued <= current) {
+          if (scheduled.remove(key, queued)) {
+            due.accept(key);
+          }
+        } else if ((queued & mask) == index) {
+          later.add(key);
+        }
+      }
+      bucket.addAll(later);
+    }
+  }
+
+  /** The number of keys waiting in the wheel. */
+  int size() {
+    return scheduled.size();
+  }
+}
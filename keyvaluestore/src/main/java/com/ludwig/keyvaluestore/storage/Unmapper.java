@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases the mapping behind a {@link MappedByteBuffer} at once rather than whenever the buffer is
+ * garbage collected, so a file is never resized under a live mapping and read-heavy loads do not
+ * pile up mappings until the process runs out of them. The JDK has no public way to do this, so it
+ * uses {@code Unsafe.invokeCleaner} on Java 9 and later and the buffer's cleaner on Java 8, and
+ * does nothing where neither is available. The buffer must never be touched again.
+ */
+final class Unmapper {
+  private interface Unmap {
+    void unmap(ByteBuffer buffer) throws Exception;
+  }
+
+  @Nullable private static final Unmap UNMAP = find();
+
+  private Unmapper() {}
+
+  static void unmap(MappedByteBuffer buffer) {
+    Unmap unmap = UNMAP;
+    if (unmap == null) {
+      return;
+    }
+    try {
+      unmap.unmap(buffer);
+    } catch (Exception e) {
+      // Left to the garbage collector, as without an unmapper.
+    }
+  }
+
+  @Nullable
+  private static Unmap find() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      return buffer -> invokeCleaner.invoke(unsafe, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Not Java 9 or later.
+    }
+    try {
+      Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return buffer -> {
+        Object bufferCleaner = cleaner.invoke(buffer);
+        if (bufferCleaner != null) {
+          clean.invoke(bufferCleaner);
+        }
+      };
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
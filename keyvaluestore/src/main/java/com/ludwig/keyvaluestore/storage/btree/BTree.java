@@ -0,0 +1,524 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.btree;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.reactivex.annotations.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A B+tree of string keys to byte array values stored in the pages of a {@link BufferPool}. Leaves
+ * are chained left to right so keys can be walked in order.
+ *
+ * <p>Page 0 holds the header, every other page is either a tree node or part of a contiguous extent
+ * holding a value too large to live inline in its leaf. Free pages are not persisted; they are
+ * rediscovered by walking the tree when it is opened. Deletes never merge nodes, so a tree that
+ * shrinks keeps its shape until the keys are rewritten.
+ *
+ * <p>This class is not thread safe. Every mutation ends in a {@link BufferPool#commit()}, so the
+ * file always holds the result of whole operations.
+ */
+public final class BTree {
+  private static final int MAGIC = 0x42545231;
+  private static final byte LEAF = 1;
+  private static final byte INTERNAL = 2;
+  private static final int NODE_HEADER_SIZE = 7;
+  private static final int HEADER_PAGE = 0;
+
+  private final BufferPool pool;
+  private final int pageSize;
+  private final int maxInlineSize;
+  private final TreeMap<Integer, Integer> freeExtents = new TreeMap<>();
+  private final List<int[]> pendingFree = new ArrayList<>();
+  private int root;
+  private int pageCount;
+
+  private BTree(BufferPool pool) {
+    this.pool = pool;
+    this.pageSize = pool.pageSize();
+    this.maxInlineSize = pageSize / 8;
+  }
+
+  public static BTree open(BufferPool pool) throws IOException {
+    BTree tree = new BTree(pool);
+    if (pool.filePageCount() == 0) {
+      tree.root = 1;
+      tree.pageCount = 2;
+      tree.writeNode(tree.root, Node.leaf());
+      tree.writeHeader();
+      pool.commit();
+    } else {
+      tree.readHeader();
+      tree.findFreeExtents();
+    }
+    return tree;
+  }
+
+  /** The longest key, in UTF-8 bytes, that can be stored. */
+  public int maxKeySize() {
+    return maxInlineSize;
+  }
+
+  @Nullable
+  public byte[] get(String key) throws IOException {
+    Node leaf = readNode(findLeaf(key, null, null));
+    int index = Collections.binarySearch(leaf.keys, key);
+    if (index < 0) {
+      return null;
+    }
+    Value value = leaf.values.get(index);
+    return value.inline != null ? value.inline : pool.readExtent(value.firstPage, value.length);
+  }
+
+  public boolean contains(String key) throws IOException {
+    return Collections.binarySearch(readNode(findLeaf(key, null, null)).keys, key) >= 0;
+  }
+
+  public void put(String key, byte[] value) throws IOException {
+    write(Collections.singletonMap(key, value));
+  }
+
+  public boolean delete(String key) throws IOException {
+    if (!contains(key)) {
+      return false;
+    }
+    write(Collections.singletonMap(key, null));
+    return true;
+  }
+
+  /**
+   * Store every value in {@code values}, deleting the keys mapped to null, as a single commit. The
+   * dirty pages of the whole write must fit in the buffer pool.
+   */
+  public void write(Map<String, byte[]> values) throws IOException {
+    for (String key : values.keySet()) {
+      if (key.getBytes(UTF_8).length > maxInlineSize) {
+        throw new IOException("Key is longer than " + maxInlineSize + " bytes: " + key);
+      }
+    }
+    TreeMap<Integer, Integer> freeBefore = new TreeMap<>(freeExtents);
+    int rootBefore = root;
+    int pageCountBefore = pageCount;
+    try {
+      for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+        byte[] value = entry.getValue();
+        if (value == null) {
+          remove(entry.getKey());
+        } else {
+          insert(entry.getKey(), value);
+        }
+      }
+      if (root != rootBefore || pageCount != pageCountBefore) {
+        writeHeader();
+      }
+      commit();
+    } catch (IOException | RuntimeException e) {
+      rollback(freeBefore);
+      throw e;
+    }
+  }
+
+  private void insert(String key, byte[] value) throws IOException {
+    Value stored = store(value);
+    List<Integer> pathPages = new ArrayList<>();
+    List<Integer> pathIndexes = new ArrayList<>();
+    int leafPage = findLeaf(key, pathPages, pathIndexes);
+    Node leaf = readNode(leafPage);
+
+    int index = Collections.binarySearch(leaf.keys, key);
+    if (index >= 0) {
+      release(leaf.values.get(index));
+      leaf.values.set(index, stored);
+    } else {
+      index = -index - 1;
+      leaf.keys.add(index, key);
+      leaf.values.add(index, stored);
+    }
+
+    Split split = leaf.size() > pageSize ? splitLeaf(leaf) : null;
+    writeNode(leafPage, leaf);
+    for (int level = pathPages.size() - 1; split != null && level >= 0; level--) {
+      int parentPage = pathPages.get(level);
+      Node parent = readNode(parentPage);
+      int childIndex = pathIndexes.get(level);
+      parent.keys.add(childIndex, split.key);
+      parent.children.add(childIndex + 1, split.rightPage);
+      split = parent.size() > pageSize ? splitInternal(parent) : null;
+      writeNode(parentPage, parent);
+    }
+    if (split != null) {
+      Node newRoot = Node.internal();
+      newRoot.keys.add(split.key);
+      newRoot.children.add(root);
+      newRoot.children.add(split.rightPage);
+      root = allocate(1);
+      writeNode(root, newRoot);
+    }
+  }
+
+  private void remove(String key) throws IOException {
+    int leafPage = findLeaf(key, null, null);
+    Node leaf = readNode(leafPage);
+    int index = Collections.binarySearch(leaf.keys, key);
+    if (index >= 0) {
+      release(leaf.values.remove(index));
+      leaf.keys.remove(index);
+      writeNode(leafPage, leaf);
+    }
+  }
+
+  /** Every key in the tree, in order, starting at the first key not less than {@code from}. */
+  public List<String> keys(String from) throws IOException {
+    List<String> keys = new ArrayList<>();
+    int page = findLeaf(from, null, null);
+    while (page != 0) {
+      Node leaf = readNode(page);
+      for (String key : leaf.keys) {
+        if (key.compareTo(from) >= 0) {
+          keys.add(key);
+        }
+      }
+      page = leaf.next;
+    }
+    return keys;
+  }
+
+  private int findLeaf(
+      String key, @Nullable List<Integer> pathPages, @Nullable List<Integer> pathIndexes)
+      throws IOException {
+    int page = root;
+    Node node = readNode(page);
+    while (!node.leaf) {
+      int index = Collections.binarySearch(node.keys, key);
+      index = index >= 0 ? index + 1 : -index - 1;
+      if (pathPages != null && pathIndexes != null) {
+        pathPages.add(page);
+        pathIndexes.add(index);
+      }
+      page = node.children.get(index);
+      node = readNode(page);
+    }
+    return page;
+  }
+
+  private Split splitLeaf(Node leaf) throws IOException {
+    int half = leaf.size() / 2;
+    int at = 1;
+    int size = NODE_HEADER_SIZE;
+    for (; at < leaf.keys.size() - 1; at++) {
+      size += Node.leafEntrySize(leaf.keys.get(at - 1), leaf.values.get(at - 1));
+      if (size >= half) {
+        break;
+      }
+    }
+
+    Node right = Node.leaf();
+    right.keys.addAll(leaf.keys.subList(at, leaf.keys.size()));
+    right.values.addAll(leaf.values.subList(at, leaf.values.size()));
+    leaf.keys.subList(at, leaf.keys.size()).clear();
+    leaf.values.subList(at, leaf.values.size()).clear();
+
+    int rightPage = allocate(1);
+    right.next = leaf.next;
+    leaf.next = rightPage;
+    writeNode(rightPage, right);
+    return new Split(right.keys.get(0), rightPage);
+  }
+
+  private Split splitInternal(Node node) throws IOException {
+    int middle = node.keys.size() / 2;
+    String promoted = node.keys.get(middle);
+
+    Node right = Node.internal();
+    right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+    right.children.addAll(node.children.subList(middle + 1, node.children.size()));
+    node.keys.subList(middle, node.keys.size()).clear();
+    node.children.subList(middle + 1, node.children.size()).clear();
+
+    int rightPage = allocate(1);
+    writeNode(rightPage, right);
+    return new Split(promoted, rightPage);
+  }
+
+  private Value store(byte[] value) throws IOException {
+    if (value.length <= maxInlineSize) {
+      return new Value(value, 0, value.length);
+    }
+    int firstPage = allocate(pages(value.length));
+    pool.writeExtent(firstPage, value);
+    return new Value(null, firstPage, value.length);
+  }
+
+  private void release(Value value) {
+    if (value.inline == null) {
+      // The extent is still referenced by the committed tree until this operation commits.
+      pendingFree.add(new int[] {value.firstPage, pages(value.length)});
+    }
+  }
+
+  private int allocate(int pages) {
+    for (Map.Entry<Integer, Integer> extent : freeExtents.entrySet()) {
+      int first = extent.getKey();
+      int length = extent.getValue();
+      if (length >= pages) {
+        freeExtents.remove(first);
+        if (length > pages) {
+          freeExtents.put(first + pages, length - pages);
+        }
+        return first;
+      }
+    }
+    int first = pageCount;
+    pageCount += pages;
+    return first;
+  }
+
+  private void free(int first, int pages) {
+    Map.Entry<Integer, Integer> before = freeExtents.floorEntry(first - 1);
+    if (before != null && before.getKey() + before.getValue() == first) {
+      first = before.getKey();
+      pages += before.getValue();
+      freeExtents.remove(first);
+    }
+    Integer after = freeExtents.remove(first + pages);
+    if (after != null) {
+      pages += after;
+    }
+    freeExtents.put(first, pages);
+  }
+
+  private void commit() throws IOException {
+    pool.commit();
+    for (int[] extent : pendingFree) {
+      free(extent[0], extent[1]);
+    }
+    pendingFree.clear();
+  }
+
+  private void rollback(TreeMap<Integer, Integer> freeBefore) throws IOException {
+    pool.rollback();
+    pendingFree.clear();
+    freeExtents.clear();
+    freeExtents.putAll(freeBefore);
+    readHeader();
+  }
+
+  private int pages(int length) {
+    return (length + pageSize - 1) / pageSize;
+  }
+
+  private void findFreeExtents() throws IOException {
+    BitSet used = new BitSet(pageCount);
+    used.set(HEADER_PAGE);
+    List<Integer> pending = new ArrayList<>();
+    pending.add(root);
+    while (!pending.isEmpty()) {
+      int page = pending.remove(pending.size() - 1);
+      used.set(page);
+      Node node = readNode(page);
+      if (node.leaf) {
+        for (Value value : node.values) {
+          if (value.inline == null) {
+            used.set(value.firstPage, value.firstPage + pages(value.length));
+          }
+        }
+      } else {
+        pending.addAll(node.children);
+      }
+    }
+
+    int first = used.nextClearBit(0);
+    while (first < pageCount) {
+      int end =
+          Math.min(pageCount, used.nextSetBit(first) < 0 ? pageCount : used.nextSetBit(first));
+      free(first, end - first);
+      first = used.nextClearBit(end);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    BufferPool.Frame frame = pool.pin(HEADER_PAGE);
+    try {
+      ByteBuffer page = frame.page();
+      if (page.getInt(0) != MAGIC || page.getInt(4) != pageSize) {
+        throw new IOException("Not a B+tree file with " + pageSize + " byte pages.");
+      }
+      root = page.getInt(8);
+      pageCount = page.getInt(12);
+    } finally {
+      pool.unpin(frame);
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    BufferPool.Frame frame = pool.pin(HEADER_PAGE);
+    try {
+      ByteBuffer page = frame.page();
+      page.putInt(0, MAGIC).putInt(4, pageSize).putInt(8, root).putInt(12, pageCount);
+      pool.markDirty(frame);
+    } finally {
+      pool.unpin(frame);
+    }
+  }
+
+  private Node readNode(int pageId) throws IOException {
+    BufferPool.Frame frame = pool.pin(pageId);
+    try {
+      return Node.decode(frame.page().duplicate());
+    } finally {
+      pool.unpin(frame);
+    }
+  }
+
+  private void writeNode(int pageId, Node node) throws IOException {
+    BufferPool.Frame frame = pool.pin(pageId);
+    try {
+      ByteBuffer page = frame.page().duplicate();
+      page.clear();
+      node.encode(page);
+      pool.markDirty(frame);
+    } finally {
+      pool.unpin(frame);
+    }
+  }
+
+  private static final class Split {
+    final String key;
+    final int rightPage;
+
+    Split(String key, int rightPage) {
+      this.key = key;
+      this.rightPage = rightPage;
+    }
+  }
+
+  /** A value stored either inline in its leaf or in an extent of whole pages. */
+  private static final class Value {
+    @Nullable final byte[] inline;
+    final int firstPage;
+    final int length;
+
+    Value(@Nullable byte[] inline, int firstPage, int length) {
+      this.inline = inline;
+      this.firstPage = firstPage;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A decoded node. Leaves are laid out as {@code type, count, next} followed by {@code key,
+   * inline, length, value or firstPage} entries, internal nodes as {@code type, count, child0}
+   * followed by {@code key, child} entries.
+   */
+  private static final class Node {
+    final boolean leaf;
+    final List<String> keys = new ArrayList<>();
+    final List<Value> values = new ArrayList<>();
+    final List<Integer> children = new ArrayList<>();
+    int next = 0;
+
+    private Node(boolean leaf) {
+      this.leaf = leaf;
+    }
+
+    static Node leaf() {
+      return new Node(true);
+    }
+
+    static Node internal() {
+      return new Node(false);
+    }
+
+    static int leafEntrySize(String key, Value value) {
+      return 2
+          + key.getBytes(UTF_8).length
+          + 1
+          + 4
+          + (value.inline != null ? value.inline.length : 4);
+    }
+
+    int size() {
+      int size = NODE_HEADER_SIZE;
+      for (int i = 0; i < keys.size(); i++) {
+        size +=
+            leaf
+                ? leafEntrySize(keys.get(i), values.get(i))
+                : 2 + keys.get(i).getBytes(UTF_8).length + 4;
+      }
+      return size;
+    }
+
+    static Node decode(ByteBuffer page) {
+      Node node = new Node(page.get() == LEAF);
+      int count = page.getShort() & 0xffff;
+      if (node.leaf) {
+        node.next = page.getInt();
+      } else {
+        node.children.add(page.getInt());
+      }
+      for (int i = 0; i < count; i++) {
+        byte[] key = new byte[page.getShort() & 0xffff];
+        page.get(key);
+        node.keys.add(new String(key, UTF_8));
+        if (node.leaf) {
+          boolean inline = page.get() == 1;
+          int length = page.getInt();
+          if (inline) {
+            byte[] value = new byte[length];
+            page.get(value);
+            node.values.add(new Value(value, 0, length));
+          } else {
+            node.values.add(new Value(null, page.getInt(), length));
+          }
+        } else {
+          node.children.add(page.getInt());
+        }
+      }
+      return node;
+    }
+
+    void encode(ByteBuffer page) {
+      page.put(leaf ? LEAF : INTERNAL);
+      page.putShort((short) keys.size());
+      page.putInt(leaf ? next : children.get(0));
+      for (int i = 0; i < keys.size(); i++) {
+        byte[] key = keys.get(i).getBytes(UTF_8);
+        page.putShort((short) key.length);
+        page.put(key);
+        if (leaf) {
+          Value value = values.get(i);
+          page.put((byte) (value.inline != null ? 1 : 0));
+          page.putInt(value.length);
+          if (value.inline != null) {
+            page.put(value.inline);
+          } else {
+            page.putInt(value.firstPage);
+          }
+        } else {
+          page.putInt(children.get(i + 1));
+        }
+      }
+    }
+  }
+}
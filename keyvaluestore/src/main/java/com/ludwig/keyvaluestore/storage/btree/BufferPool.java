@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.btree;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed-size cache of pages from a single file, evicting with the clock algorithm. Pages are
+ * pinned while in use and only unpinned, clean pages are eligible for eviction.
+ *
+ * <p>Dirty pages stay resident until {@link #commit()}, which first appends their images to a
+ * journal next to the data file and forces it, and only then writes them in place. The data file is
+ * forced before the journal is cleared. If the process or the machine dies part way through writing
+ * pages in place the journal is replayed the next time the file is opened, so every commit is
+ * applied atomically and is durable once it returns.
+ */
+public final class BufferPool implements Closeable {
+  public static final int MIN_FRAMES = 16;
+
+  private final FileChannel channel;
+  private final FileChannel journal;
+  private final int pageSize;
+  private final Frame[] frames;
+  private final Map<Integer, Frame> residentPages = new HashMap<>();
+  private int hand = 0;
+  /** Whether extents were written since the last commit, so the data file needs forcing first. */
+  private boolean extentsWritten;
+
+  public BufferPool(File file, int pageSize, long memoryBudget) throws IOException {
+    this.pageSize = pageSize;
+    this.frames = new Frame[(int) Math.max(MIN_FRAMES, memoryBudget / pageSize)];
+    this.channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.journal =
+        FileChannel.open(
+            new File(file.getPath() + "-journal").toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    recover();
+  }
+
+  public int pageSize() {
+    return pageSize;
+  }
+
+  /** Number of whole pages currently in the data file. */
+  public synchronized int filePageCount() throws IOException {
+    return (int) (channel.size() / pageSize);
+  }
+
+  /** Pin a page, reading it from disk if it is not resident. Pages past the end read as zeros. */
+  public synchronized Frame pin(int pageId) throws IOException {
+    Frame frame = residentPages.get(pageId);
+    if (frame == null) {
+      frame = evict();
+      frame.pageId = pageId;
+      Arrays.fill(frame.page.array(), (byte) 0);
+      frame.page.clear();
+      read(frame.page, (long) pageId * pageSize);
+      frame.page.clear();
+      residentPages.put(pageId, frame);
+    }
+    frame.pinCount++;
+    frame.referenced = true;
+    return frame;
+  }
+
+  public synchronized void unpin(Frame frame) {
+    frame.pinCount--;
+  }
+
+  public synchronized void markDirty(Frame frame) {
+    frame.dirty = true;
+  }
+
+  /** Atomically write every dirty page back to the data file. */
+  public synchronized void commit() throws IOException {
+    List<Frame> dirty = new ArrayList<>();
+    for (Frame frame : frames) {
+      if (frame != null && frame.dirty) {
+        dirty.add(frame);
+      }
+    }
+    if (dirty.isEmpty()) {
+      return;
+    }
+    if (extentsWritten) {
+      // The pages being committed may point at these extents.
+      channel.force(false);
+      extentsWritten = false;
+    }
+
+    CRC32 crc = new CRC32();
+    ByteBuffer header = ByteBuffer.allocate(4);
+    long position = 0;
+    journal.truncate(0);
+    for (Frame frame : dirty) {
+      header.clear();
+      header.putInt(frame.pageId).flip();
+      crc.update(header.array(), 0, 4);
+      position = write(journal, header, position);
+      ByteBuffer page = frame.page.duplicate();
+      page.clear();
+      crc.update(page.duplicate());
+      position = write(journal, page, position);
+    }
+    ByteBuffer trailer = ByteBuffer.allocate(12);
+    trailer.putInt(-1).putLong(crc.getValue()).flip();
+    write(journal, trailer, position);
+    journal.force(false);
+
+    for (Frame frame : dirty) {
+      ByteBuffer page = frame.page.duplicate();
+      page.clear();
+      write(channel, page, (long) frame.pageId * pageSize);
+      frame.dirty = false;
+    }
+    channel.force(false);
+    journal.truncate(0);
+  }
+
+  /** Drop every dirty page without writing it, undoing all changes since the last commit. */
+  public synchronized void rollback() {
+    for (Frame frame : frames) {
+      if (frame != null && frame.dirty) {
+        residentPages.remove(frame.pageId);
+        frame.dirty = false;
+        frame.pageId = -1;
+      }
+    }
+  }
+
+  /**
+   * Read {@code length} bytes starting at {@code firstPage} straight from the data file. Large
+   * values live in contiguous runs of pages that bypass the pool so they don't evict tree pages.
+   */
+  public byte[] readExtent(int firstPage, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    read(buffer, (long) firstPage * pageSize);
+    if (buffer.hasRemaining()) {
+      throw new EOFException("Truncated extent at page " + firstPage);
+    }
+    return buffer.array();
+  }
+
+  /** Write {@code value} straight to the data file starting at {@code firstPage}. */
+  public void writeExtent(int firstPage, byte[] value) throws IOException {
+    write(channel, ByteBuffer.wrap(value), (long) firstPage * pageSize);
+    synchronized (this) {
+      extentsWritten = true;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    commit();
+    channel.close();
+    journal.close();
+  }
+
+  private Frame evict() throws IOException {
+    for (int i = 0; i < frames.length * 2; i++) {
+      int index = hand;
+      hand = (hand + 1) % frames.length;
+      Frame frame = frames[index];
+      if (frame == null) {
+        frame = new Frame(ByteBuffer.allocate(pageSize));
+        frames[index] = frame;
+        return frame;
+      }
+      if (frame.pinCount > 0 || frame.dirty) {
+        continue;
+      }
+      if (frame.referenced) {
+        frame.referenced = false;
+        continue;
+      }
+      residentPages.remove(frame.pageId);
+      return frame;
+    }
+    throw new IOException("Buffer pool exhausted, every page is pinned or dirty.");
+  }
+
+  private void recover() throws IOException {
+    long size = journal.size();
+    if (size == 0) {
+      return;
+    }
+
+    ByteBuffer contents = ByteBuffer.allocate((int) size);
+    while (contents.hasRemaining()) {
+      if (journal.read(contents, contents.position()) < 0) {
+        break;
+      }
+    }
+    contents.flip();
+
+    CRC32 crc = new CRC32();
+    List<Integer> pageIds = new ArrayList<>();
+    List<ByteBuffer> pages = new ArrayList<>();
+    boolean complete = false;
+    while (contents.remaining() >= 4) {
+      int pageId = contents.getInt();
+      if (pageId == -1) {
+        complete = contents.remaining() >= 8 && contents.getLong() == crc.getValue();
+        break;
+      }
+      if (contents.remaining() < pageSize) {
+        break;
+      }
+      crc.update(ByteBuffer.allocate(4).putInt(0, pageId).array(), 0, 4);
+      ByteBuffer page = contents.slice();
+      page.limit(pageSize);
+      crc.update(page.duplicate());
+      contents.position(contents.position() + pageSize);
+      pageIds.add(pageId);
+      pages.add(page);
+    }
+
+    // An incomplete journal means the crash happened before any page was written in place.
+    if (complete) {
+      for (int i = 0; i < pageIds.size(); i++) {
+        write(channel, pages.get(i), (long) pageIds.get(i) * pageSize);
+      }
+      channel.force(false);
+    }
+    journal.truncate(0);
+  }
+
+  private void read(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+  }
+
+  private static long write(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    return position;
+  }
+
+  /** A resident page. Its buffer is only ever accessed with absolute gets and puts. */
+  public static final class Frame {
+    final ByteBuffer page;
+    int pageId = -1;
+    int pinCount = 0;
+    boolean dirty = false;
+    boolean referenced = false;
+
+    Frame(ByteBuffer page) {
+      this.page = page;
+    }
+
+    public ByteBuffer page() {
+      return page;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.lsm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bloom filter over string keys. Membership tests never return false negatives; false positives
+ * occur at roughly the rate the filter was sized for. Bits are set atomically so keys may be added
+ * concurrently with lookups.
+ */
+public final class BloomFilter {
+  private final AtomicLongArray bits;
+  private final int bitCount;
+  private final int hashCount;
+
+  private BloomFilter(AtomicLongArray bits, int hashCount) {
+    this.bits = bits;
+    this.bitCount = bits.length() * Long.SIZE;
+    this.hashCount = hashCount;
+  }
+
+  /** Size a filter for {@code expectedInsertions} keys at the given false positive rate. */
+  public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    long n = Math.max(1, expectedInsertions);
+    double p = Math.min(Math.max(falsePositiveRate, Double.MIN_VALUE), 0.5);
+    long bitCount = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+    int words =
+        (int) Math.min(Integer.MAX_VALUE / Long.SIZE, (bitCount + Long.SIZE - 1) / Long.SIZE);
+    int hashCount = Math.max(1, (int) Math.round((double) words * Long.SIZE / n * Math.log(2)));
+    return new BloomFilter(new AtomicLongArray(Math.max(1, words)), hashCount);
+  }
+
+  public static BloomFilter readFrom(DataInput input) throws IOException {
+    int hashCount = input.readInt();
+    int words = input.readInt();
+    AtomicLongArray bits = new AtomicLongArray(words);
+    for (int i = 0; i < words; i++) {
+      bits.set(i, input.readLong());
+    }
+    return new BloomFilter(bits, hashCount);
+  }
+
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(hashCount);
+    output.writeInt(bits.length());
+    for (int i = 0; i < bits.length(); i++) {
+      output.writeLong(bits.get(i));
+    }
+  }
+
+  public void put(String key) {
+    long hash1 = hash(key);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+    for (int i = 0; i < hashCount; i++) {
+      int bit = index(hash1 + i * hash2);
+      int word = bit >>> 6;
+      long mask = 1L << bit;
+      long current;
+      do {
+        current = bits.get(word);
+      } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+    }
+  }
+
+  public boolean mightContain(String key) {
+    long hash1 = hash(key);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+    for (int i = 0; i < hashCount; i++) {
+      int bit = index(hash1 + i * hash2);
+      if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Clear every bit, leaving an empty filter of the same size. */
+  public void clear() {
+    for (int i = 0; i < bits.length(); i++) {
+      bits.set(i, 0);
+    }
+  }
+
+  private int index(long hash) {
+    return (int) ((hash & Long.MAX_VALUE) % bitCount);
+  }
+
+  private static long hash(String key) {
+    // FNV-1a over the UTF-16 code units, finished with a strong mix.
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
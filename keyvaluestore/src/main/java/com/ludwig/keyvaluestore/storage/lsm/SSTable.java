@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.lsm;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.reactivex.annotations.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, sorted table of key/value entries on disk. Every table carries a sparse index of
+ * every {@value #INDEX_INTERVAL}th key and a {@link BloomFilter}, both of which are held in memory
+ * once the table is opened, so a point lookup costs at most one positional read.
+ *
+ * <p>The file is laid out as the entries, then the index, then the bloom filter, followed by a
+ * fixed size footer pointing at the index and the filter. A deleted key is stored as a tombstone
+ * entry with a null value so that it shadows older tables until it is compacted away.
+ */
+public final class SSTable implements Closeable {
+  private static final int INDEX_INTERVAL = 16;
+  private static final int FOOTER_SIZE = 28;
+  private static final int MAGIC = 0x4C534D31;
+  private static final int TOMBSTONE = -1;
+
+  private final long number;
+  private final File file;
+  private final FileChannel channel;
+  private final String[] indexKeys;
+  private final long[] indexOffsets;
+  private final long dataEnd;
+  private final long entryCount;
+  private final String firstKey;
+  private final String lastKey;
+  private final BloomFilter bloomFilter;
+
+  private SSTable(
+      long number,
+      File file,
+      FileChannel channel,
+      String[] indexKeys,
+      long[] indexOffsets,
+      long dataEnd,
+      long entryCount,
+      String lastKey,
+      BloomFilter bloomFilter) {
+    this.number = number;
+    this.file = file;
+    this.channel = channel;
+    this.indexKeys = indexKeys;
+    this.indexOffsets = indexOffsets;
+    this.dataEnd = dataEnd;
+    this.entryCount = entryCount;
+    this.firstKey = indexKeys[0];
+    this.lastKey = lastKey;
+    this.bloomFilter = bloomFilter;
+  }
+
+  /**
+   * Write {@code entries}, which must be sorted by key and free of duplicates, to {@code file} and
+   * open the resulting table. At most {@code maxBytes} of entry data are written; the caller can
+   * keep draining the iterator into further tables.
+   */
+  public static SSTable write(
+      long number,
+      File file,
+      Iterator<Entry> entries,
+      long expectedEntries,
+      long maxBytes,
+      double falsePositiveRate)
+      throws IOException {
+    BloomFilter bloomFilter = BloomFilter.create(expectedEntries, falsePositiveRate);
+    List<String> indexKeys = new ArrayList<>();
+    List<Long> indexOffsets = new ArrayList<>();
+    String lastKey = null;
+
+    try (CountingOutputStream counter =
+            new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        DataOutputStream output = new DataOutputStream(counter)) {
+      long count = 0;
+      while (counter.count < maxBytes && entries.hasNext()) {
+        Entry entry = entries.next();
+        if (count++ % INDEX_INTERVAL == 0) {
+          indexKeys.add(entry.key);
+          indexOffsets.add(counter.count);
+        }
+        bloomFilter.put(entry.key);
+        writeEntry(output, entry);
+        lastKey = entry.key;
+      }
+      if (lastKey == null) {
+        throw new IOException("Refusing to write an empty table " + file);
+      }
+
+      long indexOffset = counter.count;
+      output.writeInt(indexKeys.size());
+      for (int i = 0; i < indexKeys.size(); i++) {
+        writeBytes(output, indexKeys.get(i).getBytes(UTF_8));
+        output.writeLong(indexOffsets.get(i));
+      }
+      writeBytes(output, lastKey.getBytes(UTF_8));
+
+      long bloomOffset = counter.count;
+      bloomFilter.writeTo(output);
+
+      output.writeLong(indexOffset);
+      output.writeLong(bloomOffset);
+      output.writeLong(count);
+      output.writeInt(MAGIC);
+    }
+    return open(number, file);
+  }
+
+  public static SSTable open(long number, File file) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size < FOOTER_SIZE) {
+        throw new IOException("Truncated table " + file);
+      }
+      ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+      long indexOffset = footer.getLong();
+      long bloomOffset = footer.getLong();
+      long entryCount = footer.getLong();
+      if (footer.getInt() != MAGIC) {
+        throw new IOException("Corrupt table " + file);
+      }
+
+      ByteBuffer meta = readFully(channel, indexOffset, (int) (size - FOOTER_SIZE - indexOffset));
+      int indexLength = (int) (bloomOffset - indexOffset);
+      DataInputStream index =
+          new DataInputStream(new ByteArrayInputStream(meta.array(), 0, indexLength));
+      int indexSize = index.readInt();
+      String[] indexKeys = new String[indexSize];
+      long[] indexOffsets = new long[indexSize];
+      for (int i = 0; i < indexSize; i++) {
+        indexKeys[i] = new String(readBytes(index), UTF_8);
+        indexOffsets[i] = index.readLong();
+      }
+      String lastKey = new String(readBytes(index), UTF_8);
+      BloomFilter bloomFilter =
+          BloomFilter.readFrom(
+              new DataInputStream(
+                  new ByteArrayInputStream(
+                      meta.array(), indexLength, meta.capacity() - indexLength)));
+
+      return new SSTable(
+          number,
+          file,
+          channel,
+          indexKeys,
+          indexOffsets,
+          indexOffset,
+          entryCount,
+          lastKey,
+          bloomFilter);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public long number() {
+    return number;
+  }
+
+  public File file() {
+    return file;
+  }
+
+  public long size() {
+    return file.length();
+  }
+
+  public long entryCount() {
+    return entryCount;
+  }
+
+  public String firstKey() {
+    return firstKey;
+  }
+
+  public String lastKey() {
+    return lastKey;
+  }
+
+  /** Whether this table's key range intersects {@code [first, last]}. */
+  public boolean overlaps(String first, String last) {
+    return firstKey.compareTo(last) <= 0 && lastKey.compareTo(first) >= 0;
+  }
+
+  /**
+   * Look up a single key. Returns null if this table holds no entry for the key, or an entry with a
+   * null value if the key was deleted.
+   */
+  @Nullable
+  public Entry get(String key) throws IOException {
+    if (key.compareTo(firstKey) < 0 || key.compareTo(lastKey) > 0) {
+      return null;
+    }
+    if (!bloomFilter.mightContain(key)) {
+      return null;
+    }
+
+    int block = Arrays.binarySearch(indexKeys, key);
+    if (block < 0) {
+      block = -block - 2;
+    }
+    long start = indexOffsets[block];
+    long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+    ByteBuffer bytes = readFully(channel, start, (int) (end - start));
+    DataInputStream input =
+        new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.capacity()));
+    while (input.available() > 0) {
+      Entry entry = readEntry(input);
+      int comparison = entry.key.compareTo(key);
+      if (comparison == 0) {
+        return entry;
+      } else if (comparison > 0) {
+        break;
+      }
+    }
+    return null;
+  }
+
+  /** Iterate every entry of this table in key order. The scanner must be closed. */
+  public Scanner scan() throws IOException {
+    return new Scanner(
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file))), entryCount);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static void writeEntry(DataOutputStream output, Entry entry) throws IOException {
+    writeBytes(output, entry.key.getBytes(UTF_8));
+    if (entry.value == null) {
+      output.writeInt(TOMBSTONE);
+    } else {
+      writeBytes(output, entry.value);
+    }
+  }
+
+  private static Entry readEntry(DataInputStream input) throws IOException {
+    String key = new String(readBytes(input), UTF_8);
+    int valueLength = input.readInt();
+    byte[] value = null;
+    if (valueLength != TOMBSTONE) {
+      value = new byte[valueLength];
+      input.readFully(value);
+    }
+    return new Entry(key, value);
+  }
+
+  private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /** A key and its value, or a null value for a tombstone. */
+  public static final class Entry {
+    public final String key;
+    @Nullable public final byte[] value;
+
+    public Entry(String key, @Nullable byte[] value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /** Sequentially reads the entries of a table. */
+  public static final class Scanner implements Iterator<Entry>, Closeable {
+    private final DataInputStream input;
+    private long remaining;
+
+    private Scanner(DataInputStream input, long entryCount) {
+      this.input = input;
+      this.remaining = entryCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        remaining--;
+        return readEntry(input);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
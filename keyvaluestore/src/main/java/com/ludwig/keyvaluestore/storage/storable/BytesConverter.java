@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.ConverterException;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Writes a {@code byte[]} that is already encoded, such as a list a converter wrote to a {@link
+ * com.ludwig.keyvaluestore.storage.unit.MemoryStorageUnit}, so it can go through {@link
+ * StorageUnit#converterWrite} and get that unit's atomic replace.
+ */
+final class BytesConverter implements Converter {
+  static final BytesConverter INSTANCE = new BytesConverter();
+
+  private BytesConverter() {}
+
+  @Override
+  public <T> void write(@Nullable T data, Type type, StorageUnit storageUnit) {
+    try (OutputStream output = storageUnit.output()) {
+      if (data != null) {
+        output.write((byte[]) data);
+      }
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("TypeParameterUnusedInFormals")
+  public <T> T read(StorageUnit storageUnit, Type type) {
+    throw new UnsupportedOperationException();
+  }
+}
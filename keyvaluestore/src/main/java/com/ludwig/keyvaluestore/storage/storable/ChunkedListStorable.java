@@ -0,0 +1,691 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import com.ludwig.keyvaluestore.types.ListType;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.PublishSubject;
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link ListStorable} that splits the list into chunk records of at most {@code chunkSize}
+ * elements, each written by the converter to its own unit, plus a small binary header under the
+ * list's key holding the element count and the id and length of every chunk in order. {@link
+ * #size}, {@link #get(int, Converter, Type)} and {@link #get(int, int, Converter, Type)} read the
+ * header and only the chunks they cover, and a mutation rewrites only the chunks it changes.
+ *
+ * <p>Chunks are never modified in place: a changed chunk is written under a fresh id, the header is
+ * replaced, and only then are the chunks it no longer names deleted. Because a chunk id always
+ * refers to the same contents, decoded chunks are kept in a small cache. A crash between writing a
+ * chunk and replacing the header leaves that chunk orphaned but the list intact.
+ *
+ * <p>Mutations return and emit the whole list, as {@link ListStorable} requires, but as a view that
+ * reads each chunk only when one of its elements is asked for, so a mutation whose result is
+ * ignored decodes no more than the chunks it changes. Before a later mutation deletes a chunk that
+ * such a view has not read yet, it hands the view the decoded chunk. {@link #clear} leaves an empty
+ * header behind rather than deleting it, so chunk ids are never reused.
+ */
+public class ChunkedListStorable implements ListStorable {
+  public static final int DEFAULT_CHUNK_SIZE = 256;
+  public static final int DEFAULT_CACHED_CHUNKS = 64;
+
+  private static final int MAGIC = 0x4b56434c;
+
+  private final PublishSubject updateSubject = PublishSubject.create();
+  private final StorageUnit storageUnit;
+  private final Function<Long, StorageUnit> chunkUnits;
+  private final int chunkSize;
+  private final Map<Long, List<?>> chunkCache;
+  private final List<WeakReference<ChunkedView<?>>> views = new ArrayList<>();
+  private int pruneViewsAt = 16;
+  /** The header the last mutation wrote, guarded by {@link #views}. */
+  @Nullable private Header latest;
+
+  private final Retainer retainer;
+
+  ChunkedListStorable(
+      StorageUnit storageUnit,
+      Function<Long, StorageUnit> chunkUnits,
+      int chunkSize,
+      int cachedChunks,
+      Retainer retainer) {
+    if (chunkSize < 2) {
+      throw new IllegalArgumentException("chunkSize must be at least 2: " + chunkSize);
+    }
+    this.storageUnit = storageUnit;
+    this.chunkUnits = chunkUnits;
+    this.chunkSize = chunkSize;
+    this.retainer = retainer;
+    this.chunkCache =
+        new LinkedHashMap<Long, List<?>>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, List<?>> eldest) {
+            return size() > cachedChunks;
+          }
+        };
+  }
+
+  @Override
+  public <T> Single<List<T>> get(Converter converter, Type type) {
+    return read(header -> this.<T>assemble(header, converter, type));
+  }
+
+  @Override
+  public <T> Single<Integer> size(Converter converter, Type type) {
+    return read(header -> header.count);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Maybe<T> get(int index, Converter converter, Type type) {
+    return read(header -> {
+          if (index < 0 || index >= header.count) {
+            return Optional.<T>empty();
+          }
+          int start = 0;
+          for (Chunk chunk : header.chunks) {
+            if (index < start + chunk.length) {
+              return Optional.ofNullable(this.<T>chunk(chunk, converter, type).get(index - start));
+            }
+            start += chunk.length;
+          }
+          throw new IOException("Corrupt list header.");
+        })
+        .filter(Optional::isPresent)
+        .map(Optional::get);
+  }
+
+  @Override
+  public <T> Single<List<T>> get(int offset, int limit, Converter converter, Type type) {
+    if (offset < 0 || limit < 0) {
+      return Single.error(
+          new IllegalArgumentException(
+              "offset and limit must not be negative: " + offset + ", " + limit));
+    }
+    return read(
+        header -> {
+          long end = Math.min((long) offset + limit, header.count);
+          List<T> result = new ArrayList<>((int) Math.max(0, end - offset));
+          int start = 0;
+          for (Chunk chunk : header.chunks) {
+            if (start >= end) {
+              break;
+            }
+            if (offset < start + chunk.length) {
+              List<T> elements = chunk(chunk, converter, type);
+              int from = Math.max(offset - start, 0);
+              int to = (int) Math.min(end - start, chunk.length);
+              result.addAll(elements.subList(from, to));
+            }
+            start += chunk.length;
+          }
+          return result;
+        });
+  }
+
+  /** Stream the elements, reading each chunk only when the previous one has been consumed. */
+  @Override
+  public <T> Flowable<T> stream(Converter converter, Type type) {
+    return this.<List<Chunk>>read(header -> header.chunks)
+        .flatMapPublisher(
+            chunks ->
+                Flowable.fromIterable(chunks)
+                    .concatMapIterable(
+                        chunk -> ListTypes.nonNull(this.<T>chunk(chunk, converter, type)), 1));
+  }
+
+  @Override
+  public <T> Single<List<T>> put(Converter converter, Type type, List<T> list) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          obsolete.addAll(header.chunks);
+          header.chunks.clear();
+          for (int start = 0; start < list.size(); start += chunkSize) {
+            List<T> elements = list.subList(start, Math.min(start + chunkSize, list.size()));
+            header.chunks.add(store(header, elements, converter, type));
+          }
+          header.count = list.size();
+          return true;
+        });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Observable<List<T>> observe(Converter converter, Type type) {
+    return updateSubject
+        .startWith(get(converter, type).toObservable())
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
+        .hide();
+  }
+
+  /**
+   * Every update registers a view of the latest header only once it is called, so an update that is
+   * never delivered leaves no view behind for later mutations to pin chunks into.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Observable<Callable<List<T>>> observeLatest(Converter converter, Type type) {
+    Callable<List<T>> latest = () -> this.<T>latestView(converter, type);
+    return updateSubject
+        .map(list -> latest)
+        .startWith(latest)
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
+        .hide();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Single<List<T>> clear() {
+    return Completable.fromAction(storageUnit::startWrite)
+        .andThen(
+            Single.fromCallable(
+                () -> {
+                  Header header = readHeader();
+                  if (storageUnit.exists().blockingGet()) {
+                    List<Chunk> obsolete = new ArrayList<>(header.chunks);
+                    header.chunks.clear();
+                    header.count = 0;
+                    // Keep the header, and with it the next chunk id.
+                    writeHeader(header);
+                    written(header);
+                    pin(obsolete);
+                    deleteChunks(obsolete);
+                  }
+                  return Collections.<T>emptyList();
+                }))
+        .doOnSuccess(updateSubject::onNext)
+        .doFinally(storageUnit::endWrite);
+  }
+
+  @Override
+  public <T> Single<List<T>> append(T value, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          int last = header.chunks.size() - 1;
+          if (last >= 0 && header.chunks.get(last).length < chunkSize) {
+            Chunk chunk = header.chunks.get(last);
+            List<T> elements = new ArrayList<>(this.<T>chunk(chunk, converter, type));
+            elements.add(value);
+            header.chunks.set(last, store(header, elements, converter, type));
+            obsolete.add(chunk);
+          } else {
+            header.chunks.add(store(header, Collections.singletonList(value), converter, type));
+          }
+          header.count++;
+          return true;
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> replace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) ->
+            replaceFirst(header, obsolete, value, predicateFunc, converter, type));
+  }
+
+  @Override
+  public <T> Single<List<T>> addOrReplace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          if (!replaceFirst(header, obsolete, value, predicateFunc, converter, type)) {
+            int last = header.chunks.size() - 1;
+            if (last >= 0 && header.chunks.get(last).length < chunkSize) {
+              Chunk chunk = header.chunks.get(last);
+              List<T> elements = new ArrayList<>(this.<T>chunk(chunk, converter, type));
+              elements.add(value);
+              header.chunks.set(last, store(header, elements, converter, type));
+              obsolete.add(chunk);
+            } else {
+              header.chunks.add(store(header, Collections.singletonList(value), converter, type));
+            }
+            header.count++;
+          }
+          return true;
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          for (int i = 0; i < header.chunks.size(); i++) {
+            List<T> elements = chunk(header.chunks.get(i), converter, type);
+            for (int j = 0; j < elements.size(); j++) {
+              if (predicateFunc.test(elements.get(j))) {
+                List<T> modified = new ArrayList<>(elements);
+                modified.remove(j);
+                update(header, obsolete, i, modified, converter, type);
+                return true;
+              }
+            }
+          }
+          return false;
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> removeAll(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          boolean removed = false;
+          for (int i = header.chunks.size() - 1; i >= 0; i--) {
+            List<T> elements = chunk(header.chunks.get(i), converter, type);
+            List<T> modified = new ArrayList<>(elements.size());
+            for (T element : elements) {
+              if (!predicateFunc.test(element)) {
+                modified.add(element);
+              }
+            }
+            if (modified.size() != elements.size()) {
+              update(header, obsolete, i, modified, converter, type);
+              removed = true;
+            }
+          }
+          return removed;
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(int position, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        (header, obsolete) -> {
+          if (!storageUnit.exists().blockingGet()) {
+            // Removing from a missing list leaves it empty, as it does in every other format.
+            return false;
+          }
+          if (position < 0 || position >= header.count) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + header.count);
+          }
+          int start = 0;
+          for (int i = 0; i < header.chunks.size(); i++) {
+            Chunk chunk = header.chunks.get(i);
+            if (position < start + chunk.length) {
+              List<T> modified = new ArrayList<>(this.<T>chunk(chunk, converter, type));
+              modified.remove(position - start);
+              update(header, obsolete, i, modified, converter, type);
+              return true;
+            }
+            start += chunk.length;
+          }
+          throw new IOException("Corrupt list header.");
+        });
+  }
+
+  private interface Read<R> {
+    R apply(Header header) throws Exception;
+  }
+
+  private interface Mutation {
+    /** Change header and the chunks it names, collecting replaced chunks in obsolete. */
+    boolean apply(Header header, List<Chunk> obsolete) throws Exception;
+  }
+
+  private <R> Single<R> read(Read<R> read) {
+    return Completable.fromAction(storageUnit::startRead)
+        .andThen(Single.fromCallable(() -> read.apply(readHeader())))
+        .doFinally(storageUnit::endRead);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Single<List<T>> write(Converter converter, Type type, Mutation mutation) {
+    return Completable.fromAction(storageUnit::startWrite)
+        .andThen(
+            Single.fromCallable(
+                () -> {
+                  Header header = readHeader();
+                  List<Chunk> obsolete = new ArrayList<>();
+                  if (mutation.apply(header, obsolete)) {
+                    writeHeader(header);
+                    written(header);
+                    pin(obsolete);
+                    deleteChunks(obsolete);
+                  }
+                  return this.<T>view(header, converter, type);
+                }))
+        .doOnSuccess(updateSubject::onNext)
+        .doFinally(storageUnit::endWrite);
+  }
+
+  private <T> boolean replaceFirst(
+      Header header,
+      List<Chunk> obsolete,
+      T value,
+      ListType.PredicateFunc<T> predicateFunc,
+      Converter converter,
+      Type type)
+      throws Exception {
+    for (int i = 0; i < header.chunks.size(); i++) {
+      List<T> elements = chunk(header.chunks.get(i), converter, type);
+      for (int j = 0; j < elements.size(); j++) {
+        if (predicateFunc.test(elements.get(j))) {
+          List<T> modified = new ArrayList<>(elements);
+          modified.set(j, value);
+          update(header, obsolete, i, modified, converter, type);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Replace the chunk at index with elements, dropping it when empty and folding it into its
+   * successor when both have shrunk to half a chunk, so removals do not fragment the header.
+   */
+  private <T> void update(
+      Header header,
+      List<Chunk> obsolete,
+      int index,
+      List<T> elements,
+      Converter converter,
+      Type type)
+      throws Exception {
+    obsolete.add(header.chunks.get(index));
+    header.count += elements.size() - header.chunks.get(index).length;
+    if (elements.isEmpty()) {
+      header.chunks.remove(index);
+      return;
+    }
+    if (index + 1 < header.chunks.size()
+        && elements.size() + header.chunks.get(index + 1).length <= chunkSize / 2) {
+      Chunk next = header.chunks.remove(index + 1);
+      List<T> merged = new ArrayList<>(elements);
+      merged.addAll(this.<T>chunk(next, converter, type));
+      obsolete.add(next);
+      elements = merged;
+    }
+    header.chunks.set(index, store(header, elements, converter, type));
+  }
+
+  private <T> List<T> assemble(Header header, Converter converter, Type type) throws Exception {
+    List<T> list = new ArrayList<>(header.count);
+    for (Chunk chunk : header.chunks) {
+      list.addAll(this.<T>chunk(chunk, converter, type));
+    }
+    return list;
+  }
+
+  /** A view of the list header names, registered so that later mutations can pin its chunks. */
+  private <T> List<T> view(Header header, Converter converter, Type type) {
+    if (header.chunks.isEmpty()) {
+      return Collections.emptyList();
+    }
+    ChunkedView<T> view = new ChunkedView<>(header, converter, type);
+    synchronized (views) {
+      if (views.size() >= pruneViewsAt) {
+        views.removeIf(reference -> reference.get() == null);
+        pruneViewsAt = Math.max(16, 2 * views.size());
+      }
+      views.add(new WeakReference<>(view));
+    }
+    return view;
+  }
+
+  /**
+   * A view of the header the last mutation wrote, or of the stored one if there was none. Taken
+   * under the same monitor mutations publish their header and pin views under, so the view either
+   * names the new header's chunks or is pinned before the old ones are deleted.
+   */
+  private <T> List<T> latestView(Converter converter, Type type) throws Exception {
+    synchronized (views) {
+      Header header = latest;
+      if (header == null) {
+        header = readHeader();
+        latest = header;
+      }
+      return view(header, converter, type);
+    }
+  }
+
+  /** Record header as the latest, before the chunks it replaces are pinned and deleted. */
+  private void written(Header header) {
+    synchronized (views) {
+      latest = header;
+    }
+  }
+
+  /** Decode every chunk in obsolete that a live view still needs, before it is deleted. */
+  private void pin(List<Chunk> obsolete) throws Exception {
+    if (obsolete.isEmpty()) {
+      return;
+    }
+    Set<Long> ids = new HashSet<>();
+    for (Chunk chunk : obsolete) {
+      ids.add(chunk.id);
+    }
+    synchronized (views) {
+      Iterator<WeakReference<ChunkedView<?>>> iterator = views.iterator();
+      while (iterator.hasNext()) {
+        ChunkedView<?> view = iterator.next().get();
+        if (view == null || view.pin(ids)) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> List<T> chunk(Chunk chunk, Converter converter, Type type) throws Exception {
+    synchronized (chunkCache) {
+      List<?> cached = chunkCache.get(chunk.id);
+      if (cached != null) {
+        return (List<T>) cached;
+      }
+    }
+    List<T> elements = converter.read(chunkUnits.apply(chunk.id), type);
+    if (elements == null || elements.size() != chunk.length) {
+      throw new IOException("Chunk " + chunk.id + " does not match the list header.");
+    }
+    elements = Collections.unmodifiableList(elements);
+    synchronized (chunkCache) {
+      chunkCache.put(chunk.id, elements);
+    }
+    return elements;
+  }
+
+  private <T> Chunk store(Header header, List<T> elements, Converter converter, Type type)
+      throws Exception {
+    long id = header.nextId++;
+    // A fresh id is not referenced until the header is replaced, so the chunk can be written in
+    // place.
+    converter.write(new ArrayList<>(elements), type, chunkUnits.apply(id));
+    synchronized (chunkCache) {
+      chunkCache.put(id, Collections.unmodifiableList(new ArrayList<>(elements)));
+    }
+    return new Chunk(id, elements.size());
+  }
+
+  private void deleteChunks(List<Chunk> chunks) throws Exception {
+    for (Chunk chunk : chunks) {
+      synchronized (chunkCache) {
+        chunkCache.remove(chunk.id);
+      }
+      StorageUnit unit = chunkUnits.apply(chunk.id);
+      if (unit.exists().blockingGet()) {
+        unit.delete().blockingGet();
+      }
+    }
+  }
+
+  private Header readHeader() throws Exception {
+    Header header = new Header();
+    if (!storageUnit.exists().blockingGet()) {
+      return header;
+    }
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(storageUnit.input()))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not a chunked list.");
+      }
+      header.count = input.readInt();
+      header.nextId = input.readLong();
+      int chunks = input.readInt();
+      for (int i = 0; i < chunks; i++) {
+        header.chunks.add(new Chunk(input.readLong(), input.readInt()));
+      }
+    } catch (EOFException e) {
+      throw new IOException("Truncated list header.", e);
+    }
+    return header;
+  }
+
+  private void writeHeader(Header header) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(20 + 12 * header.chunks.size());
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(MAGIC);
+    output.writeInt(header.count);
+    output.writeLong(header.nextId);
+    output.writeInt(header.chunks.size());
+    for (Chunk chunk : header.chunks) {
+      output.writeLong(chunk.id);
+      output.writeInt(chunk.length);
+    }
+    if (!storageUnit.exists().blockingGet() && !storageUnit.createNew().blockingGet()) {
+      throw new IOException("Could not create store.");
+    }
+    storageUnit
+        .converterWrite(bytes.toByteArray(), BytesConverter.INSTANCE, byte[].class)
+        .blockingGet();
+  }
+
+  /**
+   * The list as a mutation left it, decoding each chunk on first access. Chunks a later mutation
+   * deletes are pinned into it first, under the write lock.
+   */
+  private final class ChunkedView<T> extends AbstractList<T> implements RandomAccess {
+    private final Converter converter;
+    private final Type type;
+    private final Chunk[] chunks;
+    private final int[] starts;
+    private final int count;
+    private final List<?>[] elements;
+    private int unread;
+
+    ChunkedView(Header header, Converter converter, Type type) {
+      this.converter = converter;
+      this.type = type;
+      this.chunks = header.chunks.toArray(new Chunk[0]);
+      this.starts = new int[chunks.length];
+      for (int i = 1; i < chunks.length; i++) {
+        starts[i] = starts[i - 1] + chunks[i - 1].length;
+      }
+      this.count = header.count;
+      this.elements = new List<?>[chunks.length];
+      this.unread = chunks.length;
+    }
+
+    @Override
+    public T get(int index) {
+      if (index < 0 || index >= count) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+      }
+      int i = Arrays.binarySearch(starts, index);
+      if (i < 0) {
+        i = -i - 2;
+      }
+      return elements(i).get(index - starts[i]);
+    }
+
+    @Override
+    public int size() {
+      return count;
+    }
+
+    /**
+     * The elements of chunk i. A chunk is never rewritten and is only deleted after pin() has read
+     * it, which takes this monitor too, so no storage lock is needed; the view is often read by a
+     * subscriber of the mutation that still holds the write lock.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized List<T> elements(int i) {
+      try {
+        read(i);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      return (List<T>) elements[i];
+    }
+
+    /** Read every unread chunk in ids, returning whether all chunks have now been read. */
+    synchronized boolean pin(Set<Long> ids) throws Exception {
+      for (int i = 0; i < chunks.length && unread > 0; i++) {
+        if (ids.contains(chunks[i].id)) {
+          read(i);
+        }
+      }
+      return unread == 0;
+    }
+
+    private void read(int i) throws Exception {
+      if (elements[i] == null) {
+        elements[i] = chunk(chunks[i], converter, type);
+        unread--;
+      }
+    }
+  }
+
+  private static final class Header {
+    int count;
+    long nextId;
+    final List<Chunk> chunks = new ArrayList<>();
+  }
+
+  private static final class Chunk {
+    final long id;
+    final int length;
+
+    Chunk(long id, int length) {
+      this.id = id;
+      this.length = length;
+    }
+  }
+}
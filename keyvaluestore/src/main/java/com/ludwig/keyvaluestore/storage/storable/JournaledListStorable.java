@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.storage.unit.MemoryStorageUnit;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import com.ludwig.keyvaluestore.types.ListType;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.subjects.PublishSubject;
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link ListStorable} that keeps a base snapshot of the list under its key and records every
+ * later add, remove and replace as a small record in an append-only journal unit. A mutation
+ * therefore writes one record instead of the whole list. Once the journal grows past {@code
+ * foldRatio} times the size of the base it is folded into a new base and started again.
+ *
+ * <p>The base is written with the list's converter, so it stays readable as a plain list. The
+ * journal starts with a checksum of the base it applies to; a journal left behind by an interrupted
+ * fold no longer matches the new base and is ignored.
+ *
+ * <p>The decoded list is kept in memory after the first access, so every handle to a key must share
+ * one instance. Reads and mutations return a {@link SnapshotList} snapshot of it rather than a
+ * copy, so an append costs no more than its record.
+ *
+ * <p>Appends go through {@link StorageUnit#appendOutput}, so the format only pays off on adapters
+ * that {@linkplain com.ludwig.keyvaluestore.storage.StorageAdapter#appendsInPlace append in place}.
+ */
+public class JournaledListStorable implements ListStorable {
+  public static final double DEFAULT_FOLD_RATIO = 1.0;
+  /** Journals smaller than this are never folded, however small the base is. */
+  public static final int MIN_FOLD_SIZE = 16 * 1024;
+
+  private static final int MAGIC = 0x4b564a31;
+  private static final int HEADER_SIZE = 12;
+  private static final int RECORD_HEADER_SIZE = 9;
+  private static final byte ADD = 1;
+  private static final byte REMOVE = 2;
+  private static final byte REPLACE = 3;
+
+  private final PublishSubject updateSubject = PublishSubject.create();
+  private final StorageUnit storageUnit;
+  private final StorageUnit journalUnit;
+  private final double foldRatio;
+  private final Retainer retainer;
+
+  @Nullable private SnapshotList<Object> list;
+  @Nullable private Type listType;
+  private long baseChecksum;
+  private long baseSize;
+  private long journalSize;
+
+  JournaledListStorable(
+      StorageUnit storageUnit, StorageUnit journalUnit, double foldRatio, Retainer retainer) {
+    if (foldRatio <= 0) {
+      throw new IllegalArgumentException("foldRatio must be positive: " + foldRatio);
+    }
+    this.storageUnit = storageUnit;
+    this.journalUnit = journalUnit;
+    this.foldRatio = foldRatio;
+    this.retainer = retainer;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Single<List<T>> get(Converter converter, Type type) {
+    return Completable.fromAction(storageUnit::startRead)
+        .andThen(
+            Single.fromCallable(
+                () -> {
+                  synchronized (this) {
+                    return this.<T>load(converter, type).snapshot();
+                  }
+                }))
+        .doFinally(storageUnit::endRead);
+  }
+
+  @Override
+  public <T> Single<List<T>> put(Converter converter, Type type, List<T> list) {
+    return write(
+        converter,
+        type,
+        current -> {
+          current.clear();
+          current.addAll(list);
+          fold(converter, type, current);
+        });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Observable<List<T>> observe(Converter converter, Type type) {
+    return updateSubject
+        .startWith(get(converter, type).toObservable())
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
+        .hide();
+  }
+
+  /** Every update snapshots the list in memory only once it is called. */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Observable<Callable<List<T>>> observeLatest(Converter converter, Type type) {
+    Callable<List<T>> latest =
+        () -> {
+          synchronized (this) {
+            return this.<T>load(converter, type).snapshot();
+          }
+        };
+    return updateSubject
+        .map(list -> latest)
+        .startWith(latest)
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
+        .hide();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Single<List<T>> clear() {
+    return Completable.fromAction(storageUnit::startWrite)
+        .andThen(
+            Single.fromCallable(
+                () -> {
+                  synchronized (this) {
+                    list = null;
+                    if (journalUnit.exists().blockingGet() && !journalUnit.delete().blockingGet()) {
+                      throw new IOException("Clear operation on store failed.");
+                    }
+                    if (storageUnit.exists().blockingGet() && !storageUnit.delete().blockingGet()) {
+                      throw new IOException("Clear operation on store failed.");
+                    }
+                    return Collections.<T>emptyList();
+                  }
+                }))
+        .doOnSuccess(updateSubject::onNext)
+        .doFinally(storageUnit::endWrite);
+  }
+
+  @Override
+  public <T> Single<List<T>> append(T value, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          journal(ADD, current.size(), encode(value, converter, type));
+          current.add(value);
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> replace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          int index = indexOf(current, predicateFunc);
+          if (index != -1) {
+            journal(REPLACE, index, encode(value, converter, type));
+            current.set(index, value);
+          }
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> addOrReplace(
+      T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          int index = indexOf(current, predicateFunc);
+          if (index == -1) {
+            journal(ADD, current.size(), encode(value, converter, type));
+            current.add(value);
+          } else {
+            journal(REPLACE, index, encode(value, converter, type));
+            current.set(index, value);
+          }
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          int index = indexOf(current, predicateFunc);
+          if (index != -1) {
+            journal(REMOVE, index, null);
+            current.remove(index);
+          }
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> removeAll(
+      ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          for (int index = current.size() - 1; index >= 0; index--) {
+            if (predicateFunc.test(current.get(index))) {
+              journal(REMOVE, index, null);
+              current.remove(index);
+            }
+          }
+        });
+  }
+
+  @Override
+  public <T> Single<List<T>> remove(int position, Converter converter, Type type) {
+    return write(
+        converter,
+        type,
+        current -> {
+          if (current.isEmpty() && !storageUnit.exists().blockingGet()) {
+            // Removing from a missing list leaves it empty, as it does in every other format.
+            return;
+          }
+          if (position < 0 || position >= current.size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + current.size());
+          }
+          journal(REMOVE, position, null);
+          current.remove(position);
+        });
+  }
+
+  private interface Mutation<T> {
+    void apply(List<T> list) throws Exception;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Single<List<T>> write(Converter converter, Type type, Mutation<T> mutation) {
+    return Completable.fromAction(storageUnit::startWrite)
+        .andThen(
+            Single.fromCallable(
+                () -> {
+                  synchronized (this) {
+                    try {
+                      SnapshotList<T> current = load(converter, type);
+                      mutation.apply(current);
+                      if (journalSize > MIN_FOLD_SIZE && journalSize > foldRatio * baseSize) {
+                        fold(converter, type, current);
+                      }
+                      return current.snapshot();
+                    } catch (Exception e) {
+                      // The journal may hold part of this mutation; decode it again next time.
+                      list = null;
+                      throw e;
+                    }
+                  }
+                }))
+        .doOnSuccess(updateSubject::onNext)
+        .doFinally(storageUnit::endWrite);
+  }
+
+  private static <T> int indexOf(List<T> list, ListType.PredicateFunc<T> predicateFunc) {
+    for (int i = 0; i < list.size(); i++) {
+      if (predicateFunc.test(list.get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Decode the base and replay the journal over it, unless that was already done for type. */
+  @SuppressWarnings("unchecked")
+  private <T> SnapshotList<T> load(Converter converter, Type type) throws Exception {
+    SnapshotList<Object> current = list;
+    if (current != null && type.equals(listType)) {
+      return (SnapshotList<T>) current;
+    }
+
+    current = new SnapshotList<>();
+    byte[] base = storageUnit.exists().blockingGet() ? readFully(storageUnit) : new byte[0];
+    if (base.length > 0) {
+      List<Object> decoded = converter.read(new MemoryStorageUnit(base), type);
+      if (decoded != null) {
+        current.addAll(decoded);
+      }
+    }
+    baseChecksum = checksum(base);
+    baseSize = base.length;
+    journalSize = 0;
+
+    if (journalUnit.exists().blockingGet()) {
+      ByteBuffer journal = ByteBuffer.wrap(readFully(journalUnit));
+      if (journal.remaining() >= HEADER_SIZE
+          && journal.getInt() == MAGIC
+          && journal.getLong() == baseChecksum) {
+        replay(journal, current, converter, ListTypes.elementType(type));
+        journalSize = journal.position();
+        if (journal.hasRemaining()) {
+          // Drop the torn record left by a crash, so later records are appended after a whole one.
+          try (OutputStream output = journalUnit.output()) {
+            output.write(journal.array(), 0, journal.position());
+          }
+        }
+      }
+    }
+
+    list = current;
+    listType = type;
+    return (SnapshotList<T>) current;
+  }
+
+  private static void replay(
+      ByteBuffer journal, List<Object> list, Converter converter, Type elementType)
+      throws IOException {
+    while (journal.remaining() >= RECORD_HEADER_SIZE) {
+      int start = journal.position();
+      byte op = journal.get();
+      int index = journal.getInt();
+      int length = journal.getInt();
+      if (length < 0 || length > journal.remaining()) {
+        journal.position(start);
+        return;
+      }
+      byte[] element = new byte[length];
+      journal.get(element);
+
+      if (index < 0 || index > list.size() || (op != ADD && index == list.size())) {
+        throw new IOException("Corrupt journal record at " + start + ".");
+      }
+      switch (op) {
+        case ADD:
+          list.add(index, decode(element, converter, elementType));
+          break;
+        case REMOVE:
+          list.remove(index);
+          break;
+        case REPLACE:
+          list.set(index, decode(element, converter, elementType));
+          break;
+        default:
+          throw new IOException("Corrupt journal record at " + start + ".");
+      }
+    }
+  }
+
+  private void journal(byte op, int index, @Nullable byte[] element) throws Exception {
+    int length = element == null ? 0 : element.length;
+    ByteBuffer record =
+        ByteBuffer.allocate((journalSize == 0 ? HEADER_SIZE : 0) + RECORD_HEADER_SIZE + length);
+    if (journalSize == 0) {
+      record.putInt(MAGIC).putLong(baseChecksum);
+    }
+    record.put(op).putInt(index).putInt(length);
+    if (element != null) {
+      record.put(element);
+    }
+
+    // A fresh journal replaces whatever a previous base left behind.
+    try (OutputStream output =
+        journalSize == 0 ? journalUnit.output() : journalUnit.appendOutput()) {
+      output.write(record.array());
+    }
+    journalSize += record.capacity();
+  }
+
+  /** Write current as the new base and drop the journal that led up to it. */
+  private <T> void fold(Converter converter, Type type, List<T> current) throws Exception {
+    MemoryStorageUnit encoded = new MemoryStorageUnit();
+    converter.write(current, type, encoded);
+    byte[] base = encoded.bytes();
+
+    if (!storageUnit.exists().blockingGet() && !storageUnit.createNew().blockingGet()) {
+      throw new IOException("Could not create store.");
+    }
+    storageUnit.converterWrite(base, BytesConverter.INSTANCE, byte[].class).blockingGet();
+    baseChecksum = checksum(base);
+    baseSize = base.length;
+    journalSize = 0;
+    if (journalUnit.exists().blockingGet()) {
+      journalUnit.delete().blockingGet();
+    }
+  }
+
+  private static byte[] encode(Object element, Converter converter, Type type) {
+    MemoryStorageUnit encoded = new MemoryStorageUnit();
+    converter.write(element, ListTypes.elementType(type), encoded);
+    return encoded.bytes();
+  }
+
+  @Nullable
+  private static Object decode(byte[] element, Converter converter, Type elementType) {
+    return converter.read(new MemoryStorageUnit(element), elementType);
+  }
+
+  private static long checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return crc.getValue();
+  }
+
+  private static byte[] readFully(StorageUnit unit) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (InputStream input = unit.input()) {
+      byte[] buffer = new byte[8192];
+      for (int read; (read = input.read(buffer)) != -1; ) {
+        bytes.write(buffer, 0, read);
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
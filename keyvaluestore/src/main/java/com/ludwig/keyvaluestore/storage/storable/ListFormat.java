@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+/** How an {@link com.ludwig.keyvaluestore.storage.AdaptableStorage} lays out its lists. */
+public enum ListFormat {
+  /** The whole list is rewritten on every change. */
+  SNAPSHOT,
+  /**
+   * Changes are appended to a journal next to a base snapshot, see {@link JournaledListStorable}.
+   * Needs an adapter that {@linkplain
+   * com.ludwig.keyvaluestore.storage.StorageAdapter#appendsInPlace appends in place}, such as the
+   * file adapter; on any other adapter every change would rewrite the whole journal.
+   */
+  JOURNALED,
+  /**
+   * The list is split into chunk records under a small header, see {@link ChunkedListStorable}.
+   * Size and range reads touch only the header and the chunks they cover.
+   */
+  CHUNKED
+}
@@ -17,14 +17,62 @@ package com.ludwig.keyvaluestore.storage.storable;
 
 import com.ludwig.keyvaluestore.Converter;
 import com.ludwig.keyvaluestore.types.ListType;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public interface ListStorable {
   <T> Single<List<T>> get(Converter converter, Type type);
 
+  /** The number of elements in the list. The default reads the whole list. */
+  default <T> Single<Integer> size(Converter converter, Type type) {
+    return this.<T>get(converter, type).map(List::size);
+  }
+
+  /**
+   * The element at {@code index}, or empty when the list is shorter or the element is null. The
+   * default reads the whole list.
+   */
+  default <T> Maybe<T> get(int index, Converter converter, Type type) {
+    return this.<T>get(converter, type)
+        .filter(list -> index >= 0 && index < list.size() && list.get(index) != null)
+        .map(list -> list.get(index));
+  }
+
+  /**
+   * Up to {@code limit} elements starting at {@code offset}; shorter, or empty, near the end of the
+   * list. The default reads the whole list.
+   */
+  default <T> Single<List<T>> get(int offset, int limit, Converter converter, Type type) {
+    if (offset < 0 || limit < 0) {
+      return Single.error(
+          new IllegalArgumentException(
+              "offset and limit must not be negative: " + offset + ", " + limit));
+    }
+    return this.<T>get(converter, type)
+        .map(
+            list ->
+                offset >= list.size()
+                    ? Collections.<T>emptyList()
+                    : new ArrayList<>(
+                        list.subList(offset, (int) Math.min((long) offset + limit, list.size()))));
+  }
+
+  /**
+   * Emit the elements of the list in order as they are requested, skipping null elements. The
+   * default reads the whole list first; storables that can read it incrementally override this.
+   */
+  default <T> Flowable<T> stream(Converter converter, Type type) {
+    return this.<T>get(converter, type).flattenAsFlowable(ListTypes::nonNull);
+  }
+
   <T> Single<List<T>> remove(
       ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type);
 
@@ -37,8 +85,27 @@ public interface ListStorable {
 
   <T> Single<List<T>> put(Converter converter, Type type, List<T> list);
 
+  /**
+   * Write {@code list} to expire at {@code deadline}, in milliseconds since the epoch, or never if
+   * it is zero. Other changes to the list keep its deadline, and clearing it drops it. The default
+   * signals an {@link UnsupportedOperationException}.
+   */
+  default <T> Single<List<T>> put(Converter converter, Type type, List<T> list, long deadline) {
+    return Single.error(
+        new UnsupportedOperationException(getClass().getName() + " cannot expire lists."));
+  }
+
   <T> Observable<List<T>> observe(Converter converter, Type type);
 
+  /**
+   * Like {@link #observe}, but each update is a {@link Callable} returning the list as it is when
+   * called rather than as the write left it, so an update that is replaced by a newer one before it
+   * is delivered never materializes a list. The default wraps the lists {@link #observe} emits.
+   */
+  default <T> Observable<Callable<List<T>>> observeLatest(Converter converter, Type type) {
+    return this.<T>observe(converter, type).map(list -> () -> list);
+  }
+
   <T> Single<List<T>> clear();
 
   <T> Single<List<T>> append(T value, Converter converter, Type type);
@@ -48,4 +115,10 @@ public interface ListStorable {
 
   <T> Single<List<T>> addOrReplace(
       T value, ListType.PredicateFunc<T> predicateFunc, Converter converter, Type type);
+
+  /**
+   * Publish a list that was written to this storable's key some other way, such as by a batch, to
+   * its observers; null means the key was cleared. The default does nothing.
+   */
+  default void updated(@Nullable List<?> list) {}
 }
@@ -16,12 +16,15 @@
 package com.ludwig.keyvaluestore.storage.storable;
 
 import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.StreamingConverter;
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
 import com.ludwig.keyvaluestore.types.ListType;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
 import io.reactivex.subjects.PublishSubject;
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -30,26 +33,144 @@ import java.util.*;
 public class ListStorableV1 implements ListStorable {
   private final PublishSubject updateSubject = PublishSubject.create();
   private final StorageUnit storageUnit;
+  private final String key;
+  @Nullable private final ReadCache cache;
+  private final Retainer retainer;
 
   ListStorableV1(StorageUnit storageUnit) {
+    this("", storageUnit, null, Retainer.NONE);
+  }
+
+  ListStorableV1(
+      String key, StorageUnit storageUnit, @Nullable ReadCache cache, Retainer retainer) {
     this.storageUnit = storageUnit;
+    this.key = key;
+    this.cache = cache;
+    this.retainer = retainer;
   }
 
   @Override
   public <T> Single<List<T>> get(Converter converter, Type type) {
+    ReadCache cache = this.cache;
+    if (cache == null) {
+      return read(converter, type);
+    }
+    // The cache keeps its own list and callers get a copy of it, so a cached list is as mutable
+    // as one read from storage and mutating it cannot change what later reads see.
+    return Single.defer(
+        () -> {
+          long optimistic = storageUnit.tryOptimisticRead();
+          List<T> cached = cache.get(key, type);
+          if (cached != null && storageUnit.validate(optimistic)) {
+            return Single.just(new ArrayList<>(cached));
+          }
+          long stamp = cache.stamp(key);
+          return this.<T>read(converter, type)
+              .map(
+                  list -> {
+                    cache.put(key, type, Collections.unmodifiableList(list), stamp);
+                    return new ArrayList<>(list);
+                  });
+        });
+  }
+
+  private <T> Single<List<T>> read(Converter converter, Type type) {
     return Completable.fromAction(storageUnit::startRead)
-        .andThen(storageUnit.exists())
-        .filter(Boolean::booleanValue)
-        .map(exists -> Optional.ofNullable(converter.<List<T>>read(storageUnit, type)))
+        .andThen(this.<T>readList(converter, type))
+        .doFinally(storageUnit::endRead);
+  }
+
+  /**
+   * The stored list, read through {@link StorageUnit#readable}, or a new empty list if none, so
+   * that every list {@link #get} returns is mutable.
+   */
+  private <T> Single<List<T>> readList(Converter converter, Type type) {
+    return storageUnit
+        .readable()
+        .map(unit -> Optional.ofNullable(converter.<List<T>>read(unit, type)))
         .filter(Optional::isPresent)
         .map(Optional::get)
-        .toSingle(Collections.emptyList())
-        .doFinally(storageUnit::endRead);
+        .switchIfEmpty(Maybe.<List<T>>fromCallable(ArrayList::new))
+        .toSingle();
+  }
+
+  /**
+   * Stream the elements with the converter's {@link StreamingConverter#elementReader}, if it has
+   * one, so the list is never held in memory as a whole. The read lock is held only while the
+   * reader is opened; on file storage a concurrent write replaces the file and the stream keeps
+   * reading the list it opened.
+   */
+  @Override
+  public <T> Flowable<T> stream(Converter converter, Type type) {
+    if (!(converter instanceof StreamingConverter)) {
+      return ListStorable.super.stream(converter, type);
+    }
+    StreamingConverter streamingConverter = (StreamingConverter) converter;
+    Flowable<T> elements =
+        Flowable.generate(
+            () -> this.<T>open(streamingConverter, type),
+            (reader, emitter) -> {
+              if (!reader.hasNext()) {
+                emitter.onComplete();
+                return;
+              }
+              T element = reader.next();
+              if (element != null) {
+                emitter.onNext(element);
+              }
+            },
+            StreamingConverter.ElementReader::close);
+
+    ReadCache cache = this.cache;
+    if (cache == null) {
+      return elements;
+    }
+    return Flowable.defer(
+        () -> {
+          // As in get(), only trust a hit no write overlapped; an expired list offers no stamp.
+          long optimistic = storageUnit.tryOptimisticRead();
+          List<T> cached = cache.get(key, type);
+          return cached != null && storageUnit.validate(optimistic)
+              ? Flowable.fromIterable(ListTypes.nonNull(cached))
+              : elements;
+        });
+  }
+
+  private <T> StreamingConverter.ElementReader<T> open(StreamingConverter converter, Type type)
+      throws Exception {
+    storageUnit.startRead();
+    try {
+      if (storageUnit.exists().blockingGet()) {
+        return converter.elementReader(storageUnit, ListTypes.elementType(type));
+      }
+    } finally {
+      storageUnit.endRead();
+    }
+    return new StreamingConverter.ElementReader<T>() {
+      @Override
+      public boolean hasNext() {
+        return false;
+      }
+
+      @Override
+      @Nullable
+      public T next() {
+        throw new NoSuchElementException();
+      }
+
+      @Override
+      public void close() {}
+    };
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public <T> Single<List<T>> put(Converter converter, Type type, List<T> list) {
+    return put(converter, type, list, 0);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Single<List<T>> put(Converter converter, Type type, List<T> list, long deadline) {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .flatMap(exists -> exists ? Single.just(true) : storageUnit.createNew())
@@ -60,14 +181,29 @@ public class ListStorableV1 implements ListStorable {
               }
               return storageUnit.converterWrite(list, converter, type);
             })
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(
+            result -> {
+              storageUnit.expireAt(deadline);
+              publish(result);
+            })
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public <T> Observable<List<T>> observe(Converter converter, Type type) {
-    return updateSubject.startWith(get(converter, type).toObservable()).hide();
+    return updateSubject
+        .startWith(get(converter, type).toObservable())
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
+        .hide();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void updated(@Nullable List<?> list) {
+    updateSubject.onNext(list == null ? Collections.emptyList() : list);
   }
 
   @Override
@@ -84,7 +220,13 @@ public class ListStorableV1 implements ListStorable {
 
               return Collections.<T>emptyList();
             })
-        .doOnSuccess(o -> updateSubject.onNext(Collections.<T>emptyList()))
+        .doOnSuccess(
+            o -> {
+              storageUnit.expireAt(0);
+              invalidate();
+              updateSubject.onNext(Collections.<T>emptyList());
+            })
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -94,16 +236,13 @@ public class ListStorableV1 implements ListStorable {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .flatMap(exists -> exists ? Single.just(true) : storageUnit.createNew())
-        .map(
+        .flatMap(
             success -> {
               if (!success) {
                 throw new IOException("Could not create store.");
               }
-              return Optional.ofNullable(converter.<List<T>>read(storageUnit, type));
+              return this.<T>readList(converter, type);
             })
-        .filter(Optional::isPresent)
-        .map(Optional::get)
-        .toSingle(Collections.emptyList())
         .flatMap(
             originalList -> {
               List<T> result = new ArrayList<>(originalList.size() + 1);
@@ -111,7 +250,8 @@ public class ListStorableV1 implements ListStorable {
               result.add(value);
               return storageUnit.converterWrite(result, converter, type);
             })
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -122,11 +262,9 @@ public class ListStorableV1 implements ListStorable {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .filter(Boolean::booleanValue)
+        .flatMapSingleElement(exists -> this.<T>readList(converter, type))
         .flatMap(
-            exists -> {
-              List<T> originalList = converter.read(storageUnit, type);
-              if (originalList == null) originalList = Collections.emptyList();
-
+            originalList -> {
               int indexOfItemToReplace = -1;
 
               for (int i = 0; i < originalList.size(); i++) {
@@ -145,7 +283,8 @@ public class ListStorableV1 implements ListStorable {
               return Maybe.just(originalList);
             })
         .toSingle(Collections.<T>emptyList())
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -161,9 +300,10 @@ public class ListStorableV1 implements ListStorable {
               if (!createSuccess) {
                 throw new IOException("Could not create store.");
               }
-              List<T> originalList = converter.read(storageUnit, type);
-              if (originalList == null) originalList = Collections.emptyList();
-
+              return this.<T>readList(converter, type);
+            })
+        .flatMap(
+            originalList -> {
               int indexOfItemToReplace = -1;
 
               for (int i = 0; i < originalList.size(); i++) {
@@ -188,7 +328,8 @@ public class ListStorableV1 implements ListStorable {
 
               return storageUnit.converterWrite(modifiedList, converter, type);
             })
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -199,11 +340,9 @@ public class ListStorableV1 implements ListStorable {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .filter(Boolean::booleanValue)
+        .flatMapSingleElement(exists -> this.<T>readList(converter, type))
         .flatMap(
-            exists -> {
-              List<T> originalList = converter.read(storageUnit, type);
-              if (originalList == null) originalList = Collections.emptyList();
-
+            originalList -> {
               List<T> modifiedList = new ArrayList<T>(originalList);
 
               boolean removed = false;
@@ -222,7 +361,8 @@ public class ListStorableV1 implements ListStorable {
               return Maybe.just(modifiedList);
             })
         .toSingle(Collections.emptyList())
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -234,11 +374,9 @@ public class ListStorableV1 implements ListStorable {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .filter(Boolean::booleanValue)
+        .flatMapSingleElement(exists -> this.<T>readList(converter, type))
         .flatMap(
-            exists -> {
-              List<T> originalList = converter.read(storageUnit, type);
-              if (originalList == null) originalList = Collections.emptyList();
-
+            originalList -> {
               List<T> modifiedList = new ArrayList<T>(originalList);
 
               boolean removed = false;
@@ -256,7 +394,8 @@ public class ListStorableV1 implements ListStorable {
               return Maybe.just(modifiedList);
             })
         .toSingle(Collections.emptyList())
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -266,18 +405,29 @@ public class ListStorableV1 implements ListStorable {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .filter(Boolean::booleanValue)
+        .flatMapSingleElement(exists -> this.<T>readList(converter, type))
         .flatMap(
-            exists -> {
-              List<T> originalList = converter.read(storageUnit, type);
-              if (originalList == null) originalList = Collections.emptyList();
-
+            originalList -> {
               List<T> modifiedList = new ArrayList<T>(originalList);
               modifiedList.remove(position);
 
               return storageUnit.converterWrite(modifiedList, converter, type).toMaybe();
             })
         .toSingle(Collections.emptyList())
-        .doOnSuccess(updateSubject::onNext)
+        .doOnSuccess(result -> publish(result))
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
+
+  @SuppressWarnings("unchecked")
+  private <T> void publish(List<T> list) {
+    invalidate();
+    updateSubject.onNext(list);
+  }
+
+  private void invalidate() {
+    if (cache != null) {
+      cache.invalidate(key);
+    }
+  }
 }
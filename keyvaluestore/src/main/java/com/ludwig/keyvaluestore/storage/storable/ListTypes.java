@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+final class ListTypes {
+  private ListTypes() {}
+
+  /** The element type of {@code listType}, the {@code List<T>} type a storable is handed. */
+  static Type elementType(Type listType) {
+    return listType instanceof ParameterizedType
+        ? ((ParameterizedType) listType).getActualTypeArguments()[0]
+        : Object.class;
+  }
+
+  /** The elements of {@code list} without nulls, which cannot be emitted by a stream. */
+  static <T> List<T> nonNull(List<T> list) {
+    if (!list.contains(null)) {
+      return list;
+    }
+    List<T> elements = new ArrayList<>(list.size());
+    for (T element : list) {
+      if (element != null) {
+        elements.add(element);
+      }
+    }
+    return elements;
+  }
+}
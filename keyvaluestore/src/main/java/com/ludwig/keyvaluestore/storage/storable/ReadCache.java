@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of decoded values keyed by store key and {@link Type}, shared by the storables of
+ * one storage so that a hot key is decoded once instead of on every read. Once the number of
+ * entries, or their total weight as estimated by a {@link Weigher}, exceeds the limit the least
+ * recently used entries are evicted.
+ *
+ * <p>The cache is split into segments by key, each with its own lock, least recently used order and
+ * share of the limit, so that readers of different keys rarely contend. Eviction is therefore only
+ * least recently used within a segment, and a value weighing more than a segment's share is not
+ * cached.
+ *
+ * <p>Storables drop every entry of a key they write or clear, so a read through the same storage
+ * always sees the latest write, and only ever cache values they decoded themselves; a value handed
+ * to a write stays the caller's to mutate. Writes made outside of the storage, such as by another
+ * process, are not observed.
+ *
+ * <p>Cached values are handed to every reader by reference and must be treated as immutable: a
+ * caller that mutates an object returned by {@code ValueType.get()} changes what every later read
+ * of the key sees. Lists are the exception, as each read gets its own copy of the cached list,
+ * though the elements in it are still shared.
+ */
+public final class ReadCache {
+  private static final int STRIPES = 64;
+  private static final int MAX_SEGMENTS = 16;
+
+  /** The smallest share of the limit worth splitting off into a segment of its own. */
+  private static final long MIN_SEGMENT_WEIGHT = 16;
+
+  private final Weigher weigher;
+  private final Segment[] segments;
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private ReadCache(long maxWeight, Weigher weigher) {
+    this.weigher = weigher;
+    long shares = Math.max(1, Math.min(MAX_SEGMENTS, maxWeight / MIN_SEGMENT_WEIGHT));
+    this.segments = new Segment[(int) Long.highestOneBit(shares)];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(maxWeight / segments.length);
+    }
+  }
+
+  /** A cache holding at most {@code maxEntries} decoded values. */
+  public static ReadCache maxEntries(long maxEntries) {
+    return new ReadCache(maxEntries, (key, type, value) -> 1);
+  }
+
+  /** A cache holding decoded values up to a total weight of {@code maxWeight}. */
+  public static ReadCache maxWeight(long maxWeight, Weigher weigher) {
+    return new ReadCache(maxWeight, weigher);
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public long weight() {
+    long weight = 0;
+    for (Segment segment : segments) {
+      weight += segment.weight();
+    }
+    return weight;
+  }
+
+  /** Drop every cached value. */
+  public void invalidateAll() {
+    for (int i = 0; i < STRIPES; i++) {
+      stamps.incrementAndGet(i);
+    }
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  <T> T get(String key, Type type) {
+    Object value = segment(key).get(new CacheKey(key, type));
+    if (value == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return (T) value;
+  }
+
+  /**
+   * Returns a stamp to take before reading {@code key} from storage. The value read is only cached
+   * if no write to the key could have happened in between.
+   */
+  long stamp(String key) {
+    return stamps.get(stripe(key));
+  }
+
+  /** Cache a value read from storage, unless the key may have been written since {@code stamp}. */
+  void put(String key, Type type, Object value, long stamp) {
+    long entryWeight = weigher.weigh(key, type, value);
+    segment(key).put(key, type, value, entryWeight, stamp);
+  }
+
+  /** Drop every cached value of {@code key}. */
+  public void invalidate(String key) {
+    segment(key).invalidate(key);
+  }
+
+  private Segment segment(String key) {
+    int hash = key.hashCode() * 0x9e3779b9;
+    return segments[(hash >>> 16) & (segments.length - 1)];
+  }
+
+  private static int stripe(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+
+  /** Estimates how much of the cache's budget a decoded value uses. */
+  public interface Weigher {
+    long weigh(String key, Type type, Object value);
+  }
+
+  /** The entries of the keys hashing to one segment, in least recently used order. */
+  private final class Segment {
+    private final long maxWeight;
+    private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Type>> typesByKey = new HashMap<>();
+    private long weight = 0;
+
+    Segment(long maxWeight) {
+      this.maxWeight = maxWeight;
+    }
+
+    synchronized long size() {
+      return entries.size();
+    }
+
+    synchronized long weight() {
+      return weight;
+    }
+
+    synchronized void clear() {
+      entries.clear();
+      typesByKey.clear();
+      weight = 0;
+    }
+
+    @Nullable
+    synchronized Object get(CacheKey cacheKey) {
+      Entry entry = entries.get(cacheKey);
+      return entry == null ? null : entry.value;
+    }
+
+    synchronized void put(String key, Type type, Object value, long entryWeight, long stamp) {
+      // Checked under the lock invalidate() bumps the stamp under, so a write that finished
+      // before this value is inserted always drops it.
+      if (stamps.get(stripe(key)) != stamp || entryWeight > maxWeight) {
+        return;
+      }
+
+      Entry previous = entries.put(new CacheKey(key, type), new Entry(value, entryWeight));
+      weight += entryWeight - (previous == null ? 0 : previous.weight);
+      typesByKey.computeIfAbsent(key, k -> new HashSet<>()).add(type);
+
+      Iterator<Map.Entry<CacheKey, Entry>> eldest = entries.entrySet().iterator();
+      while (weight > maxWeight && eldest.hasNext()) {
+        Map.Entry<CacheKey, Entry> evicted = eldest.next();
+        eldest.remove();
+        weight -= evicted.getValue().weight;
+        Set<Type> types = typesByKey.get(evicted.getKey().key);
+        if (types != null) {
+          types.remove(evicted.getKey().type);
+          if (types.isEmpty()) {
+            typesByKey.remove(evicted.getKey().key);
+          }
+        }
+        evictions.increment();
+      }
+    }
+
+    synchronized void invalidate(String key) {
+      stamps.incrementAndGet(stripe(key));
+      Set<Type> types = typesByKey.remove(key);
+      if (types != null) {
+        for (Type type : types) {
+          Entry entry = entries.remove(new CacheKey(key, type));
+          if (entry != null) {
+            weight -= entry.weight;
+          }
+        }
+      }
+    }
+  }
+
+  private static final class CacheKey {
+    final String key;
+    final Type type;
+
+    CacheKey(String key, Type type) {
+      this.key = key;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof CacheKey)) return false;
+
+      CacheKey other = (CacheKey) obj;
+      return key.equals(other.key) && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * key.hashCode() + type.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    final Object value;
+    final long weight;
+
+    Entry(Object value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+/**
+ * Told when a storable gains and loses an observer. A registry that only holds storables weakly
+ * uses it to keep an observed storable alive after every handle to it is dropped, so later handles
+ * to the same key publish to the same observers.
+ */
+public interface Retainer {
+  Retainer NONE =
+      new Retainer() {
+        @Override
+        public void retain(Object storable) {}
+
+        @Override
+        public void release(Object storable) {}
+      };
+
+  void retain(Object storable);
+
+  void release(Object storable);
+}
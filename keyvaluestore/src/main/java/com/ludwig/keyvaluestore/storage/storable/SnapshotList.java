@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An array list that hands out immutable snapshots of itself without copying. A snapshot shares the
+ * backing array and only covers the elements present when it was taken, so adding to the end
+ * afterwards leaves it untouched. Any other change made after a snapshot first copies the array,
+ * which costs no more than the shift a removal already makes.
+ */
+final class SnapshotList<T> extends AbstractList<T> implements RandomAccess {
+  private Object[] elements = new Object[10];
+  private int size = 0;
+  private boolean shared = false;
+
+  /** An immutable view of the elements as they are now. */
+  List<T> snapshot() {
+    shared = true;
+    return new Snapshot<>(elements, size);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    checkIndex(index, size);
+    return (T) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T set(int index, T element) {
+    checkIndex(index, size);
+    unshare();
+    T previous = (T) elements[index];
+    elements[index] = element;
+    return previous;
+  }
+
+  @Override
+  public void add(int index, T element) {
+    checkIndex(index, size + 1);
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+      shared = false;
+    }
+    if (index < size) {
+      unshare();
+      System.arraycopy(elements, index, elements, index + 1, size - index);
+    }
+    elements[index] = element;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T remove(int index) {
+    checkIndex(index, size);
+    unshare();
+    T previous = (T) elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    elements[--size] = null;
+    modCount++;
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    if (shared) {
+      elements = new Object[10];
+      shared = false;
+    } else {
+      Arrays.fill(elements, 0, size, null);
+    }
+    size = 0;
+    modCount++;
+  }
+
+  /** Give this list an array of its own before changing an element a snapshot may cover. */
+  private void unshare() {
+    if (shared) {
+      elements = elements.clone();
+      shared = false;
+    }
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] elements;
+    private final int size;
+
+    Snapshot(Object[] elements, int size) {
+      this.elements = elements;
+      this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      checkIndex(index, size);
+      return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -1,13 +1,58 @@
 package com.ludwig.keyvaluestore.storage.storable;
 
 import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.functions.Function;
 
 public final class StorableFactory {
   public static ListStorable list(StorageUnit storageUnit) {
     return new ListStorableV1(storageUnit);
   }
 
+  public static ListStorable list(String key, StorageUnit storageUnit, @Nullable ReadCache cache) {
+    return list(key, storageUnit, cache, Retainer.NONE);
+  }
+
+  public static ListStorable list(
+      String key, StorageUnit storageUnit, @Nullable ReadCache cache, Retainer retainer) {
+    return new ListStorableV1(key, storageUnit, cache, retainer);
+  }
+
+  public static ListStorable journaledList(
+      StorageUnit storageUnit, StorageUnit journalUnit, double foldRatio) {
+    return journaledList(storageUnit, journalUnit, foldRatio, Retainer.NONE);
+  }
+
+  public static ListStorable journaledList(
+      StorageUnit storageUnit, StorageUnit journalUnit, double foldRatio, Retainer retainer) {
+    return new JournaledListStorable(storageUnit, journalUnit, foldRatio, retainer);
+  }
+
+  public static ListStorable chunkedList(
+      StorageUnit storageUnit, Function<Long, StorageUnit> chunkUnits, int chunkSize) {
+    return chunkedList(storageUnit, chunkUnits, chunkSize, Retainer.NONE);
+  }
+
+  public static ListStorable chunkedList(
+      StorageUnit storageUnit,
+      Function<Long, StorageUnit> chunkUnits,
+      int chunkSize,
+      Retainer retainer) {
+    return new ChunkedListStorable(
+        storageUnit, chunkUnits, chunkSize, ChunkedListStorable.DEFAULT_CACHED_CHUNKS, retainer);
+  }
+
   public static ValueStorable value(StorageUnit storageUnit) {
     return new ValueStorableV1(storageUnit);
   }
+
+  public static ValueStorable value(
+      String key, StorageUnit storageUnit, @Nullable ReadCache cache) {
+    return value(key, storageUnit, cache, Retainer.NONE);
+  }
+
+  public static ValueStorable value(
+      String key, StorageUnit storageUnit, @Nullable ReadCache cache, Retainer retainer) {
+    return new ValueStorableV1(key, storageUnit, cache, retainer);
+  }
 }
@@ -21,6 +21,7 @@ import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
 import java.lang.reflect.Type;
 
 public interface ValueStorable {
@@ -29,7 +30,23 @@ public interface ValueStorable {
 
   <T> Single<T> put(Converter converter, Type type, T value);
 
+  /**
+   * Write {@code value} to expire at {@code deadline}, in milliseconds since the epoch, or never if
+   * it is zero. Clearing the value drops its deadline. The default signals an {@link
+   * UnsupportedOperationException}.
+   */
+  default <T> Single<T> put(Converter converter, Type type, T value, long deadline) {
+    return Single.error(
+        new UnsupportedOperationException(getClass().getName() + " cannot expire values."));
+  }
+
   <T> Observable<ValueUpdate<T>> observe(Converter converter, Type type);
 
   <T> Completable clear();
+
+  /**
+   * Publish a value that was written to this storable's key some other way, such as by a batch, to
+   * its observers; null means the key was cleared. The default does nothing.
+   */
+  default void updated(@Nullable Object value) {}
 }
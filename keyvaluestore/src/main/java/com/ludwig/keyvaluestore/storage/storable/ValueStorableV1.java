@@ -22,6 +22,7 @@ import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.annotations.Nullable;
 import io.reactivex.subjects.PublishSubject;
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -31,25 +32,60 @@ public class ValueStorableV1 implements ValueStorable {
   protected final PublishSubject updateSubject = PublishSubject.create();
 
   private StorageUnit storageUnit;
+  private final String key;
+  @Nullable private final ReadCache cache;
+  private final Retainer retainer;
 
   ValueStorableV1(StorageUnit storageUnit) {
+    this("", storageUnit, null, Retainer.NONE);
+  }
+
+  ValueStorableV1(
+      String key, StorageUnit storageUnit, @Nullable ReadCache cache, Retainer retainer) {
     this.storageUnit = storageUnit;
+    this.key = key;
+    this.cache = cache;
+    this.retainer = retainer;
   }
 
   @Override
   public <T> Maybe<T> get(Converter converter, Type type) {
+    ReadCache cache = this.cache;
+    if (cache == null) {
+      return read(converter, type);
+    }
+    return Maybe.defer(
+        () -> {
+          // A write drops the cached value under the write lock, so only trust a hit no write
+          // overlapped.
+          long optimistic = storageUnit.tryOptimisticRead();
+          T cached = cache.get(key, type);
+          if (cached != null && storageUnit.validate(optimistic)) {
+            return Maybe.just(cached);
+          }
+          long stamp = cache.stamp(key);
+          return this.<T>read(converter, type)
+              .doOnSuccess(value -> cache.put(key, type, value, stamp));
+        });
+  }
+
+  private <T> Maybe<T> read(Converter converter, Type type) {
     return Completable.fromAction(storageUnit::startRead)
-        .andThen(storageUnit.exists())
-        .filter(Boolean::booleanValue)
-        .map(exists -> Optional.ofNullable(converter.<T>read(storageUnit, type)))
+        .andThen(storageUnit.readable())
+        .map(unit -> Optional.ofNullable(converter.<T>read(unit, type)))
         .filter(Optional::isPresent)
         .map(Optional::get)
         .doFinally(storageUnit::endRead);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public <T> Single<T> put(Converter converter, Type type, T value) {
+    return put(converter, type, value, 0);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Single<T> put(Converter converter, Type type, T value, long deadline) {
     return Completable.fromAction(storageUnit::startWrite)
         .andThen(storageUnit.exists())
         .flatMap(exists -> exists ? Single.just(true) : storageUnit.createNew())
@@ -60,7 +96,13 @@ public class ValueStorableV1 implements ValueStorable {
               }
               return storageUnit.converterWrite(value, converter, type);
             })
-        .doOnSuccess(o -> updateSubject.onNext(new ValueUpdate<>(value)))
+        .doOnSuccess(
+            o -> {
+              storageUnit.expireAt(deadline);
+              invalidate();
+              updateSubject.onNext(new ValueUpdate<>(value));
+            })
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite);
   }
 
@@ -73,9 +115,17 @@ public class ValueStorableV1 implements ValueStorable {
                 .map(value -> new ValueUpdate<>((T) value))
                 .defaultIfEmpty(ValueUpdate.empty())
                 .toObservable())
+        .doOnSubscribe(disposable -> retainer.retain(this))
+        .doFinally(() -> retainer.release(this))
         .hide();
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public void updated(@Nullable Object value) {
+    updateSubject.onNext(value == null ? ValueUpdate.empty() : new ValueUpdate<>(value));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <T> Completable clear() {
@@ -88,9 +138,18 @@ public class ValueStorableV1 implements ValueStorable {
               if (!deleteSuccess) {
                 throw new IOException("Clear operation on store failed.");
               }
+              storageUnit.expireAt(0);
+              invalidate();
               updateSubject.onNext(ValueUpdate.<T>empty());
             })
+        .doOnError(e -> invalidate())
         .doFinally(storageUnit::endWrite)
         .ignoreElement();
   }
+
+  private void invalidate() {
+    if (cache != null) {
+      cache.invalidate(key);
+    }
+  }
 }
@@ -18,22 +18,27 @@ package com.ludwig.keyvaluestore.storage.unit;
 import io.reactivex.annotations.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 class AdaptableInputStream extends InputStream {
   private final String key;
-  private final ReadableAdapter readableAdapter;
-  @Nullable private volatile String buffer;
+  private final ByteReadableAdapter readableAdapter;
+  @Nullable private ByteBuffer buffer;
   private volatile boolean closed = false;
 
   public AdaptableInputStream(String key, ReadableAdapter readableAdapter) {
+    this(key, ByteReadableAdapter.from(readableAdapter));
+  }
+
+  public AdaptableInputStream(String key, ByteReadableAdapter readableAdapter) {
     this.key = key;
     this.readableAdapter = readableAdapter;
   }
 
   @Override
   public int read() throws IOException {
-    byte[] b = new byte[1];
-    return (read(b, 0, 1) != -1) ? b[0] & 0xff : -1;
+    ByteBuffer buffer = buffer();
+    return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
   }
 
   @Override
@@ -43,25 +48,47 @@ class AdaptableInputStream extends InputStream {
 
   @Override
   public int read(byte b[], int off, int len) throws IOException {
-    if (closed && len > 0) {
-      throw new IOException("Stream Closed");
-    }
-    if (buffer == null) {
-      buffer = readableAdapter.read(key).blockingGet();
+    if (len == 0) {
+      return 0;
     }
-    int read = 0;
-    for (int i = off; i < buffer.length() && read < len; i++, read++) {
-      b[i] = (byte) buffer.charAt(i);
+    ByteBuffer buffer = buffer();
+    if (!buffer.hasRemaining()) {
+      return -1;
     }
+    int read = Math.min(len, buffer.remaining());
+    buffer.get(b, off, read);
     return read;
   }
 
   @Override
   public long skip(long n) throws IOException {
+    ByteBuffer buffer = buffer();
+    int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return buffer().remaining();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    buffer = null;
+  }
+
+  private ByteBuffer buffer() throws IOException {
     if (closed) {
       throw new IOException("Stream Closed");
     }
-    buffer = null;
-    return 0;
+    ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      // Read through a view so the adapter's buffer keeps its position.
+      buffer = readableAdapter.read(key).blockingGet().slice();
+      this.buffer = buffer;
+    }
+    return buffer;
   }
 }
@@ -15,34 +15,49 @@
  */
 package com.ludwig.keyvaluestore.storage.unit;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 class AdaptableOutputStream extends OutputStream {
   private final Object closeLock = new Object();
   private final String key;
-  private final WritableAdapter writableAdapter;
-  StringBuilder buffer = new StringBuilder();
+  private final ByteWritableAdapter writableAdapter;
+  private final ByteBufferPool pool;
+  private ByteBuffer buffer;
   private volatile boolean closed = false;
 
   public AdaptableOutputStream(String key, WritableAdapter writableAdapter) {
+    this(key, ByteWritableAdapter.from(writableAdapter));
+  }
+
+  public AdaptableOutputStream(String key, ByteWritableAdapter writableAdapter) {
+    this(key, writableAdapter, ByteBufferPool.heap());
+  }
+
+  public AdaptableOutputStream(
+      String key, ByteWritableAdapter writableAdapter, ByteBufferPool pool) {
     this.key = key;
     this.writableAdapter = writableAdapter;
+    this.pool = pool;
+    this.buffer = pool.acquire(ByteBufferPool.MIN_SIZE);
   }
 
   @Override
   public void write(int b) throws IOException {
-    write(new byte[] {(byte) b}, 0, 1);
+    ensureOpen();
+    ensureCapacity(1);
+    buffer.put((byte) b);
   }
 
   @Override
   public void write(byte b[], int off, int len) throws IOException {
-    if (closed && len > 0) {
-      throw new IOException("Stream Closed");
+    if (len == 0) {
+      return;
     }
-    buffer.append(new String(b, off, len, UTF_8));
+    ensureOpen();
+    ensureCapacity(len);
+    buffer.put(b, off, len);
   }
 
   @Override
@@ -51,9 +66,25 @@ class AdaptableOutputStream extends OutputStream {
       if (closed) {
         return;
       }
-      writableAdapter.write(key, buffer.toString()).blockingAwait();
       closed = true;
-      buffer = new StringBuilder();
+      buffer.flip();
+      try {
+        writableAdapter.write(key, buffer).blockingAwait();
+      } finally {
+        pool.release(buffer);
+      }
+    }
+  }
+
+  private void ensureCapacity(int length) {
+    if (length > buffer.remaining()) {
+      buffer = pool.grow(buffer, buffer.position() + length);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream Closed");
     }
   }
 }
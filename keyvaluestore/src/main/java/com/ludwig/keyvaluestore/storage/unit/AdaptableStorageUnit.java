@@ -50,6 +50,11 @@ public class AdaptableStorageUnit implements StorageUnit {
     return storageAdapter.output(key);
   }
 
+  @Override
+  public OutputStream appendOutput() throws IOException {
+    return storageAdapter.appendOutput(key);
+  }
+
   @Override
   public Single<Boolean> exists() {
     return storageAdapter.exists(key);
@@ -15,29 +15,52 @@
  */
 package com.ludwig.keyvaluestore.storage.unit;
 
+import io.reactivex.annotations.Nullable;
+import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 
 class AdaptableWriter extends Writer {
   private final Object closeLock = new Object();
   private volatile boolean closed = false;
-  private StringBuilder buffer = new StringBuilder();
+  private final ByteBufferPool pool;
+  // Dropped on close, once the pool may hand them to another writer.
+  @Nullable private ByteBuffer bytes;
+  @Nullable private CharBuffer buffer;
   private String key;
   private WritableAdapter writableAdapter;
 
   public AdaptableWriter(String key, WritableAdapter writableAdapter) {
+    this(key, writableAdapter, ByteBufferPool.heap());
+  }
 
+  public AdaptableWriter(String key, WritableAdapter writableAdapter, ByteBufferPool pool) {
     this.key = key;
     this.writableAdapter = writableAdapter;
+    this.pool = pool;
+    ByteBuffer bytes = pool.acquire(ByteBufferPool.MIN_SIZE);
+    this.bytes = bytes;
+    this.buffer = bytes.asCharBuffer();
   }
 
   @Override
-  public void write(char[] b, int off, int len) {
-    buffer.append(new String(b, off, len));
+  public void write(char[] b, int off, int len) throws IOException {
+    CharBuffer buffer = ensureOpen();
+    if (len > buffer.remaining()) {
+      buffer = grow(buffer, buffer.position() + len);
+    }
+    buffer.put(b, off, len);
   }
 
   @Override
-  public void flush() {
-    writableAdapter.write(key, buffer.toString()).blockingAwait();
+  public void flush() throws IOException {
+    CharBuffer buffer = ensureOpen();
+    int position = buffer.position();
+    buffer.flip();
+    String value = buffer.toString();
+    buffer.limit(buffer.capacity()).position(position);
+    writableAdapter.write(key, value).blockingAwait();
   }
 
   @Override
@@ -47,7 +70,34 @@ class AdaptableWriter extends Writer {
         return;
       }
       closed = true;
-      buffer = new StringBuilder();
+      ByteBuffer bytes = this.bytes;
+      this.bytes = null;
+      this.buffer = null;
+      if (bytes != null) {
+        pool.release(bytes);
+      }
+    }
+  }
+
+  private CharBuffer grow(CharBuffer buffer, int capacity) {
+    ByteBuffer grown = pool.acquire(Math.max(capacity, buffer.capacity() << 1) * Character.BYTES);
+    CharBuffer chars = grown.asCharBuffer();
+    buffer.flip();
+    chars.put(buffer);
+    ByteBuffer bytes = this.bytes;
+    if (bytes != null) {
+      pool.release(bytes);
+    }
+    this.bytes = grown;
+    this.buffer = chars;
+    return chars;
+  }
+
+  private CharBuffer ensureOpen() throws IOException {
+    CharBuffer buffer = this.buffer;
+    if (closed || buffer == null) {
+      throw new IOException("Stream Closed");
     }
+    return buffer;
   }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.storage.AsyncFileStorageAdapter;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import java.lang.reflect.Type;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A storage unit of an {@link AsyncFileStorageAdapter}. {@link #readable} and {@link
+ * #converterWrite} complete from I/O completion handlers rather than on the calling thread.
+ *
+ * <p>Since a read or write may end on a different thread than it started on, the unit locks with
+ * its own {@link StampedLock} through its unowned read and write views instead of the adapter's
+ * {@link LockManager}, whose holds belong to threads. The locks are not reentrant.
+ */
+public class AsyncFileStorageUnit extends FileStorageUnit {
+  private final AsyncFileStorageAdapter storageAdapter;
+  private final StampedLock lock = new StampedLock();
+  private final Lock readLock = lock.asReadLock();
+  private final Lock writeLock = lock.asWriteLock();
+
+  public AsyncFileStorageUnit(String key, AsyncFileStorageAdapter storageAdapter) {
+    super(key, storageAdapter);
+    this.storageAdapter = storageAdapter;
+  }
+
+  @Override
+  public Maybe<StorageUnit> readable() {
+    return storageAdapter.readAsync(key).map(MemoryStorageUnit::new);
+  }
+
+  @Override
+  public <T> Single<T> converterWrite(T value, Converter converter, Type type) {
+    return Single.defer(
+        () -> {
+          MemoryStorageUnit encoded = new MemoryStorageUnit();
+          converter.write(value, type, encoded);
+          return storageAdapter.writeAsync(key, encoded.bytes()).toSingleDefault(value);
+        });
+  }
+
+  @Override
+  public void startRead() {
+    readLock.lock();
+  }
+
+  @Override
+  public void endRead() {
+    readLock.unlock();
+  }
+
+  @Override
+  public void startWrite() {
+    writeLock.lock();
+  }
+
+  @Override
+  public void endWrite() {
+    writeLock.unlock();
+  }
+
+  @Override
+  public long tryOptimisticRead() {
+    return lock.tryOptimisticRead();
+  }
+
+  @Override
+  public boolean validate(long stamp) {
+    return stamp != 0 && lock.validate(stamp);
+  }
+}
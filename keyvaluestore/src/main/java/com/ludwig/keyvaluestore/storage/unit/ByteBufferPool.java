@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A striped pool of growable byte buffers, used by the adaptable streams so that a warm write path
+ * allocates nothing. Each thread hashes to a stripe of a few slots; {@link #acquire} takes a large
+ * enough buffer from its stripe and {@link #release} puts one back, with a compare-and-set per slot
+ * and no locking. A buffer released to a full stripe replaces the smallest one there, so a stripe
+ * converges on the sizes its threads actually grow to; the one replaced, or any buffer larger than
+ * {@code maxPooledSize}, is dropped for the garbage collector, so the pool never holds more than
+ * {@code stripes * SLOTS_PER_STRIPE * maxPooledSize} bytes.
+ *
+ * <p>Stripes are keyed by thread id rather than held in a {@code ThreadLocal}, so short-lived and
+ * virtual threads share buffers instead of each pinning their own.
+ */
+public final class ByteBufferPool {
+  public static final int DEFAULT_STRIPES = 16;
+  public static final int DEFAULT_MAX_POOLED_SIZE = 1 << 20;
+  public static final int MIN_SIZE = 256;
+  static final int SLOTS_PER_STRIPE = 4;
+
+  private static final ByteBufferPool HEAP =
+      new ByteBufferPool(false, DEFAULT_STRIPES, DEFAULT_MAX_POOLED_SIZE);
+
+  private final boolean direct;
+  private final int maxPooledSize;
+  private final int mask;
+  private final AtomicReferenceArray<ByteBuffer> slots;
+
+  /**
+   * Create a pool of heap ({@code direct == false}) or direct buffers with {@code stripes} stripes,
+   * rounded up to a power of two, keeping buffers of at most {@code maxPooledSize} bytes.
+   */
+  public ByteBufferPool(boolean direct, int stripes, int maxPooledSize) {
+    if (stripes < 1) {
+      throw new IllegalArgumentException("stripes < 1: " + stripes);
+    }
+    if (maxPooledSize < MIN_SIZE) {
+      throw new IllegalArgumentException("maxPooledSize < " + MIN_SIZE + ": " + maxPooledSize);
+    }
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) {
+      size <<= 1;
+    }
+    this.direct = direct;
+    this.maxPooledSize = maxPooledSize;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<>(size * SLOTS_PER_STRIPE);
+  }
+
+  /** The shared pool of heap buffers used by default. */
+  public static ByteBufferPool heap() {
+    return HEAP;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * A cleared buffer with at least {@code capacity} bytes, from this thread's stripe if possible.
+   */
+  public ByteBuffer acquire(int capacity) {
+    int start = stripe() * SLOTS_PER_STRIPE;
+    for (int i = start; i < start + SLOTS_PER_STRIPE; i++) {
+      ByteBuffer buffer = slots.get(i);
+      if (buffer != null && buffer.capacity() >= capacity && slots.compareAndSet(i, buffer, null)) {
+        return buffer;
+      }
+    }
+    return allocate(capacity);
+  }
+
+  /**
+   * A buffer of at least {@code capacity} bytes holding the written bytes of {@code buffer}, which
+   * is released if it had to be replaced.
+   */
+  public ByteBuffer grow(ByteBuffer buffer, int capacity) {
+    if (capacity <= buffer.capacity()) {
+      return buffer;
+    }
+    ByteBuffer grown = acquire(Math.max(capacity, buffer.capacity() << 1));
+    buffer.flip();
+    grown.put(buffer);
+    release(buffer);
+    return grown;
+  }
+
+  /** Return {@code buffer} to this thread's stripe. It must not be used afterwards. */
+  public void release(ByteBuffer buffer) {
+    if (buffer.capacity() > maxPooledSize || buffer.isDirect() != direct) {
+      return;
+    }
+    buffer.clear();
+    int start = stripe() * SLOTS_PER_STRIPE;
+    int smallest = -1;
+    ByteBuffer evicted = buffer;
+    for (int i = start; i < start + SLOTS_PER_STRIPE; i++) {
+      ByteBuffer pooled = slots.get(i);
+      if (pooled == null) {
+        if (slots.compareAndSet(i, null, buffer)) {
+          return;
+        }
+      } else if (pooled.capacity() < evicted.capacity()) {
+        smallest = i;
+        evicted = pooled;
+      }
+    }
+    if (smallest != -1) {
+      slots.compareAndSet(smallest, evicted, buffer);
+    }
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    int size = Math.max(capacity, MIN_SIZE);
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  private int stripe() {
+    long id = Thread.currentThread().getId();
+    int hash = (int) (id ^ (id >>> 32));
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.reactivex.Single;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The byte counterpart of {@link ReadableAdapter}, for backends that hold raw bytes. The returned
+ * buffer is read from its position to its limit and is not copied, so a backend can hand out a
+ * slice of its own storage.
+ */
+public interface ByteReadableAdapter {
+  Single<ByteBuffer> read(String key);
+
+  /** A stream over the value of {@code key}, fetched when first read. */
+  default InputStream inputStream(String key) {
+    return new AdaptableInputStream(key, this);
+  }
+
+  /** Adapt a string adapter, encoding its values as UTF-8. */
+  static ByteReadableAdapter from(ReadableAdapter readableAdapter) {
+    return key -> readableAdapter.read(key).map(value -> ByteBuffer.wrap(value.getBytes(UTF_8)));
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.reactivex.Completable;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The byte counterpart of {@link WritableAdapter}, for backends that hold raw bytes. The value is
+ * the buffer's bytes from its position to its limit; it is the writing stream's pooled buffer and
+ * is reused once the write completes, so a backend that keeps it past completion must copy it.
+ */
+public interface ByteWritableAdapter {
+  Completable write(String key, ByteBuffer value);
+
+  /** A stream whose bytes are written to {@code key} in one piece when it is closed. */
+  default OutputStream outputStream(String key) {
+    return new AdaptableOutputStream(key, this);
+  }
+
+  /** A stream like {@link #outputStream(String)} whose buffers come from {@code pool}. */
+  default OutputStream outputStream(String key, ByteBufferPool pool) {
+    return new AdaptableOutputStream(key, this, pool);
+  }
+
+  /** Adapt a string adapter, decoding values as UTF-8. */
+  static ByteWritableAdapter from(WritableAdapter writableAdapter) {
+    return (key, value) -> writableAdapter.write(key, UTF_8.decode(value).toString());
+  }
+}
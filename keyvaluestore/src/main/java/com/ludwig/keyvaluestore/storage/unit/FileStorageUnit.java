@@ -16,17 +16,13 @@
 package com.ludwig.keyvaluestore.storage.unit;
 
 import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.storage.Durability;
 import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
 import io.reactivex.Single;
-import io.reactivex.annotations.Nullable;
-import java.io.IOException;
 import java.lang.reflect.Type;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Collections;
 
-public class FileStorageUnit extends AdaptableStorageUnit {
-  protected final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-  @Nullable private Integer readCount;
+public class FileStorageUnit extends LockingStorageUnit {
   private FileStorageAdapter fileStorageAdapter;
 
   public FileStorageUnit(String key, FileStorageAdapter fileStorageAdapter) {
@@ -34,74 +30,28 @@ public class FileStorageUnit extends AdaptableStorageUnit {
     this.fileStorageAdapter = fileStorageAdapter;
   }
 
+  /**
+   * Write {@code value} to a temp file and move it over this unit's file, so readers and crashes
+   * see either the old or the new value. Under {@link Durability.Mode#GROUP_COMMIT} the encoded
+   * value is handed to the adapter's commit log instead.
+   */
   @Override
   public <T> Single<T> converterWrite(T value, Converter converter, Type type) {
-    return createTemp()
-        .map(
-            tmpFile -> {
-              converter.write(value, type, tmpFile);
-              return tmpFile;
-            })
-        .flatMap(
-            tmpFile ->
-                delete()
-                    .flatMap(
-                        deleted -> {
-                          if (!deleted) {
-                            throw new IOException("Failed to write get to store.");
-                          }
-                          return set(tmpFile)
-                              .map(
-                                  isSet -> {
-                                    if (!isSet) {
-                                      throw new IOException("Failed to write get to store.");
-                                    }
-                                    return value;
-                                  });
-                        }));
-  }
-
-  @Override
-  public void startRead() {
-    readWriteLock.readLock().lock();
-  }
-
-  @Override
-  public void endRead() {
-    readWriteLock.readLock().unlock();
-  }
-
-  @Override
-  public void startWrite() {
-    Lock readLock = readWriteLock.readLock();
-    readCount = readWriteLock.getWriteHoldCount() == 0 ? readWriteLock.getReadHoldCount() : 0;
-
-    for (int i = 0; i < readCount; i++) {
-      readLock.unlock();
+    if (fileStorageAdapter.durability().mode() == Durability.Mode.GROUP_COMMIT) {
+      return Single.fromCallable(
+          () -> {
+            MemoryStorageUnit encoded = new MemoryStorageUnit();
+            converter.write(value, type, encoded);
+            fileStorageAdapter.commit(Collections.singletonMap(key, encoded.bytes()));
+            return value;
+          });
     }
-
-    Lock writeLock = readWriteLock.writeLock();
-    writeLock.lock();
-  }
-
-  @Override
-  public void endWrite() {
-    Lock readLock = readWriteLock.readLock();
-    Lock writeLock = readWriteLock.writeLock();
-
-    for (int i = 0; i < (readCount != null ? readCount : 0); i++) {
-      readLock.lock();
-    }
-    readCount = null;
-    writeLock.unlock();
-  }
-
-  private Single<FileStorageUnit> createTemp() {
-    return Single.fromCallable(() -> new FileStorageUnit(key + ".tmp", fileStorageAdapter));
-  }
-
-  private Single<Boolean> set(FileStorageUnit storageUnit) {
     return Single.fromCallable(
-        () -> fileStorageAdapter.file(storageUnit.key).renameTo(fileStorageAdapter.file(key)));
+        () -> {
+          String tmpKey = key + FileStorageAdapter.TMP_SUFFIX;
+          converter.write(value, type, new FileStorageUnit(tmpKey, fileStorageAdapter));
+          fileStorageAdapter.replace(tmpKey, key);
+          return value;
+        });
   }
 }
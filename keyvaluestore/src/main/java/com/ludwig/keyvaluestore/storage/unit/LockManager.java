@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import java.util.Comparator;
+
+/**
+ * Guards the reads and writes of {@link LockingStorageUnit}s by key. Locks are held per thread: a
+ * thread may nest reads and writes of the same key, and a write started while holding a read gives
+ * the read up until the write ends.
+ */
+public interface LockManager {
+  void startRead(String key);
+
+  void endRead(String key);
+
+  void startWrite(String key);
+
+  void endWrite(String key);
+
+  /**
+   * A stamp for reading state guarded by {@code key} without taking the read lock, or zero if a
+   * write is in progress. Check it with {@link #validate} after reading.
+   */
+  long tryOptimisticRead(String key);
+
+  /** Whether no write to {@code key} has started since {@code stamp} was issued. */
+  boolean validate(String key, long stamp);
+
+  /**
+   * The order to lock several keys in so that callers locking overlapping sets of keys cannot
+   * deadlock. Natural key order by default.
+   */
+  default Comparator<String> lockOrder() {
+    return Comparator.naturalOrder();
+  }
+}
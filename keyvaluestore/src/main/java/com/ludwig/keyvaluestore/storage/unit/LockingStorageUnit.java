@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import com.ludwig.keyvaluestore.storage.StorageAdapter;
+
+/** An {@link AdaptableStorageUnit} that guards reads and writes through a {@link LockManager}. */
+public class LockingStorageUnit extends AdaptableStorageUnit {
+  private final LockManager lockManager;
+
+  public LockingStorageUnit(String key, StorageAdapter storageAdapter) {
+    this(key, storageAdapter, storageAdapter.lockManager());
+  }
+
+  public LockingStorageUnit(String key, StorageAdapter storageAdapter, LockManager lockManager) {
+    super(key, storageAdapter);
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public void startRead() {
+    lockManager.startRead(key);
+  }
+
+  @Override
+  public void endRead() {
+    lockManager.endRead(key);
+  }
+
+  @Override
+  public void startWrite() {
+    lockManager.startWrite(key);
+  }
+
+  @Override
+  public void endWrite() {
+    lockManager.endWrite(key);
+  }
+
+  @Override
+  public long tryOptimisticRead() {
+    return lockManager.tryOptimisticRead(key);
+  }
+
+  @Override
+  public boolean validate(long stamp) {
+    return lockManager.validate(key, stamp);
+  }
+}
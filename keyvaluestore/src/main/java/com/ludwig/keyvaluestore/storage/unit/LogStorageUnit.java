@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import com.ludwig.keyvaluestore.storage.LogStorageAdapter;
+
+/**
+ * A {@link StorageUnit} backed by a {@link LogStorageAdapter}. Every value is appended as a single
+ * record when its writer is closed, so unlike {@link FileStorageUnit} no temporary file is needed
+ * to make writes atomic.
+ */
+public class LogStorageUnit extends LockingStorageUnit {
+
+  public LogStorageUnit(String key, LogStorageAdapter logStorageAdapter) {
+    super(key, logStorageAdapter);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import com.ludwig.keyvaluestore.Converter;
+import io.reactivex.Single;
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link StorageUnit} holding its value in a byte array. Useful for running a {@link Converter}
+ * against bytes that are stored or transferred some other way, such as a single journal record.
+ */
+public class MemoryStorageUnit implements StorageUnit {
+  private byte[] bytes;
+  private boolean exists;
+
+  public MemoryStorageUnit() {
+    this.bytes = new byte[0];
+    this.exists = false;
+  }
+
+  public MemoryStorageUnit(byte[] bytes) {
+    this.bytes = bytes;
+    this.exists = true;
+  }
+
+  /** The bytes most recently written to this unit. */
+  public synchronized byte[] bytes() {
+    return bytes;
+  }
+
+  @Override
+  public Reader reader() {
+    return new InputStreamReader(input(), Charset.defaultCharset());
+  }
+
+  @Override
+  public Writer writer() {
+    return new OutputStreamWriter(output(), Charset.defaultCharset());
+  }
+
+  @Override
+  public synchronized OutputStream output() {
+    return new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        synchronized (MemoryStorageUnit.this) {
+          bytes = toByteArray();
+          exists = true;
+        }
+      }
+    };
+  }
+
+  @Override
+  public synchronized InputStream input() {
+    return new ByteArrayInputStream(bytes);
+  }
+
+  @Override
+  public synchronized Single<Boolean> exists() {
+    return Single.just(exists);
+  }
+
+  @Override
+  public Single<Boolean> createNew() {
+    return Single.fromCallable(
+        () -> {
+          synchronized (this) {
+            if (exists) {
+              return false;
+            }
+            exists = true;
+            return true;
+          }
+        });
+  }
+
+  @Override
+  public Single<Boolean> delete() {
+    return Single.fromCallable(
+        () -> {
+          synchronized (this) {
+            boolean existed = exists;
+            bytes = new byte[0];
+            exists = false;
+            return existed;
+          }
+        });
+  }
+
+  @Override
+  public <T> Single<T> converterWrite(T value, Converter converter, Type type) {
+    return Single.fromCallable(
+        () -> {
+          converter.write(value, type, this);
+          return value;
+        });
+  }
+
+  @Override
+  public void startRead() {}
+
+  @Override
+  public void endRead() {}
+
+  @Override
+  public void startWrite() {}
+
+  @Override
+  public void endWrite() {}
+}
@@ -16,6 +16,7 @@
 package com.ludwig.keyvaluestore.storage.unit;
 
 import com.ludwig.keyvaluestore.Converter;
+import io.reactivex.Maybe;
 import io.reactivex.Single;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,14 +34,42 @@ public interface StorageUnit {
 
   InputStream input() throws Exception;
 
+  /**
+   * Open a stream whose bytes are appended to the current value when it is closed. Units that
+   * cannot append throw {@link UnsupportedOperationException}.
+   */
+  default OutputStream appendOutput() throws Exception {
+    throw new UnsupportedOperationException(getClass().getName() + " cannot append.");
+  }
+
   Single<Boolean> exists();
 
+  /**
+   * The current value as a unit a converter can read without waiting on further I/O, or empty if
+   * there is no value. The default is this unit itself; units that read asynchronously load the
+   * value into memory first.
+   */
+  default Maybe<StorageUnit> readable() {
+    return exists().filter(Boolean::booleanValue).map(exists -> this);
+  }
+
   Single<Boolean> createNew() throws Exception;
 
   Single<Boolean> delete() throws Exception;
 
   <T> Single<T> converterWrite(T value, Converter converter, Type type) throws Exception;
 
+  /**
+   * Expire this unit's value at {@code deadline}, in milliseconds since the epoch, or never if it
+   * is zero. Called under the write lock once a put has been written. The default ignores zero and
+   * throws an {@link UnsupportedOperationException} otherwise.
+   */
+  default void expireAt(long deadline) {
+    if (deadline != 0) {
+      throw new UnsupportedOperationException(getClass().getName() + " cannot expire values.");
+    }
+  }
+
   void startRead();
 
   void endRead();
@@ -48,4 +77,17 @@ public interface StorageUnit {
   void startWrite();
 
   void endWrite();
+
+  /**
+   * A stamp for reading without {@link #startRead}, or zero if a write is in progress. Units that
+   * do not lock return a constant non-zero stamp.
+   */
+  default long tryOptimisticRead() {
+    return 1;
+  }
+
+  /** Whether no write has started since {@code stamp} was issued by {@link #tryOptimisticRead}. */
+  default boolean validate(long stamp) {
+    return stamp != 0;
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import java.util.Comparator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link LockManager} over a fixed array of {@link StampedLock}s, each guarding every key that
+ * hashes to it. Memory stays constant however many keys are in use, and cached reads can skip
+ * locking entirely with {@link #tryOptimisticRead}. Keys that share a stripe also share its lock,
+ * so more stripes mean less false contention between writers.
+ *
+ * <p>{@code StampedLock} is not reentrant, so each thread's holds are counted per stripe: nested
+ * reads share one read lock, reads inside a write take no lock, and a write started while holding a
+ * read converts it, or gives it up and reacquires it once the write ends.
+ */
+public final class StripedLockManager implements LockManager {
+  public static final int DEFAULT_STRIPES = 64;
+
+  private final StampedLock[] stripes;
+  private final int mask;
+  private final ThreadLocal<Holds> holds;
+
+  public StripedLockManager() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /** Create a manager with {@code stripes} locks, rounded up to a power of two. */
+  public StripedLockManager(int stripes) {
+    if (stripes < 1) {
+      throw new IllegalArgumentException("stripes < 1: " + stripes);
+    }
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) {
+      size <<= 1;
+    }
+    this.stripes = new StampedLock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new StampedLock();
+    }
+    this.mask = size - 1;
+    this.holds = ThreadLocal.withInitial(() -> new Holds(this.stripes.length));
+  }
+
+  @Override
+  public void startRead(String key) {
+    int stripe = stripe(key);
+    Holds holds = this.holds.get();
+    if (holds.reads[stripe]++ == 0 && holds.writes[stripe] == 0) {
+      holds.stamps[stripe] = stripes[stripe].readLock();
+    }
+  }
+
+  @Override
+  public void endRead(String key) {
+    int stripe = stripe(key);
+    Holds holds = this.holds.get();
+    if (holds.reads[stripe] == 0) {
+      throw new IllegalMonitorStateException("No read held for " + key);
+    }
+    if (--holds.reads[stripe] == 0 && holds.writes[stripe] == 0) {
+      stripes[stripe].unlockRead(holds.stamps[stripe]);
+    }
+  }
+
+  @Override
+  public void startWrite(String key) {
+    int stripe = stripe(key);
+    Holds holds = this.holds.get();
+    if (holds.writes[stripe]++ > 0) {
+      return;
+    }
+    StampedLock lock = stripes[stripe];
+    if (holds.reads[stripe] > 0) {
+      long stamp = lock.tryConvertToWriteLock(holds.stamps[stripe]);
+      if (stamp != 0) {
+        holds.stamps[stripe] = stamp;
+        return;
+      }
+      lock.unlockRead(holds.stamps[stripe]);
+    }
+    holds.stamps[stripe] = lock.writeLock();
+  }
+
+  @Override
+  public void endWrite(String key) {
+    int stripe = stripe(key);
+    Holds holds = this.holds.get();
+    if (holds.writes[stripe] == 0) {
+      throw new IllegalMonitorStateException("No write held for " + key);
+    }
+    if (--holds.writes[stripe] > 0) {
+      return;
+    }
+    StampedLock lock = stripes[stripe];
+    if (holds.reads[stripe] > 0) {
+      holds.stamps[stripe] = lock.tryConvertToReadLock(holds.stamps[stripe]);
+    } else {
+      lock.unlockWrite(holds.stamps[stripe]);
+    }
+  }
+
+  @Override
+  public long tryOptimisticRead(String key) {
+    return stripes[stripe(key)].tryOptimisticRead();
+  }
+
+  @Override
+  public boolean validate(String key, long stamp) {
+    return stamp != 0 && stripes[stripe(key)].validate(stamp);
+  }
+
+  /** Stripe order, then key order, so batches lock each stripe once and in a global order. */
+  @Override
+  public Comparator<String> lockOrder() {
+    return Comparator.comparingInt(this::stripe).thenComparing(Comparator.naturalOrder());
+  }
+
+  private int stripe(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /** One thread's holds on each stripe. */
+  private static final class Holds {
+    final int[] reads;
+    final int[] writes;
+    final long[] stamps;
+
+    Holds(int stripes) {
+      reads = new int[stripes];
+      writes = new int[stripes];
+      stamps = new long[stripes];
+    }
+  }
+}
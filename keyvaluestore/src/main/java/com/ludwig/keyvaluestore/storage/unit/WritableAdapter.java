@@ -1,7 +1,18 @@
 package com.ludwig.keyvaluestore.storage.unit;
 
 import io.reactivex.Completable;
+import java.io.Writer;
 
 public interface WritableAdapter {
   Completable write(String key, String value);
+
+  /** A writer whose characters are written to {@code key} on every flush. */
+  default Writer writer(String key) {
+    return new AdaptableWriter(key, this);
+  }
+
+  /** A writer like {@link #writer(String)} whose buffers come from {@code pool}. */
+  default Writer writer(String key, ByteBufferPool pool) {
+    return new AdaptableWriter(key, this, pool);
+  }
 }
@@ -15,11 +15,13 @@
  */
 package com.ludwig.keyvaluestore.types;
 
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.schedulers.Schedulers;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /** Store a {@code java.util.List} of homogeneous values. */
 public interface ListType<T> {
@@ -36,6 +38,33 @@ public interface ListType<T> {
    */
   List<T> blockingGet();
 
+  /**
+   * Retrieve the number of elements in this store. Chunked storage reads only its header; other
+   * storage reads the whole {@code List}.
+   */
+  Single<Integer> size();
+
+  /**
+   * Retrieve the element at {@code index}. Completes empty if the {@code List} is not that long or
+   * the element is null.
+   */
+  Maybe<T> get(int index);
+
+  /**
+   * Retrieve up to {@code limit} elements starting at {@code offset}, for example one page of a
+   * long {@code List}. The result is shorter than {@code limit}, or empty, near the end of the
+   * {@code List}. Chunked storage reads only the chunks the range covers.
+   */
+  Single<List<T>> get(int offset, int limit);
+
+  /**
+   * Retrieve the elements of this store one at a time as they are requested, skipping null
+   * elements. With a {@link com.ludwig.keyvaluestore.StreamingConverter} or chunked storage the
+   * {@code List} is never held in memory as a whole, so very long lists can be scanned in constant
+   * memory.
+   */
+  Flowable<T> stream();
+
   /**
    * Write a {@code List} to this store and observe the operation. The {@code List} returned in the
    * {@link Single} is the {@code List} written to this store, making this useful for chaining.
@@ -43,15 +72,31 @@ public interface ListType<T> {
   Single<List<T>> observePut(final List<T> list);
 
   /**
-   * Asynchronously write a {@code List} to this store. The write operation occurs on {@link
-   * Schedulers#io()}. If you wish to specify the {@link Scheduler} then use {@link #put(List,
-   * Scheduler)}.
+   * Asynchronously write a {@code List} to this store. The write operation occurs on the scheduler
+   * of the store's {@link com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link
+   * Scheduler} then use {@link #put(List, Scheduler)}.
    */
   void put(List<T> list);
 
   /** Write a {@code List} to this store on a specified {@link Scheduler}. */
   void put(List<T> list, Scheduler scheduler);
 
+  /**
+   * Write a {@code List} that expires {@code ttl} after the write is subscribed to and observe the
+   * operation. Once expired the store reads as empty, and its observers see it cleared when the
+   * {@code List} is deleted in the background shortly after. Adding to or removing from the {@code
+   * List} keeps its expiry, while a later put without a time to live removes it. Stores whose
+   * storage cannot expire lists, including journaled and chunked ones, signal an {@link
+   * UnsupportedOperationException}.
+   */
+  Single<List<T>> observePut(final List<T> list, long ttl, TimeUnit unit);
+
+  /**
+   * Asynchronously write a {@code List} that expires {@code ttl} later, on the same {@link
+   * Scheduler} as {@link #put(List)}. See {@link #observePut(List, long, TimeUnit)}.
+   */
+  void put(List<T> list, long ttl, TimeUnit unit);
+
   /**
    * Observe changes to the {@code List} in this store. {@code onNext()} will be invoked immediately
    * with the current {@code List} upon subscription and subsequent changes thereafter.
@@ -61,6 +106,13 @@ public interface ListType<T> {
    */
   Observable<List<T>> observe();
 
+  /**
+   * Observe changes to the {@code List} in this store as {@link #observe()} does, as a {@link
+   * Flowable} that holds the updates a slow subscriber has not requested yet as {@code strategy}
+   * says, rather than queueing a {@code List} for every one of them.
+   */
+  Flowable<List<T>> observe(ObserveStrategy strategy);
+
   /**
    * Clear the {code List} in this store and observe the operation.
    *
@@ -70,9 +122,9 @@ public interface ListType<T> {
   Single<List<T>> observeClear();
 
   /**
-   * Asynchronously clear the {@code List} in this store. The clear operation occurs on {@link
-   * Schedulers#io()}. If you wish to specify the {@link Scheduler} then use {@link
-   * #clear(Scheduler)}.
+   * Asynchronously clear the {@code List} in this store. The clear operation occurs on the
+   * scheduler of the store's {@link com.ludwig.keyvaluestore.Execution}. If you wish to specify the
+   * {@link Scheduler} then use {@link #clear(Scheduler)}.
    */
   void clear();
 
@@ -89,9 +141,9 @@ public interface ListType<T> {
   Single<List<T>> observeAdd(final T value);
 
   /**
-   * Asynchronously add an item to the stored {@code List}. The write operation occurs on {@link
-   * Schedulers#io()}. If you wish to specify the {@link Scheduler} then use {@link #add(Object,
-   * Scheduler)}.
+   * Asynchronously add an item to the stored {@code List}. The write operation occurs on the
+   * scheduler of the store's {@link com.ludwig.keyvaluestore.Execution}. If you wish to specify the
+   * {@link Scheduler} then use {@link #add(Object, Scheduler)}.
    */
   void add(T value);
 
@@ -111,8 +163,7 @@ public interface ListType<T> {
    * Asynchronously attempt to remove all items matching criteria from the {@code List}. This method
    * removes all items for which the predicate function returns true.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #remove(Scheduler, PredicateFunc)}.
+   * <p>This operation runs where it is subscribed.
    */
   Single<List<T>> observeRemoveAll(PredicateFunc<T> predicateFunc);
 
@@ -120,8 +171,9 @@ public interface ListType<T> {
    * Asynchronously attempt to remove an item from the {@code List}. This method removes the first
    * item for which the predicate function returns true.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #remove(Scheduler, PredicateFunc)}.
+   * <p>This operation occurs on the scheduler of the store's {@link
+   * com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link Scheduler} then use
+   * {@link #remove(Scheduler, PredicateFunc)}.
    */
   void remove(PredicateFunc<T> predicateFunc);
 
@@ -144,8 +196,9 @@ public interface ListType<T> {
    * Asynchronously attempt to remove an item from the {@code List}. This method removes the first
    * item that {@code .equals()} the specified value.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #remove(Object, Scheduler)}.
+   * <p>This operation occurs on the scheduler of the store's {@link
+   * com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link Scheduler} then use
+   * {@link #remove(Object, Scheduler)}.
    */
   void remove(final T value);
 
@@ -166,8 +219,9 @@ public interface ListType<T> {
   /**
    * Asynchronously remove the item from the {@code List} at the specified position.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #remove(int, Scheduler)}.
+   * <p>This operation occurs on the scheduler of the store's {@link
+   * com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link Scheduler} then use
+   * {@link #remove(int, Scheduler)}.
    */
   void remove(int position);
 
@@ -187,8 +241,9 @@ public interface ListType<T> {
    * Asynchronously attempt to replace an item in the {@code List}. This method replaces the first
    * item for which the predicate function returns true.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #replace(Object, Scheduler, PredicateFunc)}.
+   * <p>This operation occurs on the scheduler of the store's {@link
+   * com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link Scheduler} then use
+   * {@link #replace(Object, Scheduler, PredicateFunc)}.
    */
   void replace(T value, PredicateFunc<T> predicateFunc);
 
@@ -213,8 +268,9 @@ public interface ListType<T> {
    * item in the {@code List} for which the predicate function returns true. If no items qualify
    * then the item is appended to the end of the {@code List}.
    *
-   * <p>This operation occurs on {@link Schedulers#io()}. If you wish to specify the {@link
-   * Scheduler} then use {@link #addOrReplace(Object, Scheduler, PredicateFunc)}.
+   * <p>This operation occurs on the scheduler of the store's {@link
+   * com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link Scheduler} then use
+   * {@link #addOrReplace(Object, Scheduler, PredicateFunc)}.
    */
   void addOrReplace(T value, PredicateFunc<T> predicateFunc);
 
@@ -17,14 +17,17 @@ package com.ludwig.keyvaluestore.types;
 
 import com.ludwig.keyvaluestore.Converter;
 import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.annotations.Nullable;
-import io.reactivex.schedulers.Schedulers;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 final class ListTypeV1<T> implements ListType<T> {
@@ -33,11 +36,13 @@ final class ListTypeV1<T> implements ListType<T> {
   private final ListStorable storage;
   private final Converter converter;
   private final Type type;
+  private final Scheduler scheduler;
 
-  ListTypeV1(ListStorable storage, Converter converter, Type type) {
+  ListTypeV1(ListStorable storage, Converter converter, Type type, Scheduler scheduler) {
     this.storage = storage;
     this.converter = converter;
     this.type = new ListTypeWrapper(type);
+    this.scheduler = scheduler;
   }
 
   @Override
@@ -51,15 +56,45 @@ final class ListTypeV1<T> implements ListType<T> {
     return get().blockingGet();
   }
 
+  @Override
+  public Single<Integer> size() {
+    return storage.<T>size(converter, type);
+  }
+
+  @Override
+  public Maybe<T> get(int index) {
+    return storage.get(index, converter, type);
+  }
+
+  @Override
+  public Single<List<T>> get(int offset, int limit) {
+    return storage.get(offset, limit, converter, type);
+  }
+
+  @Override
+  public Flowable<T> stream() {
+    return storage.stream(converter, type);
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Single<List<T>> observePut(final List<T> list) {
     return storage.put(converter, type, list);
   }
 
+  @Override
+  public Single<List<T>> observePut(final List<T> list, long ttl, TimeUnit unit) {
+    return Single.defer(() -> storage.put(converter, type, list, TypeFactory.deadline(ttl, unit)));
+  }
+
+  @Override
+  public void put(List<T> list, long ttl, TimeUnit unit) {
+    observePut(list, ttl, unit).subscribeOn(scheduler).subscribe();
+  }
+
   @Override
   public void put(List<T> list) {
-    put(list, Schedulers.io());
+    put(list, scheduler);
   }
 
   @Override
@@ -73,6 +108,14 @@ final class ListTypeV1<T> implements ListType<T> {
     return storage.observe(converter, type);
   }
 
+  @Override
+  public Flowable<List<T>> observe(ObserveStrategy strategy) {
+    if (!strategy.coalesces()) {
+      return strategy.apply(observe());
+    }
+    return strategy.apply(storage.<T>observeLatest(converter, type)).map(Callable::call);
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Single<List<T>> observeClear() {
@@ -81,7 +124,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void clear() {
-    clear(Schedulers.io());
+    clear(scheduler);
   }
 
   @Override
@@ -97,7 +140,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void add(T value) {
-    add(value, Schedulers.io());
+    add(value, scheduler);
   }
 
   @Override
@@ -118,7 +161,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void remove(PredicateFunc<T> predicateFunc) {
-    remove(Schedulers.io(), predicateFunc);
+    remove(scheduler, predicateFunc);
   }
 
   @Override
@@ -133,7 +176,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void remove(final T value) {
-    remove(value, Schedulers.io());
+    remove(value, scheduler);
   }
 
   @Override
@@ -149,7 +192,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void remove(int position) {
-    remove(position, Schedulers.io());
+    remove(position, scheduler);
   }
 
   @Override
@@ -166,7 +209,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void replace(T value, PredicateFunc<T> predicateFunc) {
-    replace(value, Schedulers.io(), predicateFunc);
+    replace(value, scheduler, predicateFunc);
   }
 
   @Override
@@ -182,7 +225,7 @@ final class ListTypeV1<T> implements ListType<T> {
 
   @Override
   public void addOrReplace(T value, PredicateFunc<T> predicateFunc) {
-    addOrReplace(value, Schedulers.io(), predicateFunc);
+    addOrReplace(value, scheduler, predicateFunc);
   }
 
   @Override
@@ -212,5 +255,23 @@ final class ListTypeV1<T> implements ListType<T> {
     public Type getRawType() {
       return List.class;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof ListTypeWrapper)) return false;
+
+      return wrappedType.equals(((ListTypeWrapper) obj).wrappedType);
+    }
+
+    @Override
+    public int hashCode() {
+      return 37 * wrappedType.hashCode() + List.class.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return List.class.getName() + "<" + wrappedType.getTypeName() + ">";
+    }
   }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.types;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How {@link ValueType#observe(ObserveStrategy)} and {@link ListType#observe(ObserveStrategy)}
+ * deliver updates to a subscriber that falls behind the writers. Value updates carry the value each
+ * write was given, so one that is dropped costs nothing beyond the write itself.
+ *
+ * <p>Under {@link #latest} and {@link #sample}, lists whose storage keeps them in memory or in
+ * chunks are only materialized once an update is delivered, and then as they are at delivery, so
+ * updates replaced before delivery build no list at all. {@link #buffer} keeps the list each write
+ * produced, since it promises the states in between.
+ */
+public abstract class ObserveStrategy {
+  private ObserveStrategy() {}
+
+  abstract <T> Flowable<T> apply(Observable<T> updates);
+
+  /** Whether only the newest of several pending updates is ever delivered. */
+  boolean coalesces() {
+    return true;
+  }
+
+  /**
+   * Keep only the newest update a subscriber has not requested yet, dropping the ones it replaces.
+   * A slow subscriber sees the current state whenever it asks, but may skip states in between.
+   */
+  public static ObserveStrategy latest() {
+    return new ObserveStrategy() {
+      @Override
+      <T> Flowable<T> apply(Observable<T> updates) {
+        return updates.toFlowable(BackpressureStrategy.LATEST);
+      }
+    };
+  }
+
+  /**
+   * Keep up to {@code capacity} updates a subscriber has not requested yet, dropping the oldest to
+   * make room, so the newest state is always delivered.
+   */
+  public static ObserveStrategy buffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    return new ObserveStrategy() {
+      @Override
+      <T> Flowable<T> apply(Observable<T> updates) {
+        return updates
+            .toFlowable(BackpressureStrategy.MISSING)
+            .onBackpressureBuffer(capacity, null, BackpressureOverflowStrategy.DROP_OLDEST);
+      }
+
+      @Override
+      boolean coalesces() {
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Deliver at most one update every {@code period}, the newest at its end, on the computation
+   * {@link Scheduler}. A period without updates delivers nothing.
+   */
+  public static ObserveStrategy sample(long period, TimeUnit unit) {
+    return sample(period, unit, Schedulers.computation());
+  }
+
+  /**
+   * Deliver at most one update every {@code period}, the newest at its end, on {@code scheduler}. A
+   * period without updates delivers nothing.
+   */
+  public static ObserveStrategy sample(long period, TimeUnit unit, Scheduler scheduler) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("period must be positive: " + period);
+    }
+    return new ObserveStrategy() {
+      @Override
+      <T> Flowable<T> apply(Observable<T> updates) {
+        // A subscriber still busy at the end of a period gets the newest sample when it asks.
+        return updates.sample(period, unit, scheduler).toFlowable(BackpressureStrategy.LATEST);
+      }
+    };
+  }
+}
@@ -16,16 +16,44 @@
 package com.ludwig.keyvaluestore.types;
 
 import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.Execution;
 import com.ludwig.keyvaluestore.storage.storable.ListStorable;
 import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import io.reactivex.Scheduler;
 import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 
 public final class TypeFactory {
   public static <T> ListType<T> build(ListStorable storage, Converter converter, Type type) {
-    return new ListTypeV1<T>(storage, converter, type);
+    return build(storage, converter, type, Execution.io().scheduler());
+  }
+
+  /** Build a list type whose fire-and-forget operations subscribe on {@code scheduler}. */
+  public static <T> ListType<T> build(
+      ListStorable storage, Converter converter, Type type, Scheduler scheduler) {
+    return new ListTypeV1<T>(storage, converter, type, scheduler);
+  }
+
+  /** The {@code List<T>} type of a list of {@code elementType}, as list storables receive it. */
+  public static Type listType(Type elementType) {
+    return new ListTypeV1.ListTypeWrapper(elementType);
   }
 
   public static <T> ValueType<T> build(ValueStorable storage, Converter converter, Type type) {
-    return new ValueTypeV1<T>(storage, converter, type);
+    return build(storage, converter, type, Execution.io().scheduler());
+  }
+
+  /** Build a value type whose fire-and-forget operations subscribe on {@code scheduler}. */
+  public static <T> ValueType<T> build(
+      ValueStorable storage, Converter converter, Type type, Scheduler scheduler) {
+    return new ValueTypeV1<T>(storage, converter, type, scheduler);
+  }
+
+  /** The deadline, in milliseconds since the epoch, of a value put now to live for {@code ttl}. */
+  static long deadline(long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("Time to live must be positive: " + ttl);
+    }
+    return System.currentTimeMillis() + unit.toMillis(ttl);
   }
 }
@@ -17,7 +17,7 @@ package com.ludwig.keyvaluestore.types;
 
 import io.reactivex.*;
 import io.reactivex.annotations.Nullable;
-import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.TimeUnit;
 
 /** Store a single object. */
 public interface ValueType<T> {
@@ -41,15 +41,30 @@ public interface ValueType<T> {
   Single<T> observePut(final T value);
 
   /**
-   * Asynchronously write a value to this store. The write operation occurs on {@link
-   * Schedulers#io()}. If you wish to specify the {@link Scheduler} then use {@link #put(Object,
-   * Scheduler)}.
+   * Asynchronously write a value to this store. The write operation occurs on the scheduler of the
+   * store's {@link com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link
+   * Scheduler} then use {@link #put(Object, Scheduler)}.
    */
   void put(T value);
 
   /** Write a value to this store on a specified {@link Scheduler}. */
   void put(T value, Scheduler scheduler);
 
+  /**
+   * Write a value that expires {@code ttl} after the write is subscribed to and observe the
+   * operation. Once expired the store reads as empty, and its observers see it cleared when the
+   * value is deleted in the background shortly after. A later put without a time to live keeps the
+   * value until it is cleared. Stores whose storage cannot expire values signal an {@link
+   * UnsupportedOperationException}.
+   */
+  Single<T> observePut(final T value, long ttl, TimeUnit unit);
+
+  /**
+   * Asynchronously write a value that expires {@code ttl} later, on the same {@link Scheduler} as
+   * {@link #put(Object)}. See {@link #observePut(Object, long, TimeUnit)}.
+   */
+  void put(T value, long ttl, TimeUnit unit);
+
   /**
    * Observe changes to the value in this store. {@code onNext(valueUpdate)} will be invoked
    * immediately with the current value upon subscription and subsequent changes thereafter.
@@ -60,13 +75,20 @@ public interface ValueType<T> {
    */
   Observable<ValueUpdate<T>> observe();
 
+  /**
+   * Observe changes to the value in this store as {@link #observe()} does, as a {@link Flowable}
+   * that holds the updates a slow subscriber has not requested yet as {@code strategy} says, rather
+   * than queueing every one of them.
+   */
+  Flowable<ValueUpdate<T>> observe(ObserveStrategy strategy);
+
   /** Clear the value in this store and observe the operation. (Useful for chaining). */
   Completable observeClear();
 
   /**
-   * Asynchronously clear the value in this store. The clear operation occurs on {@link
-   * Schedulers#io()}. If you wish to specify the {@link Scheduler} then use {@link
-   * #clear(Scheduler)}.
+   * Asynchronously clear the value in this store. The clear operation occurs on the scheduler of
+   * the store's {@link com.ludwig.keyvaluestore.Execution}. If you wish to specify the {@link
+   * Scheduler} then use {@link #clear(Scheduler)}.
    */
   void clear();
 
@@ -19,18 +19,20 @@ import com.ludwig.keyvaluestore.Converter;
 import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
 import io.reactivex.*;
 import io.reactivex.annotations.Nullable;
-import io.reactivex.schedulers.Schedulers;
 import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 
 final class ValueTypeV1<T> implements ValueType<T> {
   private final Converter converter;
   private final Type type;
+  private final Scheduler scheduler;
   private ValueStorable storage;
 
-  ValueTypeV1(ValueStorable storage, Converter converter, Type type) {
+  ValueTypeV1(ValueStorable storage, Converter converter, Type type, Scheduler scheduler) {
     this.storage = storage;
     this.converter = converter;
     this.type = type;
+    this.scheduler = scheduler;
   }
 
   @Override
@@ -47,7 +49,7 @@ final class ValueTypeV1<T> implements ValueType<T> {
 
   @Override
   public void put(T value) {
-    put(value, Schedulers.io());
+    put(value, scheduler);
   }
 
   @Override
@@ -61,12 +63,27 @@ final class ValueTypeV1<T> implements ValueType<T> {
     return storage.put(converter, type, value);
   }
 
+  @Override
+  public void put(T value, long ttl, TimeUnit unit) {
+    observePut(value, ttl, unit).subscribeOn(scheduler).subscribe();
+  }
+
+  @Override
+  public Single<T> observePut(final T value, long ttl, TimeUnit unit) {
+    return Single.defer(() -> storage.put(converter, type, value, TypeFactory.deadline(ttl, unit)));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Observable<ValueUpdate<T>> observe() {
     return storage.observe(converter, type);
   }
 
+  @Override
+  public Flowable<ValueUpdate<T>> observe(ObserveStrategy strategy) {
+    return strategy.apply(observe());
+  }
+
   @Override
   public Completable observeClear() {
     return storage.clear();
@@ -74,7 +91,7 @@ final class ValueTypeV1<T> implements ValueType<T> {
 
   @Override
   public void clear() {
-    clear(Schedulers.io());
+    clear(scheduler);
   }
 
   @Override
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ExecutionTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void boundedRejectsNoThreads() {
+    try {
+      Execution.bounded(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void boundedRunsOnAtMostItsDaemonThreads() throws Exception {
+    Execution execution = Execution.bounded(2);
+    Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(20);
+    for (int i = 0; i < 20; i++) {
+      execution
+          .scheduler()
+          .scheduleDirect(
+              () -> {
+                threads.add(Thread.currentThread());
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                  Thread.sleep(5);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+              });
+    }
+
+    assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(threads.size()).isAtMost(2);
+    assertThat(maxRunning.get()).isAtMost(2);
+    for (Thread thread : threads) {
+      assertThat(thread.isDaemon()).isTrue();
+      assertThat(thread.getName()).startsWith("keyvaluestore-");
+    }
+  }
+
+  @Test
+  public void virtualThreadsFallBackWhereUnavailable() throws Exception {
+    boolean available;
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      available = true;
+    } catch (NoSuchMethodException e) {
+      available = false;
+    }
+    Execution execution = Execution.virtualThreads();
+
+    assertThat(execution.isVirtual()).isEqualTo(available);
+    CountDownLatch ran = new CountDownLatch(1);
+    execution.scheduler().scheduleDirect(ran::countDown);
+    assertThat(ran.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void closeLetsQueuedOperationsFinishAndStopsThreads() throws Exception {
+    Execution execution = Execution.bounded(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    AtomicInteger ran = new AtomicInteger();
+    AtomicReference<Thread> worker = new AtomicReference<>();
+    for (int i = 0; i < 2; i++) {
+      execution
+          .scheduler()
+          .scheduleDirect(
+              () -> {
+                worker.set(Thread.currentThread());
+                try {
+                  proceed.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                ran.incrementAndGet();
+              });
+    }
+
+    execution.close();
+    proceed.countDown();
+
+    while (worker.get() == null) {
+      Thread.sleep(10);
+    }
+    worker.get().join(10_000);
+    assertThat(worker.get().isAlive()).isFalse();
+    assertThat(ran.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void ioIsShared() {
+    assertThat(Execution.io()).isSameAs(Execution.io());
+    assertThat(Execution.io().isVirtual()).isFalse();
+  }
+
+  @Test
+  public void storeRunsFireAndForgetOperationsOnItsExecution() {
+    TestScheduler scheduler = new TestScheduler();
+    KeyValueStore store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(folder.getRoot().getPath())),
+            new TextConverter(),
+            Execution.from(scheduler));
+
+    store.<String>value("value", String.class).put("value");
+    store.<String>list("list", TextConverter.STRING_LIST).add("element");
+
+    assertThat(store.<String>value("value", String.class).blockingGet()).isNull();
+    assertThat(store.<String>list("list", TextConverter.STRING_LIST).blockingGet()).isEmpty();
+
+    scheduler.triggerActions();
+
+    assertThat(store.<String>value("value", String.class).blockingGet()).isEqualTo("value");
+    assertThat(store.<String>list("list", TextConverter.STRING_LIST).blockingGet())
+        .containsExactly("element");
+  }
+}
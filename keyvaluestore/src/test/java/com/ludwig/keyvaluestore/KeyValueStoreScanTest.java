@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class KeyValueStoreScanTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private KeyValueStore open(ListFormat listFormat) {
+    return KeyValueStoreFactory.build(
+        new FileStorage(new FileStorageAdapter(folder.getRoot().getPath()), null, listFormat),
+        new TextConverter());
+  }
+
+  @Test
+  public void scanReadsMatchingKeysInOrder() {
+    KeyValueStore store = open(ListFormat.SNAPSHOT);
+    store.<Integer>value("user.b", Integer.class).observePut(2).blockingGet();
+    store.<Integer>value("user.a", Integer.class).observePut(1).blockingGet();
+    store.<Integer>value("other", Integer.class).observePut(3).blockingGet();
+
+    List<Map.Entry<String, Integer>> entries =
+        store.<Integer>scan("user.", Integer.class).toList().blockingGet();
+
+    assertThat(entries)
+        .containsExactly(
+            new AbstractMap.SimpleImmutableEntry<>("user.a", 1),
+            new AbstractMap.SimpleImmutableEntry<>("user.b", 2))
+        .inOrder();
+  }
+
+  @Test
+  public void scanSkipsKeysThatDoNotDecode() {
+    KeyValueStore store = open(ListFormat.CHUNKED);
+    store.<Integer>value("a", Integer.class).observePut(1).blockingGet();
+    store
+        .<String>list("b", TextConverter.STRING_LIST)
+        .observePut(Arrays.asList("x", "y"))
+        .blockingGet();
+    store.<String>value("c", String.class).observePut("not a number").blockingGet();
+    store.<Integer>value("d", Integer.class).observePut(4).blockingGet();
+
+    List<Map.Entry<String, Integer>> entries =
+        store.<Integer>scan("", Integer.class).toList().blockingGet();
+
+    assertThat(entries)
+        .containsExactly(
+            new AbstractMap.SimpleImmutableEntry<>("a", 1),
+            new AbstractMap.SimpleImmutableEntry<>("d", 4))
+        .inOrder();
+  }
+}
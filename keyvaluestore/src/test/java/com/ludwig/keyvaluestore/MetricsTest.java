@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.metrics.Metrics;
+import com.ludwig.keyvaluestore.metrics.Operation;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class MetricsTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void everyOperationIsRecordedWhereItStarted() {
+    StartRecorder metrics = new StartRecorder();
+    KeyValueStore store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(folder.getRoot().getPath())),
+            new TextConverter(),
+            Execution.io(),
+            metrics);
+
+    store.<String>value("value", String.class).observePut("a").blockingGet();
+    store.<String>value("value", String.class).get().blockingGet();
+    store
+        .<String>list("list", TextConverter.STRING_LIST)
+        .observePut(Arrays.asList("b"))
+        .blockingGet();
+
+    assertThat(metrics.unstarted).isEmpty();
+    assertThat(metrics.ended)
+        .containsAllOf(
+            Operation.VALUE_PUT,
+            Operation.VALUE_GET,
+            Operation.LIST_PUT,
+            Operation.LOCK_WRITE,
+            Operation.CONVERTER_WRITE,
+            Operation.STORAGE_WRITE,
+            Operation.STORAGE_COMMIT);
+    List<Operation> started = new ArrayList<>(metrics.started);
+    for (Operation operation : metrics.ended) {
+      assertThat(started.remove(operation)).isTrue();
+    }
+  }
+
+  /** Records which operations were started, and which were recorded with or without a start. */
+  private static final class StartRecorder implements Metrics {
+    final List<Operation> started = Collections.synchronizedList(new ArrayList<>());
+    final List<Operation> ended = Collections.synchronizedList(new ArrayList<>());
+    final List<Operation> unstarted = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void record(
+        Operation operation, @Nullable String key, @Nullable Type type, long nanos, long bytes) {
+      unstarted.add(operation);
+    }
+
+    @Override
+    public Metrics start(Operation operation) {
+      started.add(operation);
+      return (ended, key, type, nanos, bytes) -> {
+        assertThat(ended).isEqualTo(operation);
+        this.ended.add(ended);
+      };
+    }
+  }
+}
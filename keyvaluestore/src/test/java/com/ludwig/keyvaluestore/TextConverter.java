@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore;
+
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores values as their {@code toString()} and lists as one element per line. Reads a {@link
+ * StringBuilder} type as a fresh builder, so tests can tell a decoded value from the one written,
+ * and an {@link Integer} type by parsing, so text that is not a number fails to decode. Lists are
+ * streamed a line at a time, their elements read as strings.
+ */
+public final class TextConverter implements StreamingConverter {
+  /** The type of a list of strings. */
+  public static final Type STRING_LIST =
+      new ArrayList<String>() {}.getClass().getGenericSuperclass();
+
+  @Override
+  public <T> void write(@Nullable T data, Type type, StorageUnit storageUnit) {
+    try (Writer writer = storageUnit.writer()) {
+      if (data instanceof List) {
+        for (Object element : (List<?>) data) {
+          writer.write(element + "\n");
+        }
+      } else if (data != null) {
+        writer.write(data.toString());
+      }
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings({"TypeParameterUnusedInFormals", "unchecked"})
+  public <T> T read(StorageUnit storageUnit, Type type) {
+    try (BufferedReader reader = new BufferedReader(storageUnit.reader())) {
+      if (type instanceof ParameterizedType) {
+        List<String> lines = new ArrayList<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          lines.add(line);
+        }
+        return (T) lines;
+      }
+      StringBuilder text = new StringBuilder();
+      char[] buffer = new char[256];
+      for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+        text.append(buffer, 0, read);
+      }
+      if (text.length() == 0) {
+        return null;
+      }
+      if (type == Integer.class) {
+        return (T) Integer.valueOf(text.toString());
+      }
+      return (T) (type == StringBuilder.class ? text : text.toString());
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  public <T> ElementReader<T> elementReader(StorageUnit storageUnit, Type elementType) {
+    try {
+      BufferedReader reader = new BufferedReader(storageUnit.reader());
+      return new ElementReader<T>() {
+        @Nullable private String line = reader.readLine();
+
+        @Override
+        public boolean hasNext() {
+          return line != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+          String next = line;
+          try {
+            line = reader.readLine();
+          } catch (IOException e) {
+            throw new ConverterException(e);
+          }
+          return (T) next;
+        }
+
+        @Override
+        public void close() throws IOException {
+          reader.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+
+  @Override
+  public <T> ElementWriter<T> elementWriter(StorageUnit storageUnit, Type elementType) {
+    try {
+      Writer writer = storageUnit.writer();
+      return new ElementWriter<T>() {
+        @Override
+        public void write(@Nullable T element) {
+          try {
+            writer.write(element + "\n");
+          } catch (IOException e) {
+            throw new ConverterException(e);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.close();
+        }
+      };
+    } catch (Exception e) {
+      throw new ConverterException(e);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.Execution;
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class HistogramMetricsTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recordsLatencyAndBytesPerOperation() {
+    HistogramMetrics metrics = new HistogramMetrics();
+
+    metrics.record(Operation.VALUE_GET, "key", String.class, 2_000, 0);
+    metrics.record(Operation.VALUE_GET, "key", String.class, 4_000, 0);
+    metrics.record(Operation.STORAGE_WRITE, "key", null, 1_000, 100);
+
+    assertThat(metrics.count(Operation.VALUE_GET)).isEqualTo(2);
+    assertThat(metrics.latency(Operation.VALUE_GET).mean()).isEqualTo(3_000.0);
+    assertThat(metrics.bytes(Operation.VALUE_GET)).isEqualTo(0);
+    assertThat(metrics.bytes(Operation.STORAGE_WRITE)).isEqualTo(100);
+    assertThat(metrics.count(Operation.VALUE_PUT)).isEqualTo(0);
+    assertThat(metrics.throughput(Operation.VALUE_GET)).isGreaterThan(0.0);
+    assertThat(metrics.toString()).contains("VALUE_GET{count=2");
+    assertThat(metrics.toString()).doesNotContain("VALUE_PUT");
+  }
+
+  @Test
+  public void resetForgetsEverything() {
+    HistogramMetrics metrics = new HistogramMetrics();
+    metrics.record(Operation.STORAGE_READ, "key", null, 1_000, 10);
+
+    metrics.reset();
+
+    assertThat(metrics.count(Operation.STORAGE_READ)).isEqualTo(0);
+    assertThat(metrics.bytes(Operation.STORAGE_READ)).isEqualTo(0);
+    assertThat(metrics.toString()).isEqualTo("HistogramMetrics{}");
+  }
+
+  @Test
+  public void storeRecordsItsOperations() {
+    HistogramMetrics metrics = new HistogramMetrics();
+    KeyValueStore store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(folder.getRoot().getPath())),
+            new TextConverter(),
+            Execution.io(),
+            metrics);
+
+    store.<String>value("key", String.class).observePut("value").blockingGet();
+    store.<String>value("key", String.class).get().blockingGet();
+    store.<String>value("key", String.class).get().blockingGet();
+
+    assertThat(metrics.count(Operation.VALUE_PUT)).isEqualTo(1);
+    assertThat(metrics.count(Operation.VALUE_GET)).isEqualTo(2);
+    assertThat(metrics.bytes(Operation.STORAGE_WRITE)).isAtLeast((long) "value".length());
+    assertThat(metrics.count(Operation.LOCK_WRITE)).isAtLeast(1L);
+  }
+}
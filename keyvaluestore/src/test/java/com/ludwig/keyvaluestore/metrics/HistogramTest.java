@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.metrics;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class HistogramTest {
+  @Test
+  public void emptyHistogramReportsZero() {
+    Histogram histogram = new Histogram();
+
+    assertThat(histogram.count()).isEqualTo(0);
+    assertThat(histogram.mean()).isEqualTo(0.0);
+    assertThat(histogram.max()).isEqualTo(0);
+    assertThat(histogram.percentile(0.99)).isEqualTo(0);
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+
+    assertThat(histogram.count()).isEqualTo(20);
+    assertThat(histogram.mean()).isEqualTo(10.5);
+    assertThat(histogram.percentile(0)).isEqualTo(1);
+    assertThat(histogram.percentile(0.5)).isEqualTo(10);
+    assertThat(histogram.percentile(0.95)).isEqualTo(19);
+    assertThat(histogram.percentile(1)).isEqualTo(20);
+  }
+
+  @Test
+  public void bucketsCoverEveryValueWithinASixteenth() {
+    for (long value = 0; value >= 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+      int bucket = Histogram.bucket(value);
+      assertThat(Histogram.lowest(bucket)).isAtMost(value);
+      assertThat(Histogram.highest(bucket)).isAtLeast(value);
+      assertThat(Histogram.highest(bucket) - Histogram.lowest(bucket))
+          .isAtMost(Math.max(0, Histogram.lowest(bucket) / 16));
+    }
+    assertThat(Histogram.highest(Histogram.bucket(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void percentilesAreBoundedByMax() {
+    Histogram histogram = new Histogram();
+    histogram.record(1_000_001);
+
+    assertThat(histogram.percentile(0.5)).isEqualTo(1_000_001);
+    assertThat(histogram.max()).isEqualTo(1_000_001);
+  }
+
+  @Test
+  public void negativeValuesCountAsZero() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5);
+
+    assertThat(histogram.count()).isEqualTo(1);
+    assertThat(histogram.percentile(1)).isEqualTo(0);
+    assertThat(histogram.mean()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void rejectsQuantileOutOfRange() {
+    try {
+      new Histogram().percentile(1.5);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void resetForgetsValues() {
+    Histogram histogram = new Histogram();
+    histogram.record(100);
+    histogram.reset();
+
+    assertThat(histogram.count()).isEqualTo(0);
+    assertThat(histogram.max()).isEqualTo(0);
+    assertThat(histogram.percentile(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentRecordsAreAllCounted() throws Exception {
+    Histogram histogram = new Histogram();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 1; i <= 10_000; i++) {
+                  histogram.record(i);
+                }
+              }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(histogram.count()).isEqualTo(40_000);
+    assertThat(histogram.max()).isEqualTo(10_000);
+    assertThat(histogram.mean()).isEqualTo(5_000.5);
+  }
+}
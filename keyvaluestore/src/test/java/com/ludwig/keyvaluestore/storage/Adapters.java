@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/** Reads and writes string values through a {@link StorageAdapter}'s streams. */
+final class Adapters {
+  private Adapters() {}
+
+  static void write(StorageAdapter adapter, String key, String value) throws IOException {
+    try (OutputStream output = adapter.output(key)) {
+      output.write(value.getBytes(UTF_8));
+    }
+  }
+
+  static void append(StorageAdapter adapter, String key, String value) throws IOException {
+    try (OutputStream output = adapter.appendOutput(key)) {
+      output.write(value.getBytes(UTF_8));
+    }
+  }
+
+  static String read(StorageAdapter adapter, String key) throws IOException {
+    try (InputStream input = adapter.input(key)) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read; (read = input.read(buffer)) != -1; ) {
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), UTF_8);
+    }
+  }
+
+  /** Whether any file under directory contains text, such as a key that should be gone. */
+  static boolean anyFileContains(File directory, String text) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return false;
+    }
+    for (File file : files) {
+      if (file.isDirectory()
+          ? anyFileContains(file, text)
+          : new String(Files.readAllBytes(file.toPath()), UTF_8).contains(text)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncFileStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+
+  @Test
+  public void missingValueReadsEmpty() {
+    AsyncFileStorageAdapter adapter = new AsyncFileStorageAdapter(folder.getRoot().getPath());
+
+    adapter.readAsync("key").test().assertNoValues().assertComplete();
+  }
+
+  @Test
+  public void valuesRoundTripThroughBlockingStreams() throws Exception {
+    AsyncFileStorageAdapter adapter = new AsyncFileStorageAdapter(folder.getRoot().getPath());
+
+    adapter.writeAsync("key", "value".getBytes(UTF_8)).blockingAwait();
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    assertThat(adapter.file("key" + FileStorageAdapter.TMP_SUFFIX).exists()).isFalse();
+
+    write(adapter, "key", "other");
+    assertThat(new String(adapter.readAsync("key").blockingGet(), UTF_8)).isEqualTo("other");
+  }
+
+  @Test
+  public void largeAndEmptyValuesRoundTrip() {
+    AsyncFileStorageAdapter adapter =
+        new AsyncFileStorageAdapter(folder.getRoot().getPath(), Durability.perWrite());
+    byte[] large = new byte[1_000_000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+
+    adapter.writeAsync("key", large).blockingAwait();
+    assertThat(adapter.readAsync("key").blockingGet()).isEqualTo(large);
+
+    adapter.writeAsync("key", new byte[0]).blockingAwait();
+    assertThat(adapter.readAsync("key").blockingGet()).isEmpty();
+  }
+
+  @Test
+  public void groupCommitIsRejected() {
+    try {
+      new AsyncFileStorageAdapter(folder.getRoot().getPath(), Durability.groupCommit());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void storablesReadAndWriteThroughAsyncUnits() {
+    AdaptableStorage storage =
+        new AdaptableStorage(new AsyncFileStorageAdapter(folder.getRoot().getPath()));
+    ValueStorable value = storage.value("value");
+    ListStorable list = storage.list("list");
+
+    value.put(converter, String.class, "value").blockingGet();
+    list.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+    list.append("c", converter, TextConverter.STRING_LIST).blockingGet();
+
+    assertThat(value.<String>get(converter, String.class).blockingGet()).isEqualTo("value");
+    assertThat(list.<String>get(converter, TextConverter.STRING_LIST).blockingGet())
+        .containsExactly("a", "b", "c")
+        .inOrder();
+    value.clear().blockingAwait();
+    assertThat(value.<String>get(converter, String.class).blockingGet()).isNull();
+  }
+}
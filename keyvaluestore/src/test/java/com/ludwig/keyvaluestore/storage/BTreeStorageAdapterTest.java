@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BTreeStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private BTreeStorageAdapter adapter;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder();
+    adapter = open();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    adapter.close();
+  }
+
+  /** Small pages and a small pool, so a few hundred keys split nodes and evict pages. */
+  private BTreeStorageAdapter open() throws IOException {
+    return new BTreeStorageAdapter(directory.getPath(), 512, 512 * 16);
+  }
+
+  private void reopen() throws IOException {
+    adapter.close();
+    adapter = open();
+  }
+
+  @Test
+  public void writeReadDelete() throws IOException {
+    write(adapter, "key", "value");
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    assertThat(adapter.keys()).containsExactly("key");
+
+    assertThat(adapter.delete("key").blockingGet()).isTrue();
+    assertThat(adapter.exists("key").blockingGet()).isFalse();
+    assertThat(adapter.delete("key").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void manyKeysSplitAndSurviveReopen() throws IOException {
+    for (int i = 0; i < 1000; i++) {
+      write(adapter, String.format("key%04d", i), "value" + i);
+    }
+    for (int i = 0; i < 1000; i += 3) {
+      adapter.delete(String.format("key%04d", i)).blockingGet();
+    }
+
+    reopen();
+
+    assertThat(adapter.keys()).hasSize(666);
+    assertThat(adapter.exists("key0000").blockingGet()).isFalse();
+    assertThat(read(adapter, "key0001")).isEqualTo("value1");
+    assertThat(read(adapter, "key0998")).isEqualTo("value998");
+  }
+
+  @Test
+  public void largeValuesAreStoredInExtents() throws IOException {
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      large.append("line ").append(i).append('\n');
+    }
+    write(adapter, "large", large.toString());
+    write(adapter, "small", "value");
+
+    reopen();
+
+    assertThat(read(adapter, "large")).isEqualTo(large.toString());
+    write(adapter, "large", "shrunk");
+    assertThat(read(adapter, "large")).isEqualTo("shrunk");
+    assertThat(read(adapter, "small")).isEqualTo("value");
+  }
+
+  @Test
+  public void batchIsOneCommit() throws IOException {
+    write(adapter, "c", "3");
+    Map<String, byte[]> values = new HashMap<>();
+    values.put("a", "1".getBytes(UTF_8));
+    values.put("b", "2".getBytes(UTF_8));
+    values.put("c", null);
+    adapter.write(values);
+
+    reopen();
+
+    assertThat(read(adapter, "a")).isEqualTo("1");
+    assertThat(read(adapter, "b")).isEqualTo("2");
+    assertThat(adapter.exists("c").blockingGet()).isFalse();
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompressingStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private FileStorageAdapter files;
+  private CompressingStorageAdapter adapter;
+
+  @Before
+  public void setUp() {
+    files = new FileStorageAdapter(folder.getRoot().getPath());
+    adapter = new CompressingStorageAdapter(files);
+  }
+
+  private byte[] stored(String key) throws IOException {
+    return Files.readAllBytes(files.file(key).toPath());
+  }
+
+  private static String repeated(int length) {
+    StringBuilder text = new StringBuilder(length);
+    while (text.length() < length) {
+      text.append("compressible ");
+    }
+    return text.substring(0, length);
+  }
+
+  @Test
+  public void smallValuesAreStoredRaw() throws IOException {
+    write(adapter, "key", "value");
+
+    byte[] stored = stored("key");
+    assertThat(stored).hasLength(CompressingStorageAdapter.HEADER_SIZE + 5);
+    assertThat(stored[CompressingStorageAdapter.HEADER_SIZE - 1])
+        .isEqualTo(CompressingStorageAdapter.CODEC_RAW);
+    assertThat(read(adapter, "key")).isEqualTo("value");
+  }
+
+  @Test
+  public void largeValuesAreDeflated() throws IOException {
+    String value = repeated(100_000);
+    write(adapter, "key", value);
+
+    byte[] stored = stored("key");
+    assertThat(stored.length).isLessThan(value.length() / 10);
+    assertThat(stored[CompressingStorageAdapter.HEADER_SIZE - 1])
+        .isEqualTo(CompressingStorageAdapter.CODEC_DEFLATE);
+    assertThat(read(adapter, "key")).isEqualTo(value);
+  }
+
+  @Test
+  public void incompressibleValuesAreStoredRaw() throws IOException {
+    byte[] value = new byte[10_000];
+    new Random(42).nextBytes(value);
+    try (OutputStream output = adapter.output("key")) {
+      output.write(value);
+    }
+
+    byte[] stored = stored("key");
+    assertThat(stored).hasLength(CompressingStorageAdapter.HEADER_SIZE + value.length);
+    assertThat(stored[CompressingStorageAdapter.HEADER_SIZE - 1])
+        .isEqualTo(CompressingStorageAdapter.CODEC_RAW);
+    try (InputStream input = adapter.input("key")) {
+      byte[] read = new byte[value.length + 1];
+      int length = 0;
+      for (int n; (n = input.read(read, length, read.length - length)) != -1; ) {
+        length += n;
+      }
+      assertThat(Arrays.copyOf(read, length)).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void valuesWithoutHeaderReadAsWritten() throws IOException {
+    write(files, "short", "ab");
+    write(files, "legacy", "a legacy value");
+
+    assertThat(read(adapter, "short")).isEqualTo("ab");
+    assertThat(read(adapter, "legacy")).isEqualTo("a legacy value");
+  }
+
+  @Test
+  public void unknownCodecFails() throws IOException {
+    write(files, "key", "KVZ\u0007value");
+    try {
+      read(adapter, "key");
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void batchesAreEncoded() throws IOException {
+    write(adapter, "gone", "value");
+    Map<String, byte[]> values = new LinkedHashMap<>();
+    values.put("small", "value".getBytes(UTF_8));
+    values.put("large", repeated(10_000).getBytes(UTF_8));
+    values.put("gone", null);
+
+    adapter.write(values);
+
+    assertThat(read(adapter, "small")).isEqualTo("value");
+    assertThat(read(adapter, "large")).isEqualTo(repeated(10_000));
+    assertThat(stored("large").length).isLessThan(1_000);
+    assertThat(files.file("gone").exists()).isFalse();
+  }
+
+  @Test
+  public void storablesRoundTrip() throws IOException {
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    TextConverter converter = new TextConverter();
+    ListStorable list = storage.list("list");
+    String large = repeated(1_000);
+
+    storage.value("value").put(converter, String.class, large).blockingGet();
+    list.put(converter, TextConverter.STRING_LIST, Collections.singletonList("a")).blockingGet();
+    list.append("b", converter, TextConverter.STRING_LIST).blockingGet();
+
+    assertThat(storage.value("value").<String>get(converter, String.class).blockingGet())
+        .isEqualTo(large);
+    assertThat(list.<String>get(converter, TextConverter.STRING_LIST).blockingGet())
+        .containsExactly("a", "b")
+        .inOrder();
+    assertThat(stored("value")[CompressingStorageAdapter.HEADER_SIZE - 1])
+        .isEqualTo(CompressingStorageAdapter.CODEC_DEFLATE);
+    adapter.close();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import com.ludwig.keyvaluestore.types.ValueUpdate;
+import io.reactivex.observers.TestObserver;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ExpiryTest {
+  /** Long enough for a cold first put, which loads the expiry classes, to finish in time. */
+  private static final long TTL_MILLIS = 500;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+
+  private final List<AdaptableStorage> opened = new ArrayList<>();
+
+  private AdaptableStorage open() {
+    AdaptableStorage storage =
+        new AdaptableStorage(
+            new FileStorageAdapter(folder.getRoot().getPath()), ReadCache.maxEntries(16));
+    opened.add(storage);
+    return storage;
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (AdaptableStorage storage : opened) {
+      storage.close();
+    }
+  }
+
+  private static long deadline() {
+    return System.currentTimeMillis() + TTL_MILLIS;
+  }
+
+  private static void expire() throws InterruptedException {
+    Thread.sleep(TTL_MILLIS + 100);
+  }
+
+  @Test
+  public void expiredValueReadsAsAbsent() throws Exception {
+    AdaptableStorage storage = open();
+    ValueStorable value = storage.value("key");
+    value.put(converter, String.class, "value", deadline()).blockingGet();
+    assertThat(value.<String>get(converter, String.class).blockingGet()).isEqualTo("value");
+
+    expire();
+
+    assertThat(value.<String>get(converter, String.class).blockingGet()).isNull();
+    assertThat(storage.keys("").toList().blockingGet()).isEmpty();
+  }
+
+  @Test
+  public void putWithoutDeadlineKeepsValue() throws Exception {
+    AdaptableStorage storage = open();
+    ValueStorable value = storage.value("key");
+    value.put(converter, String.class, "old", deadline()).blockingGet();
+    value.put(converter, String.class, "new").blockingGet();
+
+    expire();
+
+    assertThat(value.<String>get(converter, String.class).blockingGet()).isEqualTo("new");
+  }
+
+  @Test
+  public void clearDropsValueDeadline() throws Exception {
+    AdaptableStorage storage = open();
+    storage.value("key").put(converter, String.class, "value", deadline()).blockingGet();
+    storage.value("key").clear().blockingAwait();
+
+    expire();
+
+    assertThat(storage.isExpired("key")).isFalse();
+  }
+
+  @Test
+  public void clearDropsListDeadline() throws Exception {
+    AdaptableStorage storage = open();
+    ListStorable list = storage.list("key");
+    list.put(converter, TextConverter.STRING_LIST, Arrays.asList("a"), deadline()).blockingGet();
+    list.clear().blockingGet();
+    list.append("b", converter, TextConverter.STRING_LIST).blockingGet();
+
+    expire();
+
+    assertThat(list.<String>get(converter, TextConverter.STRING_LIST).blockingGet())
+        .containsExactly("b");
+  }
+
+  @Test
+  public void streamOfExpiredListIgnoresCachedList() throws Exception {
+    AdaptableStorage storage = open();
+    ListStorable list = storage.list("key");
+    list.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b"), deadline())
+        .blockingGet();
+    List<String> cached = list.<String>get(converter, TextConverter.STRING_LIST).blockingGet();
+    assertThat(cached).containsExactly("a", "b");
+
+    expire();
+
+    assertThat(list.<String>stream(converter, TextConverter.STRING_LIST).toList().blockingGet())
+        .isEmpty();
+  }
+
+  @Test
+  public void streamOfLiveListServesCachedList() throws Exception {
+    AdaptableStorage storage = open();
+    ListStorable list = storage.list("key");
+    list.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+    list.<String>get(converter, TextConverter.STRING_LIST).blockingGet();
+
+    assertThat(list.<String>stream(converter, TextConverter.STRING_LIST).toList().blockingGet())
+        .containsExactly("a", "b")
+        .inOrder();
+  }
+
+  @Test
+  public void reaperDeletesExpiredValueAndNotifiesObservers() throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    opened.add(storage);
+    ValueStorable value = storage.value("key");
+    TestObserver<ValueUpdate<String>> observer =
+        value.<String>observe(converter, String.class).test();
+    value.put(converter, String.class, "value", deadline()).blockingGet();
+
+    long giveUp = System.currentTimeMillis() + 5 * ExpiryIndex.TICK_MILLIS;
+    while (adapter.file("key").exists() && System.currentTimeMillis() < giveUp) {
+      Thread.sleep(50);
+    }
+
+    assertThat(adapter.file("key").exists()).isFalse();
+    observer.awaitCount(3);
+    assertThat(observer.values())
+        .containsExactly(
+            ValueUpdate.<String>empty(), new ValueUpdate<>("value"), ValueUpdate.<String>empty())
+        .inOrder();
+  }
+
+  @Test
+  public void deadlinesSurviveReopening() throws Exception {
+    AdaptableStorage first = open();
+    first.value("closed").put(converter, String.class, "value", deadline()).blockingGet();
+    first.close();
+    // Written when they were set, so a storage that is never closed loses none either.
+    AdaptableStorage unclosed = open();
+    unclosed.value("unclosed").put(converter, String.class, "value", deadline()).blockingGet();
+
+    AdaptableStorage reopened = open();
+    assertThat(reopened.value("closed").<String>get(converter, String.class).blockingGet())
+        .isEqualTo("value");
+    expire();
+
+    assertThat(reopened.value("closed").<String>get(converter, String.class).blockingGet())
+        .isNull();
+    assertThat(reopened.value("unclosed").<String>get(converter, String.class).blockingGet())
+        .isNull();
+  }
+
+  @Test
+  public void journalIsOnlyWrittenOnceADeadlineIsSet() throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    opened.add(storage);
+
+    storage.value("key").put(converter, String.class, "value").blockingGet();
+    storage.value("key").clear().blockingAwait();
+    assertThat(adapter.file(AdaptableStorage.EXPIRY_KEY).exists()).isFalse();
+
+    storage.value("key").put(converter, String.class, "value", deadline()).blockingGet();
+    assertThat(adapter.file(AdaptableStorage.EXPIRY_KEY).exists()).isTrue();
+  }
+
+  @Test
+  public void expiryKeyIsReserved() {
+    AdaptableStorage storage = open();
+    try {
+      storage.value(AdaptableStorage.EXPIRY_KEY);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      storage.list(AdaptableStorage.EXPIRY_KEY);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      storage.batch(converter).put(AdaptableStorage.EXPIRY_KEY, String.class, "value");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
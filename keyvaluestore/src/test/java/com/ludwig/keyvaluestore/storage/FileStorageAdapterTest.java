@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class FileStorageAdapterTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private FileStorageAdapter open(Durability durability) {
+    return new FileStorageAdapter(folder.getRoot().getPath(), durability);
+  }
+
+  private static Map<String, byte[]> batch(String... keysAndValues) {
+    Map<String, byte[]> values = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      String value = keysAndValues[i + 1];
+      values.put(keysAndValues[i], value == null ? null : value.getBytes(UTF_8));
+    }
+    return values;
+  }
+
+  @Test
+  public void batchWritesAndDeletesKeys() throws Exception {
+    FileStorageAdapter adapter = open(Durability.perWrite());
+    Adapters.write(adapter, "doomed", "old");
+
+    adapter.write(batch("a", "1", "b", "2", "doomed", null));
+
+    assertThat(Adapters.read(adapter, "a")).isEqualTo("1");
+    assertThat(Adapters.read(adapter, "b")).isEqualTo("2");
+    assertThat(adapter.exists("doomed").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void batchStaysInLogUntilCheckpoint() throws Exception {
+    FileStorageAdapter adapter = open(Durability.perWrite());
+    adapter.write(batch("a", "1"));
+    adapter.write(batch("b", "2"));
+    File log = new File(folder.getRoot(), FileStorageAdapter.BATCH_LOG);
+    assertThat(log.length()).isGreaterThan(0L);
+
+    adapter.close();
+
+    assertThat(log.length()).isEqualTo(0L);
+  }
+
+  @Test
+  public void loggedBatchesAreReappliedOnOpen() throws Exception {
+    FileStorageAdapter adapter = open(Durability.perWrite());
+    adapter.write(batch("a", "1"));
+    adapter.write(batch("a", "2", "b", "3"));
+    // Lose the applied files, as a power loss before the checkpoint could.
+    Files.delete(adapter.file("a").toPath());
+    Files.delete(adapter.file("b").toPath());
+
+    FileStorageAdapter reopened = open(Durability.perWrite());
+
+    assertThat(Adapters.read(reopened, "a")).isEqualTo("2");
+    assertThat(Adapters.read(reopened, "b")).isEqualTo("3");
+  }
+
+  @Test
+  public void tornBatchAtTheTailIsIgnored() throws Exception {
+    FileStorageAdapter adapter = open(Durability.perWrite());
+    adapter.write(batch("a", "1"));
+    try (FileOutputStream output =
+        new FileOutputStream(new File(folder.getRoot(), FileStorageAdapter.BATCH_LOG), true)) {
+      output.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+    }
+
+    FileStorageAdapter reopened = open(Durability.perWrite());
+
+    assertThat(Adapters.read(reopened, "a")).isEqualTo("1");
+    reopened.write(batch("b", "2"));
+    assertThat(Adapters.read(open(Durability.perWrite()), "b")).isEqualTo("2");
+  }
+
+  @Test
+  public void writeAroundTheLogIsNotRevertedByReplay() throws Exception {
+    FileStorageAdapter adapter = open(Durability.perWrite());
+    adapter.write(batch("a", "batched", "b", "batched"));
+    Adapters.write(adapter, "a", "direct");
+    Adapters.append(adapter, "b", " appended");
+
+    FileStorageAdapter reopened = open(Durability.perWrite());
+
+    assertThat(Adapters.read(reopened, "a")).isEqualTo("direct");
+    assertThat(Adapters.read(reopened, "b")).isEqualTo("batched appended");
+  }
+
+  @Test
+  public void deleteAroundTheLogIsNotRevertedByReplay() throws Exception {
+    FileStorageAdapter adapter = open(Durability.none());
+    adapter.write(batch("a", "batched"));
+    assertThat(adapter.delete("a").blockingGet()).isTrue();
+
+    FileStorageAdapter reopened = open(Durability.none());
+
+    assertThat(reopened.exists("a").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void adapterOnMissingDirectoryCreatesNoLog() {
+    File missing = new File(folder.getRoot(), "missing");
+    new FileStorageAdapter(missing.getPath(), Durability.perWrite());
+    assertThat(missing.exists()).isFalse();
+  }
+
+  @Test
+  public void adaptersDoNotShareLocks() throws Exception {
+    FileStorageAdapter first = open(Durability.none());
+    FileStorageAdapter second = new FileStorageAdapter(folder.newFolder().getPath());
+    assertThat(first.lockManager()).isNotSameAs(second.lockManager());
+
+    first.lockManager().startWrite("key");
+    try {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        executor
+            .submit(
+                () -> {
+                  second.lockManager().startRead("key");
+                  second.lockManager().endRead("key");
+                })
+            .get(1, TimeUnit.SECONDS);
+      } finally {
+        executor.shutdownNow();
+      }
+    } finally {
+      first.lockManager().endWrite("key");
+    }
+  }
+
+  @Test
+  public void writesOfKeysOutsideTheLogDoNotWaitForABatch() throws Exception {
+    CountDownLatch applying = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    FileStorageAdapter adapter =
+        new FileStorageAdapter(folder.getRoot().getPath(), Durability.perWrite()) {
+          @Override
+          void apply(Map<String, byte[]> values) throws IOException {
+            applying.countDown();
+            try {
+              proceed.await();
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+            super.apply(values);
+          }
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> batch =
+          executor.submit(
+              () -> {
+                adapter.write(batch("batched", "1"));
+                return null;
+              });
+      applying.await();
+
+      executor
+          .submit(
+              () -> {
+                Adapters.write(adapter, "other", "2");
+                return null;
+              })
+          .get(1, TimeUnit.SECONDS);
+
+      proceed.countDown();
+      batch.get(1, TimeUnit.SECONDS);
+    } finally {
+      proceed.countDown();
+      executor.shutdownNow();
+    }
+    assertThat(Adapters.read(adapter, "batched")).isEqualTo("1");
+    assertThat(Adapters.read(adapter, "other")).isEqualTo("2");
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class GroupCommitterTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<FileStorageAdapter> adapters = new ArrayList<>();
+
+  /** Open an adapter without closing the earlier ones, as a crash would leave them. */
+  private FileStorageAdapter open() {
+    FileStorageAdapter adapter =
+        new FileStorageAdapter(
+            folder.getRoot().getPath(),
+            Durability.groupCommit(1, TimeUnit.MILLISECONDS, Durability.DEFAULT_MAX_BATCH));
+    adapters.add(adapter);
+    return adapter;
+  }
+
+  @After
+  public void closeAdapters() throws IOException {
+    for (FileStorageAdapter adapter : adapters) {
+      adapter.close();
+    }
+  }
+
+  private static void commit(FileStorageAdapter adapter, String key, String value)
+      throws IOException {
+    adapter.commit(Collections.singletonMap(key, value == null ? null : value.getBytes(UTF_8)));
+  }
+
+  @Test
+  public void concurrentCommitsAreAppliedAndReplayed() throws Exception {
+    FileStorageAdapter adapter = open();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      String key = "key" + i;
+      futures.add(
+          executor.submit(
+              () -> {
+                commit(adapter, key, key);
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    for (int i = 0; i < 64; i++) {
+      assertThat(Adapters.read(adapter, "key" + i)).isEqualTo("key" + i);
+      Files.delete(adapter.file("key" + i).toPath());
+    }
+
+    FileStorageAdapter reopened = open();
+
+    for (int i = 0; i < 64; i++) {
+      assertThat(Adapters.read(reopened, "key" + i)).isEqualTo("key" + i);
+    }
+  }
+
+  @Test
+  public void appendAfterLoggedDeleteIsNotWipedByReplay() throws Exception {
+    FileStorageAdapter adapter = open();
+    commit(adapter, "list.journal", "folded");
+    assertThat(adapter.delete("list.journal").blockingGet()).isTrue();
+    Adapters.append(adapter, "list.journal", "appended");
+
+    FileStorageAdapter reopened = open();
+
+    assertThat(Adapters.read(reopened, "list.journal")).isEqualTo("appended");
+  }
+
+  @Test
+  public void writeAfterLoggedDeleteIsNotWipedByReplay() throws Exception {
+    FileStorageAdapter adapter = open();
+    commit(adapter, "list.chunk.0", "old");
+    commit(adapter, "list.chunk.0", null);
+    Adapters.write(adapter, "list.chunk.0", "new");
+
+    FileStorageAdapter reopened = open();
+
+    assertThat(Adapters.read(reopened, "list.chunk.0")).isEqualTo("new");
+  }
+
+  @Test
+  public void commitAfterCloseFails() throws Exception {
+    FileStorageAdapter adapter = open();
+    adapter.close();
+    try {
+      commit(adapter, "key", "value");
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void commitsRacingCloseNeverHang() throws Exception {
+    for (int round = 0; round < 20; round++) {
+      FileStorageAdapter adapter = open();
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = 0; i < 50; i++) {
+                    commit(adapter, "key" + thread, "value" + i);
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      adapter.close();
+      for (Future<?> future : futures) {
+        try {
+          future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+          assertThat(e.getCause()).isInstanceOf(IOException.class);
+        }
+      }
+      executor.shutdown();
+    }
+  }
+}
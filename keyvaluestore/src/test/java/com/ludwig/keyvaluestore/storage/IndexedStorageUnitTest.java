@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class IndexedStorageUnitTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private List<String> keys(AdaptableStorage storage) {
+    return storage.keys("").toList().blockingGet();
+  }
+
+  @Test
+  public void streamIndexesKeyOnlyOnceClosed() throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    IndexedStorageUnit unit =
+        new IndexedStorageUnit(adapter.storageUnit("key"), "key", "key", storage);
+
+    OutputStream output = unit.output();
+    output.write("value".getBytes(UTF_8));
+    assertThat(keys(storage)).doesNotContain("key");
+    output.close();
+
+    assertThat(keys(storage)).containsExactly("key");
+  }
+
+  @Test
+  public void writerIndexesKeyOnlyOnceClosed() throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    IndexedStorageUnit unit =
+        new IndexedStorageUnit(adapter.storageUnit("key"), "key", "key", storage);
+
+    Writer writer = unit.writer();
+    writer.write("value");
+    assertThat(keys(storage)).doesNotContain("key");
+    writer.close();
+
+    assertThat(keys(storage)).containsExactly("key");
+  }
+
+  @Test
+  public void appendIndexesItsListKeyOnceClosed() throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    IndexedStorageUnit unit =
+        new IndexedStorageUnit(
+            adapter.storageUnit("list.journal"), "list.journal", "list", storage);
+
+    OutputStream output = unit.appendOutput();
+    assertThat(keys(storage)).isEmpty();
+    output.close();
+
+    assertThat(keys(storage)).containsExactly("list");
+  }
+
+  @Test
+  public void streamThatFailsToCloseDoesNotIndexKey() throws Exception {
+    FileStorageAdapter adapter =
+        new FileStorageAdapter(folder.getRoot().getPath()) {
+          @Override
+          public OutputStream output(String key) throws IOException {
+            return new FilterOutputStream(super.output(key)) {
+              @Override
+              public void close() throws IOException {
+                super.close();
+                throw new IOException("disk full");
+              }
+            };
+          }
+        };
+    AdaptableStorage storage = new AdaptableStorage(adapter);
+    IndexedStorageUnit unit =
+        new IndexedStorageUnit(adapter.storageUnit("key"), "key", "key", storage);
+
+    OutputStream output = unit.output();
+    output.write(1);
+    try {
+      output.close();
+      fail();
+    } catch (IOException expected) {
+    }
+
+    assertThat(keys(storage)).doesNotContain("key");
+  }
+}
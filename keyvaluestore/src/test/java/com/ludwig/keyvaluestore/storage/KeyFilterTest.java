@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import com.ludwig.keyvaluestore.storage.storable.ValueStorable;
+import java.util.Collection;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class KeyFilterTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+
+  private AdaptableStorage open(KeyFilter keyFilter) {
+    return new AdaptableStorage(
+        new FileStorageAdapter(folder.getRoot().getPath()), null, ListFormat.SNAPSHOT, keyFilter);
+  }
+
+  private String get(AdaptableStorage storage, String key) {
+    return storage.value(key).<String>get(converter, String.class).blockingGet();
+  }
+
+  @Test
+  public void createRejectsInvalidSizing() {
+    try {
+      KeyFilter.create(0, 0.01);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      KeyFilter.create(100, 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void storageRejectsAdapterThatCannotListKeys() {
+    StorageAdapter adapter =
+        new FileStorageAdapter(folder.getRoot().getPath()) {
+          @Override
+          public Collection<String> keys() {
+            throw new UnsupportedOperationException();
+          }
+        };
+    try {
+      new AdaptableStorage(adapter, null, ListFormat.SNAPSHOT, KeyFilter.create());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void missingKeysAnswerFromTheFilter() {
+    KeyFilter keyFilter = KeyFilter.create();
+    AdaptableStorage storage = open(keyFilter);
+
+    assertThat(get(storage, "missing")).isNull();
+
+    assertThat(keyFilter.hitCount()).isAtLeast(1L);
+    assertThat(keyFilter.passCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void storedKeysAreNeverFilteredOut() {
+    open(null).value("existing").put(converter, String.class, "before").blockingGet();
+    KeyFilter keyFilter = KeyFilter.create();
+    AdaptableStorage storage = open(keyFilter);
+
+    storage.value("written").put(converter, String.class, "after").blockingGet();
+
+    assertThat(get(storage, "existing")).isEqualTo("before");
+    assertThat(get(storage, "written")).isEqualTo("after");
+    assertThat(keyFilter.passCount()).isAtLeast(2L);
+    assertThat(keyFilter.falsePositiveCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void clearedKeysAreDroppedOnRebuild() {
+    KeyFilter keyFilter = KeyFilter.create(8, 0.01);
+    AdaptableStorage storage = open(keyFilter);
+    storage.value("key0").put(converter, String.class, "value").blockingGet();
+    storage.value("key0").clear().blockingAwait();
+
+    assertThat(get(storage, "key0")).isNull();
+    assertThat(keyFilter.falsePositiveCount()).isAtLeast(1L);
+    assertThat(keyFilter.rebuildCount()).isEqualTo(0);
+
+    for (int i = 1; i < 5; i++) {
+      ValueStorable value = storage.value("key" + i);
+      value.put(converter, String.class, "value").blockingGet();
+      value.clear().blockingAwait();
+    }
+    assertThat(keyFilter.rebuildCount()).isEqualTo(1);
+
+    long hits = keyFilter.hitCount();
+    assertThat(get(storage, "key0")).isNull();
+    assertThat(keyFilter.hitCount()).isGreaterThan(hits);
+  }
+
+  @Test
+  public void keysBeyondTheExpectedCountTriggerRebuild() {
+    KeyFilter keyFilter = KeyFilter.create(4, 0.01);
+    AdaptableStorage storage = open(keyFilter);
+
+    for (int i = 0; i < 5; i++) {
+      storage.value("key" + i).put(converter, String.class, "value" + i).blockingGet();
+    }
+
+    assertThat(keyFilter.rebuildCount()).isEqualTo(1);
+    for (int i = 0; i < 5; i++) {
+      assertThat(get(storage, "key" + i)).isEqualTo("value" + i);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public final class KeyRegistryTest {
+  private final KeyRegistry<Object> registry = new KeyRegistry<>();
+  private final AtomicInteger created = new AtomicInteger();
+
+  private Object get(String key) {
+    return registry.get(
+        key,
+        k -> {
+          created.incrementAndGet();
+          return new Object();
+        });
+  }
+
+  /** Collect garbage until {@code reference} is cleared, or give up after a few attempts. */
+  private static void collect(WeakReference<?> reference) throws InterruptedException {
+    for (int i = 0; i < 20 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void returnsOneInstancePerKey() {
+    Object first = get("a");
+
+    assertThat(get("a")).isSameAs(first);
+    assertThat(get("b")).isNotSameAs(first);
+    assertThat(registry.getIfPresent("a")).isSameAs(first);
+    assertThat(created.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void getIfPresentDoesNotCreate() {
+    assertThat(registry.getIfPresent("a")).isNull();
+    assertThat(created.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void unreferencedInstanceIsReplaced() throws Exception {
+    WeakReference<Object> first = new WeakReference<>(get("a"));
+
+    collect(first);
+
+    assertThat(first.get()).isNull();
+    assertThat(registry.getIfPresent("a")).isNull();
+    get("a");
+    assertThat(created.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void retainedInstanceSurvivesUntilReleased() throws Exception {
+    Object instance = get("a");
+    registry.retain(instance);
+    registry.retain(instance);
+    WeakReference<Object> reference = new WeakReference<>(instance);
+    instance = null;
+
+    registry.release(reference.get());
+    collect(reference);
+    assertThat(registry.getIfPresent("a")).isNotNull();
+
+    registry.release(reference.get());
+    collect(reference);
+    assertThat(reference.get()).isNull();
+  }
+}
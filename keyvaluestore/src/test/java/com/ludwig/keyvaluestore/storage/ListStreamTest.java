@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import com.ludwig.keyvaluestore.storage.storable.ListStorable;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ListStreamTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+
+  private ListStorable list(ListFormat listFormat) throws Exception {
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.newFolder().getPath());
+    return new AdaptableStorage(adapter, null, listFormat).list("list");
+  }
+
+  private static List<String> elements(int count) {
+    List<String> elements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      elements.add("element" + i);
+    }
+    return elements;
+  }
+
+  @Test
+  public void streamReadsEveryElementInOrder() throws Exception {
+    // Enough elements to span several chunks of a chunked list.
+    List<String> elements = elements(600);
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListStorable list = list(listFormat);
+      list.put(converter, TextConverter.STRING_LIST, elements).blockingGet();
+
+      List<String> streamed =
+          list.<String>stream(converter, TextConverter.STRING_LIST).toList().blockingGet();
+
+      assertThat(streamed).containsExactlyElementsIn(elements).inOrder();
+    }
+  }
+
+  @Test
+  public void streamOfMissingListIsEmpty() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListStorable list = list(listFormat);
+
+      list.<String>stream(converter, TextConverter.STRING_LIST).test().assertNoValues();
+    }
+  }
+
+  @Test
+  public void streamEmitsOnlyWhatIsRequested() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListStorable list = list(listFormat);
+      list.put(converter, TextConverter.STRING_LIST, elements(600)).blockingGet();
+
+      TestSubscriber<String> subscriber =
+          list.<String>stream(converter, TextConverter.STRING_LIST).test(2);
+
+      subscriber.assertValues("element0", "element1").assertNotComplete();
+      subscriber.request(1);
+      subscriber.assertValueCount(3).assertNotComplete();
+      subscriber.dispose();
+    }
+  }
+
+  @Test
+  public void openStreamDoesNotBlockWriters() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListStorable list = list(listFormat);
+      list.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+      TestSubscriber<String> subscriber =
+          list.<String>stream(converter, TextConverter.STRING_LIST).test(1);
+
+      list.put(converter, TextConverter.STRING_LIST, Arrays.asList("c")).blockingGet();
+
+      assertThat(list.<String>get(converter, TextConverter.STRING_LIST).blockingGet())
+          .containsExactly("c");
+      subscriber.assertValues("a");
+      subscriber.dispose();
+    }
+  }
+}
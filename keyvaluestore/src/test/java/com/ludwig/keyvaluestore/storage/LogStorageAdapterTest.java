@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.anyFileContains;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private LogStorageAdapter adapter;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder();
+    adapter = open();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    adapter.close();
+  }
+
+  /** Segments of 256 bytes, so a few records roll the log over; compaction only when asked. */
+  private LogStorageAdapter open() throws IOException {
+    return new LogStorageAdapter(directory.getPath(), 256, 0.5, 3600);
+  }
+
+  private void reopen() throws IOException {
+    adapter.close();
+    adapter = open();
+  }
+
+  @Test
+  public void writeReadDelete() throws IOException {
+    write(adapter, "key", "value");
+    assertThat(adapter.exists("key").blockingGet()).isTrue();
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    assertThat(adapter.keys()).containsExactly("key");
+
+    assertThat(adapter.delete("key").blockingGet()).isTrue();
+    assertThat(adapter.exists("key").blockingGet()).isFalse();
+    assertThat(adapter.delete("key").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void replaysSegmentsOnOpen() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      write(adapter, "key" + i, "value" + i);
+    }
+    write(adapter, "key3", "replaced");
+    adapter.delete("key4").blockingGet();
+
+    reopen();
+
+    assertThat(read(adapter, "key3")).isEqualTo("replaced");
+    assertThat(adapter.exists("key4").blockingGet()).isFalse();
+    assertThat(read(adapter, "key19")).isEqualTo("value19");
+    assertThat(adapter.keys()).hasSize(19);
+  }
+
+  @Test
+  public void truncatesTornTail() throws IOException {
+    write(adapter, "key", "value");
+    adapter.close();
+    File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+    try (FileOutputStream tail = new FileOutputStream(segments[segments.length - 1], true)) {
+      tail.write(new byte[] {1, 2, 3});
+    }
+
+    adapter = open();
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    write(adapter, "after", "torn");
+    reopen();
+    assertThat(read(adapter, "after")).isEqualTo("torn");
+  }
+
+  @Test
+  public void batchIsReplayedWhole() throws IOException {
+    Map<String, byte[]> values = new HashMap<>();
+    values.put("a", "1".getBytes(UTF_8));
+    values.put("b", "2".getBytes(UTF_8));
+    write(adapter, "c", "3");
+    values.put("c", null);
+    adapter.write(values);
+
+    reopen();
+
+    assertThat(read(adapter, "a")).isEqualTo("1");
+    assertThat(read(adapter, "b")).isEqualTo("2");
+    assertThat(adapter.exists("c").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void compactionReclaimsOverwrittenRecords() throws IOException {
+    for (int i = 0; i < 50; i++) {
+      write(adapter, "key", "value" + i);
+    }
+    int before = segmentCount();
+
+    adapter.compact();
+
+    assertThat(segmentCount()).isLessThan(before);
+    assertThat(read(adapter, "key")).isEqualTo("value49");
+    reopen();
+    assertThat(read(adapter, "key")).isEqualTo("value49");
+  }
+
+  @Test
+  public void compactionDropsTombstonesOnceNothingOlderHoldsTheKey() throws IOException {
+    // A live segment older than the tombstone's, which compaction leaves alone.
+    write(adapter, "anchor", new String(new char[230]).replace('\0', 'a'));
+    write(adapter, "doomed", "value");
+    adapter.delete("doomed").blockingGet();
+    for (int i = 0; i < 20; i++) {
+      write(adapter, "filler", "value" + i);
+    }
+
+    adapter.compact();
+    adapter.compact();
+
+    assertThat(anyFileContains(directory, "doomed")).isFalse();
+    reopen();
+    assertThat(adapter.exists("doomed").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void compactionKeepsTombstonesThatShadowOlderRecords() throws IOException {
+    write(adapter, "shadowed", "old");
+    for (int i = 0; i < 10; i++) {
+      write(adapter, "live" + i, "value" + i);
+    }
+    adapter.delete("shadowed").blockingGet();
+    for (int i = 0; i < 20; i++) {
+      write(adapter, "filler", "value" + i);
+    }
+
+    adapter.compact();
+
+    reopen();
+    assertThat(adapter.exists("shadowed").blockingGet()).isFalse();
+    assertThat(read(adapter, "live9")).isEqualTo("value9");
+  }
+
+  @Test
+  public void compactAfterCloseDoesNothing() throws IOException {
+    write(adapter, "key", "value");
+    adapter.close();
+    adapter.compact();
+    adapter = open();
+    assertThat(read(adapter, "key")).isEqualTo("value");
+  }
+
+  private int segmentCount() {
+    return directory.listFiles((dir, name) -> name.endsWith(".log")).length;
+  }
+}
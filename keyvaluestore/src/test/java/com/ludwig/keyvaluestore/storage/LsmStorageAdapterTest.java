@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LsmStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private LsmStorageAdapter adapter;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder();
+    adapter = open(1024);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    adapter.close();
+  }
+
+  /** Tiny memtables and tables, so a few hundred writes flush and compact through the levels. */
+  private LsmStorageAdapter open(long memTableSize) throws IOException {
+    return new LsmStorageAdapter(directory.getPath(), memTableSize, 1024, 4096, 2, 0.01);
+  }
+
+  @Test
+  public void writeReadDelete() throws IOException {
+    write(adapter, "key", "value");
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    assertThat(adapter.keys()).containsExactly("key");
+
+    assertThat(adapter.delete("key").blockingGet()).isTrue();
+    assertThat(adapter.exists("key").blockingGet()).isFalse();
+    assertThat(adapter.keys()).isEmpty();
+  }
+
+  @Test
+  public void replaysLogOnOpen() throws IOException {
+    adapter.close();
+    adapter = open(1 << 20);
+    write(adapter, "key", "value");
+    adapter.delete("missing").blockingGet();
+
+    adapter.close();
+    adapter = open(1 << 20);
+
+    assertThat(read(adapter, "key")).isEqualTo("value");
+  }
+
+  @Test
+  public void flushesAndCompactsAcrossLevels() throws IOException {
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 200; i++) {
+        write(adapter, "key" + i, "value" + round + "-" + i);
+      }
+    }
+    for (int i = 0; i < 200; i += 2) {
+      adapter.delete("key" + i).blockingGet();
+    }
+
+    adapter.close();
+    adapter = open(1024);
+
+    assertThat(adapter.keys()).hasSize(100);
+    assertThat(adapter.exists("key10").blockingGet()).isFalse();
+    assertThat(read(adapter, "key11")).isEqualTo("value2-11");
+    assertThat(read(adapter, "key199")).isEqualTo("value2-199");
+  }
+
+  @Test
+  public void batchIsAppliedWhole() throws IOException {
+    write(adapter, "c", "3");
+    Map<String, byte[]> values = new HashMap<>();
+    values.put("a", "1".getBytes(UTF_8));
+    values.put("b", "2".getBytes(UTF_8));
+    values.put("c", null);
+    adapter.write(values);
+
+    adapter.close();
+    adapter = open(1024);
+
+    assertThat(read(adapter, "a")).isEqualTo("1");
+    assertThat(read(adapter, "b")).isEqualTo("2");
+    assertThat(adapter.exists("c").blockingGet()).isFalse();
+  }
+
+  @Test
+  public void flushedLogLeftBehindIsNotReplayed() throws IOException {
+    adapter.close();
+    adapter = open(1 << 20);
+    write(adapter, "key", "old");
+    adapter.close();
+    File[] logs = directory.listFiles((dir, name) -> name.endsWith(".wal"));
+    File stale = new File(folder.getRoot(), "stale.wal");
+    File log = logs[0];
+    for (File each : logs) {
+      log = each.length() > 0 ? each : log;
+    }
+    Files.copy(log.toPath(), stale.toPath());
+
+    // Opening flushes the old log to a table; the new value is then flushed on the next open.
+    adapter = open(1 << 20);
+    write(adapter, "key", "new");
+    adapter.close();
+    adapter = open(1 << 20);
+    adapter.close();
+
+    // As if deleting the flushed log had failed.
+    Files.copy(stale.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    adapter = open(1 << 20);
+
+    assertThat(read(adapter, "key")).isEqualTo("new");
+    assertThat(log.exists()).isFalse();
+  }
+
+  @Test
+  public void writesAfterCloseFail() throws IOException {
+    adapter.close();
+    try {
+      write(adapter, "key", "value");
+      fail();
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("closed");
+    }
+    adapter = open(1024);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.storage.Adapters.read;
+import static com.ludwig.keyvaluestore.storage.Adapters.write;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileStorageAdapterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void smallValuesRoundTrip() throws IOException {
+    MappedFileStorageAdapter adapter = new MappedFileStorageAdapter(folder.getRoot().getPath());
+    write(adapter, "key", "value");
+    assertThat(read(adapter, "key")).isEqualTo("value");
+    assertThat(adapter.file("key").length()).isEqualTo(5);
+  }
+
+  @Test
+  public void largeValuesGrowAcrossRegionsAndAreTrimmed() throws IOException {
+    MappedFileStorageAdapter adapter =
+        new MappedFileStorageAdapter(folder.getRoot().getPath(), Durability.perWrite());
+    String value = text(1_000_000);
+    write(adapter, "key", value);
+
+    assertThat(adapter.file("key").length()).isEqualTo(value.length());
+    assertThat(read(adapter, "key")).isEqualTo(value);
+
+    write(adapter, "key", "shorter");
+    assertThat(read(adapter, "key")).isEqualTo("shorter");
+  }
+
+  @Test
+  public void repeatedLargeReadsReleaseTheirMappings() throws IOException {
+    MappedFileStorageAdapter adapter = new MappedFileStorageAdapter(folder.getRoot().getPath());
+    String value = text(300_000);
+    write(adapter, "key", value);
+    for (int i = 0; i < 2_000; i++) {
+      try (InputStream input = adapter.input("key")) {
+        assertThat(input.available()).isEqualTo(value.length());
+      }
+    }
+    assertThat(read(adapter, "key")).isEqualTo(value);
+  }
+
+  @Test
+  public void readsAfterCloseFail() throws IOException {
+    MappedFileStorageAdapter adapter = new MappedFileStorageAdapter(folder.getRoot().getPath());
+    write(adapter, "key", text(300_000));
+    InputStream input = adapter.input("key");
+    input.close();
+    try {
+      input.read();
+      fail();
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().isEqualTo("Stream Closed");
+    }
+  }
+
+  private static String text(int length) {
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append((char) ('a' + i % 26));
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import com.ludwig.keyvaluestore.types.ValueUpdate;
+import io.reactivex.observers.TestObserver;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class SharedStorableTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+
+  private AdaptableStorage open(ListFormat listFormat) {
+    return new AdaptableStorage(
+        new FileStorageAdapter(folder.getRoot().getPath()), null, listFormat);
+  }
+
+  @Test
+  public void handlesToOneKeyAreShared() {
+    for (ListFormat listFormat : ListFormat.values()) {
+      AdaptableStorage storage = open(listFormat);
+
+      assertThat(storage.value("a")).isSameAs(storage.value("a"));
+      assertThat(storage.value("a")).isNotSameAs(storage.value("b"));
+      assertThat(storage.list("a")).isSameAs(storage.list("a"));
+      assertThat(storage.unit("a")).isSameAs(storage.unit("a"));
+    }
+  }
+
+  @Test
+  public void observedValueKeepsReceivingAfterHandlesAreDropped() throws Exception {
+    AdaptableStorage storage = open(ListFormat.SNAPSHOT);
+    TestObserver<ValueUpdate<String>> observer =
+        storage.value("a").<String>observe(converter, String.class).test();
+    WeakReference<Object> handle = new WeakReference<>(storage.value("a"));
+    for (int i = 0; i < 20 && handle.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    storage.value("a").put(converter, String.class, "value").blockingGet();
+
+    assertThat(handle.get()).isNotNull();
+    assertThat(observer.values())
+        .containsExactly(ValueUpdate.<String>empty(), new ValueUpdate<>("value"))
+        .inOrder();
+  }
+
+  @Test
+  public void batchPublishesToObservers() {
+    AdaptableStorage storage = open(ListFormat.SNAPSHOT);
+    TestObserver<ValueUpdate<String>> valueObserver =
+        storage.value("value").<String>observe(converter, String.class).test();
+    TestObserver<List<String>> listObserver =
+        storage.list("list").<String>observe(converter, TextConverter.STRING_LIST).test();
+
+    storage
+        .batch(converter)
+        .put("value", String.class, "value")
+        .putList("list", String.class, Arrays.asList("a", "b"))
+        .commit()
+        .blockingAwait();
+
+    assertThat(valueObserver.values()).contains(new ValueUpdate<>("value"));
+    assertThat(listObserver.values()).contains(Arrays.asList("a", "b"));
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public final class TimerWheelTest {
+  private static final long TICK = 10;
+
+  @Test
+  public void keyIsHandedOverAtTheFirstTickAtOrAfterItsDeadline() {
+    TimerWheel wheel = new TimerWheel(TICK, 8, 0);
+    wheel.schedule("key", 25);
+
+    assertThat(advance(wheel, 20)).isEmpty();
+    assertThat(advance(wheel, 30)).containsExactly("key");
+    assertThat(wheel.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void reschedulingTheSameDeadlineQueuesTheKeyOnce() {
+    TimerWheel wheel = new TimerWheel(TICK, 8, 0);
+    for (int i = 0; i < 1000; i++) {
+      wheel.schedule("key", 50);
+    }
+
+    assertThat(wheel.size()).isEqualTo(1);
+    assertThat(advance(wheel, 50)).containsExactly("key");
+  }
+
+  @Test
+  public void laterDeadlineLeavesTheKeyAtItsEarlierTick() {
+    TimerWheel wheel = new TimerWheel(TICK, 8, 0);
+    wheel.schedule("key", 20);
+    wheel.schedule("key", 60);
+
+    // The owner re-checks the key and schedules it again for its later deadline.
+    assertThat(advance(wheel, 20)).containsExactly("key");
+    assertThat(advance(wheel, 70)).isEmpty();
+  }
+
+  @Test
+  public void earlierDeadlineBringsTheKeyForwardOnce() {
+    TimerWheel wheel = new TimerWheel(TICK, 8, 0);
+    wheel.schedule("key", 60);
+    wheel.schedule("key", 20);
+
+    assertThat(advance(wheel, 20)).containsExactly("key");
+    assertThat(advance(wheel, 70)).isEmpty();
+  }
+
+  @Test
+  public void deadlineMoreThanOneTurnAwayWaitsForItsTurn() {
+    TimerWheel wheel = new TimerWheel(TICK, 4, 0);
+    wheel.schedule("key", 60);
+
+    assertThat(advance(wheel, 20)).isEmpty();
+    assertThat(advance(wheel, 50)).isEmpty();
+    assertThat(advance(wheel, 60)).containsExactly("key");
+  }
+
+  @Test
+  public void pastDeadlineIsHandedOverAtTheNextTick() {
+    TimerWheel wheel = new TimerWheel(TICK, 8, 100);
+    wheel.schedule("key", 5);
+
+    assertThat(advance(wheel, 110)).containsExactly("key");
+  }
+
+  @Test
+  public void sizeMustBeAPowerOfTwo() {
+    try {
+      new TimerWheel(TICK, 6, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static List<String> advance(TimerWheel wheel, long now) {
+    List<String> due = new ArrayList<>();
+    wheel.advance(now, due::add);
+    return due;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.btree;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BufferPoolTest {
+  private static final int PAGE_SIZE = 128;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = new File(folder.getRoot(), "pages");
+  }
+
+  private BufferPool open() throws IOException {
+    return new BufferPool(file, PAGE_SIZE, 0);
+  }
+
+  @Test
+  public void committedPagesSurviveReopen() throws IOException {
+    try (BufferPool pool = open()) {
+      writePage(pool, 3, 42);
+      pool.commit();
+    }
+    try (BufferPool pool = open()) {
+      assertThat(pool.filePageCount()).isEqualTo(4);
+      assertThat(readPage(pool, 3)).isEqualTo(42);
+      assertThat(readPage(pool, 0)).isEqualTo(0);
+    }
+    assertThat(journal().length()).isEqualTo(0);
+  }
+
+  @Test
+  public void rollbackDropsDirtyPages() throws IOException {
+    try (BufferPool pool = open()) {
+      writePage(pool, 0, 1);
+      pool.commit();
+      writePage(pool, 0, 2);
+      pool.rollback();
+      assertThat(readPage(pool, 0)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void replaysCompleteJournalOnOpen() throws IOException {
+    open().close();
+    writeJournal(true, 5, 77);
+
+    try (BufferPool pool = open()) {
+      assertThat(readPage(pool, 5)).isEqualTo(77);
+    }
+    assertThat(journal().length()).isEqualTo(0);
+  }
+
+  @Test
+  public void discardsTornJournalOnOpen() throws IOException {
+    try (BufferPool pool = open()) {
+      writePage(pool, 5, 1);
+      pool.commit();
+    }
+    writeJournal(false, 5, 77);
+
+    try (BufferPool pool = open()) {
+      assertThat(readPage(pool, 5)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void extentsBypassThePool() throws IOException {
+    byte[] value = new byte[PAGE_SIZE * 3 + 5];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) i;
+    }
+    try (BufferPool pool = open()) {
+      pool.writeExtent(2, value);
+      writePage(pool, 0, 9);
+      pool.commit();
+    }
+    try (BufferPool pool = open()) {
+      assertThat(pool.readExtent(2, value.length)).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void failsWhenEveryFrameIsPinned() throws IOException {
+    try (BufferPool pool = open()) {
+      for (int page = 0; page < BufferPool.MIN_FRAMES; page++) {
+        pool.pin(page);
+      }
+      try {
+        pool.pin(BufferPool.MIN_FRAMES);
+        fail();
+      } catch (IOException expected) {
+        assertThat(expected).hasMessageThat().contains("exhausted");
+      }
+    }
+  }
+
+  @Test
+  public void evictsUnpinnedCleanPages() throws IOException {
+    try (BufferPool pool = open()) {
+      for (int page = 0; page < BufferPool.MIN_FRAMES * 4; page++) {
+        writePage(pool, page, page + 1);
+        pool.commit();
+      }
+      for (int page = 0; page < BufferPool.MIN_FRAMES * 4; page++) {
+        assertThat(readPage(pool, page)).isEqualTo(page + 1);
+      }
+    }
+  }
+
+  private static void writePage(BufferPool pool, int pageId, int value) throws IOException {
+    BufferPool.Frame frame = pool.pin(pageId);
+    frame.page().putInt(0, value);
+    pool.markDirty(frame);
+    pool.unpin(frame);
+  }
+
+  private static int readPage(BufferPool pool, int pageId) throws IOException {
+    BufferPool.Frame frame = pool.pin(pageId);
+    try {
+      return frame.page().getInt(0);
+    } finally {
+      pool.unpin(frame);
+    }
+  }
+
+  private File journal() {
+    return new File(file.getPath() + "-journal");
+  }
+
+  /** Write a journal holding one page image, as a commit that crashed before clearing it would. */
+  private void writeJournal(boolean complete, int pageId, int value) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(4).putInt(0, pageId);
+    ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE).putInt(0, value);
+    CRC32 crc = new CRC32();
+    crc.update(header.array());
+    crc.update(page.array());
+    try (RandomAccessFile journal = new RandomAccessFile(journal(), "rw")) {
+      journal.write(header.array());
+      journal.write(page.array());
+      if (complete) {
+        journal.writeInt(-1);
+        journal.writeLong(crc.getValue());
+      }
+    }
+  }
+}
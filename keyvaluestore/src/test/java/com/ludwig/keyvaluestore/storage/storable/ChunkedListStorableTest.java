@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.TextConverter.STRING_LIST;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.unit.StorageUnit;
+import io.reactivex.annotations.Nullable;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ChunkedListStorableTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final CountingConverter converter = new CountingConverter();
+  private FileStorageAdapter adapter;
+
+  private ListStorable open() {
+    adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    return StorableFactory.chunkedList(
+        adapter.storageUnit("list"), id -> adapter.storageUnit("list.chunk." + id), 4);
+  }
+
+  private static List<String> elements(int count) {
+    List<String> elements = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      elements.add("e" + i);
+    }
+    return elements;
+  }
+
+  @Test
+  public void mutationsSurviveReopening() {
+    ListStorable list = open();
+    list.put(converter, STRING_LIST, elements(10)).blockingGet();
+    list.append("e10", converter, STRING_LIST).blockingGet();
+    list.<String>remove(value -> value.equals("e2"), converter, STRING_LIST).blockingGet();
+    list.replace("E5", value -> value.equals("e5"), converter, STRING_LIST).blockingGet();
+    list.remove(0, converter, STRING_LIST).blockingGet();
+
+    ListStorable reopened = open();
+    assertThat(reopened.<String>get(converter, STRING_LIST).blockingGet())
+        .containsExactly("e1", "e3", "e4", "E5", "e6", "e7", "e8", "e9", "e10")
+        .inOrder();
+    assertThat(reopened.size(converter, STRING_LIST).blockingGet()).isEqualTo(9);
+    assertThat(reopened.<String>get(3, converter, STRING_LIST).blockingGet()).isEqualTo("E5");
+    assertThat(reopened.<String>get(2, 3, converter, STRING_LIST).blockingGet())
+        .containsExactly("e4", "E5", "e6")
+        .inOrder();
+  }
+
+  @Test
+  public void mutationDecodesOnlyTheChunksItChanges() {
+    open().put(converter, STRING_LIST, elements(39)).blockingGet();
+    ListStorable list = open();
+    converter.reads.set(0);
+
+    List<String> result = list.append("e39", converter, STRING_LIST).blockingGet();
+
+    assertThat(converter.reads.get()).isEqualTo(1);
+    assertThat(result).hasSize(40);
+    assertThat(result.get(39)).isEqualTo("e39");
+    assertThat(result.get(0)).isEqualTo("e0");
+  }
+
+  @Test
+  public void resultOfAMutationSurvivesTheChunksItNamesBeingReplaced() {
+    ListStorable list = open();
+    List<String> first = list.put(converter, STRING_LIST, elements(10)).blockingGet();
+    List<String> second = list.append("e10", converter, STRING_LIST).blockingGet();
+    list.put(converter, STRING_LIST, elements(2)).blockingGet();
+    list.clear().blockingGet();
+
+    assertThat(first).containsExactlyElementsIn(elements(10)).inOrder();
+    assertThat(second).hasSize(11);
+    assertThat(second.get(10)).isEqualTo("e10");
+  }
+
+  @Test
+  public void removeByPositionFromMissingListLeavesItEmpty() {
+    ListStorable list = open();
+
+    assertThat(list.<String>remove(0, converter, STRING_LIST).blockingGet()).isEmpty();
+    assertThat(adapter.file("list").exists()).isFalse();
+
+    list.put(converter, STRING_LIST, new ArrayList<String>()).blockingGet();
+    try {
+      list.<String>remove(0, converter, STRING_LIST).blockingGet();
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test
+  public void clearKeepsChunkIdsFromBeingReused() {
+    ListStorable list = open();
+    list.put(converter, STRING_LIST, elements(4)).blockingGet();
+    assertThat(adapter.file("list.chunk.0").exists()).isTrue();
+
+    list.clear().blockingGet();
+    assertThat(list.<String>get(converter, STRING_LIST).blockingGet()).isEmpty();
+    assertThat(adapter.file("list.chunk.0").exists()).isFalse();
+
+    ListStorable reopened = open();
+    reopened.put(converter, STRING_LIST, elements(4)).blockingGet();
+    assertThat(adapter.file("list.chunk.0").exists()).isFalse();
+    assertThat(reopened.<String>get(converter, STRING_LIST).blockingGet())
+        .containsExactlyElementsIn(elements(4))
+        .inOrder();
+  }
+
+  /** Counts the reads of a {@link TextConverter}. */
+  private static final class CountingConverter implements Converter {
+    final TextConverter delegate = new TextConverter();
+    final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public <T> void write(@Nullable T data, Type type, StorageUnit storageUnit) {
+      delegate.write(data, type, storageUnit);
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("TypeParameterUnusedInFormals")
+    public <T> T read(StorageUnit storageUnit, Type type) {
+      reads.incrementAndGet();
+      return delegate.read(storageUnit, type);
+    }
+  }
+}
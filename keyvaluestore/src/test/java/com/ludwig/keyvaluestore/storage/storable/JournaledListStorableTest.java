@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.ludwig.keyvaluestore.TextConverter.STRING_LIST;
+import static org.junit.Assert.fail;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.AdaptableStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.LogStorageAdapter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class JournaledListStorableTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final TextConverter converter = new TextConverter();
+  private FileStorageAdapter adapter;
+
+  private ListStorable open(double foldRatio) {
+    adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    return StorableFactory.journaledList(
+        adapter.storageUnit("list"), adapter.storageUnit("list.journal"), foldRatio);
+  }
+
+  @Test
+  public void mutationsAreReplayedByANewInstance() {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    list.put(converter, STRING_LIST, Arrays.asList("a", "b", "c")).blockingGet();
+    list.append("d", converter, STRING_LIST).blockingGet();
+    list.<String>remove(value -> value.equals("b"), converter, STRING_LIST).blockingGet();
+    list.replace("C", value -> value.equals("c"), converter, STRING_LIST).blockingGet();
+    list.addOrReplace("e", value -> value.equals("e"), converter, STRING_LIST).blockingGet();
+    list.remove(0, converter, STRING_LIST).blockingGet();
+
+    assertThat(
+            open(JournaledListStorable.DEFAULT_FOLD_RATIO)
+                .<String>get(converter, STRING_LIST)
+                .blockingGet())
+        .containsExactly("C", "d", "e")
+        .inOrder();
+  }
+
+  @Test
+  public void appendWritesOnlyTheJournal() throws Exception {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    list.put(converter, STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+    byte[] base = Files.readAllBytes(adapter.file("list").toPath());
+
+    list.append("c", converter, STRING_LIST).blockingGet();
+
+    assertThat(Files.readAllBytes(adapter.file("list").toPath())).isEqualTo(base);
+    assertThat(adapter.file("list.journal").exists()).isTrue();
+  }
+
+  @Test
+  public void returnedListsAreNotChangedByLaterMutations() {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    List<String> first = list.append("a", converter, STRING_LIST).blockingGet();
+    List<String> second = list.append("b", converter, STRING_LIST).blockingGet();
+    list.replace("A", value -> value.equals("a"), converter, STRING_LIST).blockingGet();
+    list.remove(0, converter, STRING_LIST).blockingGet();
+
+    assertThat(first).containsExactly("a");
+    assertThat(second).containsExactly("a", "b").inOrder();
+    assertThat(list.<String>get(converter, STRING_LIST).blockingGet()).containsExactly("b");
+  }
+
+  @Test
+  public void tornRecordIsDroppedOnReplay() throws Exception {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    list.put(converter, STRING_LIST, Arrays.asList("a")).blockingGet();
+    list.append("b", converter, STRING_LIST).blockingGet();
+    File journal = adapter.file("list.journal");
+    try (FileOutputStream output = new FileOutputStream(journal, true)) {
+      output.write(new byte[] {1, 0, 0});
+    }
+
+    ListStorable reopened = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    assertThat(reopened.<String>get(converter, STRING_LIST).blockingGet())
+        .containsExactly("a", "b")
+        .inOrder();
+    reopened.append("c", converter, STRING_LIST).blockingGet();
+    assertThat(
+            open(JournaledListStorable.DEFAULT_FOLD_RATIO)
+                .<String>get(converter, STRING_LIST)
+                .blockingGet())
+        .containsExactly("a", "b", "c")
+        .inOrder();
+  }
+
+  @Test
+  public void journalIsFoldedIntoTheBase() {
+    ListStorable list = open(0.01);
+    StringBuilder element = new StringBuilder();
+    for (int i = 0; i < 1024; i++) {
+      element.append('x');
+    }
+    for (int i = 0; i < 20; i++) {
+      list.append(element + "" + i, converter, STRING_LIST).blockingGet();
+    }
+
+    assertThat(adapter.file("list.journal").length())
+        .isLessThan((long) JournaledListStorable.MIN_FOLD_SIZE + 2048);
+    assertThat(open(0.01).<String>get(converter, STRING_LIST).blockingGet()).hasSize(20);
+  }
+
+  @Test
+  public void clearDropsBaseAndJournal() {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+    list.put(converter, STRING_LIST, Arrays.asList("a")).blockingGet();
+    list.append("b", converter, STRING_LIST).blockingGet();
+    list.clear().blockingGet();
+
+    assertThat(adapter.file("list").exists()).isFalse();
+    assertThat(adapter.file("list.journal").exists()).isFalse();
+    assertThat(
+            open(JournaledListStorable.DEFAULT_FOLD_RATIO)
+                .<String>get(converter, STRING_LIST)
+                .blockingGet())
+        .isEmpty();
+  }
+
+  @Test
+  public void storageRejectsJournaledListsOnAdaptersThatCannotAppendInPlace() throws Exception {
+    LogStorageAdapter log = new LogStorageAdapter(folder.newFolder("log").getPath());
+    try {
+      new AdaptableStorage(log, null, ListFormat.JOURNALED);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    } finally {
+      log.close();
+    }
+  }
+
+  @Test
+  public void removeByPositionFromMissingListLeavesItEmpty() {
+    ListStorable list = open(JournaledListStorable.DEFAULT_FOLD_RATIO);
+
+    assertThat(list.<String>remove(0, converter, STRING_LIST).blockingGet()).isEmpty();
+    assertThat(adapter.file("list").exists()).isFalse();
+    assertThat(adapter.file("list.journal").exists()).isFalse();
+
+    list.put(converter, STRING_LIST, Arrays.<String>asList()).blockingGet();
+    try {
+      list.<String>remove(0, converter, STRING_LIST).blockingGet();
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+}
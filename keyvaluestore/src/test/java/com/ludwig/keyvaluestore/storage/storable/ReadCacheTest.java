@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ReadCacheTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void getReturnsValuePutWithCurrentStamp() {
+    ReadCache cache = ReadCache.maxEntries(10);
+    cache.put("key", String.class, "value", cache.stamp("key"));
+
+    assertThat(cache.<String>get("key", String.class)).isEqualTo("value");
+    assertThat(cache.<String>get("key", Integer.class)).isNull();
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void putIsDroppedWhenKeyWasInvalidatedSinceStamp() {
+    ReadCache cache = ReadCache.maxEntries(10);
+    long stamp = cache.stamp("key");
+    cache.invalidate("key");
+    cache.put("key", String.class, "stale", stamp);
+
+    assertThat(cache.<String>get("key", String.class)).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void invalidateDropsEveryTypeOfKey() {
+    ReadCache cache = ReadCache.maxEntries(10);
+    cache.put("key", String.class, "value", cache.stamp("key"));
+    cache.put("key", CharSequence.class, "value", cache.stamp("key"));
+    cache.put("other", String.class, "value", cache.stamp("other"));
+
+    cache.invalidate("key");
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.<String>get("other", String.class)).isEqualTo("value");
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    ReadCache cache = ReadCache.maxEntries(2);
+    cache.put("a", String.class, "a", cache.stamp("a"));
+    cache.put("b", String.class, "b", cache.stamp("b"));
+    cache.get("a", String.class);
+    cache.put("c", String.class, "c", cache.stamp("c"));
+
+    assertThat(cache.<String>get("a", String.class)).isEqualTo("a");
+    assertThat(cache.<String>get("b", String.class)).isNull();
+    assertThat(cache.<String>get("c", String.class)).isEqualTo("c");
+    assertThat(cache.evictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void staysWithinWeightAcrossSegments() {
+    ReadCache cache = ReadCache.maxWeight(1000, (key, type, value) -> ((String) value).length());
+    for (int i = 0; i < 2000; i++) {
+      String key = "key" + i;
+      cache.put(key, String.class, "0123456789", cache.stamp(key));
+    }
+
+    assertThat(cache.weight()).isAtMost(1000L);
+    assertThat(cache.size()).isGreaterThan(0L);
+    assertThat(cache.evictionCount()).isEqualTo(2000 - cache.size());
+  }
+
+  @Test
+  public void invalidateAllDropsEverything() {
+    ReadCache cache = ReadCache.maxEntries(100);
+    for (int i = 0; i < 50; i++) {
+      String key = "key" + i;
+      cache.put(key, String.class, "value", cache.stamp(key));
+    }
+    long stamp = cache.stamp("key0");
+    cache.invalidateAll();
+    cache.put("key0", String.class, "stale", stamp);
+
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.weight()).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentReadersAndWritersStayConsistent() throws Exception {
+    ReadCache cache = ReadCache.maxEntries(64);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int thread = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < 20_000; i++) {
+                  String key = "key" + ((i * 31 + thread) % 200);
+                  if (i % 7 == 0) {
+                    cache.invalidate(key);
+                  } else if (cache.get(key, String.class) == null) {
+                    cache.put(key, String.class, key, cache.stamp(key));
+                  } else {
+                    assertThat(cache.<String>get(key, String.class)).isAnyOf(key, null);
+                  }
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertThat(cache.size()).isAtMost(64L);
+    assertThat(cache.weight()).isEqualTo(cache.size());
+  }
+
+  @Test
+  public void valueWrittenIsNotCachedByReference() {
+    ReadCache cache = ReadCache.maxEntries(10);
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    ValueStorable storable =
+        StorableFactory.value("key", adapter.storageUnit("key"), cache, Retainer.NONE);
+    TextConverter converter = new TextConverter();
+
+    StringBuilder written = new StringBuilder("first");
+    storable.put(converter, StringBuilder.class, written).blockingGet();
+    written.append(" mutated");
+
+    StringBuilder read = storable.<StringBuilder>get(converter, StringBuilder.class).blockingGet();
+    assertThat(read.toString()).isEqualTo("first");
+    assertThat(read).isNotSameAs(written);
+    assertThat(cache.<StringBuilder>get("key", StringBuilder.class)).isSameAs(read);
+  }
+
+  @Test
+  public void listWrittenIsNotCachedByReference() {
+    ReadCache cache = ReadCache.maxEntries(10);
+    FileStorageAdapter adapter = new FileStorageAdapter(folder.getRoot().getPath());
+    ListStorable storable = StorableFactory.list("list", adapter.storageUnit("list"), cache);
+    TextConverter converter = new TextConverter();
+
+    List<String> written =
+        storable.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+    written.set(0, "mutated");
+
+    assertThat(storable.<String>get(converter, TextConverter.STRING_LIST).blockingGet())
+        .containsExactly("a", "b")
+        .inOrder();
+  }
+
+  @Test
+  public void listReadIsMutableCopyWithOrWithoutCache() throws Exception {
+    TextConverter converter = new TextConverter();
+    for (ReadCache cache : Arrays.asList(null, ReadCache.maxEntries(10))) {
+      FileStorageAdapter adapter = new FileStorageAdapter(folder.newFolder().getPath());
+      ListStorable storable = StorableFactory.list("list", adapter.storageUnit("list"), cache);
+
+      List<String> missing =
+          storable.<String>get(converter, TextConverter.STRING_LIST).blockingGet();
+      missing.add("mutated");
+      storable.put(converter, TextConverter.STRING_LIST, Arrays.asList("a", "b")).blockingGet();
+      for (int i = 0; i < 2; i++) {
+        // The first read decodes the list, the second is served from the cache if there is one.
+        List<String> read =
+            storable.<String>get(converter, TextConverter.STRING_LIST).blockingGet();
+        assertThat(read).containsExactly("a", "b").inOrder();
+        read.set(0, "mutated");
+        read.add("c");
+      }
+    }
+  }
+}
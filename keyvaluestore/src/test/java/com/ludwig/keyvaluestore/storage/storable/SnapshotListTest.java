@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.storable;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import org.junit.Test;
+
+public final class SnapshotListTest {
+  @Test
+  public void snapshotKeepsItsElementsThroughLaterAppends() {
+    SnapshotList<String> list = new SnapshotList<>();
+    list.add("a");
+    List<String> snapshot = list.snapshot();
+    for (int i = 0; i < 100; i++) {
+      list.add("x" + i);
+    }
+
+    assertThat(snapshot).containsExactly("a");
+    assertThat(list).hasSize(101);
+  }
+
+  @Test
+  public void snapshotKeepsItsElementsThroughSetRemoveAndInsert() {
+    SnapshotList<String> list = new SnapshotList<>();
+    list.add("a");
+    list.add("b");
+    list.add("c");
+    List<String> first = list.snapshot();
+    list.set(0, "z");
+    List<String> second = list.snapshot();
+    list.remove(1);
+    List<String> third = list.snapshot();
+    list.add(0, "y");
+
+    assertThat(first).containsExactly("a", "b", "c").inOrder();
+    assertThat(second).containsExactly("z", "b", "c").inOrder();
+    assertThat(third).containsExactly("z", "c").inOrder();
+    assertThat(list).containsExactly("y", "z", "c").inOrder();
+  }
+
+  @Test
+  public void snapshotKeepsItsElementsThroughClear() {
+    SnapshotList<String> list = new SnapshotList<>();
+    list.add("a");
+    List<String> snapshot = list.snapshot();
+    list.clear();
+    list.add("b");
+
+    assertThat(snapshot).containsExactly("a");
+    assertThat(list).containsExactly("b");
+  }
+
+  @Test
+  public void snapshotIsImmutable() {
+    SnapshotList<String> list = new SnapshotList<>();
+    list.add("a");
+    List<String> snapshot = list.snapshot();
+    try {
+      snapshot.add("b");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      snapshot.set(0, "b");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test
+  public void indexesAreChecked() {
+    SnapshotList<String> list = new SnapshotList<>();
+    list.add("a");
+    try {
+      list.get(1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      list.snapshot().get(1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+}
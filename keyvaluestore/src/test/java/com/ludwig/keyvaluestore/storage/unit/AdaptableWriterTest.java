@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import io.reactivex.Completable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public final class AdaptableWriterTest {
+  private final Map<String, String> written = new HashMap<>();
+  private final WritableAdapter adapter =
+      (key, value) -> Completable.fromAction(() -> written.put(key, value));
+
+  @Test
+  public void flushWritesEverythingSoFar() throws IOException {
+    Writer writer = adapter.writer("key");
+    writer.write("hello");
+    writer.flush();
+    assertThat(written).containsEntry("key", "hello");
+
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      large.append(i % 10);
+    }
+    writer.write(large.toString());
+    writer.flush();
+    assertThat(written).containsEntry("key", "hello" + large);
+    writer.close();
+  }
+
+  @Test
+  public void writeAndFlushAfterCloseFail() throws IOException {
+    Writer writer = adapter.writer("key");
+    writer.write("hello");
+    writer.close();
+    writer.close();
+    try {
+      writer.write("more");
+      fail();
+    } catch (IOException expected) {
+    }
+    try {
+      writer.flush();
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void closedWriterCannotTouchABufferHandedToAnotherWriter() throws IOException {
+    ByteBufferPool pool = new ByteBufferPool(false, 1, ByteBufferPool.DEFAULT_MAX_POOLED_SIZE);
+    Writer first = adapter.writer("first", pool);
+    first.close();
+    Writer second = adapter.writer("second", pool);
+    second.write("second");
+    try {
+      first.write("first");
+      fail();
+    } catch (IOException expected) {
+    }
+    second.flush();
+    assertThat(written).containsEntry("second", "second");
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public final class ByteAdapterTest {
+  private final Map<String, byte[]> stored = new HashMap<>();
+  private final AtomicInteger reads = new AtomicInteger();
+  private final AtomicInteger writes = new AtomicInteger();
+
+  private final ByteReadableAdapter readable =
+      key ->
+          Single.fromCallable(
+              () -> {
+                reads.incrementAndGet();
+                return ByteBuffer.wrap(stored.get(key));
+              });
+  private final ByteWritableAdapter writable =
+      (key, value) ->
+          Completable.fromAction(
+              () -> {
+                writes.incrementAndGet();
+                byte[] bytes = new byte[value.remaining()];
+                value.get(bytes);
+                stored.put(key, bytes);
+              });
+
+  private static byte[] allBytes() {
+    byte[] bytes = new byte[256];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  @Test
+  public void binaryValuesRoundTrip() throws IOException {
+    byte[] bytes = allBytes();
+    try (OutputStream output = writable.outputStream("key")) {
+      output.write(bytes, 0, 100);
+      output.write(bytes[100]);
+      output.write(bytes, 101, bytes.length - 101);
+    }
+
+    byte[] read = new byte[bytes.length];
+    try (InputStream input = readable.inputStream("key")) {
+      assertThat(input.read(read, 0, 10)).isEqualTo(10);
+      assertThat(input.read()).isEqualTo(10);
+      assertThat(input.read(read, 11, read.length - 11)).isEqualTo(read.length - 11);
+      assertThat(input.read()).isEqualTo(-1);
+    }
+    read[10] = 10;
+    assertThat(read).isEqualTo(bytes);
+  }
+
+  @Test
+  public void inputStreamFetchesOnceAndAdvances() throws IOException {
+    stored.put("key", allBytes());
+    InputStream input = readable.inputStream("key");
+    assertThat(reads.get()).isEqualTo(0);
+
+    assertThat(input.available()).isEqualTo(256);
+    assertThat(input.skip(250)).isEqualTo(250);
+    assertThat(input.read()).isEqualTo(250);
+    assertThat(input.skip(100)).isEqualTo(5);
+    assertThat(input.read(new byte[4])).isEqualTo(-1);
+
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void inputStreamLeavesAdapterBufferPosition() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(allBytes());
+    buffer.position(200);
+    ByteReadableAdapter adapter = key -> Single.just(buffer);
+
+    InputStream input = adapter.inputStream("key");
+    assertThat(input.read()).isEqualTo(200);
+    assertThat(input.skip(10)).isEqualTo(10);
+
+    assertThat(buffer.position()).isEqualTo(200);
+  }
+
+  @Test
+  public void stringAdaptersKeepNonAsciiText() throws IOException {
+    Map<String, String> strings = new HashMap<>();
+    WritableAdapter stringWritable =
+        (key, value) -> Completable.fromAction(() -> strings.put(key, value));
+    ReadableAdapter stringReadable = key -> Single.fromCallable(() -> strings.get(key));
+    String text = "h\u00e9llo \u65e5\u672c \ud83d\ude00";
+
+    try (OutputStream output = ByteWritableAdapter.from(stringWritable).outputStream("key")) {
+      output.write(text.getBytes(UTF_8));
+    }
+    assertThat(strings).containsEntry("key", text);
+
+    byte[] read = new byte[64];
+    int length;
+    try (InputStream input = ByteReadableAdapter.from(stringReadable).inputStream("key")) {
+      length = input.read(read);
+    }
+    assertThat(new String(read, 0, length, UTF_8)).isEqualTo(text);
+  }
+
+  @Test
+  public void closedStreamsFail() throws IOException {
+    OutputStream output = writable.outputStream("key");
+    output.write(1);
+    output.close();
+    output.close();
+    assertThat(writes.get()).isEqualTo(1);
+    try {
+      output.write(2);
+      fail();
+    } catch (IOException expected) {
+    }
+
+    InputStream input = readable.inputStream("key");
+    input.close();
+    try {
+      input.read();
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class ByteBufferPoolTest {
+  @Test
+  public void releasedBufferIsReusedCleared() {
+    ByteBufferPool pool = new ByteBufferPool(false, 1, ByteBufferPool.DEFAULT_MAX_POOLED_SIZE);
+    ByteBuffer buffer = pool.acquire(1000);
+    buffer.put((byte) 1);
+    pool.release(buffer);
+
+    ByteBuffer reused = pool.acquire(500);
+
+    assertThat(reused).isSameAs(buffer);
+    assertThat(reused.position()).isEqualTo(0);
+    assertThat(reused.remaining()).isAtLeast(500);
+  }
+
+  @Test
+  public void acquireHonorsCapacityAndDirectness() {
+    ByteBufferPool pool = new ByteBufferPool(true, 2, ByteBufferPool.DEFAULT_MAX_POOLED_SIZE);
+    ByteBuffer buffer = pool.acquire(10);
+    assertThat(buffer.isDirect()).isTrue();
+    assertThat(buffer.capacity()).isAtLeast(ByteBufferPool.MIN_SIZE);
+  }
+
+  @Test
+  public void oversizedBuffersAreNotPooled() {
+    ByteBufferPool pool = new ByteBufferPool(false, 1, ByteBufferPool.MIN_SIZE);
+    ByteBuffer large = pool.acquire(4096);
+    pool.release(large);
+    assertThat(pool.acquire(4096)).isNotSameAs(large);
+  }
+
+  @Test
+  public void growKeepsContents() {
+    ByteBufferPool pool = ByteBufferPool.heap();
+    ByteBuffer buffer = pool.acquire(ByteBufferPool.MIN_SIZE);
+    buffer.put(new byte[] {1, 2, 3});
+
+    ByteBuffer grown = pool.grow(buffer, 10_000);
+
+    assertThat(grown.capacity()).isAtLeast(10_000);
+    assertThat(grown.position()).isEqualTo(3);
+    assertThat(grown.get(2)).isEqualTo((byte) 3);
+  }
+
+  @Test
+  public void concurrentUsersNeverShareABuffer() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(false, 2, ByteBufferPool.DEFAULT_MAX_POOLED_SIZE);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long owner = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  ByteBuffer buffer = pool.acquire(ByteBufferPool.MIN_SIZE);
+                  buffer.putLong(0, owner);
+                  Thread.yield();
+                  assertThat(buffer.getLong(0)).isEqualTo(owner);
+                  pool.release(buffer);
+                }
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+  }
+}
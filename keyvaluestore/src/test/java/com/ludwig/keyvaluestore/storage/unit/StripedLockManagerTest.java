@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.storage.unit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+public final class StripedLockManagerTest {
+  private final StripedLockManager manager = new StripedLockManager();
+  private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+  @After
+  public void tearDown() {
+    other.shutdownNow();
+  }
+
+  private boolean blocks(Future<?> future) throws Exception {
+    try {
+      future.get(100, TimeUnit.MILLISECONDS);
+      return false;
+    } catch (TimeoutException expected) {
+      return true;
+    }
+  }
+
+  @Test
+  public void rejectsNoStripes() {
+    try {
+      new StripedLockManager(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void readersShareAStripe() throws Exception {
+    manager.startRead("key");
+
+    other.submit(() -> manager.startRead("key")).get(1, TimeUnit.SECONDS);
+
+    manager.endRead("key");
+  }
+
+  @Test
+  public void writeExcludesReadersUntilItEnds() throws Exception {
+    manager.startWrite("key");
+    Future<?> read =
+        other.submit(
+            () -> {
+              manager.startRead("key");
+              manager.endRead("key");
+            });
+
+    assertThat(blocks(read)).isTrue();
+    manager.endWrite("key");
+    read.get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void holdsNestOnOneThread() throws Exception {
+    manager.startRead("key");
+    manager.startRead("key");
+    manager.startWrite("key");
+    manager.startRead("key");
+    manager.startWrite("key");
+    manager.endWrite("key");
+    manager.endRead("key");
+    manager.endWrite("key");
+
+    // Back to a plain read: other readers get in, writers wait.
+    other.submit(() -> manager.startRead("key")).get(1, TimeUnit.SECONDS);
+    other.submit(() -> manager.endRead("key")).get(1, TimeUnit.SECONDS);
+    Future<?> write = other.submit(() -> manager.startWrite("key"));
+    assertThat(blocks(write)).isTrue();
+
+    manager.endRead("key");
+    manager.endRead("key");
+    write.get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void endWithoutHoldThrows() {
+    try {
+      manager.endRead("key");
+      fail();
+    } catch (IllegalMonitorStateException expected) {
+    }
+    try {
+      manager.endWrite("key");
+      fail();
+    } catch (IllegalMonitorStateException expected) {
+    }
+  }
+
+  @Test
+  public void optimisticReadFailsAcrossWrite() throws Exception {
+    long stamp = manager.tryOptimisticRead("key");
+    assertThat(manager.validate("key", stamp)).isTrue();
+
+    other.submit(() -> manager.startWrite("key")).get(1, TimeUnit.SECONDS);
+    assertThat(manager.validate("key", stamp)).isFalse();
+    long during = manager.tryOptimisticRead("key");
+    assertThat(during).isEqualTo(0);
+    assertThat(manager.validate("key", during)).isFalse();
+
+    other.submit(() -> manager.endWrite("key")).get(1, TimeUnit.SECONDS);
+    assertThat(manager.validate("key", stamp)).isFalse();
+    assertThat(manager.validate("key", manager.tryOptimisticRead("key"))).isTrue();
+  }
+
+  @Test
+  public void optimisticReadSurvivesReaders() throws Exception {
+    long stamp = manager.tryOptimisticRead("key");
+
+    manager.startRead("key");
+    manager.endRead("key");
+
+    assertThat(manager.validate("key", stamp)).isTrue();
+  }
+
+  @Test
+  public void lockOrderGroupsKeysByStripe() {
+    StripedLockManager single = new StripedLockManager(1);
+    List<String> keys = new ArrayList<>(Arrays.asList("c", "a", "b"));
+
+    keys.sort(single.lockOrder());
+
+    assertThat(keys).containsExactly("a", "b", "c").inOrder();
+  }
+
+  @Test
+  public void writesAreMutuallyExclusive() throws Exception {
+    StripedLockManager manager = new StripedLockManager(4);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    int[] counter = new int[1];
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int thread = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  // Half the threads upgrade from a read, which may have to give the read up.
+                  if (thread % 2 == 1) {
+                    manager.startRead("key");
+                  }
+                  manager.startWrite("key");
+                  counter[0]++;
+                  manager.endWrite("key");
+                  if (thread % 2 == 1) {
+                    manager.endRead("key");
+                  }
+                }
+              }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(counter[0]).isEqualTo(80_000);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ludwig.keyvaluestore.types;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.TextConverter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.storable.ListFormat;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class ObserveStrategyTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private ListType<String> list(ListFormat listFormat) throws Exception {
+    File directory = folder.newFolder();
+    KeyValueStore store =
+        KeyValueStoreFactory.build(
+            new FileStorage(new FileStorageAdapter(directory.getPath()), null, listFormat),
+            new TextConverter());
+    return store.list("list", TextConverter.STRING_LIST);
+  }
+
+  @Test
+  public void latestDeliversTheListAsItIsWhenRequested() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListType<String> list = list(listFormat);
+      TestSubscriber<List<String>> subscriber = list.observe(ObserveStrategy.latest()).test(0);
+      for (String element : Arrays.asList("a", "b", "c", "d")) {
+        list.observeAdd(element).blockingGet();
+      }
+      list.observeRemove("b").blockingGet();
+      subscriber.assertNoValues();
+
+      subscriber.request(1);
+
+      assertThat(subscriber.values()).containsExactly(Arrays.asList("a", "c", "d")).inOrder();
+      subscriber.dispose();
+    }
+  }
+
+  @Test
+  public void latestDeliversEachUpdateToAPromptSubscriber() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListType<String> list = list(listFormat);
+      TestSubscriber<List<String>> subscriber = list.observe(ObserveStrategy.latest()).test();
+
+      list.observeAdd("a").blockingGet();
+      list.observeAdd("b").blockingGet();
+      list.observeClear().blockingGet();
+
+      assertThat(subscriber.values())
+          .containsExactly(
+              Collections.<String>emptyList(),
+              Collections.singletonList("a"),
+              Arrays.asList("a", "b"),
+              Collections.<String>emptyList())
+          .inOrder();
+      subscriber.dispose();
+    }
+  }
+
+  @Test
+  public void deliveredListsOutliveLaterWrites() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListType<String> list = list(listFormat);
+      list.observePut(Arrays.asList("a", "b")).blockingGet();
+      TestSubscriber<List<String>> subscriber = list.observe(ObserveStrategy.latest()).test();
+
+      list.observePut(Arrays.asList("c")).blockingGet();
+
+      assertThat(subscriber.values().get(0)).containsExactly("a", "b").inOrder();
+      assertThat(subscriber.values().get(1)).containsExactly("c");
+      subscriber.dispose();
+    }
+  }
+
+  @Test
+  public void bufferKeepsTheStatesInBetween() throws Exception {
+    for (ListFormat listFormat : ListFormat.values()) {
+      ListType<String> list = list(listFormat);
+      TestSubscriber<List<String>> subscriber = list.observe(ObserveStrategy.buffer(8)).test(0);
+      list.observeAdd("a").blockingGet();
+      list.observeAdd("b").blockingGet();
+
+      subscriber.request(3);
+
+      assertThat(subscriber.values())
+          .containsExactly(
+              Collections.<String>emptyList(),
+              Collections.singletonList("a"),
+              Arrays.asList("a", "b"))
+          .inOrder();
+      subscriber.dispose();
+    }
+  }
+}
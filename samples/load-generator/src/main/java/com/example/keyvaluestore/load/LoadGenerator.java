@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.metrics.Histogram;
+import com.ludwig.keyvaluestore.types.ListType;
+import com.ludwig.keyvaluestore.types.ValueType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a {@link Workload} against any {@link KeyValueStore}: {@link #load()} writes every key
+ * once, then {@link #run} starts the clients and reports the latency percentiles and throughput of
+ * each {@link LoadOperation} every interval, and over the whole run when it ends.
+ *
+ * <p>Each client draws its keys, operations and sizes from its own seeded {@link Random} and times
+ * only the blocking call into the store. List writes add or remove an element with equal odds, so
+ * lists wander around their loaded sizes rather than growing without bound.
+ */
+public final class LoadGenerator {
+  /** Receives the samples of each interval as it ends, on the thread that called {@link #run}. */
+  public interface Listener {
+    void interval(List<Sample> samples);
+  }
+
+  private final KeyValueStore store;
+  private final Workload workload;
+  private final ZipfianGenerator valueKeys;
+  private final ZipfianGenerator listKeys;
+  private final String text;
+  private volatile Recorder current = new Recorder();
+
+  public LoadGenerator(KeyValueStore store, Workload workload) {
+    this.store = store;
+    this.workload = workload;
+    this.valueKeys = new ZipfianGenerator(workload.values, workload.zipfTheta);
+    this.listKeys = new ZipfianGenerator(Math.max(1, workload.lists), workload.zipfTheta);
+    this.text = text(Math.max(workload.valueSize.max(), workload.elementSize), workload.seed);
+  }
+
+  /** Write every value and list of the workload, replacing what the store held. */
+  public void load() {
+    Random random = new Random(workload.seed);
+    for (int i = 0; i < workload.values; i++) {
+      value(i).observePut(text.substring(0, workload.valueSize.next(random))).blockingGet();
+    }
+    String element = text.substring(0, workload.elementSize);
+    for (int i = 0; i < workload.lists; i++) {
+      int size = workload.listSize.next(random);
+      List<String> elements = new ArrayList<>(size);
+      for (int j = 0; j < size; j++) {
+        elements.add(element);
+      }
+      list(i).observePut(elements).blockingGet();
+    }
+  }
+
+  /**
+   * Run the workload for its duration, handing each interval's samples to {@code listener}, and
+   * return the samples of every interval and of the whole run.
+   */
+  public Results run(Listener listener) throws InterruptedException {
+    Recorder total = new Recorder();
+    current = new Recorder();
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(workload.durationSeconds);
+    List<Thread> clients = new ArrayList<>(workload.clients);
+    for (int i = 0; i < workload.clients; i++) {
+      Random random = new Random(workload.seed + i + 1);
+      Thread client = new Thread(() -> client(random, deadline, total), "load-client-" + i);
+      clients.add(client);
+      client.start();
+    }
+
+    List<Sample> intervals = new ArrayList<>();
+    long interval = TimeUnit.SECONDS.toNanos(workload.intervalSeconds);
+    long last = start;
+    for (long tick = 1; last < deadline; tick++) {
+      long due = Math.min(start + tick * interval, deadline);
+      for (long now = System.nanoTime(); now < due; now = System.nanoTime()) {
+        TimeUnit.NANOSECONDS.sleep(due - now);
+      }
+      long now = System.nanoTime();
+      // Operations that finish as the recorders are swapped may land in the finished one after it
+      // is read; they still count in the totals.
+      Recorder finished = current;
+      current = new Recorder();
+      List<Sample> samples = finished.samples(seconds(now - start), seconds(now - last));
+      intervals.addAll(samples);
+      listener.interval(samples);
+      last = now;
+    }
+    for (Thread client : clients) {
+      client.join();
+    }
+    double elapsed = seconds(System.nanoTime() - start);
+    return new Results(workload.toMap(), intervals, total.samples(elapsed, elapsed));
+  }
+
+  private void client(Random random, long deadline, Recorder total) {
+    String element = text.substring(0, workload.elementSize);
+    while (System.nanoTime() < deadline) {
+      LoadOperation operation = operation(random);
+      boolean onList = operation.compareTo(LoadOperation.LIST_GET) >= 0;
+      int key = onList ? listKeys.next(random) : valueKeys.next(random);
+      String written =
+          operation == LoadOperation.VALUE_PUT
+              ? text.substring(0, workload.valueSize.next(random))
+              : element;
+      long start = System.nanoTime();
+      try {
+        execute(operation, key, written);
+      } catch (RuntimeException e) {
+        current.errors[operation.ordinal()].increment();
+        total.errors[operation.ordinal()].increment();
+        continue;
+      }
+      long nanos = System.nanoTime() - start;
+      current.latencies[operation.ordinal()].record(nanos);
+      total.latencies[operation.ordinal()].record(nanos);
+    }
+  }
+
+  private LoadOperation operation(Random random) {
+    boolean read = random.nextDouble() < workload.readRatio;
+    if (random.nextDouble() < workload.listRatio) {
+      if (read) {
+        return LoadOperation.LIST_GET;
+      }
+      return random.nextBoolean() ? LoadOperation.LIST_ADD : LoadOperation.LIST_REMOVE;
+    }
+    return read ? LoadOperation.VALUE_GET : LoadOperation.VALUE_PUT;
+  }
+
+  private void execute(LoadOperation operation, int key, String written) {
+    switch (operation) {
+      case VALUE_GET:
+        value(key).blockingGet();
+        break;
+      case VALUE_PUT:
+        value(key).observePut(written).blockingGet();
+        break;
+      case LIST_GET:
+        list(key).blockingGet();
+        break;
+      case LIST_ADD:
+        list(key).observeAdd(written).blockingGet();
+        break;
+      case LIST_REMOVE:
+        list(key).observeRemove(each -> true).blockingGet();
+        break;
+    }
+  }
+
+  private ValueType<String> value(int index) {
+    return store.value("value-" + index, String.class);
+  }
+
+  private ListType<String> list(int index) {
+    return store.list("list-" + index, String.class);
+  }
+
+  private static double seconds(long nanos) {
+    return nanos / 1e9;
+  }
+
+  private static String text(int length, long seed) {
+    Random random = new Random(seed);
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append((char) ('a' + random.nextInt(26)));
+    }
+    return text.toString();
+  }
+
+  private static final class Recorder {
+    final Histogram[] latencies = new Histogram[LoadOperation.values().length];
+    final LongAdder[] errors = new LongAdder[LoadOperation.values().length];
+
+    Recorder() {
+      for (int i = 0; i < latencies.length; i++) {
+        latencies[i] = new Histogram();
+        errors[i] = new LongAdder();
+      }
+    }
+
+    List<Sample> samples(double elapsedSeconds, double seconds) {
+      List<Sample> samples = new ArrayList<>();
+      for (LoadOperation operation : LoadOperation.values()) {
+        Histogram latency = latencies[operation.ordinal()];
+        long failed = errors[operation.ordinal()].sum();
+        if (latency.count() > 0 || failed > 0) {
+          samples.add(new Sample(elapsedSeconds, operation, latency, failed, seconds));
+        }
+      }
+      return samples;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import com.ludwig.keyvaluestore.Converter;
+import com.ludwig.keyvaluestore.KeyValueStore;
+import com.ludwig.keyvaluestore.KeyValueStoreFactory;
+import com.ludwig.keyvaluestore.converters.GsonConverter;
+import com.ludwig.keyvaluestore.converters.JacksonConverter;
+import com.ludwig.keyvaluestore.converters.MoshiConverter;
+import com.ludwig.keyvaluestore.storage.AdaptableStorage;
+import com.ludwig.keyvaluestore.storage.AsyncFileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.BTreeStorage;
+import com.ludwig.keyvaluestore.storage.BTreeStorageAdapter;
+import com.ludwig.keyvaluestore.storage.FileStorage;
+import com.ludwig.keyvaluestore.storage.FileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.LogStorage;
+import com.ludwig.keyvaluestore.storage.LogStorageAdapter;
+import com.ludwig.keyvaluestore.storage.LsmStorage;
+import com.ludwig.keyvaluestore.storage.LsmStorageAdapter;
+import com.ludwig.keyvaluestore.storage.MappedFileStorageAdapter;
+import com.ludwig.keyvaluestore.storage.storable.ReadCache;
+import io.reactivex.annotations.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs a {@link LoadGenerator} from the command line against one of the bundled engines and
+ * converters, printing each interval and writing the results to {@code <out>.csv} and {@code
+ * <out>.json}. Options take the form {@code --name=value}; see {@link #USAGE}. To drive another
+ * {@link com.ludwig.keyvaluestore.storage.Storage} or {@link Converter}, build the store yourself
+ * and use {@link LoadGenerator} directly.
+ */
+public class LoadGeneratorMain {
+  static final String USAGE =
+      "Options, with their defaults:\n"
+          + "  --storage=file       file, mapped, async, log, lsm or btree\n"
+          + "  --converter=gson     gson, jackson or moshi\n"
+          + "  --dir=<temp>         directory to store into; a temp directory is removed after\n"
+          + "  --cache=0            read cache entries, 0 for none\n"
+          + "  --out=load-results   results are written to <out>.csv and <out>.json\n"
+          + "  --clients=8 --duration=60 --interval=1   threads, seconds, seconds\n"
+          + "  --values=10000 --lists=100               keys of each kind\n"
+          + "  --list-ratio=0.1 --read-ratio=0.9        shares of operations\n"
+          + "  --zipf=0.99          key skew from 0 (uniform) to below 1\n"
+          + "  --value-size=64-4096 --list-size=10-1000 sizes, fixed or a range\n"
+          + "  --element-size=32 --seed=42\n";
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0) {
+        System.err.print("Unrecognized argument " + arg + "\n" + USAGE);
+        System.exit(2);
+        return;
+      }
+      options.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    Workload defaults = Workload.defaults();
+    Workload workload =
+        new Workload(
+            Integer.parseInt(option(options, "clients", defaults.clients)),
+            Long.parseLong(option(options, "duration", defaults.durationSeconds)),
+            Long.parseLong(option(options, "interval", defaults.intervalSeconds)),
+            Integer.parseInt(option(options, "values", defaults.values)),
+            Integer.parseInt(option(options, "lists", defaults.lists)),
+            Double.parseDouble(option(options, "list-ratio", defaults.listRatio)),
+            Double.parseDouble(option(options, "read-ratio", defaults.readRatio)),
+            Double.parseDouble(option(options, "zipf", defaults.zipfTheta)),
+            SizeDistribution.parse(option(options, "value-size", defaults.valueSize)),
+            SizeDistribution.parse(option(options, "list-size", defaults.listSize)),
+            Integer.parseInt(option(options, "element-size", defaults.elementSize)),
+            Long.parseLong(option(options, "seed", defaults.seed)));
+    String storageName = option(options, "storage", "file");
+    String converterName = option(options, "converter", "gson");
+    long cache = Long.parseLong(option(options, "cache", 0));
+    String out = option(options, "out", "load-results");
+    @Nullable String dir = options.remove("dir");
+    if (!options.isEmpty()) {
+      System.err.print("Unrecognized options " + options.keySet() + "\n" + USAGE);
+      System.exit(2);
+      return;
+    }
+
+    File directory =
+        dir != null ? new File(dir) : Files.createTempDirectory("keyvaluestore-load").toFile();
+    Deque<Closeable> closeables = new ArrayDeque<>();
+    try {
+      AdaptableStorage storage =
+          storage(
+              storageName, directory, cache > 0 ? ReadCache.maxEntries(cache) : null, closeables);
+      KeyValueStore store = KeyValueStoreFactory.build(storage, converter(converterName));
+      LoadGenerator generator = new LoadGenerator(store, workload);
+      System.out.println("Loading " + workload.values + " values and " + workload.lists + " lists");
+      generator.load();
+      Results results =
+          generator.run(
+              samples -> {
+                for (Sample sample : samples) {
+                  System.out.println(sample);
+                }
+              });
+      results.settings.put("storage", storageName);
+      results.settings.put("converter", converterName);
+      results.settings.put("cache", cache);
+      System.out.println("Totals:");
+      for (Sample sample : results.totals) {
+        System.out.println(sample);
+      }
+      try (Writer writer =
+          Files.newBufferedWriter(new File(out + ".csv").toPath(), StandardCharsets.UTF_8)) {
+        results.writeCsv(writer);
+      }
+      try (Writer writer =
+          Files.newBufferedWriter(new File(out + ".json").toPath(), StandardCharsets.UTF_8)) {
+        results.writeJson(writer);
+      }
+      System.out.println("Wrote " + out + ".csv and " + out + ".json");
+    } finally {
+      while (!closeables.isEmpty()) {
+        closeables.pop().close();
+      }
+      if (dir == null) {
+        delete(directory);
+      }
+    }
+  }
+
+  /** Remove and return option {@code name}, or {@code fallback} if it was not given. */
+  private static String option(Map<String, String> options, String name, Object fallback) {
+    String value = options.remove(name);
+    return value != null ? value : String.valueOf(fallback);
+  }
+
+  private static AdaptableStorage storage(
+      String name, File directory, @Nullable ReadCache readCache, Deque<Closeable> closeables)
+      throws IOException {
+    String path = directory.getPath();
+    AdaptableStorage storage;
+    switch (name) {
+      case "file":
+        storage = new FileStorage(closing(new FileStorageAdapter(path), closeables), readCache);
+        break;
+      case "mapped":
+        storage =
+            new FileStorage(closing(new MappedFileStorageAdapter(path), closeables), readCache);
+        break;
+      case "async":
+        storage =
+            new FileStorage(closing(new AsyncFileStorageAdapter(path), closeables), readCache);
+        break;
+      case "log":
+        storage = new LogStorage(closing(new LogStorageAdapter(path), closeables), readCache);
+        break;
+      case "lsm":
+        storage = new LsmStorage(closing(new LsmStorageAdapter(path), closeables), readCache);
+        break;
+      case "btree":
+        storage = new BTreeStorage(closing(new BTreeStorageAdapter(path), closeables), readCache);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown storage " + name + "\n" + USAGE);
+    }
+    // Closed first, so pending expiry deadlines reach the adapter before it closes.
+    return closing(storage, closeables);
+  }
+
+  private static Converter converter(String name) {
+    switch (name) {
+      case "gson":
+        return new GsonConverter();
+      case "jackson":
+        return new JacksonConverter();
+      case "moshi":
+        return new MoshiConverter();
+      default:
+        throw new IllegalArgumentException("Unknown converter " + name + "\n" + USAGE);
+    }
+  }
+
+  private static <T extends Closeable> T closing(T closeable, Deque<Closeable> closeables) {
+    closeables.push(closeable);
+    return closeable;
+  }
+
+  private static void delete(File file) throws IOException {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File each : files) {
+        delete(each);
+      }
+    }
+    Files.deleteIfExists(file.toPath());
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import java.util.Locale;
+
+/** The operations a {@link LoadGenerator} issues, each reported on its own. */
+public enum LoadOperation {
+  VALUE_GET,
+  VALUE_PUT,
+  LIST_GET,
+  /** Appends one element. */
+  LIST_ADD,
+  /** Removes the first element, if any. */
+  LIST_REMOVE;
+
+  /** The name of this operation in results, such as {@code value-get}. */
+  public String label() {
+    return name().toLowerCase(Locale.ROOT).replace('_', '-');
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The samples of a {@link LoadGenerator} run, every interval and the whole run, written as CSV or
+ * JSON so runs can be compared. The JSON also records the settings the run was made with; the CSV
+ * holds one row per sample, its {@code scope} telling interval rows from the totals.
+ */
+public final class Results {
+  /** The workload, and anything else the caller adds, such as the storage and converter. */
+  public final Map<String, Object> settings;
+
+  public final List<Sample> intervals;
+  public final List<Sample> totals;
+
+  Results(Map<String, Object> settings, List<Sample> intervals, List<Sample> totals) {
+    this.settings = settings;
+    this.intervals = Collections.unmodifiableList(intervals);
+    this.totals = Collections.unmodifiableList(totals);
+  }
+
+  public void writeCsv(Writer writer) throws IOException {
+    writer.write(
+        "scope,elapsed_seconds,operation,count,errors,throughput,"
+            + "mean_us,p50_us,p99_us,p999_us,max_us\n");
+    for (Sample sample : intervals) {
+      writeCsv(writer, "interval", sample);
+    }
+    for (Sample sample : totals) {
+      writeCsv(writer, "total", sample);
+    }
+    writer.flush();
+  }
+
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"settings\": {");
+    String separator = "\n";
+    for (Map.Entry<String, Object> setting : settings.entrySet()) {
+      writer.write(separator + "    " + string(setting.getKey()) + ": " + json(setting.getValue()));
+      separator = ",\n";
+    }
+    writer.write("\n  },\n  \"intervals\": ");
+    writeJson(writer, intervals);
+    writer.write(",\n  \"totals\": ");
+    writeJson(writer, totals);
+    writer.write("\n}\n");
+    writer.flush();
+  }
+
+  private static void writeCsv(Writer writer, String scope, Sample sample) throws IOException {
+    writer.write(
+        String.format(
+            Locale.ROOT,
+            "%s,%.3f,%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f\n",
+            scope,
+            sample.elapsedSeconds,
+            sample.operation.label(),
+            sample.count,
+            sample.errors,
+            sample.throughput,
+            sample.mean,
+            sample.p50,
+            sample.p99,
+            sample.p999,
+            sample.max));
+  }
+
+  private static void writeJson(Writer writer, List<Sample> samples) throws IOException {
+    writer.write("[");
+    String separator = "\n";
+    for (Sample sample : samples) {
+      writer.write(separator);
+      writer.write(
+          String.format(
+              Locale.ROOT,
+              "    {\"elapsedSeconds\": %.3f, \"operation\": \"%s\", \"count\": %d, \"errors\": %d, "
+                  + "\"throughput\": %.1f, \"meanMicros\": %.1f, \"p50Micros\": %.1f, "
+                  + "\"p99Micros\": %.1f, \"p999Micros\": %.1f, \"maxMicros\": %.1f}",
+              sample.elapsedSeconds,
+              sample.operation.label(),
+              sample.count,
+              sample.errors,
+              sample.throughput,
+              sample.mean,
+              sample.p50,
+              sample.p99,
+              sample.p999,
+              sample.max));
+      separator = ",\n";
+    }
+    writer.write(samples.isEmpty() ? "]" : "\n  ]");
+  }
+
+  private static String json(Object value) {
+    if (value instanceof Number || value instanceof Boolean) {
+      return value.toString();
+    }
+    return string(String.valueOf(value));
+  }
+
+  private static String string(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
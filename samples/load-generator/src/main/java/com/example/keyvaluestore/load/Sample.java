@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import com.ludwig.keyvaluestore.metrics.Histogram;
+
+/** The throughput and latency of one {@link LoadOperation} over one interval or a whole run. */
+public final class Sample {
+  /** Seconds from the start of the run to the end of the interval. */
+  public final double elapsedSeconds;
+
+  public final LoadOperation operation;
+  /** Operations that completed. */
+  public final long count;
+  /** Operations that failed, which are not counted in the latencies. */
+  public final long errors;
+  /** Completed operations per second. */
+  public final double throughput;
+  /** Latencies in microseconds. */
+  public final double mean;
+
+  public final double p50;
+  public final double p99;
+  public final double p999;
+  public final double max;
+
+  Sample(
+      double elapsedSeconds,
+      LoadOperation operation,
+      Histogram nanos,
+      long errors,
+      double seconds) {
+    this.elapsedSeconds = elapsedSeconds;
+    this.operation = operation;
+    this.count = nanos.count();
+    this.errors = errors;
+    this.throughput = seconds > 0 ? count / seconds : 0;
+    this.mean = nanos.mean() / 1000;
+    this.p50 = nanos.percentile(0.5) / 1000.0;
+    this.p99 = nanos.percentile(0.99) / 1000.0;
+    this.p999 = nanos.percentile(0.999) / 1000.0;
+    this.max = nanos.max() / 1000.0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%8.1fs %-11s %9.0f ops/s  p50 %9.1fus  p99 %9.1fus  p999 %9.1fus  max %9.1fus  errors %d",
+        elapsedSeconds, operation.label(), throughput, p50, p99, p999, max, errors);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import java.util.Random;
+
+/** How many bytes, or elements, each value or list of a {@link Workload} holds. */
+public abstract class SizeDistribution {
+  public abstract int next(Random random);
+
+  /** The largest size this distribution returns. */
+  public abstract int max();
+
+  public static SizeDistribution fixed(int size) {
+    return uniform(size, size);
+  }
+
+  /** Sizes from {@code min} to {@code max} inclusive, all equally likely. */
+  public static SizeDistribution uniform(int min, int max) {
+    if (min < 0 || max < min) {
+      throw new IllegalArgumentException("Invalid size range " + min + "-" + max);
+    }
+    return new SizeDistribution() {
+      @Override
+      public int next(Random random) {
+        return min == max ? min : min + random.nextInt(max - min + 1);
+      }
+
+      @Override
+      public int max() {
+        return max;
+      }
+
+      @Override
+      public String toString() {
+        return min == max ? Integer.toString(min) : min + "-" + max;
+      }
+    };
+  }
+
+  /** Parse {@code "1024"} as a fixed size and {@code "64-4096"} as a uniform range. */
+  public static SizeDistribution parse(String spec) {
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return fixed(Integer.parseInt(spec));
+    }
+    return uniform(
+        Integer.parseInt(spec.substring(0, dash)), Integer.parseInt(spec.substring(dash + 1)));
+  }
+}
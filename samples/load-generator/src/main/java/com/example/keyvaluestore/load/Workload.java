@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The mix a {@link LoadGenerator} replays: how many clients, for how long, over which keys and with
+ * which operations and sizes.
+ */
+public final class Workload {
+  /** Concurrent clients, each a thread issuing one blocking operation after another. */
+  public final int clients;
+  /** How long to run, after the keys are loaded. */
+  public final long durationSeconds;
+  /** How often to report latencies and throughput. */
+  public final long intervalSeconds;
+  /** Value keys, each loaded before the run. */
+  public final int values;
+  /** List keys, each loaded before the run. */
+  public final int lists;
+  /** The share of operations that touch a list rather than a value, from 0 to 1. */
+  public final double listRatio;
+  /** The share of operations that read rather than write, from 0 to 1. */
+  public final double readRatio;
+  /** The skew of key popularity, see {@link ZipfianGenerator}; zero is uniform. */
+  public final double zipfTheta;
+  /** The bytes of each value written. */
+  public final SizeDistribution valueSize;
+  /** The elements of each list when it is loaded. */
+  public final SizeDistribution listSize;
+  /** The bytes of each list element. */
+  public final int elementSize;
+  /** Seeds every client's random choices, so runs with the same seed issue the same operations. */
+  public final long seed;
+
+  public Workload(
+      int clients,
+      long durationSeconds,
+      long intervalSeconds,
+      int values,
+      int lists,
+      double listRatio,
+      double readRatio,
+      double zipfTheta,
+      SizeDistribution valueSize,
+      SizeDistribution listSize,
+      int elementSize,
+      long seed) {
+    if (clients <= 0 || durationSeconds <= 0 || intervalSeconds <= 0) {
+      throw new IllegalArgumentException("clients, duration and interval must be positive");
+    }
+    if (values <= 0 || lists < 0 || (lists == 0 && listRatio > 0)) {
+      throw new IllegalArgumentException("Need values, and lists if listRatio is not zero");
+    }
+    if (listRatio < 0 || listRatio > 1 || readRatio < 0 || readRatio > 1) {
+      throw new IllegalArgumentException("Ratios must be between 0 and 1");
+    }
+    this.clients = clients;
+    this.durationSeconds = durationSeconds;
+    this.intervalSeconds = intervalSeconds;
+    this.values = values;
+    this.lists = lists;
+    this.listRatio = listRatio;
+    this.readRatio = readRatio;
+    this.zipfTheta = zipfTheta;
+    this.valueSize = valueSize;
+    this.listSize = listSize;
+    this.elementSize = elementSize;
+    this.seed = seed;
+  }
+
+  /**
+   * Eight clients for a minute, reporting every second, over 10,000 values of 64 to 4096 bytes and
+   * 100 lists of 10 to 1000 elements, with one operation in ten on a list, nine in ten reads and
+   * YCSB's key skew.
+   */
+  public static Workload defaults() {
+    return new Workload(
+        8,
+        60,
+        1,
+        10_000,
+        100,
+        0.1,
+        0.9,
+        0.99,
+        SizeDistribution.uniform(64, 4096),
+        SizeDistribution.uniform(10, 1000),
+        32,
+        42);
+  }
+
+  /** This workload as ordered name, value pairs, written alongside its results. */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("clients", clients);
+    map.put("durationSeconds", durationSeconds);
+    map.put("intervalSeconds", intervalSeconds);
+    map.put("values", values);
+    map.put("lists", lists);
+    map.put("listRatio", listRatio);
+    map.put("readRatio", readRatio);
+    map.put("zipfTheta", zipfTheta);
+    map.put("valueSize", valueSize.toString());
+    map.put("listSize", listSize.toString());
+    map.put("elementSize", elementSize);
+    map.put("seed", seed);
+    return map;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Ludwig
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.keyvaluestore.load;
+
+import java.util.Random;
+
+/**
+ * Picks key indexes from {@code 0} to {@code items - 1} with Zipfian popularity, the index of rank
+ * {@code i} being chosen in proportion to {@code 1 / i^theta}, using the constant-time method of
+ * Gray et al., "Quickly Generating Billion-Record Synthetic Databases". A {@code theta} of zero
+ * picks uniformly; YCSB's default of 0.99 sends about a fifth of all requests to the hottest 0.1%
+ * of keys.
+ *
+ * <p>Ranks are scattered over the indexes by multiplying with a number coprime to {@code items}, a
+ * permutation, so the hot keys are not neighbours, which would flatter engines that keep keys in
+ * order.
+ */
+public final class ZipfianGenerator {
+  private final int items;
+  private final double theta;
+  private final double alpha;
+  private final double zetaN;
+  private final double eta;
+  private final long multiplier;
+
+  public ZipfianGenerator(int items, double theta) {
+    if (items <= 0) {
+      throw new IllegalArgumentException("items must be positive: " + items);
+    }
+    if (theta < 0 || theta >= 1) {
+      throw new IllegalArgumentException("theta must be in [0, 1): " + theta);
+    }
+    this.items = items;
+    this.theta = theta;
+    this.alpha = 1 / (1 - theta);
+    this.zetaN = zeta(items, theta);
+    this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    long multiplier = (long) (items * 0.6180339887) | 1;
+    while (gcd(multiplier, items) != 1) {
+      multiplier += 2;
+    }
+    this.multiplier = multiplier;
+  }
+
+  public int next(Random random) {
+    if (theta == 0 || items == 1) {
+      return random.nextInt(items);
+    }
+    double u = random.nextDouble();
+    double uz = u * zetaN;
+    long rank;
+    if (uz < 1) {
+      rank = 0;
+    } else if (uz < 1 + Math.pow(0.5, theta)) {
+      rank = 1;
+    } else {
+      rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+    }
+    return (int) (Math.min(rank, items - 1) * multiplier % items);
+  }
+
+  private static long gcd(long a, long b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  private static double zeta(long n, double theta) {
+    double sum = 0;
+    for (long i = 1; i <= n; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+}